@@ -0,0 +1,165 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compares the CSV results of a JMH run with the baseline kept in src/jmh/baselines. Every score,
+ * the secondary ones of the GC profiler included (gc.alloc.rate.norm, gc.count, ...), is printed
+ * with its variation from the baseline; the variations beyond the tolerance are flagged as
+ * regressions. The benchmarks absent from the baseline are listed as new.
+ * <p>
+ * Usage: <code>BaselineComparison baseline.csv result.csv [tolerance%] [failOnRegression]</code>.
+ * It is run at the verify phase of the benchmarks profile.
+ * </p>
+ *
+ * @author ehugonnet
+ */
+public class BaselineComparison {
+
+  private static final String THROUGHPUT = "thrpt";
+  private static final double DEFAULT_TOLERANCE = 10.0d;
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.err.println("Usage: BaselineComparison baseline.csv result.csv [tolerance%] "
+          + "[failOnRegression]");
+      System.exit(2);
+    }
+    File baselineFile = new File(args[0]);
+    File resultFile = new File(args[1]);
+    double tolerance = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_TOLERANCE;
+    boolean failOnRegression = args.length > 3 && Boolean.parseBoolean(args[3]);
+    if (!resultFile.isFile()) {
+      System.out.println("No benchmark result in " + resultFile);
+      return;
+    }
+    if (!baselineFile.isFile()) {
+      System.out.println("No baseline in " + baselineFile + ": copy " + resultFile
+          + " there to record one");
+      return;
+    }
+    Map<String, Score> baseline = read(baselineFile);
+    int regressions = 0;
+    for (Score score : read(resultFile).values()) {
+      Score reference = baseline.get(score.key);
+      if (reference == null) {
+        System.out.println(String.format(Locale.US, "%-100s %14.3f %-10s (new)", score.key,
+            score.value, score.unit));
+        continue;
+      }
+      double variation = reference.value == 0.0d ? 0.0d : (score.value - reference.value) * 100.0d
+          / reference.value;
+      boolean regression = score.higherIsBetter() ? variation < -tolerance : variation > tolerance;
+      if (regression) {
+        regressions++;
+      }
+      System.out.println(String.format(Locale.US, "%-100s %14.3f %-10s %+8.1f%%%s", score.key,
+          score.value, score.unit, variation, regression ? "  REGRESSION" : ""));
+    }
+    System.out.println(regressions + " regression(s) beyond " + tolerance + "%");
+    if (regressions > 0 && failOnRegression) {
+      System.exit(1);
+    }
+  }
+
+  static Map<String, Score> read(File file) throws IOException {
+    Map<String, Score> scores = new LinkedHashMap<String, Score>();
+    BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file),
+        "UTF-8"));
+    try {
+      List<String> header = split(reader.readLine());
+      int score = header.indexOf("Score");
+      int unit = header.indexOf("Unit");
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.trim().isEmpty()) {
+          continue;
+        }
+        List<String> columns = split(line);
+        StringBuilder key = new StringBuilder(columns.get(0)).append(' ').append(columns.get(1));
+        for (int i = unit + 1; i < columns.size(); i++) {
+          if (!columns.get(i).isEmpty()) {
+            key.append(' ').append(header.get(i).replace("Param: ", "")).append('=').append(
+                columns.get(i));
+          }
+        }
+        scores.put(key.toString(), new Score(key.toString(), columns.get(1), Double.parseDouble(
+            columns.get(score)), columns.get(unit)));
+      }
+    } finally {
+      reader.close();
+    }
+    return scores;
+  }
+
+  static List<String> split(String line) {
+    List<String> columns = new ArrayList<String>();
+    StringBuilder column = new StringBuilder();
+    boolean quoted = false;
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (c == '"') {
+        quoted = !quoted;
+      } else if (c == ',' && !quoted) {
+        columns.add(column.toString());
+        column.setLength(0);
+      } else {
+        column.append(c);
+      }
+    }
+    columns.add(column.toString());
+    return columns;
+  }
+
+  static class Score {
+
+    final String key;
+    final String mode;
+    final double value;
+    final String unit;
+
+    Score(String key, String mode, double value, String unit) {
+      this.key = key;
+      this.mode = mode;
+      this.value = value;
+      this.unit = unit;
+    }
+
+    /**
+     * Only the primary throughput scores are better when higher: the times and the secondary
+     * metrics of the profilers (allocation rates, GC counts and times) are better when lower.
+     */
+    boolean higherIsBetter() {
+      return THROUGHPUT.equals(mode) && !key.contains(":");
+    }
+  }
+}
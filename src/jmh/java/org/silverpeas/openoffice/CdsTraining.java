@@ -0,0 +1,128 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Builds the class-data sharing (AppCDS) archive of the packaged launcher. A training launch of
+ * the launcher, in headless disconnected mode against a stub editor and the WebDAV stand-in server
+ * (see {@link LaunchFootprint}), records the classes it loads; the archive of these classes is
+ * then dumped for the launcher alone, launched as the launcher scripts do it: with
+ * <code>-jar OpenOfficeLauncher.jar</code> from the folder of the jar. Only a JVM of the same
+ * version as the one running the training can use the archive, and only with the same jar, whose
+ * modification time is checked: it has to be built again once the jar is rebuilt, and the jar has
+ * to keep its modification time when it is installed. The JVM never shares the classes of a signed
+ * jar, so the jar mustn't be signed.
+ * <p>
+ * Usage: <code>CdsTraining [launcher jar] [archive]</code>. With a Java older than 11, no archive
+ * is built.
+ * </p>
+ *
+ * @author ehugonnet
+ */
+public class CdsTraining {
+
+  private static final long DOCUMENT_SIZE = 1024L * 1024L;
+
+  public static void main(String[] args) throws Exception {
+    File jar = new File(args[0]);
+    File archive = new File(args[1]);
+    String version = System.getProperty("java.specification.version");
+    if (version.startsWith("1.") || Integer.parseInt(version) < 11) {
+      System.out.println("The class-data sharing of the application classes requires Java 11: no "
+          + "archive is built");
+      return;
+    }
+    if (isSigned(jar)) {
+      throw new IOException("The classes of the signed jar " + jar + " cannot be shared: the "
+          + "archive must be built for an unsigned jar");
+    }
+    File folder = File.createTempFile("silver-cds", "");
+    folder.delete();
+    folder.mkdirs();
+    try {
+      File classList = new File(folder, "classes.lst");
+      LaunchFootprint harness = new LaunchFootprint(folder, DOCUMENT_SIZE, jar.getAbsolutePath());
+      try {
+        harness.launch("headless", "training", Arrays.asList("-XX:DumpLoadedClassList="
+            + classList.getAbsolutePath()));
+      } finally {
+        harness.stop();
+      }
+      archive.delete();
+      int status = dump(classList, jar, archive);
+      if (status != 0 || !archive.isFile()) {
+        throw new IOException("The dump of the archive " + archive + " failed: " + status);
+      }
+      System.out.println("Class-data sharing archive: " + archive.getAbsolutePath() + " ("
+          + archive.length() + " bytes)");
+    } finally {
+      delete(folder);
+    }
+  }
+
+  private static boolean isSigned(File jar) throws IOException {
+    JarFile file = new JarFile(jar);
+    try {
+      Enumeration<JarEntry> entries = file.entries();
+      while (entries.hasMoreElements()) {
+        String name = entries.nextElement().getName().toUpperCase();
+        if (name.startsWith("META-INF/") && name.endsWith(".SF")) {
+          return true;
+        }
+      }
+      return false;
+    } finally {
+      file.close();
+    }
+  }
+
+  /**
+   * Dumps the archive with the classpath of the launcher scripts: the jar relative to its folder.
+   */
+  private static int dump(File classList, File jar, File archive) throws IOException,
+      InterruptedException {
+    ProcessBuilder builder = new ProcessBuilder(new File(new File(System.getProperty(
+        "java.home"), "bin"), "java").getPath(), "-Xshare:dump", "-XX:SharedClassListFile="
+        + classList.getAbsolutePath(), "-XX:SharedArchiveFile=" + archive.getAbsolutePath(),
+        "-jar", jar.getName());
+    builder.directory(jar.getAbsoluteFile().getParentFile());
+    builder.inheritIO();
+    Process process = builder.start();
+    return process.waitFor();
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import org.silverpeas.openoffice.util.ApplicationArguments;
+
+/**
+ * The entry point of the launcher used by {@link LaunchFootprint}. It runs the launch of
+ * OfficeOnline.main, except the discovery of the Office suite: the editor to run is given as
+ * first argument, followed by the usual arguments of the launcher. The discovery depends on the
+ * registry or on the installed packages of the host, and the disconnected mode can only be
+ * reached with a real MS Office installation.
+ * <p>
+ * At exit, the peak resident set size of the process is printed on the standard error, when the
+ * platform gives it (/proc/self/status), followed by the time spent by the JVM loading classes,
+ * when its internal counters are readable.
+ * </p>
+ *
+ * @author ehugonnet
+ */
+public class LaunchDriver {
+
+  static final String PEAK_RSS = "footprint.peakRss=";
+  static final String CLASS_LOADING_TIME = "footprint.classLoadingMs=";
+
+  public static void main(String[] args) {
+    Runtime.getRuntime().addShutdownHook(new Thread() {
+
+      @Override
+      public void run() {
+        System.err.println(PEAK_RSS + readPeakRss());
+        System.err.println(CLASS_LOADING_TIME + readClassLoadingTime());
+      }
+    });
+    ExitStatus status = ExitStatus.UNEXPECTED_ERROR;
+    try {
+      ApplicationArguments arguments = ApplicationArguments.extract(Arrays.copyOfRange(args, 1,
+          args.length));
+      OfficeOnline.defineLookAndFeel();
+      status = OfficeLauncher.launch(arguments.getContentType(), args[0], arguments.getUrl(),
+          arguments.isDisconnectedMode(), arguments.isReadOnlyMode(), arguments.getLogin(),
+          arguments.getAuthenticationInfo());
+    } catch (Throwable ex) {
+      ex.printStackTrace();
+    } finally {
+      System.exit(status.getCode());
+    }
+  }
+
+  /**
+   * @return the time in ms spent loading classes, from the HotSpot counters, or -1 if they
+   * aren't available. From Java 9, sun.management has to be exported to the unnamed module.
+   */
+  static long readClassLoadingTime() {
+    try {
+      Object bean = Class.forName("sun.management.ManagementFactoryHelper").getMethod(
+          "getHotspotClassLoadingMBean").invoke(null);
+      return (Long) Class.forName("sun.management.HotspotClassLoadingMBean").getMethod(
+          "getClassLoadingTime").invoke(bean);
+    } catch (Exception ex) {
+      return -1L;
+    }
+  }
+
+  /**
+   * @return the peak resident set size in KB, or -1 if it isn't available.
+   */
+  static long readPeakRss() {
+    File status = new File("/proc/self/status");
+    if (!status.isFile()) {
+      return -1L;
+    }
+    try {
+      BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(
+          status), "US-ASCII"));
+      try {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          if (line.startsWith("VmHWM:")) {
+            return Long.parseLong(line.substring(6).replace("kB", "").trim());
+          }
+        }
+      } finally {
+        reader.close();
+      }
+    } catch (IOException ex) {
+      return -1L;
+    }
+    return -1L;
+  }
+}
@@ -0,0 +1,383 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice;
+
+import java.awt.GraphicsEnvironment;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.silverpeas.openoffice.windows.webdav.WebdavStandInServer;
+
+/**
+ * The cold-start and footprint harness of the launcher. The launcher is run several times in a
+ * fresh JVM for each launch mode, against a stub editor and the WebDAV stand-in server, and for
+ * each run are measured:
+ * <ul>
+ * <li>the time from the start of the JVM to the exec of the editor;</li>
+ * <li>the time to the exit of the JVM;</li>
+ * <li>the peak resident set size (Linux only);</li>
+ * <li>the number of loaded classes, from -verbose:class, and how many of them came from the
+ * class-data sharing archive;</li>
+ * <li>the time spent loading the classes, as counted by the JVM;</li>
+ * <li>the number of GC pauses and their total time, from -verbose:gc.</li>
+ * </ul>
+ * The modes are:
+ * <ul>
+ * <li>standard: the editor is given the URL of the document;</li>
+ * <li>disconnected: the document is locked, downloaded, edited, uploaded and unlocked with the
+ * progress windows. The JVM is stopped once the document is unlocked, as it then waits for the
+ * user to close the confirmation message. It needs a display and is skipped without;</li>
+ * <li>headless: the disconnected mode with -Dsilverpeas.headless=true.</li>
+ * </ul>
+ * The launcher runs from the classpath given with -Dfootprint.classpath (the packaged jar and its
+ * dependencies), followed by the classpath of the harness for the driver. When it is a single jar,
+ * the launcher runs from the folder of the jar, with the jar given by its name, as with the
+ * launcher scripts (the class-data sharing archive records the classpath as given). If the
+ * class-data sharing archive of the launcher given with -Dfootprint.cds exists (see
+ * {@link CdsTraining}), each mode is run again with the archive, as mode+cds. The stub editor is a shell script, so the
+ * harness runs on Linux and Mac OS X only.
+ * <p>
+ * Usage: <code>LaunchFootprint [runs] [document size] [result.csv]</code>; the extra options of the
+ * launched JVMs can be given with -Dfootprint.jvmArgs.
+ * </p>
+ *
+ * @author ehugonnet
+ */
+public class LaunchFootprint {
+
+  private static final Pattern GC_PAUSE = Pattern.compile(
+      "(?:\\[gc\\s*\\] GC\\(\\d+\\) Pause.* ([0-9.]+)ms)|(?:^\\[(?:Full )?GC .*, ([0-9.]+) secs\\])");
+  private static final String DOCUMENT = "footprint/document.doc";
+  private static final long TIMEOUT = 120000L;
+  private static final String[] MODES = {"standard", "disconnected", "headless"};
+  private final File folder;
+  private final File editor;
+  private final File marker;
+  private final WebdavStandInServer server;
+  private final String classpath;
+  private final File directory;
+
+  LaunchFootprint(File folder, long documentSize, String launcherClasspath) throws IOException {
+    this.folder = folder;
+    this.marker = new File(folder, "editor.started");
+    this.editor = new File(folder, "editor.sh");
+    PrintWriter script = new PrintWriter(new OutputStreamWriter(new FileOutputStream(editor),
+        "US-ASCII"));
+    try {
+      script.print("#!/bin/sh\n: > '" + marker.getAbsolutePath() + "'\nexit 0\n");
+    } finally {
+      script.close();
+    }
+    editor.setExecutable(true);
+    server = new WebdavStandInServer(new File(folder, "server"));
+    server.addDocument(DOCUMENT, documentSize);
+    server.start();
+    String harnessClasspath = System.getProperty("java.class.path");
+    File jar = launcherClasspath == null ? null : new File(launcherClasspath);
+    if (jar != null && jar.isFile()) {
+      directory = jar.getAbsoluteFile().getParentFile();
+      StringBuilder buffer = new StringBuilder(jar.getName());
+      for (String entry : harnessClasspath.split(File.pathSeparator)) {
+        buffer.append(File.pathSeparator).append(new File(entry).getAbsolutePath());
+      }
+      classpath = buffer.toString();
+    } else {
+      directory = null;
+      classpath = launcherClasspath == null || launcherClasspath.isEmpty() ? harnessClasspath
+          : launcherClasspath + File.pathSeparator + harnessClasspath;
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    int runs = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+    long documentSize = args.length > 1 ? Long.parseLong(args[1]) : 1024L * 1024L;
+    File result = new File(args.length > 2 ? args[2] : "footprint.csv");
+    if (System.getProperty("os.name").startsWith("Windows")) {
+      System.err.println("The stub editor is a shell script: Linux or Mac OS X is required");
+      System.exit(2);
+    }
+    File folder = File.createTempFile("silver-footprint", "");
+    folder.delete();
+    folder.mkdirs();
+    LaunchFootprint harness = new LaunchFootprint(folder, documentSize, System.getProperty(
+        "footprint.classpath"));
+    String cds = System.getProperty("footprint.cds", "").trim();
+    File archive = cds.isEmpty() ? null : new File(cds);
+    if (archive != null && !archive.isFile()) {
+      System.out.println("No class-data sharing archive " + archive + ": the +cds runs are skipped");
+      archive = null;
+    }
+    List<Run> results = new ArrayList<Run>();
+    try {
+      for (String mode : MODES) {
+        if ("disconnected".equals(mode) && GraphicsEnvironment.isHeadless()) {
+          System.out.println("No display: the disconnected mode is skipped");
+          continue;
+        }
+        for (int i = 0; i < runs; i++) {
+          results.add(harness.launch(mode));
+        }
+        if (archive != null) {
+          List<String> sharing = Arrays.asList("-Xshare:auto", "-XX:SharedArchiveFile="
+              + archive.getAbsolutePath());
+          for (int i = 0; i < runs; i++) {
+            results.add(harness.launch(mode, mode + "+cds", sharing));
+          }
+        }
+      }
+    } finally {
+      harness.stop();
+      delete(folder);
+    }
+    report(results, result);
+  }
+
+  Run launch(String mode) throws IOException, InterruptedException {
+    return launch(mode, mode, Collections.<String>emptyList());
+  }
+
+  /**
+   * Launches the launcher in the specified mode.
+   * @param mode the launch mode.
+   * @param label the label of the run in the results.
+   * @param options the extra options of the launched JVM.
+   */
+  Run launch(String mode, String label, List<String> options) throws IOException,
+      InterruptedException {
+    marker.delete();
+    server.unlockAll();
+    int unlocks = server.getRequestCount("UNLOCK");
+    List<String> command = new ArrayList<String>();
+    command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+    command.add("-verbose:class");
+    command.add("-verbose:gc");
+    command.add("-Dsilverpeas.metrics.file=" + new File(folder, "metrics.jsonl").getPath());
+    command.add("-Djava.io.tmpdir=" + folder.getPath());
+    if ("headless".equals(mode)) {
+      command.add("-Dsilverpeas.headless=true");
+    }
+    if (!System.getProperty("java.specification.version").startsWith("1.")) {
+      // for the class loading time read by the driver
+      command.add("--add-exports=java.management/sun.management=ALL-UNNAMED");
+    }
+    command.addAll(options);
+    String jvmArgs = System.getProperty("footprint.jvmArgs", "").trim();
+    if (!jvmArgs.isEmpty()) {
+      Collections.addAll(command, jvmArgs.split("\\s+"));
+    }
+    command.add("-cp");
+    command.add(classpath);
+    command.add(LaunchDriver.class.getName());
+    command.add(editor.getAbsolutePath());
+    command.add(URLEncoder.encode(server.getUrl(DOCUMENT), "UTF-8"));
+    command.add("");
+    command.add("bart");
+    command.add(Boolean.toString(!"standard".equals(mode)));
+    ProcessBuilder builder = new ProcessBuilder(command);
+    builder.directory(directory);
+    builder.redirectErrorStream(true);
+    Run run = new Run(label);
+    long start = System.nanoTime();
+    Process process = builder.start();
+    process.getOutputStream().close();
+    OutputReader output = new OutputReader(process, run);
+    output.start();
+    boolean killed = false;
+    while (output.isAlive()) {
+      long elapsed = (System.nanoTime() - start) / 1000000L;
+      if (run.timeToEditor < 0L && marker.exists()) {
+        run.timeToEditor = elapsed;
+      }
+      if (elapsed > TIMEOUT || ("disconnected".equals(mode) && server.getRequestCount("UNLOCK")
+          > unlocks && elapsed > run.timeToEditor + 500L && run.timeToEditor >= 0L)) {
+        process.destroy();
+        killed = true;
+      }
+      Thread.sleep(1L);
+    }
+    run.exitStatus = killed ? "stopped" : Integer.toString(process.waitFor());
+    run.wallTime = (System.nanoTime() - start) / 1000000L;
+    System.out.println(run);
+    return run;
+  }
+
+  void stop() {
+    server.stop();
+  }
+
+  static void report(List<Run> results, File file) throws IOException {
+    PrintWriter csv = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+    try {
+      csv.println(Run.HEADER);
+      for (Run run : results) {
+        csv.println(run.toCsv());
+      }
+    } finally {
+      csv.close();
+    }
+    System.out.println();
+    System.out.println(String.format(Locale.US, "%-17s %-22s %-22s %-22s %-16s %-16s %-16s "
+        + "%-10s %s", "mode", "to editor ms", "wall ms", "peak RSS KB", "classes", "shared",
+        "loading ms", "GC pauses", "GC ms"));
+    List<String> modes = new ArrayList<String>();
+    for (Run run : results) {
+      if (!modes.contains(run.mode)) {
+        modes.add(run.mode);
+      }
+    }
+    for (String mode : modes) {
+      List<Run> runs = new ArrayList<Run>();
+      for (Run run : results) {
+        if (run.mode.equals(mode)) {
+          runs.add(run);
+        }
+      }
+      if (runs.isEmpty()) {
+        continue;
+      }
+      long[][] values = new long[8][runs.size()];
+      for (int i = 0; i < runs.size(); i++) {
+        Run run = runs.get(i);
+        values[0][i] = run.timeToEditor;
+        values[1][i] = run.wallTime;
+        values[2][i] = run.peakRss;
+        values[3][i] = run.loadedClasses;
+        values[4][i] = run.sharedClasses;
+        values[5][i] = run.classLoadingTime;
+        values[6][i] = run.gcPauses;
+        values[7][i] = Math.round(run.gcTime);
+      }
+      System.out.println(String.format(Locale.US, "%-17s %-22s %-22s %-22s %-16s %-16s %-16s "
+          + "%-10s %s", mode, summary(values[0]), summary(values[1]), summary(values[2]),
+          summary(values[3]), summary(values[4]), summary(values[5]), summary(values[6]),
+          summary(values[7])));
+    }
+    System.out.println("(median [min-max]) runs written in " + file.getAbsolutePath());
+  }
+
+  private static String summary(long[] values) {
+    long[] sorted = values.clone();
+    Arrays.sort(sorted);
+    return sorted[sorted.length / 2] + " [" + sorted[0] + '-' + sorted[sorted.length - 1] + ']';
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+
+  /**
+   * The measures of one launch.
+   */
+  static class Run {
+
+    static final String HEADER = "mode,timeToEditorMs,wallTimeMs,peakRssKb,loadedClasses,"
+        + "sharedClasses,classLoadingMs,gcPauses,gcTimeMs,exit";
+    final String mode;
+    long timeToEditor = -1L;
+    long wallTime = -1L;
+    long peakRss = -1L;
+    long loadedClasses = 0L;
+    long sharedClasses = 0L;
+    long classLoadingTime = -1L;
+    long gcPauses = 0L;
+    double gcTime = 0.0d;
+    String exitStatus;
+
+    Run(String mode) {
+      this.mode = mode;
+    }
+
+    String toCsv() {
+      return String.format(Locale.US, "%s,%d,%d,%d,%d,%d,%d,%d,%.3f,%s", mode, timeToEditor,
+          wallTime, peakRss, loadedClasses, sharedClasses, classLoadingTime, gcPauses, gcTime,
+          exitStatus);
+    }
+
+    @Override
+    public String toString() {
+      return toCsv();
+    }
+  }
+
+  /**
+   * Consumes the output of the launched JVM, counting the loaded classes and the GC pauses.
+   */
+  static class OutputReader extends Thread {
+
+    private final Process process;
+    private final Run run;
+
+    OutputReader(Process process, Run run) {
+      this.process = process;
+      this.run = run;
+    }
+
+    @Override
+    public void run() {
+      try {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+            process.getInputStream(), "UTF-8"));
+        String line;
+        while ((line = reader.readLine()) != null) {
+          if (line.startsWith("[Loaded ") || line.contains("[class,load")) {
+            run.loadedClasses++;
+            if (line.contains("shared objects file")) {
+              run.sharedClasses++;
+            }
+          } else if (line.startsWith(LaunchDriver.PEAK_RSS)) {
+            run.peakRss = Long.parseLong(line.substring(LaunchDriver.PEAK_RSS.length()).trim());
+          } else if (line.startsWith(LaunchDriver.CLASS_LOADING_TIME)) {
+            run.classLoadingTime = Long.parseLong(line.substring(LaunchDriver.CLASS_LOADING_TIME.
+                length()).trim());
+          } else {
+            Matcher matcher = GC_PAUSE.matcher(line);
+            if (matcher.find()) {
+              run.gcPauses++;
+              run.gcTime += matcher.group(1) != null ? Double.parseDouble(matcher.group(1))
+                  : Double.parseDouble(matcher.group(2)) * 1000.0d;
+            }
+          }
+        }
+        reader.close();
+      } catch (IOException ex) {
+        ex.printStackTrace();
+      }
+    }
+  }
+}
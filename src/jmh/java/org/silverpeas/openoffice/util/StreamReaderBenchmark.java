@@ -0,0 +1,72 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.util;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the capture of the output of a subprocess (reg query, whereis, ...) by a StreamReader,
+ * read in the calling thread from an in-memory output of the given number of lines.
+ *
+ * @author ehugonnet
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StreamReaderBenchmark {
+
+  private static final String LINE =
+      "    (Default)    REG_SZ    C:\\PROGRA~1\\MICROS~1\\Office14\\WINWORD.EXE /Automation\r\n";
+  @Param({"4", "1000"})
+  public int lines;
+  private byte[] output;
+
+  @Setup
+  public void setUp() throws Exception {
+    StringBuilder buffer = new StringBuilder("\r\nHKEY_LOCAL_MACHINE\\Software\\Classes\\CLSID\r\n");
+    for (int i = 0; i < lines; i++) {
+      buffer.append(LINE);
+    }
+    output = buffer.toString().getBytes("Cp1252");
+  }
+
+  @Benchmark
+  public String capture() {
+    StreamReader reader = new StreamReader(new ByteArrayInputStream(output));
+    reader.run();
+    return reader.getResult();
+  }
+}
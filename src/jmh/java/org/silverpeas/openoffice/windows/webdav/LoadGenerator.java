@@ -0,0 +1,311 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.windows.webdav;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.httpclient.URI;
+import org.apache.commons.httpclient.URIException;
+import org.silverpeas.openoffice.AuthenticationInfo;
+import org.silverpeas.openoffice.metrics.Metrics;
+
+/**
+ * The load generator of a WebDAV server: virtual users open and save documents concurrently with
+ * the same LOCK, GET, PUT and UNLOCK sequence as the launcher in disconnected mode, each with its
+ * own {@link WebdavManager}. The editor is a stub that keeps the document open during a think
+ * time and saves it unchanged, so that the documents of a staging server aren't altered.
+ * <p>
+ * The virtual users are ramped according to a schedule of stages <code>users:seconds</code>,
+ * separated by commas: during each stage, the number of users moves linearly from the target of
+ * the previous stage to the one of the stage. For instance <code>50:30,200:60,200:120,0:30</code>
+ * ramps up to 50 users in 30 seconds, then to 200 users in one minute, holds them 2 minutes and
+ * ramps down. A user stopped by the ramp down ends its current session first.
+ * </p>
+ * <p>
+ * The documents are those of the collection given as URL, or documents created on the WebDAV
+ * stand-in server if no URL is given. The users pick a document at random for each session, so
+ * that there are less documents than users to measure the lock contention. At the end, the
+ * latency percentiles of each request, the number of locks refused with 423 (Locked) and the
+ * throughput are printed and written in a CSV file. The requests are measured with the spans of
+ * {@link Metrics}; the spans aren't written in the metrics file unless
+ * <code>silverpeas.metrics</code> is set.
+ * </p>
+ * <p>
+ * Usage: <code>LoadGenerator [stages] [collection URL|-] [result.csv]</code>, with the options:
+ * </p>
+ * <ul>
+ * <li><code>load.documents</code>: the number of documents created on the stand-in server (50 by
+ * default);</li>
+ * <li><code>load.size</code>: the size in bytes of these documents (256 KB by default);</li>
+ * <li><code>load.think</code>: the mean time in milliseconds a document stays open in the stub
+ * editor (2000 by default);</li>
+ * <li><code>load.login</code> and <code>load.password</code>: the credentials of the virtual users
+ * on the server.</li>
+ * </ul>
+ *
+ * @author ehugonnet
+ */
+public class LoadGenerator {
+
+  static final Logger logger = Logger.getLogger(LoadGenerator.class.getName());
+  static final String DEFAULT_STAGES = "50:30,200:60,200:120,0:30";
+  private static final long TICK = 100L;
+  private static final long STATUS_PERIOD = 10000L;
+  private final List<URI> documents;
+  private final String host;
+  private final File folder;
+  private final String login;
+  private final AuthenticationInfo authenticationInfo;
+  private final long thinkTime;
+  private final LoadReport report = new LoadReport();
+  private final List<VirtualUser> users = new ArrayList<VirtualUser>();
+  private final AtomicInteger userCount = new AtomicInteger(0);
+
+  LoadGenerator(List<URI> documents, File folder, String login,
+      AuthenticationInfo authenticationInfo, long thinkTime) throws URIException {
+    this.documents = documents;
+    this.host = documents.get(0).getHost();
+    this.folder = folder;
+    this.login = login;
+    this.authenticationInfo = authenticationInfo;
+    this.thinkTime = thinkTime;
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (System.getProperty("silverpeas.metrics") == null) {
+      System.setProperty("silverpeas.metrics", "false");
+    }
+    Logger.getLogger("org.silverpeas").setLevel(Level.WARNING);
+    int[][] stages = parseStages(args.length > 0 ? args[0] : DEFAULT_STAGES);
+    String url = args.length > 1 && !"-".equals(args[1]) ? args[1] : null;
+    File result = new File(args.length > 2 ? args[2] : "load.csv");
+    String login = System.getProperty("load.login", "bart");
+    String password = System.getProperty("load.password");
+    AuthenticationInfo authenticationInfo = password == null ? null : new AuthenticationInfo(
+        login, password.toCharArray());
+    File folder = File.createTempFile("silver-load", "");
+    folder.delete();
+    folder.mkdirs();
+    WebdavStandInServer server = null;
+    try {
+      List<URI> documents = new ArrayList<URI>();
+      if (url == null) {
+        server = new WebdavStandInServer(new File(folder, "server"));
+        int count = Integer.getInteger("load.documents", 50);
+        long size = Long.getLong("load.size", 256L * 1024L);
+        for (int i = 0; i < count; i++) {
+          String path = "load/document-" + i + ".doc";
+          server.addDocument(path, size);
+          documents.add(new URI(server.getUrl(path), false, "UTF-8"));
+        }
+        server.start();
+      } else {
+        URI collection = new URI(url.endsWith("/") ? url : url + '/', false, "UTF-8");
+        for (DavResource resource : new WebdavManager(collection.getHost(), authenticationInfo).
+            listCollection(collection)) {
+          if (!resource.isCollection()) {
+            documents.add(new URI(collection, resource.getHref(), true));
+          }
+        }
+      }
+      if (documents.isEmpty()) {
+        System.err.println("No document to open in " + url);
+        System.exit(2);
+      }
+      LoadGenerator generator = new LoadGenerator(documents, folder, login, authenticationInfo,
+          Long.getLong("load.think", 2000L));
+      generator.run(stages);
+      generator.report.write(result);
+    } finally {
+      if (server != null) {
+        server.stop();
+      }
+      delete(folder);
+    }
+  }
+
+  /**
+   * @param schedule the stages <code>users:seconds</code> separated by commas.
+   * @return the target number of users and the duration in seconds of each stage.
+   */
+  static int[][] parseStages(String schedule) {
+    String[] items = schedule.split(",");
+    int[][] stages = new int[items.length][];
+    for (int i = 0; i < items.length; i++) {
+      String[] stage = items[i].trim().split(":");
+      if (stage.length != 2) {
+        throw new IllegalArgumentException("Invalid stage " + items[i] + ": users:seconds");
+      }
+      stages[i] = new int[]{Integer.parseInt(stage[0].trim()), Integer.parseInt(stage[1].trim())};
+    }
+    return stages;
+  }
+
+  /**
+   * @param stages the stages of the schedule.
+   * @param elapsed the time elapsed since the start of the schedule in milliseconds.
+   * @return the number of users at this time, or -1 once the schedule is over.
+   */
+  static int getTargetUsers(int[][] stages, long elapsed) {
+    int previous = 0;
+    long stageStart = 0L;
+    for (int[] stage : stages) {
+      long duration = stage[1] * 1000L;
+      if (elapsed < stageStart + duration) {
+        return previous + (int) ((stage[0] - previous) * (elapsed - stageStart) / duration);
+      }
+      previous = stage[0];
+      stageStart += duration;
+    }
+    return -1;
+  }
+
+  void run(int[][] stages) throws InterruptedException {
+    Metrics.addExporter(report);
+    long start = System.currentTimeMillis();
+    long nextStatus = start + STATUS_PERIOD;
+    try {
+      int target;
+      while ((target = getTargetUsers(stages, System.currentTimeMillis() - start)) >= 0) {
+        while (users.size() < target) {
+          VirtualUser user = new VirtualUser(userCount.incrementAndGet());
+          users.add(user);
+          user.start();
+        }
+        while (users.size() > target) {
+          users.remove(users.size() - 1).finish();
+        }
+        report.sampleUsers(users.size());
+        if (System.currentTimeMillis() >= nextStatus) {
+          System.out.println(report.getStatus(System.currentTimeMillis() - start, users.size()));
+          nextStatus += STATUS_PERIOD;
+        }
+        Thread.sleep(TICK);
+      }
+      for (VirtualUser user : users) {
+        user.finish();
+      }
+      for (VirtualUser user : users) {
+        user.join(WebdavManager.REQUEST_TIMEOUT * 4L + thinkTime * 2L);
+      }
+    } finally {
+      report.stop();
+      Metrics.removeExporter(report);
+    }
+  }
+
+  /**
+   * The stub editor: the document stays open during the think time, randomized by 50% on both
+   * sides, and it is saved without any change to its content.
+   */
+  void edit(File document, Random random) throws InterruptedException {
+    long time = thinkTime / 2L + (long) (random.nextDouble() * thinkTime);
+    Thread.sleep(time);
+    document.setLastModified(System.currentTimeMillis());
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+
+  /**
+   * A user opening and saving documents in a loop, as long as the ramp keeps it.
+   */
+  private class VirtualUser extends Thread {
+
+    private final WebdavManager webdav;
+    private final File document;
+    private final Random random;
+    private volatile boolean finished = false;
+
+    VirtualUser(int id) {
+      super("load-user-" + id);
+      setDaemon(true);
+      this.random = new Random(id);
+      this.document = new File(folder, "user-" + id + ".doc");
+      this.webdav = new WebdavManager(host, authenticationInfo);
+      // every user runs its own launcher: no bandwidth shared with the others nor circuit breaker
+      webdav.setBandwidthLimiter(BandwidthLimiter.UNLIMITED);
+      webdav.setCircuitBreaker(new CircuitBreaker(null, host, 0, 0L));
+    }
+
+    void finish() {
+      finished = true;
+    }
+
+    @Override
+    public void run() {
+      while (!finished) {
+        URI uri = documents.get(random.nextInt(documents.size()));
+        long start = System.nanoTime();
+        String lockToken;
+        try {
+          lockToken = webdav.lockFile(uri, login);
+        } catch (IOException ex) {
+          // locked by another user (measured by its span) or failed: the user tries again later
+          logger.log(Level.FINE, "{0}: {1}", new Object[]{getName(), ex.getMessage()});
+          pause();
+          continue;
+        }
+        boolean saved = false;
+        try {
+          webdav.getFile(uri, document, null);
+          edit(document, random);
+          webdav.putFile(uri, document, lockToken, null);
+          saved = true;
+        } catch (IOException ex) {
+          logger.log(Level.FINE, getName() + ": " + ex.getMessage(), ex);
+        } catch (InterruptedException ex) {
+          finished = true;
+        } finally {
+          try {
+            webdav.unlockFile(uri, lockToken);
+          } catch (IOException ex) {
+            logger.log(Level.FINE, "{0}: {1}", new Object[]{getName(), ex.getMessage()});
+          }
+          document.delete();
+        }
+        report.recordSession(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), saved);
+      }
+    }
+
+    private void pause() {
+      try {
+        Thread.sleep(thinkTime / 4L + random.nextInt(250));
+      } catch (InterruptedException ex) {
+        finished = true;
+      }
+    }
+  }
+}
@@ -0,0 +1,227 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.windows.webdav;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import org.silverpeas.openoffice.metrics.Phase;
+import org.silverpeas.openoffice.metrics.Span;
+import org.silverpeas.openoffice.metrics.SpanExporter;
+
+/**
+ * The results of a run of the {@link LoadGenerator}: the spans of the requests are aggregated by
+ * phase, along with the whole sessions of the virtual users (lock, download, edition, upload and
+ * unlock of a document).
+ *
+ * @author ehugonnet
+ */
+class LoadReport implements SpanExporter {
+
+  static final String HEADER = "phase,count,failures,locked,p50 ms,p90 ms,p95 ms,p99 ms,max ms,"
+      + "bytes";
+  private static final String SESSION = "session";
+  private final Map<Phase, Statistics> phases = new EnumMap<Phase, Statistics>(Phase.class);
+  private final Statistics sessions = new Statistics(SESSION);
+  private final long start = System.currentTimeMillis();
+  private long end = -1L;
+  private int peakUsers = 0;
+
+  @Override
+  public void export(Span span) {
+    Statistics statistics;
+    synchronized (phases) {
+      statistics = phases.get(span.getPhase());
+      if (statistics == null) {
+        statistics = new Statistics(span.getPhase().getName());
+        phases.put(span.getPhase(), statistics);
+      }
+    }
+    statistics.record(span.getDurationMillis(), span.isSucceeded(), span.getHttpStatus()
+        == WebdavManager.SC_LOCKED, span.getBytes());
+  }
+
+  void recordSession(long durationMillis, boolean saved) {
+    sessions.record(durationMillis, saved, false, 0L);
+  }
+
+  synchronized void sampleUsers(int users) {
+    peakUsers = Math.max(peakUsers, users);
+  }
+
+  synchronized void stop() {
+    end = System.currentTimeMillis();
+  }
+
+  /**
+   * @param elapsed the time elapsed since the start of the run in milliseconds.
+   * @param users the current number of users.
+   * @return a line giving the progress of the run.
+   */
+  String getStatus(long elapsed, int users) {
+    Statistics lock = getStatistics(Phase.LOCK);
+    return String.format(Locale.US, "%5ds users=%d sessions=%d failed=%d locked=%d",
+        elapsed / 1000L, users, sessions.getSucceeded(), sessions.getFailures(), lock == null ? 0
+        : lock.getLocked());
+  }
+
+  /**
+   * Writes the statistics of each phase in the CSV file and prints them with the throughput.
+   * @param file the CSV file.
+   * @throws IOException
+   */
+  void write(File file) throws IOException {
+    long duration = Math.max(1L, (end < 0L ? System.currentTimeMillis() : end) - start);
+    long bytes = 0L;
+    PrintWriter csv = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+    try {
+      csv.println(HEADER);
+      System.out.println();
+      System.out.println(String.format(Locale.US, "%-9s %8s %8s %8s %8s %8s %8s %8s %8s",
+          "phase", "count", "failures", "locked", "p50 ms", "p90 ms", "p95 ms", "p99 ms",
+          "max ms"));
+      for (Phase phase : Phase.values()) {
+        Statistics statistics = getStatistics(phase);
+        if (statistics != null) {
+          csv.println(statistics.toCsv());
+          System.out.println(statistics);
+          bytes += statistics.getBytes();
+        }
+      }
+      csv.println(sessions.toCsv());
+      System.out.println(sessions);
+    } finally {
+      csv.close();
+    }
+    System.out.println(String.format(Locale.US,
+        "%d s, %d users at most: %.2f sessions/s, %.2f requests/s, %.2f MB/s", duration / 1000L,
+        peakUsers, sessions.getSucceeded() * 1000d / duration, getRequestCount() * 1000d
+        / duration, bytes * 1000d / duration / (1024d * 1024d)));
+    System.out.println("Results written in " + file.getAbsolutePath());
+  }
+
+  Statistics getStatistics(Phase phase) {
+    synchronized (phases) {
+      return phases.get(phase);
+    }
+  }
+
+  Statistics getSessions() {
+    return sessions;
+  }
+
+  private long getRequestCount() {
+    long count = 0L;
+    for (Phase phase : Phase.values()) {
+      Statistics statistics = getStatistics(phase);
+      if (statistics != null) {
+        count += statistics.getCount();
+      }
+    }
+    return count;
+  }
+
+  /**
+   * The durations and the outcomes of the measures of one phase.
+   */
+  static class Statistics {
+
+    private final String name;
+    private long[] durations = new long[1024];
+    private int count = 0;
+    private int failures = 0;
+    private int locked = 0;
+    private long bytes = 0L;
+
+    Statistics(String name) {
+      this.name = name;
+    }
+
+    synchronized void record(long durationMillis, boolean succeeded, boolean lockedOut,
+        long transferred) {
+      if (count == durations.length) {
+        durations = Arrays.copyOf(durations, count * 2);
+      }
+      durations[count++] = durationMillis;
+      if (!succeeded) {
+        failures++;
+      }
+      if (lockedOut) {
+        locked++;
+      }
+      bytes += transferred;
+    }
+
+    synchronized int getCount() {
+      return count;
+    }
+
+    synchronized int getSucceeded() {
+      return count - failures;
+    }
+
+    synchronized int getFailures() {
+      return failures;
+    }
+
+    synchronized int getLocked() {
+      return locked;
+    }
+
+    synchronized long getBytes() {
+      return bytes;
+    }
+
+    /**
+     * @param percentile the percentile, between 0 and 100.
+     * @return the duration of the percentile in milliseconds with the nearest-rank method, or 0
+     * if nothing was measured.
+     */
+    synchronized long getPercentile(double percentile) {
+      if (count == 0) {
+        return 0L;
+      }
+      long[] sorted = Arrays.copyOf(durations, count);
+      Arrays.sort(sorted);
+      int rank = (int) Math.ceil(percentile / 100d * count);
+      return sorted[Math.max(0, Math.min(count, rank) - 1)];
+    }
+
+    synchronized String toCsv() {
+      return name + ',' + count + ',' + failures + ',' + locked + ',' + getPercentile(50d) + ','
+          + getPercentile(90d) + ',' + getPercentile(95d) + ',' + getPercentile(99d) + ','
+          + getPercentile(100d) + ',' + bytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+      return String.format(Locale.US, "%-9s %8d %8d %8d %8d %8d %8d %8d %8d", name, count,
+          failures, locked, getPercentile(50d), getPercentile(90d), getPercentile(95d),
+          getPercentile(99d), getPercentile(100d));
+    }
+  }
+}
@@ -0,0 +1,109 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.windows.webdav;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the overhead of the progress pipeline on the raw throughput of a stream: the same
+ * in-memory document is read as is, through a MonitoredInputStream without any listener, and
+ * through a MonitoredInputStream notifying a ThrottledProgress as during a real transfer.
+ * <p>
+ * Run with <code>mvn -Pbenchmarks verify</code>.
+ * </p>
+ *
+ * @author ehugonnet
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MonitoredInputStreamBenchmark {
+
+  private static final int DOCUMENT_SIZE = 8 * 1024 * 1024;
+  @Param({"64", "8192"})
+  public int bufferSize;
+  private byte[] document;
+  private byte[] buffer;
+  private ThrottledProgress progress;
+
+  @Setup
+  public void setUp() {
+    document = new byte[DOCUMENT_SIZE];
+    new Random(42L).nextBytes(document);
+    buffer = new byte[bufferSize];
+    progress = new ThrottledProgress() {
+
+      @Override
+      protected void render(long transferred) {
+      }
+    };
+  }
+
+  @TearDown
+  public void tearDown() {
+    progress.stop();
+  }
+
+  @Benchmark
+  public long raw() throws IOException {
+    return drain(new ByteArrayInputStream(document));
+  }
+
+  @Benchmark
+  public long monitoredWithoutListener() throws IOException {
+    return drain(new MonitoredInputStream(new ByteArrayInputStream(document)));
+  }
+
+  @Benchmark
+  public long monitoredThrottled() throws IOException {
+    MonitoredInputStream in = new MonitoredInputStream(new ByteArrayInputStream(document));
+    in.addProgressListener(progress);
+    return drain(in);
+  }
+
+  private long drain(InputStream in) throws IOException {
+    long total = 0L;
+    int c;
+    while ((c = in.read(buffer)) > -1) {
+      total += c;
+    }
+    return total;
+  }
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.windows.webdav;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.silverpeas.openoffice.windows.FileWebDavAccessManager;
+
+/**
+ * Measures the end-to-end duration of the transfers of a document against the WebDAV stand-in
+ * server, as seen by the user:
+ * <ul>
+ * <li>openToEditor: from the launch to the document saved locally, that is the LOCK and the GET
+ * of FileWebDavAccessManager.retrieveFile;</li>
+ * <li>saveToUnlock: from the editor closed to the document released, that is the HEAD, the PUT
+ * and the UNLOCK of FileWebDavAccessManager.pushFile.</li>
+ * </ul>
+ * The documents range from 10 KB to 2 GB; the heap of the forked JVM is bounded so that any
+ * buffering of a whole document fails the benchmark. The largest sizes take a while and can be
+ * left out with <code>-Djmh.args="TransferBenchmark -p size=10240,1048576"</code>. A latency and
+ * a bandwidth limit can be applied with the <code>latency</code> (ms) and <code>bandwidth</code>
+ * (bytes/s) parameters.
+ *
+ * @author ehugonnet
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx128m", "-Dsilverpeas.headless=true",
+  "-Dsilverpeas.metrics=false"})
+public class TransferBenchmark {
+
+  private static final String DOCUMENT = "attachments/document.odt";
+  @Param({"10240", "1048576", "104857600", "2147483648"})
+  public long size;
+  @Param({"0"})
+  public long latency;
+  @Param({"0"})
+  public long bandwidth;
+  private File folder;
+  private WebdavStandInServer server;
+  private String url;
+  private FileWebDavAccessManager accessManager;
+  private String localFile;
+
+  @Setup(Level.Trial)
+  public void startServer() throws IOException {
+    folder = File.createTempFile("silver-bench", "");
+    folder.delete();
+    server = new WebdavStandInServer(folder);
+    server.addDocument(DOCUMENT, size);
+    server.setLatency(latency);
+    server.setBandwidth(bandwidth);
+    server.start();
+    url = server.getUrl(DOCUMENT);
+  }
+
+  @TearDown(Level.Trial)
+  public void stopServer() {
+    server.stop();
+    server.getFile(DOCUMENT).delete();
+    server.getFile(DOCUMENT).getParentFile().delete();
+    folder.delete();
+  }
+
+  @Setup(Level.Invocation)
+  public void checkOut() throws IOException {
+    accessManager = new FileWebDavAccessManager("bart");
+    localFile = accessManager.retrieveFile(url);
+  }
+
+  @TearDown(Level.Invocation)
+  public void release() {
+    server.unlockAll();
+    File file = new File(localFile);
+    if (file.delete()) {
+      file.getParentFile().delete();
+    }
+  }
+
+  @Benchmark
+  public String openToEditor() throws IOException {
+    release();
+    localFile = new FileWebDavAccessManager("bart").retrieveFile(url);
+    return localFile;
+  }
+
+  @Benchmark
+  public void saveToUnlock() throws IOException {
+    accessManager.pushFile(localFile, url);
+  }
+}
@@ -0,0 +1,157 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.windows.webdav;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.httpclient.URI;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the HTTP transports of the WebDAV requests against the WebDAV stand-in server:
+ * <ul>
+ * <li>checkOutCheckIn: the LOCK, GET, PUT and UNLOCK of one document;</li>
+ * <li>concurrentGets: the GET of several documents at once through the same manager, as done
+ * by the check-out of a folder.</li>
+ * </ul>
+ * The stand-in server only speaks HTTP/1.1, so the jdk transport is measured here without its
+ * multiplexing; a server supporting h2c can be measured with the load profile instead.
+ *
+ * @author ehugonnet
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Dsilverpeas.headless=true", "-Dsilverpeas.metrics=false"})
+public class TransportBenchmark {
+
+  private static final String HOST = "127.0.0.1";
+  private static final int DOCUMENTS = 8;
+  @Param({"commons", "jdk"})
+  public String transport;
+  @Param({"10240", "1048576"})
+  public long size;
+  private File folder;
+  private WebdavStandInServer server;
+  private WebdavManager webdav;
+  private ExecutorService executor;
+  private final List<URI> documents = new ArrayList<URI>();
+
+  @Setup(Level.Trial)
+  public void startServer() throws IOException {
+    folder = File.createTempFile("silver-bench", "");
+    folder.delete();
+    server = new WebdavStandInServer(new File(folder, "server"));
+    for (int i = 0; i < DOCUMENTS; i++) {
+      server.addDocument("attachments/document" + i + ".odt", size);
+    }
+    server.start();
+    for (int i = 0; i < DOCUMENTS; i++) {
+      documents.add(new URI(server.getUrl("attachments/document" + i + ".odt"), true, "UTF-8"));
+    }
+    webdav = new WebdavManager(HOST, HttpTransports.newTransport(transport, HOST, null));
+    webdav.setCircuitBreaker(new CircuitBreaker(null, HOST, 0, 0L));
+    executor = Executors.newFixedThreadPool(DOCUMENTS);
+  }
+
+  @TearDown(Level.Trial)
+  public void stopServer() {
+    executor.shutdownNow();
+    server.stop();
+    delete(folder);
+  }
+
+  @Benchmark
+  public long checkOutCheckIn() throws IOException {
+    URI uri = documents.get(0);
+    File local = new File(folder, "document.odt");
+    String lockToken = webdav.lockFile(uri, "bart");
+    try {
+      long length = webdav.getFile(uri, local, null);
+      webdav.putFile(uri, local, lockToken, null);
+      return length;
+    } finally {
+      webdav.unlockFile(uri, lockToken);
+      local.delete();
+    }
+  }
+
+  @Benchmark
+  public long concurrentGets() throws Exception {
+    List<Callable<Long>> tasks = new ArrayList<Callable<Long>>(DOCUMENTS);
+    for (int i = 0; i < DOCUMENTS; i++) {
+      final URI uri = documents.get(i);
+      final File local = new File(folder, "get" + i + ".odt");
+      tasks.add(new Callable<Long>() {
+
+        @Override
+        public Long call() throws IOException {
+          try {
+            return webdav.getFile(uri, local, null);
+          } finally {
+            local.delete();
+          }
+        }
+      });
+    }
+    long total = 0L;
+    for (Future<Long> result : executor.invokeAll(tasks)) {
+      try {
+        total += result.get();
+      } catch (ExecutionException ex) {
+        throw new IOException(ex.getCause());
+      }
+    }
+    return total;
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+}
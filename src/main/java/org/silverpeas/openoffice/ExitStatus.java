@@ -0,0 +1,80 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice;
+
+/**
+ * The exit statuses of the launcher. Scripts using the launcher, in headless mode especially, can
+ * rely on them to know what happened.
+ *
+ * @author Emmanuel Hugonnet
+ */
+public enum ExitStatus {
+
+  /**
+   * The document or the folder was accessed and, if required, sent back to the server.
+   */
+  SUCCESS(0),
+  /**
+   * Some documents of a folder couldn't be checked out or checked in.
+   */
+  TRANSFER_FAILURES(1),
+  /**
+   * The arguments passed to the launcher are missing or invalid.
+   */
+  INVALID_ARGUMENTS(2),
+  /**
+   * No editor was found for the document.
+   */
+  OFFICE_NOT_FOUND(3),
+  /**
+   * The exchange with the WebDAV server failed (network, lock, authentication, ...).
+   */
+  IO_ERROR(4),
+  /**
+   * The transfer was canceled by the user or the launcher was interrupted.
+   */
+  CANCELLED(5),
+  /**
+   * The editor ended with a non-zero status.
+   */
+  EDITOR_FAILURE(6),
+  /**
+   * The server couldn't be reached to send the document back: it is kept in the outbox to be
+   * sent on a next launch.
+   */
+  QUEUED(7),
+  /**
+   * Any other error.
+   */
+  UNEXPECTED_ERROR(9);
+  private final int code;
+
+  private ExitStatus(int code) {
+    this.code = code;
+  }
+
+  /**
+   * @return the exit code of the process.
+   */
+  public int getCode() {
+    return code;
+  }
+}
@@ -20,16 +20,28 @@
  */
 package org.silverpeas.openoffice;
 
+import org.silverpeas.openoffice.metrics.LauncherEvents;
+import org.silverpeas.openoffice.metrics.Metrics;
+import org.silverpeas.openoffice.metrics.Phase;
+import org.silverpeas.openoffice.metrics.Span;
 import org.silverpeas.openoffice.util.ApplicationArguments;
 import org.silverpeas.openoffice.util.FinderFactory;
 import org.silverpeas.openoffice.util.MessageDisplayer;
 import org.silverpeas.openoffice.util.MessageUtil;
 import org.silverpeas.openoffice.util.MsOfficeType;
 import org.silverpeas.openoffice.util.OsEnum;
+import org.silverpeas.openoffice.util.Settings;
 import org.silverpeas.openoffice.windows.FileWebDavAccessManager;
+import org.silverpeas.openoffice.windows.FolderWebDavAccessManager;
 import org.silverpeas.openoffice.windows.MsOfficeVersion;
+import org.silverpeas.openoffice.windows.OutboxReplayer;
+import org.silverpeas.openoffice.windows.UploadOutbox;
+import org.silverpeas.openoffice.windows.webdav.TransferSummary;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -39,6 +51,15 @@ import java.util.logging.Logger;
 public class OfficeLauncher {
 
   static final Logger logger = Logger.getLogger(OfficeLauncher.class.getName());
+  /**
+   * Time in milliseconds to wait, once the document is pushed back, for the documents of the
+   * outbox sent in the background.
+   */
+  static final long OUTBOX_WAIT = Settings.get().getLong("silverpeas.outbox.wait", 60000L);
+  /**
+   * Time in milliseconds to wait for another launcher opening the same document to have it ready.
+   */
+  static final long SESSION_WAIT = Settings.get().getLong("silverpeas.session.wait", 60000L);
 
   /**
    * Launches the document editor corresponding to the type of the document to open.
@@ -46,14 +67,40 @@ public class OfficeLauncher {
    * @see org.silverpeas.openoffice.util.ApplicationArguments
    *
    * @param arguments the arguments required to launch the document editor.
-   * @return the process execution status.
+   * @return the execution status.
    * @throws IOException
    * @throws InterruptedException
    * @throws OfficeNotFoundException
    */
-  public static int launch(ApplicationArguments arguments)
+  public static ExitStatus launch(ApplicationArguments arguments)
       throws IOException, InterruptedException, OfficeNotFoundException {
-    OfficeFinder finder = FinderFactory.getFinder(arguments.getContentType());
+    if (arguments.isCollection()) {
+      return launchFolder(arguments.getUrl(), arguments.getLogin(),
+          arguments.getAuthenticationInfo());
+    }
+    Span discovery = Metrics.start(Phase.DISCOVERY, arguments.getContentType().name());
+    OfficeFinder finder;
+    String path;
+    try {
+      finder = FinderFactory.getFinder(arguments.getContentType());
+      switch (arguments.getContentType()) {
+        case EXCEL:
+          path = finder.findSpreadsheet();
+          break;
+        case POWERPOINT:
+          path = finder.findPresentation();
+          break;
+        case WORD:
+          path = finder.findWordEditor();
+          break;
+        case NONE:
+        default:
+          path = finder.findOther();
+      }
+      discovery.succeeded();
+    } finally {
+      discovery.end();
+    }
     logger.log(Level.INFO, "We are on {0} OS", OsEnum.getOS());
     String webdavUrl = arguments.getUrl();
     boolean disconnectedMode = ((OsEnum.isWindows() && arguments.isDisconnectedMode()) ||
@@ -64,58 +111,195 @@ public class OfficeLauncher {
         webdavUrl = webdavUrl.replace("/repository/", "/repository2000/");
       }
     }
-    switch (arguments.getContentType()) {
-      case EXCEL:
-        return launch(arguments.getContentType(), finder.findSpreadsheet(), webdavUrl,
-            disconnectedMode, arguments.getLogin());
-      case POWERPOINT:
-        return launch(arguments.getContentType(), finder.findPresentation(), webdavUrl,
-            disconnectedMode, arguments.getLogin());
-      case WORD:
-        return launch(arguments.getContentType(), finder.findWordEditor(), webdavUrl,
-            disconnectedMode, arguments.getLogin());
-      case NONE:
-      default:
-        return launch(arguments.getContentType(), finder.findOther(), webdavUrl, disconnectedMode,
-            arguments.getLogin());
-    }
+    return launch(arguments.getContentType(), path, webdavUrl, disconnectedMode,
+        arguments.isReadOnlyMode(), arguments.getLogin(), arguments.getAuthenticationInfo());
   }
 
   /**
-   * Launch document edition
+   * Launch document edition. In disconnected mode, a document already opened by another launcher
+   * isn't locked and downloaded again: the launcher attaches to the existing session. Once the
+   * editor exited, the local copy is withdrawn from the session before it is sent back, so that
+   * a launcher arriving meanwhile waits for the end of the session instead of opening a copy
+   * about to be removed.
    *
    * @param path the path of the editor to launch.
    * @param url the URL at which the document is located.
    * @param disconnectedMode is the document should be accessed in disconnected mode.
-   * @return status the process execution status.
+   * @param readOnlyMode is the document should be accessed only for reading.
+   * @param login the login of the user.
+   * @param authenticationInfo the credentials of the user, if any.
+   * @return status the execution status.
    * @throws IOException
    * @throws InterruptedException
    */
-  protected static int launch(MsOfficeType type, String path, String url, boolean disconnectedMode,
-      String login) throws IOException, InterruptedException {
+  protected static ExitStatus launch(MsOfficeType type, String path, String url,
+      boolean disconnectedMode, boolean readOnlyMode, String login,
+      AuthenticationInfo authenticationInfo) throws IOException, InterruptedException {
     logger.log(Level.INFO, "The path: {0}", path);
     logger.log(Level.INFO, "The url: {0}", url);
-    if (disconnectedMode) {
+    if (disconnectedMode && readOnlyMode) {
+      // Read-only mode: neither lock nor upload
+      final FileWebDavAccessManager webdavAccessManager = new FileWebDavAccessManager(login,
+          authenticationInfo);
+      String tmpFilePath = webdavAccessManager.retrieveReadOnlyFile(unquoteUrl(url));
+      return editorStatus(edit(path, tmpFilePath));
+    } else if (disconnectedMode) {
+      String webDavUrl = unquoteUrl(url);
+      SessionRegistry.Session session = SessionRegistry.getDefault().open(webDavUrl);
       try {
-        String webDavUrl = unquoteUrl(url);
-        final FileWebDavAccessManager webdavAccessManager = new FileWebDavAccessManager(login);
+        if (!session.isOwner() && !session.awaitPublished(SESSION_WAIT)) {
+          throw new IOException(MessageUtil.getMessage("error.session.busy"));
+        }
+        if (!session.isOwner()) {
+          return attach(session);
+        }
+        // the documents kept while the server was unreachable are sent during the edition
+        OutboxReplayer replayer = OutboxReplayer.startIfPending(UploadOutbox.getDefault(),
+            webDavUrl, login, authenticationInfo);
+        final FileWebDavAccessManager webdavAccessManager = new FileWebDavAccessManager(login,
+            authenticationInfo);
         String tmpFilePath = webdavAccessManager.retrieveFile(webDavUrl);
-        logger.log(Level.INFO, "The exact exec line: {0} {1}", new Object[]{path, tmpFilePath});
-        Process process = Runtime.getRuntime().exec(path + ' ' + tmpFilePath);
-        process.waitFor();
-        webdavAccessManager.pushFile(tmpFilePath, url);
+        session.publish(tmpFilePath, path);
+        edit(path, tmpFilePath);
+        session.unpublish();
+        boolean pushed = webdavAccessManager.pushFile(tmpFilePath, url);
+        if (replayer != null) {
+          for (String report : replayer.awaitReports(OUTBOX_WAIT)) {
+            MessageDisplayer.displayMessage(report);
+          }
+        }
+        if (!pushed) {
+          MessageDisplayer.displayMessage(String.format(MessageUtil.getMessage(
+              "info.outbox.queued"), new File(tmpFilePath).getName()));
+          return ExitStatus.QUEUED;
+        }
         MessageDisplayer.displayMessage(MessageUtil.getMessage("info.ok"));
-        return 0;
+        return ExitStatus.SUCCESS;
       } catch (IOException ex) {
         logger.log(Level.SEVERE, null, ex);
         throw ex;
+      } finally {
+        session.close();
       }
     } else {
       // Standard mode: just open it
-      logger.log(Level.INFO, "The exact exec line: {0} {1}", new Object[]{path, url});
-      Process process = Runtime.getRuntime().exec(path + ' ' + url);
-      return process.waitFor();
+      return editorStatus(edit(path, url));
+    }
+  }
+
+  /**
+   * Checks out a whole collection into a local folder, lets the user work on its documents and
+   * then checks the collection in. If the collection is already checked out by another launcher,
+   * the user is just told where its documents are.
+   *
+   * @param url the URL of the collection.
+   * @param login the login of the user.
+   * @param authenticationInfo the credentials of the user, if any.
+   * @return status the execution status.
+   * @throws IOException
+   * @throws InterruptedException
+   */
+  protected static ExitStatus launchFolder(String url, String login,
+      AuthenticationInfo authenticationInfo) throws IOException, InterruptedException {
+    SessionRegistry.Session session = SessionRegistry.getDefault().open(unquoteUrl(url));
+    try {
+      if (!session.isOwner() && !session.awaitPublished(SESSION_WAIT)) {
+        throw new IOException(MessageUtil.getMessage("error.session.busy"));
+      }
+      if (!session.isOwner()) {
+        MessageDisplayer.displayMessage(String.format(MessageUtil.getMessage(
+            "info.folder.already.checked.out"), session.getDocument()));
+        return ExitStatus.SUCCESS;
+      }
+      FolderWebDavAccessManager folderAccessManager = new FolderWebDavAccessManager(login,
+          authenticationInfo);
+      String localFolder = folderAccessManager.checkOut(unquoteUrl(url));
+      session.publish(localFolder, "");
+      logger.log(Level.INFO, "The local folder: {0}", localFolder);
+      MessageDisplayer.waitForUser(String.format(MessageUtil.getMessage(
+          "info.folder.checked.out"), localFolder));
+      TransferSummary summary = folderAccessManager.checkIn();
+      MessageDisplayer.displayMessage(summary.getMessage());
+      return summary.hasFailures() ? ExitStatus.TRANSFER_FAILURES : ExitStatus.SUCCESS;
+    } finally {
+      session.close();
+    }
+  }
+
+  /**
+   * Attaches to the session of another launcher editing the same document: the local copy it
+   * downloaded is opened again, which brings the window of its editor to the front, instead of
+   * locking and downloading the document once more.
+   */
+  private static ExitStatus attach(SessionRegistry.Session session) throws IOException,
+      InterruptedException {
+    logger.log(Level.INFO, "Attached to the session of {0}: {1}", new Object[]{session.getUrl(),
+      session.getDocument()});
+    return editorStatus(edit(session.getEditor(), session.getDocument()));
+  }
+
+  /**
+   * Runs the editor on the document and waits for its exit.
+   */
+  private static int edit(String path, String document) throws IOException,
+      InterruptedException {
+    logger.log(Level.INFO, "The exact exec line: {0} {1}", new Object[]{path, document});
+    Span span = Metrics.start(Phase.EDIT, path);
+    Object editor = LauncherEvents.beginEditorProcess(path, document);
+    int status = -1;
+    try {
+      Process process = new ProcessBuilder(getEditorCommand(path, document)).start();
+      Metrics.countSubprocess();
+      status = process.waitFor();
+      if (status == 0) {
+        span.succeeded();
+      }
+      return status;
+    } finally {
+      LauncherEvents.endEditorProcess(editor, status);
+      span.end();
+    }
+  }
+
+  /**
+   * Builds the command running the editor on the document. The editor is a command line whose
+   * quoted parts may contain spaces, like the paths of the Windows programs or the application
+   * given to <code>open -a</code> on Mac OS X; the document is always a single argument, whatever
+   * the spaces in its path.
+   */
+  static List<String> getEditorCommand(String editor, String document) {
+    List<String> command = new ArrayList<String>();
+    StringBuilder argument = new StringBuilder();
+    boolean quoted = false;
+    boolean pending = false;
+    for (char c : editor.toCharArray()) {
+      if (c == '"') {
+        quoted = !quoted;
+        pending = true;
+      } else if (Character.isWhitespace(c) && !quoted) {
+        if (pending) {
+          command.add(argument.toString());
+          argument.setLength(0);
+          pending = false;
+        }
+      } else {
+        argument.append(c);
+        pending = true;
+      }
+    }
+    if (pending) {
+      command.add(argument.toString());
+    }
+    command.add(document);
+    return command;
+  }
+
+  private static ExitStatus editorStatus(int status) {
+    if (status != 0) {
+      logger.log(Level.WARNING, "The editor exited with the status {0}", status);
+      return ExitStatus.EDITOR_FAILURE;
     }
+    return ExitStatus.SUCCESS;
   }
 
   private OfficeLauncher() {
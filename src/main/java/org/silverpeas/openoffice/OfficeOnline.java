@@ -27,14 +27,11 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.activation.MimetypesFileTypeMap;
-import javax.swing.UIManager;
-import javax.swing.UnsupportedLookAndFeelException;
-
+import org.silverpeas.openoffice.metrics.LauncherEvents;
 import org.silverpeas.openoffice.util.ApplicationArguments;
 import org.silverpeas.openoffice.util.MessageDisplayer;
 import org.silverpeas.openoffice.util.MessageUtil;
 import org.silverpeas.openoffice.util.MsOfficeType;
-import org.silverpeas.openoffice.util.OsEnum;
 import org.silverpeas.openoffice.util.PasswordManager;
 import org.silverpeas.openoffice.util.UrlExtractor;
 import org.silverpeas.openoffice.windows.MsOfficePathFinder;
@@ -49,11 +46,15 @@ public class OfficeOnline {
   static final Logger logger = Logger.getLogger(OfficeOnline.class.getName());
 
   /**
+   * The process exits with one of the codes of {@link ExitStatus}.
+   *
    * @param args the command line arguments
    * @throws OfficeNotFoundException
    */
   public static void main(final String[] args) throws OfficeNotFoundException {
+    LauncherEvents.startRecordingIfRequested();
     logVersion();
+    ExitStatus status = ExitStatus.UNEXPECTED_ERROR;
     try {
       ApplicationArguments arguments = ApplicationArguments.extract(args);
       log("info.url.encoded", arguments.getEncodedUrl());
@@ -64,42 +65,36 @@ public class OfficeOnline {
       }
       log("info.document.type", arguments.getContentType());
       defineLookAndFeel();
-      System.exit(OfficeLauncher.launch(arguments));
+      status = OfficeLauncher.launch(arguments);
+    } catch (MalformedURLException ex) {
+      status = fail(ExitStatus.INVALID_ARGUMENTS, ex);
+    } catch (ArrayIndexOutOfBoundsException ex) {
+      status = fail(ExitStatus.INVALID_ARGUMENTS, ex);
+    } catch (OfficeNotFoundException ex) {
+      status = fail(ExitStatus.OFFICE_NOT_FOUND, ex);
     } catch (IOException ex) {
-      log("error.message.general", ex);
-      MessageDisplayer.displayError(ex);
+      status = fail(ExitStatus.IO_ERROR, ex);
     } catch (InterruptedException ex) {
-      log("error.message.general", ex);
-      MessageDisplayer.displayError(ex);
+      status = fail(ExitStatus.CANCELLED, ex);
     } catch (Throwable ex) {
-      log("error.message.general", ex);
-      MessageDisplayer.displayError(ex);
+      status = fail(ExitStatus.UNEXPECTED_ERROR, ex);
     } finally {
-      System.exit(0);
+      System.exit(status.getCode());
     }
   }
 
+  private static ExitStatus fail(ExitStatus status, Throwable ex) {
+    log("error.message.general", ex);
+    MessageDisplayer.displayError(ex);
+    return status;
+  }
+
   protected static void defineLookAndFeel() {
-    try {
-      try {
-        if (OsEnum.getOS() == OsEnum.WINDOWS_VISTA || OsEnum.getOS() == OsEnum.WINDOWS_XP
-            || OsEnum.getOS() == OsEnum.WINDOWS_SEVEN) {
-          UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
-        }
-      } catch (ClassNotFoundException ex) {
-        logger.log(Level.INFO, null, ex);
-      } catch (InstantiationException ex) {
-        logger.log(Level.INFO, null, ex);
-      } catch (IllegalAccessException ex) {
-        logger.log(Level.INFO, null, ex);
-      }
-    } catch (UnsupportedLookAndFeelException ex) {
-      logger.log(Level.INFO, "Unable to load native look and feel");
-    }
+    MessageDisplayer.defineLookAndFeel();
   }
 
   private static void log(String key, Object extraInfo) {
-    if (extraInfo instanceof Exception) {
+    if (extraInfo instanceof Throwable) {
       logger.log(Level.SEVERE, MessageUtil.getMessage(key), extraInfo);
     } else {
       logger.log(Level.INFO, "{0}{1}", new Object[]{MessageUtil.getMessage(key), extraInfo});
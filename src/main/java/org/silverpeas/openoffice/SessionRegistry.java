@@ -0,0 +1,265 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.silverpeas.openoffice.util.Settings;
+import org.silverpeas.openoffice.util.UrlExtractor;
+
+/**
+ * The registry of the documents opened by the launchers of the user, shared by all of them so that
+ * a document opened twice, by a double click for example, isn't locked and downloaded twice. The
+ * first launcher of a document owns its session: it holds the lock of a file named after the URL
+ * of the document as long as the document is edited. The lock is released by the system if the
+ * launcher dies. Once the document is downloaded, the owner publishes the local copy and the
+ * editor in a properties file aside, so that the next launchers can just attach to the session
+ * by opening the same local copy, which brings its window to the front.
+ * <p>
+ * The registry is the folder set with the setting <code>silverpeas.session.dir</code>,
+ * by default <code>~/.silverpeas/sessions</code>.
+ * </p>
+ *
+ * @author Emmanuel Hugonnet
+ */
+public class SessionRegistry {
+
+  static final Logger logger = Logger.getLogger(SessionRegistry.class.getName());
+  private static final String LOCK_EXTENSION = ".lock";
+  private static final String SESSION_EXTENSION = ".properties";
+  private static final String URL = "url";
+  private static final String DOCUMENT = "document";
+  private static final String EDITOR = "editor";
+  private static final String OWNER = "owner";
+  private static final long POLL_INTERVAL = 200L;
+  private final File directory;
+
+  /**
+   * @param directory the folder of the registry.
+   */
+  public SessionRegistry(File directory) {
+    this.directory = directory;
+  }
+
+  /**
+   * @return the registry of the user, as set by the settings.
+   */
+  public static SessionRegistry getDefault() {
+    String defaultDirectory = System.getProperty("user.home") + File.separatorChar
+        + ".silverpeas" + File.separatorChar + "sessions";
+    return new SessionRegistry(new File(Settings.get().getString("silverpeas.session.dir",
+        defaultDirectory)));
+  }
+
+  /**
+   * Opens the session of a document: the session is owned by the caller if no other launcher has
+   * the document opened.
+   * @param url the URL of the document.
+   * @return the session of the document.
+   * @throws IOException
+   */
+  public Session open(String url) throws IOException {
+    directory.mkdirs();
+    String key = UrlExtractor.hashUrl(url);
+    Session session = new Session(url, new File(directory, key + LOCK_EXTENSION), new File(
+        directory, key + SESSION_EXTENSION));
+    if (!session.tryOwn()) {
+      logger.log(Level.INFO, "{0} is already opened by another launcher", url);
+    }
+    return session;
+  }
+
+  /**
+   * The session of a document, either owned by the current launcher or by another one.
+   */
+  public static class Session {
+
+    private final String url;
+    private final File lockFile;
+    private final File sessionFile;
+    private RandomAccessFile channelFile;
+    private FileLock lock;
+    private Properties published = new Properties();
+
+    Session(String url, File lockFile, File sessionFile) {
+      this.url = url;
+      this.lockFile = lockFile;
+      this.sessionFile = sessionFile;
+    }
+
+    public String getUrl() {
+      return url;
+    }
+
+    /**
+     * @return true if the current launcher owns the session.
+     */
+    public synchronized boolean isOwner() {
+      return lock != null;
+    }
+
+    synchronized boolean tryOwn() throws IOException {
+      if (lock != null) {
+        return true;
+      }
+      channelFile = new RandomAccessFile(lockFile, "rw");
+      try {
+        lock = channelFile.getChannel().tryLock();
+      } catch (OverlappingFileLockException ex) {
+        lock = null;
+      }
+      if (lock == null) {
+        channelFile.close();
+        channelFile = null;
+        return false;
+      }
+      // a previous owner may have died without removing it
+      sessionFile.delete();
+      return true;
+    }
+
+    /**
+     * Publishes the local copy of the document to the other launchers.
+     * @param document the path of the local copy of the document.
+     * @param editor the path of the editor of the document.
+     * @throws IOException
+     */
+    public synchronized void publish(String document, String editor) throws IOException {
+      if (!isOwner()) {
+        throw new IllegalStateException("The session of " + url + " isn't owned");
+      }
+      Properties properties = new Properties();
+      properties.setProperty(URL, url);
+      properties.setProperty(DOCUMENT, document);
+      properties.setProperty(EDITOR, editor);
+      properties.setProperty(OWNER, ManagementFactory.getRuntimeMXBean().getName());
+      File tmpFile = new File(sessionFile.getPath() + ".tmp");
+      FileOutputStream out = new FileOutputStream(tmpFile);
+      try {
+        properties.store(out, url);
+      } finally {
+        out.close();
+      }
+      if (!tmpFile.renameTo(sessionFile)) {
+        sessionFile.delete();
+        if (!tmpFile.renameTo(sessionFile)) {
+          throw new IOException("Unable to write " + sessionFile);
+        }
+      }
+      published = properties;
+    }
+
+    /**
+     * Withdraws the local copy of the document once the editor exited: the copy is about to be sent
+     * back and removed, so the next launchers wait for the session to be released and take it over
+     * rather than attach to it.
+     */
+    public synchronized void unpublish() {
+      if (lock != null) {
+        sessionFile.delete();
+        published = new Properties();
+      }
+    }
+
+    /**
+     * Waits for the owner of the session to publish the local copy of the document. If the owner
+     * releases the session before, because it exited or it is done with the document, the current
+     * launcher takes the session over and becomes its owner.
+     * @param timeout the maximum time to wait in milliseconds.
+     * @return true if the local copy of the document was published or the session taken over in
+     * time.
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public boolean awaitPublished(long timeout) throws IOException, InterruptedException {
+      long deadline = System.currentTimeMillis() + timeout;
+      while (true) {
+        if (sessionFile.isFile()) {
+          Properties properties = new Properties();
+          InputStream in = new FileInputStream(sessionFile);
+          try {
+            properties.load(in);
+          } finally {
+            in.close();
+          }
+          if (properties.getProperty(DOCUMENT) != null) {
+            synchronized (this) {
+              published = properties;
+            }
+            return true;
+          }
+        }
+        if (!isOwner() && tryOwn()) {
+          logger.log(Level.INFO, "{0} was released by its owner", url);
+          return true;
+        }
+        if (System.currentTimeMillis() >= deadline) {
+          return false;
+        }
+        Thread.sleep(POLL_INTERVAL);
+      }
+    }
+
+    /**
+     * @return the path of the local copy of the document, or null if it isn't published yet.
+     */
+    public synchronized String getDocument() {
+      return published.getProperty(DOCUMENT);
+    }
+
+    /**
+     * @return the path of the editor of the document, or null if it isn't published yet.
+     */
+    public synchronized String getEditor() {
+      return published.getProperty(EDITOR);
+    }
+
+    /**
+     * Ends the session if it is owned by the current launcher.
+     */
+    public synchronized void close() {
+      if (lock == null) {
+        return;
+      }
+      sessionFile.delete();
+      try {
+        lock.release();
+        channelFile.close();
+      } catch (IOException ex) {
+        logger.log(Level.WARNING, "Unable to release " + lockFile, ex);
+      } finally {
+        lock = null;
+        channelFile = null;
+      }
+      // the lock file is kept: another launcher may be about to lock it
+    }
+  }
+}
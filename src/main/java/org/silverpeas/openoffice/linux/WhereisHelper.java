@@ -33,6 +33,8 @@ import org.silverpeas.openoffice.OpenOfficeNotFoundException;
 import java.io.IOException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.silverpeas.openoffice.metrics.LauncherEvents;
+import org.silverpeas.openoffice.metrics.Metrics;
 
 import org.silverpeas.openoffice.util.StreamReader;
 
@@ -45,8 +47,16 @@ public class WhereisHelper extends OpenOfficeFinder {
   private static final String WHEREIS_CMD = "whereis";
 
   public String whereis() {
+    Object lookup = LauncherEvents.beginFinderLookup(WHEREIS_CMD + ' ' + OPENOFFICE_EXE);
+    String result = runWhereis();
+    LauncherEvents.endFinderLookup(lookup, result != null && result.indexOf(' ') > 0, result);
+    return result;
+  }
+
+  private String runWhereis() {
     try {
       Process process = Runtime.getRuntime().exec(WHEREIS_CMD + ' ' + OPENOFFICE_EXE);
+      Metrics.countSubprocess();
       StreamReader reader = new StreamReader(process.getInputStream());
       reader.start();
       process.waitFor();
@@ -31,6 +31,7 @@ package org.silverpeas.openoffice.macosx;
 import java.io.IOException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.silverpeas.openoffice.metrics.Metrics;
 
 /**
  * @author Emmanuel Hugonnet
@@ -45,6 +46,7 @@ public class PlistHelper {
   public void convertToBinary(String xmlPlist) {
     try {
       Process process = Runtime.getRuntime().exec(XML_TO_BINARY + ' ' + xmlPlist);
+      Metrics.countSubprocess();
       process.waitFor();
     } catch (InterruptedException ex) {
       Logger.getLogger(PlistHelper.class.getName()).log(Level.SEVERE, null, ex);
@@ -60,6 +62,7 @@ public class PlistHelper {
   public void convertToXml(String binaryPlist) {
     try {
       Process process = Runtime.getRuntime().exec(BINARY_TO_XML + ' ' + binaryPlist);
+      Metrics.countSubprocess();
       process.waitFor();
     } catch (InterruptedException ex) {
       Logger.getLogger(PlistHelper.class.getName()).log(Level.SEVERE, null, ex);
@@ -31,6 +31,8 @@ package org.silverpeas.openoffice.macosx;
 import java.io.IOException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.silverpeas.openoffice.metrics.LauncherEvents;
+import org.silverpeas.openoffice.metrics.Metrics;
 
 import org.silverpeas.openoffice.OpenOfficeFinder;
 import org.silverpeas.openoffice.OpenOfficeNotFoundException;
@@ -47,8 +49,16 @@ public class WhereisMacHelper extends OpenOfficeFinder {
       "/Applications/OpenOffice.org.app/Contents/MacOS/soffice";
 
   public String whereis() {
+    Object lookup = LauncherEvents.beginFinderLookup(WHEREIS_CMD + ' ' + OPENOFFICE_EXE);
+    String result = runWhereis();
+    LauncherEvents.endFinderLookup(lookup, result != null && result.indexOf(' ') > 0, result);
+    return result;
+  }
+
+  private String runWhereis() {
     try {
       Process process = Runtime.getRuntime().exec(WHEREIS_CMD + ' ' + OPENOFFICE_EXE);
+      Metrics.countSubprocess();
       StreamReader reader = new StreamReader(process.getInputStream());
       reader.start();
       process.waitFor();
@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.metrics;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+/**
+ * The code depending on the JFR API. It is only invoked through {@link LauncherEvents} once the
+ * availability of JFR has been checked.
+ *
+ * @author ehugonnet
+ */
+class FlightRecorderEvents {
+
+  private FlightRecorderEvents() {
+  }
+
+  static void startRecording(String file) throws IOException, ParseException {
+    Recording recording = new Recording(Configuration.getConfiguration("default"));
+    recording.enable(FinderLookupEvent.class).withThreshold(Duration.ZERO);
+    recording.enable(WebdavMethodEvent.class).withThreshold(Duration.ZERO);
+    recording.enable(EditorProcessEvent.class).withThreshold(Duration.ZERO);
+    recording.setName("OfficeLauncher");
+    recording.setDestination(Paths.get(file));
+    recording.setDumpOnExit(true);
+    recording.start();
+  }
+
+  static Object beginFinderLookup(String key) {
+    FinderLookupEvent event = new FinderLookupEvent();
+    event.key = key;
+    event.begin();
+    return event;
+  }
+
+  static void endFinderLookup(Object lookup, boolean hit, String value) {
+    FinderLookupEvent event = (FinderLookupEvent) lookup;
+    event.end();
+    if (event.shouldCommit()) {
+      event.hit = hit;
+      event.value = value;
+      event.commit();
+    }
+  }
+
+  static Object beginWebdavMethod(String method, String url) {
+    WebdavMethodEvent event = new WebdavMethodEvent();
+    event.method = method;
+    event.url = url;
+    event.begin();
+    return event;
+  }
+
+  static void endWebdavMethod(Object call, int status, long bytes) {
+    WebdavMethodEvent event = (WebdavMethodEvent) call;
+    event.end();
+    if (event.shouldCommit()) {
+      event.status = status;
+      event.bytes = bytes;
+      event.commit();
+    }
+  }
+
+  static Object beginEditorProcess(String editor, String document) {
+    EditorProcessEvent event = new EditorProcessEvent();
+    event.editor = editor;
+    event.document = document;
+    event.begin();
+    return event;
+  }
+
+  static void endEditorProcess(Object process, int exitStatus) {
+    EditorProcessEvent event = (EditorProcessEvent) process;
+    event.end();
+    if (event.shouldCommit()) {
+      event.exitStatus = exitStatus;
+      event.commit();
+    }
+  }
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Aggregates the spans and exposes the aggregates as the MBean
+ * <code>org.silverpeas.openoffice:type=LauncherMetrics</code>.
+ *
+ * @author ehugonnet
+ */
+public class JmxExporter implements SpanExporter, LauncherMetricsMXBean {
+
+  static final String OBJECT_NAME = "org.silverpeas.openoffice:type=LauncherMetrics";
+  private long spanCount = 0L;
+  private long failedSpanCount = 0L;
+  private long bytesDownloaded = 0L;
+  private long bytesUploaded = 0L;
+  private final Map<String, Long> countByPhase = new HashMap<String, Long>();
+  private final Map<String, Long> durationByPhase = new HashMap<String, Long>();
+  private String lastSpan = null;
+
+  /**
+   * Creates an exporter and registers it in the platform MBean server.
+   * @return the registered exporter.
+   * @throws JMException if the MBean cannot be registered.
+   */
+  public static JmxExporter register() throws JMException {
+    JmxExporter exporter = new JmxExporter();
+    ManagementFactory.getPlatformMBeanServer().registerMBean(exporter, new ObjectName(
+        OBJECT_NAME));
+    return exporter;
+  }
+
+  @Override
+  public synchronized void export(Span span) {
+    spanCount++;
+    if (!span.isSucceeded()) {
+      failedSpanCount++;
+    }
+    if (span.getPhase() == Phase.DOWNLOAD) {
+      bytesDownloaded += span.getBytes();
+    } else if (span.getPhase() == Phase.UPLOAD) {
+      bytesUploaded += span.getBytes();
+    }
+    String phase = span.getPhase().getName();
+    countByPhase.put(phase, get(countByPhase, phase) + 1L);
+    durationByPhase.put(phase, get(durationByPhase, phase) + span.getDurationMillis());
+    lastSpan = span.toJson();
+  }
+
+  @Override
+  public String getSession() {
+    return Metrics.SESSION;
+  }
+
+  @Override
+  public synchronized long getSpanCount() {
+    return spanCount;
+  }
+
+  @Override
+  public synchronized long getFailedSpanCount() {
+    return failedSpanCount;
+  }
+
+  @Override
+  public synchronized long getBytesDownloaded() {
+    return bytesDownloaded;
+  }
+
+  @Override
+  public synchronized long getBytesUploaded() {
+    return bytesUploaded;
+  }
+
+  @Override
+  public long getRetries() {
+    return Metrics.getRetries();
+  }
+
+  @Override
+  public long getSubprocesses() {
+    return Metrics.getSubprocesses();
+  }
+
+  @Override
+  public synchronized Map<String, Long> getCountByPhase() {
+    return new HashMap<String, Long>(countByPhase);
+  }
+
+  @Override
+  public synchronized Map<String, Long> getDurationMillisByPhase() {
+    return new HashMap<String, Long>(durationByPhase);
+  }
+
+  @Override
+  public synchronized String getLastSpan() {
+    return lastSpan;
+  }
+
+  private static long get(Map<String, Long> values, String key) {
+    Long value = values.get(key);
+    return value == null ? 0L : value;
+  }
+}
@@ -0,0 +1,89 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.metrics;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Appends the spans as JSON lines to a local file. Once the file exceeds its maximum size, it is
+ * rolled: <code>file</code> becomes <code>file.1</code>, <code>file.1</code> becomes
+ * <code>file.2</code> and so on, the oldest one being deleted.
+ *
+ * @author ehugonnet
+ */
+public class JsonLinesExporter implements SpanExporter {
+
+  static final Logger logger = Logger.getLogger(JsonLinesExporter.class.getName());
+  private final File file;
+  private final long maxSize;
+  private final int maxFiles;
+
+  /**
+   * @param file the file to which the spans are appended.
+   * @param maxSize the size in bytes from which the file is rolled.
+   * @param maxFiles the number of rolled files to keep.
+   */
+  public JsonLinesExporter(File file, long maxSize, int maxFiles) {
+    this.file = file;
+    this.maxSize = maxSize;
+    this.maxFiles = maxFiles;
+  }
+
+  @Override
+  public synchronized void export(Span span) {
+    try {
+      if (file.length() >= maxSize) {
+        roll();
+      }
+      file.getParentFile().mkdirs();
+      Writer out = new OutputStreamWriter(new FileOutputStream(file, true), "UTF-8");
+      try {
+        out.write(span.toJson());
+        out.write('\n');
+      } finally {
+        out.close();
+      }
+    } catch (IOException ex) {
+      logger.log(Level.FINE, "Unable to write the metrics to " + file, ex);
+    }
+  }
+
+  private void roll() {
+    new File(file.getPath() + '.' + maxFiles).delete();
+    for (int i = maxFiles - 1; i >= 1; i--) {
+      File rolled = new File(file.getPath() + '.' + i);
+      if (rolled.exists()) {
+        rolled.renameTo(new File(file.getPath() + '.' + (i + 1)));
+      }
+    }
+    if (maxFiles > 0) {
+      file.renameTo(new File(file.getPath() + ".1"));
+    } else {
+      file.delete();
+    }
+  }
+}
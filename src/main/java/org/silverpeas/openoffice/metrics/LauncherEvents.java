@@ -0,0 +1,111 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.metrics;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The JDK Flight Recorder events of the launcher: the look ups of the editor, the calls of the
+ * WebDAV methods and the lifetime of the editor process. They can be recorded with the standard
+ * JDK tooling (<code>jcmd &lt;pid&gt; JFR.start</code>, <code>-XX:StartFlightRecording</code>) or,
+ * with the system property <code>silverpeas.jfr=&lt;file&gt;</code>, by the launcher itself in a
+ * recording dumped to that file when the launcher exits.
+ * <p>
+ * The launcher still runs on the JVMs without JFR: the events are then simply not emitted. The
+ * begin methods return an opaque event, or null when JFR isn't available, that must be passed
+ * to the matching end method.
+ * </p>
+ *
+ * @author ehugonnet
+ */
+public class LauncherEvents {
+
+  static final Logger logger = Logger.getLogger(LauncherEvents.class.getName());
+  private static final boolean AVAILABLE = isFlightRecorderAvailable();
+
+  private LauncherEvents() {
+  }
+
+  /**
+   * Starts the recording requested with the system property <code>silverpeas.jfr</code>, if any.
+   */
+  public static void startRecordingIfRequested() {
+    String file = System.getProperty("silverpeas.jfr");
+    if (file == null || file.trim().isEmpty()) {
+      return;
+    }
+    if (!AVAILABLE) {
+      logger.log(Level.WARNING, "JFR isn't available in this JVM: no recording");
+      return;
+    }
+    try {
+      FlightRecorderEvents.startRecording(file.trim());
+      logger.log(Level.INFO, "JFR recording to {0}", file.trim());
+    } catch (Exception ex) {
+      logger.log(Level.WARNING, "Unable to start the JFR recording", ex);
+    }
+  }
+
+  public static Object beginFinderLookup(String key) {
+    return AVAILABLE ? FlightRecorderEvents.beginFinderLookup(key) : null;
+  }
+
+  public static void endFinderLookup(Object event, boolean hit, String value) {
+    if (event != null) {
+      FlightRecorderEvents.endFinderLookup(event, hit, value);
+    }
+  }
+
+  public static Object beginWebdavMethod(String method, String url) {
+    return AVAILABLE ? FlightRecorderEvents.beginWebdavMethod(method, url) : null;
+  }
+
+  public static void endWebdavMethod(Object event, int status, long bytes) {
+    if (event != null) {
+      FlightRecorderEvents.endWebdavMethod(event, status, bytes);
+    }
+  }
+
+  public static Object beginEditorProcess(String editor, String document) {
+    return AVAILABLE ? FlightRecorderEvents.beginEditorProcess(editor, document) : null;
+  }
+
+  public static void endEditorProcess(Object event, int exitStatus) {
+    if (event != null) {
+      FlightRecorderEvents.endEditorProcess(event, exitStatus);
+    }
+  }
+
+  private static boolean isFlightRecorderAvailable() {
+    if (Boolean.getBoolean("silverpeas.jfr.disabled")) {
+      return false;
+    }
+    try {
+      Class.forName("jdk.jfr.Event");
+      return true;
+    } catch (ClassNotFoundException ex) {
+      return false;
+    } catch (LinkageError ex) {
+      return false;
+    }
+  }
+}
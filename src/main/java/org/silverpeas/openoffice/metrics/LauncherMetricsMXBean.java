@@ -0,0 +1,60 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.metrics;
+
+import java.util.Map;
+
+/**
+ * The metrics of the launcher exposed with JMX.
+ *
+ * @author ehugonnet
+ */
+public interface LauncherMetricsMXBean {
+
+  String getSession();
+
+  long getSpanCount();
+
+  long getFailedSpanCount();
+
+  long getBytesDownloaded();
+
+  long getBytesUploaded();
+
+  long getRetries();
+
+  long getSubprocesses();
+
+  /**
+   * @return the number of spans by phase.
+   */
+  Map<String, Long> getCountByPhase();
+
+  /**
+   * @return the cumulated duration in milliseconds of the spans by phase.
+   */
+  Map<String, Long> getDurationMillisByPhase();
+
+  /**
+   * @return the last span, as JSON.
+   */
+  String getLastSpan();
+}
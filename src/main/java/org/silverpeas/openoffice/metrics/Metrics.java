@@ -0,0 +1,140 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.metrics;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Entry point of the instrumentation of the launcher: the phases of the access to a document are
+ * timed with spans, and the retries of the HTTP requests and the subprocesses forked by the
+ * launcher are counted.
+ * <p>
+ * The ended spans are appended to a rolling JSON-lines file, by default
+ * <code>~/.silverpeas/officelauncher-metrics.jsonl</code>, so that the help desk can collect it.
+ * It is configured with the following system properties:
+ * </p>
+ * <ul>
+ * <li><code>silverpeas.metrics</code>: false to disable the file (true by default);</li>
+ * <li><code>silverpeas.metrics.file</code>: the path of the file;</li>
+ * <li><code>silverpeas.metrics.maxSize</code>: the size in bytes from which the file is rolled
+ * (1 MB by default);</li>
+ * <li><code>silverpeas.metrics.maxFiles</code>: the number of rolled files kept (3 by
+ * default);</li>
+ * <li><code>silverpeas.metrics.jmx</code>: true to expose the metrics as the MBean
+ * <code>org.silverpeas.openoffice:type=LauncherMetrics</code> (false by default).</li>
+ * </ul>
+ *
+ * @author ehugonnet
+ */
+public class Metrics {
+
+  static final Logger logger = Logger.getLogger(Metrics.class.getName());
+  /**
+   * The identifier of this run of the launcher, shared by all its spans.
+   */
+  static final String SESSION = Long.toString(System.currentTimeMillis(), 36) + '-'
+      + Integer.toString((int) (Math.random() * 36 * 36 * 36 * 36), 36);
+  private static final AtomicLong retries = new AtomicLong(0L);
+  private static final AtomicLong subprocesses = new AtomicLong(0L);
+  private static final List<SpanExporter> exporters = new CopyOnWriteArrayList<SpanExporter>();
+
+  static {
+    if (Boolean.parseBoolean(System.getProperty("silverpeas.metrics", "true"))) {
+      String defaultFile = System.getProperty("user.home") + File.separatorChar + ".silverpeas"
+          + File.separatorChar + "officelauncher-metrics.jsonl";
+      exporters.add(new JsonLinesExporter(new File(System.getProperty("silverpeas.metrics.file",
+          defaultFile)), Long.getLong("silverpeas.metrics.maxSize", 1024L * 1024L), Integer.
+          getInteger("silverpeas.metrics.maxFiles", 3)));
+    }
+    if (Boolean.getBoolean("silverpeas.metrics.jmx")) {
+      try {
+        exporters.add(JmxExporter.register());
+      } catch (Exception ex) {
+        logger.log(Level.WARNING, "Unable to expose the metrics with JMX", ex);
+      }
+    }
+  }
+
+  private Metrics() {
+  }
+
+  /**
+   * Starts a span.
+   * @param phase the timed phase.
+   * @param resource the resource concerned by the phase (document, editor, ...).
+   * @return the started span.
+   */
+  public static Span start(Phase phase, String resource) {
+    return new Span(phase, resource, retries.get(), subprocesses.get());
+  }
+
+  /**
+   * Counts a retry of an HTTP request.
+   */
+  public static void countRetry() {
+    retries.incrementAndGet();
+  }
+
+  /**
+   * Counts a subprocess forked by the launcher.
+   */
+  public static void countSubprocess() {
+    subprocesses.incrementAndGet();
+  }
+
+  /**
+   * @param exporter an additional exporter of the ended spans.
+   */
+  public static void addExporter(SpanExporter exporter) {
+    exporters.add(exporter);
+  }
+
+  /**
+   * @param exporter the exporter to remove.
+   */
+  public static void removeExporter(SpanExporter exporter) {
+    exporters.remove(exporter);
+  }
+
+  static long getRetries() {
+    return retries.get();
+  }
+
+  static long getSubprocesses() {
+    return subprocesses.get();
+  }
+
+  static void record(Span span) {
+    logger.log(Level.FINE, "{0}", span);
+    for (SpanExporter exporter : exporters) {
+      try {
+        exporter.export(span);
+      } catch (RuntimeException ex) {
+        logger.log(Level.FINE, "Unable to export the span", ex);
+      }
+    }
+  }
+}
@@ -0,0 +1,65 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.metrics;
+
+/**
+ * The phases of the access to a document that are timed.
+ *
+ * @author ehugonnet
+ */
+public enum Phase {
+
+  /**
+   * The look up of the editor to launch (registry queries, whereis, ...).
+   */
+  DISCOVERY,
+  /**
+   * The listing of a remote collection.
+   */
+  LISTING,
+  /**
+   * The locking of a remote document.
+   */
+  LOCK,
+  /**
+   * The download of a remote document.
+   */
+  DOWNLOAD,
+  /**
+   * The edition of the document, from the launch of the editor to its exit.
+   */
+  EDIT,
+  /**
+   * The upload of a document.
+   */
+  UPLOAD,
+  /**
+   * The unlocking of a remote document.
+   */
+  UNLOCK;
+
+  /**
+   * @return the name of the phase as exported.
+   */
+  public String getName() {
+    return name().toLowerCase();
+  }
+}
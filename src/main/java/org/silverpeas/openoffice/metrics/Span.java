@@ -0,0 +1,224 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The measure of one phase of the access to a document. A span is started with
+ * {@link Metrics#start(Phase, String)} and it is exported once ended; it is flagged as failed
+ * unless {@link #succeeded()} was called before its end:
+ * <pre>
+ * Span span = Metrics.start(Phase.LOCK, url);
+ * try {
+ *   ...
+ *   span.succeeded();
+ * } finally {
+ *   span.end();
+ * }
+ * </pre>
+ * The retries and the subprocesses counted during the span are those counted by the whole
+ * launcher in the meantime, which is exact as long as the spans aren't concurrent.
+ *
+ * @author ehugonnet
+ */
+public class Span {
+
+  private final Phase phase;
+  private final String resource;
+  private final long startTime;
+  private final long startNanos;
+  private final long startRetries;
+  private final long startSubprocesses;
+  private long durationNanos = -1L;
+  private long bytes = 0L;
+  private long wireBytes = -1L;
+  private int httpStatus = 0;
+  private long retries = 0L;
+  private long subprocesses = 0L;
+  private boolean success = false;
+
+  Span(Phase phase, String resource, long retries, long subprocesses) {
+    this.phase = phase;
+    this.resource = resource;
+    this.startTime = System.currentTimeMillis();
+    this.startNanos = System.nanoTime();
+    this.startRetries = retries;
+    this.startSubprocesses = subprocesses;
+  }
+
+  /**
+   * @param bytes the number of bytes of the document transferred during the span.
+   */
+  public void addBytes(long bytes) {
+    this.bytes += bytes;
+  }
+
+  /**
+   * @param wireBytes the number of bytes really sent or received on the network, when the
+   * content is encoded.
+   */
+  public void setWireBytes(long wireBytes) {
+    this.wireBytes = wireBytes;
+  }
+
+  /**
+   * @param httpStatus the status of the last HTTP response received during the span.
+   */
+  public void setHttpStatus(int httpStatus) {
+    this.httpStatus = httpStatus;
+  }
+
+  /**
+   * Flags the phase as succeeded.
+   */
+  public void succeeded() {
+    this.success = true;
+  }
+
+  /**
+   * Ends the span and exports it. Ending a span more than once has no effect.
+   */
+  public void end() {
+    if (durationNanos >= 0L) {
+      return;
+    }
+    durationNanos = System.nanoTime() - startNanos;
+    retries = Metrics.getRetries() - startRetries;
+    subprocesses = Metrics.getSubprocesses() - startSubprocesses;
+    Metrics.record(this);
+  }
+
+  public Phase getPhase() {
+    return phase;
+  }
+
+  public String getResource() {
+    return resource;
+  }
+
+  public long getStartTime() {
+    return startTime;
+  }
+
+  public long getDurationMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(durationNanos);
+  }
+
+  public long getBytes() {
+    return bytes;
+  }
+
+  public long getWireBytes() {
+    return wireBytes;
+  }
+
+  public int getHttpStatus() {
+    return httpStatus;
+  }
+
+  public long getRetries() {
+    return retries;
+  }
+
+  public long getSubprocesses() {
+    return subprocesses;
+  }
+
+  public boolean isSucceeded() {
+    return success;
+  }
+
+  /**
+   * @return the throughput of the transfer in bytes per second, or 0 if nothing was transferred.
+   */
+  public long getThroughput() {
+    if (bytes <= 0L || durationNanos <= 0L) {
+      return 0L;
+    }
+    return (long) (bytes * 1e9d / durationNanos);
+  }
+
+  /**
+   * @return the span as a JSON object on a single line.
+   */
+  public String toJson() {
+    StringBuilder json = new StringBuilder(256);
+    json.append("{\"session\":\"").append(Metrics.SESSION).append('"');
+    json.append(",\"phase\":\"").append(phase.getName()).append('"');
+    json.append(",\"resource\":");
+    appendString(json, resource);
+    json.append(",\"start\":").append(startTime);
+    json.append(",\"durationMs\":").append(getDurationMillis());
+    json.append(",\"bytes\":").append(bytes);
+    if (wireBytes >= 0L) {
+      json.append(",\"wireBytes\":").append(wireBytes);
+    }
+    json.append(",\"throughput\":").append(getThroughput());
+    if (httpStatus > 0) {
+      json.append(",\"httpStatus\":").append(httpStatus);
+    }
+    json.append(",\"retries\":").append(retries);
+    json.append(",\"subprocesses\":").append(subprocesses);
+    json.append(",\"success\":").append(success);
+    return json.append('}').toString();
+  }
+
+  @Override
+  public String toString() {
+    return toJson();
+  }
+
+  private static void appendString(StringBuilder json, String value) {
+    if (value == null) {
+      json.append("null");
+      return;
+    }
+    json.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '"':
+          json.append("\\\"");
+          break;
+        case '\\':
+          json.append("\\\\");
+          break;
+        case '\n':
+          json.append("\\n");
+          break;
+        case '\r':
+          json.append("\\r");
+          break;
+        case '\t':
+          json.append("\\t");
+          break;
+        default:
+          if (c < 0x20) {
+            json.append(String.format("\\u%04x", (int) c));
+          } else {
+            json.append(c);
+          }
+      }
+    }
+    json.append('"');
+  }
+}
@@ -0,0 +1,51 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for a call of a WebDAV method, from the sending of the request to the reception of
+ * the status and the headers of the response.
+ *
+ * @author ehugonnet
+ */
+@Name("org.silverpeas.openoffice.WebdavMethod")
+@Label("WebDAV Method")
+@Description("Call of a WebDAV method")
+@Category({"Silverpeas", "Office Launcher"})
+class WebdavMethodEvent extends jdk.jfr.Event {
+
+  @Label("Method")
+  String method;
+  @Label("URL")
+  String url;
+  @Label("Status")
+  int status;
+  @Label("Bytes")
+  @Description("Size of the request body, or of the response body for the other methods")
+  @DataAmount
+  long bytes;
+}
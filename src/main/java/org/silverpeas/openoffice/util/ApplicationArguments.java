@@ -1,6 +1,7 @@
 package org.silverpeas.openoffice.util;
 
 import java.net.MalformedURLException;
+import org.silverpeas.openoffice.AuthenticationInfo;
 
 /**
  * Extracts the arguments of the application and exposes them.
@@ -12,8 +13,10 @@ public class ApplicationArguments {
   private String url;
   private String basePath;
   private boolean disconnectedMode;
+  private boolean readOnlyMode;
   private MsOfficeType contentType;
   private String login;
+  private String encodedPassword;
 
   protected ApplicationArguments() {
 
@@ -32,6 +35,10 @@ public class ApplicationArguments {
     arguments.login = args[2];
     // is the file has to be opened in the disconnected mode?
     arguments.disconnectedMode = getBooleanValue(args[3]);
+    // is the file to be opened only for reading? (optional)
+    arguments.readOnlyMode = getBooleanValue(getOptionalArgument(args, 4));
+    // the encoded password of the user (optional)
+    arguments.encodedPassword = getOptionalArgument(args, 5);
     // the content type of the document
     arguments.contentType =
         ContentTypeUtil.getContentType(UrlExtractor.decodeUrl(arguments.encodedUrl));
@@ -76,6 +83,31 @@ public class ApplicationArguments {
     return disconnectedMode;
   }
 
+  /**
+   * Is the file to be opened only for reading?
+   * <p>
+   * In read-only mode, the document opened in disconnected mode isn't locked and it is never sent
+   * back to Silverpeas. The downloaded copy is marked as read-only and it is kept to be reused by
+   * the next read-only access to the same document if it is still up to date.
+   * </p>
+   * @return true if the document has to be opened in read-only mode.
+   */
+  public boolean isReadOnlyMode() {
+    return readOnlyMode;
+  }
+
+  /**
+   * Is the URL targeting a whole collection of documents rather than a single document?
+   * <p>
+   * A collection is checked out as a whole into a local folder and checked in back once the user
+   * is done with it.
+   * </p>
+   * @return true if the URL is the one of a webDAV collection.
+   */
+  public boolean isCollection() {
+    return url.endsWith("/") || url.endsWith("/\"");
+  }
+
   /**
    * Gets the content type of the document (word editor, presentation editor, etc.)
    * @return the content type of the document.
@@ -92,6 +124,24 @@ public class ApplicationArguments {
     return login;
   }
 
+  /**
+   * Gets the credentials of the user asking the access to the document.
+   * @return the credentials of the user or null if no password was passed to the program.
+   */
+  public AuthenticationInfo getAuthenticationInfo() {
+    if (encodedPassword == null || encodedPassword.trim().isEmpty()) {
+      return null;
+    }
+    return PasswordManager.extractAuthenticationInfo(login, encodedPassword.trim());
+  }
+
+  private static String getOptionalArgument(String[] args, int index) {
+    if (args.length > index) {
+      return args[index];
+    }
+    return null;
+  }
+
   private static boolean getBooleanValue(final String expression) {
     return "true".equalsIgnoreCase(expression) || "yes".equalsIgnoreCase(expression) ||
         "y".equalsIgnoreCase(expression) || "oui".equalsIgnoreCase(expression) ||
@@ -0,0 +1,72 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.util;
+
+import java.io.BufferedReader;
+import java.io.Console;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+/**
+ * Displays the messages on the console, in headless mode.
+ *
+ * @author ehugonnet
+ */
+class ConsoleMessageDisplayer {
+
+  private ConsoleMessageDisplayer() {
+  }
+
+  static void displayMessage(String message) {
+    System.out.println(message);
+  }
+
+  static void displayError(Throwable t) {
+    System.err.println(MessageUtil.getMessage("error.title") + ": " + t.getMessage());
+  }
+
+  static void waitForUser(String message) {
+    System.out.println(message);
+    System.out.println(MessageUtil.getMessage("info.console.continue"));
+    // an exhausted or closed input, as in a script, doesn't wait
+    readLine();
+  }
+
+  static char[] displayPromptPassword() {
+    String prompt = MessageUtil.getMessage("info.missing.password.label") + ": ";
+    Console console = System.console();
+    if (console != null) {
+      char[] password = console.readPassword(prompt);
+      return password == null ? new char[0] : password;
+    }
+    System.out.print(prompt);
+    String password = readLine();
+    return password == null ? new char[0] : password.toCharArray();
+  }
+
+  private static String readLine() {
+    try {
+      return new BufferedReader(new InputStreamReader(System.in)).readLine();
+    } catch (IOException ex) {
+      return null;
+    }
+  }
+}
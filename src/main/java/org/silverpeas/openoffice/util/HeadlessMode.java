@@ -0,0 +1,45 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.util;
+
+/**
+ * The headless mode of the launcher, for scripted and bulk use: the messages, the progress of the
+ * transfers and the errors are reported on the console and no AWT or Swing class is ever loaded.
+ * <p>
+ * It is enabled with the system property <code>silverpeas.headless=true</code>, or with the
+ * standard <code>java.awt.headless=true</code>. The property is read directly rather than asked to
+ * <code>GraphicsEnvironment</code> precisely not to load AWT.
+ * </p>
+ *
+ * @author ehugonnet
+ */
+public class HeadlessMode {
+
+  private HeadlessMode() {
+  }
+
+  /**
+   * @return true if the launcher runs without any graphical user interface.
+   */
+  public static boolean isEnabled() {
+    return Boolean.getBoolean("silverpeas.headless") || Boolean.getBoolean("java.awt.headless");
+  }
+}
@@ -20,32 +20,56 @@
  */
 package org.silverpeas.openoffice.util;
 
-import javax.swing.JLabel;
-import javax.swing.JOptionPane;
-import javax.swing.JPasswordField;
-
 /**
- * Simple utility class to display messages graphically.
+ * Simple utility class to display messages graphically, or on the console in headless mode. The
+ * Swing classes are only loaded when the messages are displayed graphically.
  *
+ * @see HeadlessMode
  * @author ehugonnet
  */
 public class MessageDisplayer {
 
+  /**
+   * Uses the native look and feel on Windows. Nothing is done in headless mode.
+   */
+  public static void defineLookAndFeel() {
+    if (!HeadlessMode.isEnabled()) {
+      SwingMessageDisplayer.defineLookAndFeel();
+    }
+  }
+
   public static void displayMessage(String message) {
-    JOptionPane.showMessageDialog(null, message,
-        MessageUtil.getMessage("info.title"), JOptionPane.INFORMATION_MESSAGE);
+    if (HeadlessMode.isEnabled()) {
+      ConsoleMessageDisplayer.displayMessage(message);
+    } else {
+      SwingMessageDisplayer.displayMessage(message);
+    }
+  }
+
+  /**
+   * Displays a message and waits for the user to acknowledge it.
+   * @param message the message to display.
+   */
+  public static void waitForUser(String message) {
+    if (HeadlessMode.isEnabled()) {
+      ConsoleMessageDisplayer.waitForUser(message);
+    } else {
+      SwingMessageDisplayer.displayMessage(message);
+    }
   }
 
   public static void displayError(Throwable t) {
-    JOptionPane.showMessageDialog(null, t.getMessage(),
-        MessageUtil.getMessage("error.title"), JOptionPane.ERROR_MESSAGE);
+    if (HeadlessMode.isEnabled()) {
+      ConsoleMessageDisplayer.displayError(t);
+    } else {
+      SwingMessageDisplayer.displayError(t);
+    }
   }
 
   public static char[] displayPromptPassword() {
-    JLabel label = new JLabel(MessageUtil.getMessage("info.missing.password.label"));
-    JPasswordField jpf = new JPasswordField();
-    JOptionPane.showConfirmDialog(null, new Object[]{label, jpf}, 
-        MessageUtil.getMessage("info.missing.password.title"), JOptionPane.OK_CANCEL_OPTION);
-    return jpf.getPassword();  
+    if (HeadlessMode.isEnabled()) {
+      return ConsoleMessageDisplayer.displayPromptPassword();
+    }
+    return SwingMessageDisplayer.displayPromptPassword();
   }
 }
@@ -26,6 +26,8 @@ package org.silverpeas.openoffice.util;
 
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.silverpeas.openoffice.metrics.LauncherEvents;
+import org.silverpeas.openoffice.metrics.Metrics;
 
 /**
  * @author Emmanuel Hugonnet
@@ -37,8 +39,23 @@ public class RegistryKeyReader {
   static Logger logger = Logger.getLogger(RegistryKeyReader.class.getName());
 
   public static String readKey(String regKey) {
+    Object lookup = LauncherEvents.beginFinderLookup(regKey);
+    String value = queryKey(regKey);
+    LauncherEvents.endFinderLookup(lookup, value != null, value);
+    return value;
+  }
+
+  public static boolean checkRegistryKey(String baseKey, String key) {
+    Object lookup = LauncherEvents.beginFinderLookup(baseKey + '\\' + key);
+    boolean found = queryRegistryKey(baseKey, key);
+    LauncherEvents.endFinderLookup(lookup, found, null);
+    return found;
+  }
+
+  private static String queryKey(String regKey) {
     try {
       Process process = Runtime.getRuntime().exec(REGQUERY_UTIL + regKey);
+      Metrics.countSubprocess();
       StreamReader reader = new StreamReader(process.getInputStream());
       reader.start();
       process.waitFor();
@@ -55,9 +72,10 @@ public class RegistryKeyReader {
     return null;
   }
   
-  public static boolean checkRegistryKey(String baseKey, String key) {
+  private static boolean queryRegistryKey(String baseKey, String key) {
     try {
       Process process = Runtime.getRuntime().exec(REGQUERY_UTIL + baseKey + " /f" + key);
+      Metrics.countSubprocess();
       StreamReader reader = new StreamReader(process.getInputStream());
       reader.start();
       process.waitFor();
@@ -0,0 +1,202 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The tuning settings of the launcher: pool sizes, buffers, timeouts, thresholds, editor
+ * versions, ... They are read once, at the first use, from several layers, each one overriding
+ * the previous ones:
+ * <ol>
+ * <li>the defaults of the launcher itself;</li>
+ * <li>the system-wide file, set by the administrators of the site:
+ * <code>%ProgramData%\Silverpeas\officelauncher.properties</code> on Windows,
+ * <code>/etc/silverpeas/officelauncher.properties</code> elsewhere, or the file set with the
+ * system property <code>silverpeas.config.system</code>;</li>
+ * <li>the file of the user: <code>~/.silverpeas/officelauncher.properties</code>, or the file set
+ * with the system property <code>silverpeas.config.user</code>;</li>
+ * <li>the arguments of the launcher: the <code>silverpeas.*</code> system properties.</li>
+ * </ol>
+ * The keys are the same in every layer, for example
+ * <code>silverpeas.webdav.timeout.connect=5000</code>. A malformed value is ignored with a
+ * warning, in favor of the default.
+ *
+ * @author Emmanuel Hugonnet
+ */
+public final class Settings {
+
+  static final Logger logger = Logger.getLogger(Settings.class.getName());
+  static final String PREFIX = "silverpeas.";
+  static final String FILE_NAME = "officelauncher.properties";
+  private final Map<String, String> values;
+
+  Settings(Map<String, String> values) {
+    this.values = Collections.unmodifiableMap(new HashMap<String, String>(values));
+  }
+
+  private static class Holder {
+
+    static final Settings instance = load(getSystemFile(), getUserFile(), System.getProperties());
+  }
+
+  /**
+   * @return the settings of the launcher, read at the first call.
+   */
+  public static Settings get() {
+    return Holder.instance;
+  }
+
+  /**
+   * Reads the settings from the layers.
+   * @param systemFile the system-wide file, or null.
+   * @param userFile the file of the user, or null.
+   * @param arguments the arguments of the launcher.
+   * @return the settings.
+   */
+  static Settings load(File systemFile, File userFile, Properties arguments) {
+    Map<String, String> values = new HashMap<String, String>();
+    for (File file : new File[]{systemFile, userFile}) {
+      if (file != null && file.isFile()) {
+        try {
+          putAll(values, read(file));
+          logger.log(Level.CONFIG, "Settings read from {0}", file);
+        } catch (IOException ex) {
+          logger.log(Level.WARNING, "Unable to read the settings " + file, ex);
+        }
+      }
+    }
+    putAll(values, arguments);
+    return new Settings(values);
+  }
+
+  static File getSystemFile() {
+    String path = System.getProperty("silverpeas.config.system");
+    if (path != null) {
+      return new File(path);
+    }
+    if (OsEnum.isWindows()) {
+      String programData = System.getenv("ProgramData");
+      if (programData == null) {
+        programData = System.getenv("ALLUSERSPROFILE");
+      }
+      return programData == null ? null : new File(new File(programData, "Silverpeas"),
+          FILE_NAME);
+    }
+    return new File("/etc/silverpeas", FILE_NAME);
+  }
+
+  static File getUserFile() {
+    String path = System.getProperty("silverpeas.config.user");
+    if (path != null) {
+      return new File(path);
+    }
+    return new File(new File(System.getProperty("user.home"), ".silverpeas"), FILE_NAME);
+  }
+
+  private static Properties read(File file) throws IOException {
+    Properties properties = new Properties();
+    InputStream in = new FileInputStream(file);
+    try {
+      properties.load(in);
+    } finally {
+      in.close();
+    }
+    return properties;
+  }
+
+  private static void putAll(Map<String, String> values, Properties properties) {
+    for (String key : properties.stringPropertyNames()) {
+      if (key.startsWith(PREFIX)) {
+        values.put(key, properties.getProperty(key).trim());
+      }
+    }
+  }
+
+  /**
+   * @param key the key of the setting.
+   * @param defaultValue the default value.
+   * @return the value of the setting, or the default value if it isn't set.
+   */
+  public String getString(String key, String defaultValue) {
+    String value = values.get(key);
+    return value == null ? defaultValue : value;
+  }
+
+  public int getInt(String key, int defaultValue) {
+    String value = values.get(key);
+    if (value != null) {
+      try {
+        return Integer.parseInt(value);
+      } catch (NumberFormatException ex) {
+        logger.log(Level.WARNING, "Invalid value of {0}: {1}", new Object[]{key, value});
+      }
+    }
+    return defaultValue;
+  }
+
+  public long getLong(String key, long defaultValue) {
+    String value = values.get(key);
+    if (value != null) {
+      try {
+        return Long.parseLong(value);
+      } catch (NumberFormatException ex) {
+        logger.log(Level.WARNING, "Invalid value of {0}: {1}", new Object[]{key, value});
+      }
+    }
+    return defaultValue;
+  }
+
+  public boolean getBoolean(String key, boolean defaultValue) {
+    String value = values.get(key);
+    return value == null ? defaultValue : Boolean.parseBoolean(value);
+  }
+
+  /**
+   * @param key the key of the setting, whose value is a list separated by commas.
+   * @param defaultValues the default values.
+   * @return the values of the setting, or the default values if it isn't set.
+   */
+  public String[] getList(String key, String... defaultValues) {
+    String value = values.get(key);
+    if (value == null) {
+      return defaultValues;
+    }
+    List<String> list = new ArrayList<String>();
+    for (String item : value.split(",")) {
+      if (!item.trim().isEmpty()) {
+        list.add(item.trim());
+      }
+    }
+    return list.toArray(new String[list.size()]);
+  }
+}
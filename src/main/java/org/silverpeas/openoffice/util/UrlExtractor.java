@@ -30,7 +30,10 @@ package org.silverpeas.openoffice.util;
 
 import java.io.File;
 import java.io.IOException;
+import java.math.BigInteger;
 import java.net.URLDecoder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -107,4 +110,19 @@ public class UrlExtractor {
     String path = decodeUrl(encodedPath);
     return path.replace('/', File.separatorChar);
   }
+
+  /**
+   * Hash the url into a key naming the local files kept for it.
+   * @param url the url.
+   * @return the SHA-1 digest of the url in hexadecimal.
+   * @throws IOException
+   */
+  public static String hashUrl(String url) throws IOException {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-1");
+      return String.format("%040x", new BigInteger(1, digest.digest(url.getBytes("UTF-8"))));
+    } catch (NoSuchAlgorithmException ex) {
+      throw new IOException(ex.getMessage(), ex);
+    }
+  }
 }
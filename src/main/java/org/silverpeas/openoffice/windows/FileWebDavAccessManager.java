@@ -22,6 +22,7 @@ package org.silverpeas.openoffice.windows;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Properties;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.apache.commons.httpclient.HttpException;
@@ -29,26 +30,45 @@ import org.apache.commons.httpclient.URI;
 import org.apache.commons.httpclient.URIException;
 import org.silverpeas.openoffice.AuthenticationInfo;
 import org.silverpeas.openoffice.util.MessageUtil;
+import org.silverpeas.openoffice.util.UrlExtractor;
 import org.silverpeas.openoffice.windows.webdav.WebdavManager;
+import org.silverpeas.openoffice.windows.webdav.Workspace;
 
 /**
- * This class manage download and upload of documents using webdav protocol.
+ * This class manage download and upload of documents using webdav protocol. A document that
+ * cannot be pushed back because the server is unreachable is kept in the outbox, to be sent later
+ * only if the remote document didn't change meanwhile.
  *
  * @author Ludovic Bertin
  */
 public class FileWebDavAccessManager {
 
   private final String login;
+  private final AuthenticationInfo authenticationInfo;
   private String lockToken = null;
+  private String etag = null;
+  private UploadOutbox outbox = UploadOutbox.getDefault();
+  private Workspace workspace = Workspace.getDefault();
+  private WebdavManager webdav = null;
   static final Logger logger = Logger.getLogger(FileWebDavAccessManager.class.getName());
 
+  /**
+   * @param login the login of the user
+   */
+  public FileWebDavAccessManager(String login) {
+    this(login, null);
+  }
+
   /**
    * The AccessManager is inited with authentication info to avoid login prompt
    *
    * @param login the login of the user
+   * @param authenticationInfo the credentials of the user or null if the server doesn't
+   * require any authentication.
    */
-  public FileWebDavAccessManager(String login) {
+  public FileWebDavAccessManager(String login, AuthenticationInfo authenticationInfo) {
     this.login = login;
+    this.authenticationInfo = authenticationInfo;
   }
 
   /**
@@ -61,13 +81,15 @@ public class FileWebDavAccessManager {
    */
   public String retrieveFile(String url) throws HttpException, IOException {
     URI uri = getURI(url);
-    WebdavManager webdav = new WebdavManager(uri.getHost());
+    WebdavManager webdav = getWebdavManager(uri);
     // Let's lock the file
     lockToken = webdav.lockFile(uri, login);
     logger.log(Level.INFO, "{0}{1}{2}", new Object[]{MessageUtil.getMessage("info.webdav.locked"),
       ' ', lockToken});
     try {
-      String tmpFile = webdav.getFile(uri, lockToken);
+      Properties validators = new Properties();
+      String tmpFile = webdav.getFile(uri, lockToken, validators);
+      etag = validators.getProperty(WebdavManager.HEADER_ETAG);
       logger.log(Level.INFO, "{0}{1}{2}", new Object[]{MessageUtil.getMessage(
         "info.webdav.file.locally.saved"), ' ', tmpFile});
       return tmpFile;
@@ -78,29 +100,94 @@ public class FileWebDavAccessManager {
   }
 
   /**
-   * Push back file into remote location using webdav.
+   * Retrieve the file from distant URL to a local read-only file. No lock is taken on the remote
+   * document and the local copy of a previous read-only access is reused if it is still up to
+   * date, so that only one request is sent to the server. The copy is cached in the workspace,
+   * within its quota.
+   *
+   * @param url document url
+   * @return full path of local read-only file
+   * @throws HttpException
+   * @throws IOException
+   */
+  public String retrieveReadOnlyFile(String url) throws HttpException, IOException {
+    URI uri = getURI(url);
+    WebdavManager webdav = getWebdavManager(uri);
+    File cacheDir = workspace.getReadOnlyDirectory(UrlExtractor.hashUrl(uri.getEscapedURI()));
+    String tmpFile = webdav.getReadOnlyFile(uri, cacheDir);
+    logger.log(Level.INFO, "{0}{1}{2}", new Object[]{MessageUtil.getMessage(
+      "info.webdav.file.locally.saved"), ' ', tmpFile});
+    return tmpFile;
+  }
+
+  /**
+   * Push back file into remote location using webdav. If the server cannot be reached, the file is
+   * moved into the outbox.
    *
    * @param tmpFilePath full path of local temp file
    * @param url remote url
+   * @return true if the file was pushed back, false if it was kept in the outbox.
    * @throws HttpException
    * @throws IOException
    */
-  public void pushFile(String tmpFilePath, String url) throws HttpException, IOException {
+  public boolean pushFile(String tmpFilePath, String url) throws HttpException, IOException {
     URI uri = getURI(url);
-    WebdavManager webdav = new WebdavManager(uri.getHost());
+    WebdavManager webdav = getWebdavManager(uri);
     logger.log(Level.INFO, "{0}{1}{2}", new Object[]{MessageUtil.getMessage("info.webdav.put"), ' ',
       tmpFilePath});
-    webdav.putFile(uri, tmpFilePath, lockToken);
+    try {
+      webdav.putFile(uri, tmpFilePath, lockToken);
+    } catch (IOException ex) {
+      if (!UploadOutbox.isUnreachable(ex)) {
+        throw ex;
+      }
+      logger.log(Level.WARNING, uri.getEscapedURI(), ex);
+      File file = new File(tmpFilePath);
+      outbox.add(file, uri.getEscapedURI(), login, lockToken, etag);
+      workspace.delete(file.getParentFile());
+      return false;
+    }
     logger.log(Level.INFO, "{0}{1}{2}",
         new Object[]{MessageUtil.getMessage("info.webdav.unlocking"), ' ', uri.getEscapedURI()});
     // Let's unlock the file
     webdav.unlockFile(uri, lockToken);
     // delete temp file
-    File file = new File(tmpFilePath);
-    file.delete();
-    file.getParentFile().delete();
+    workspace.delete(new File(tmpFilePath).getParentFile());
     logger.log(Level.INFO, MessageUtil.getMessage("info.file.deleted"));
     logger.log(Level.INFO, MessageUtil.getMessage("info.ok"));
+    return true;
+  }
+
+  /**
+   * @param outbox the outbox in which the files that cannot be pushed back are kept.
+   */
+  public void setOutbox(UploadOutbox outbox) {
+    this.outbox = outbox;
+  }
+
+  /**
+   * @param webdav the WebDAV manager to use in place of the one created for the host.
+   */
+  void setWebdavManager(WebdavManager webdav) {
+    this.webdav = webdav;
+  }
+
+  /**
+   * @param workspace the workspace in which the local copies are kept.
+   */
+  void setWorkspace(Workspace workspace) {
+    this.workspace = workspace;
+  }
+
+  /**
+   * The same webdav manager is used for all the requests of the session so that the connections,
+   * the credentials and the session cookie are reused from one request to another.
+   */
+  private WebdavManager getWebdavManager(URI uri) throws URIException {
+    if (webdav == null) {
+      webdav = new WebdavManager(uri.getHost(), authenticationInfo);
+    }
+    return webdav;
   }
 
   private static URI getURI(String url) throws URIException {
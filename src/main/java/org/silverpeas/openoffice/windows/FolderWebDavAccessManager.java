@@ -0,0 +1,402 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.windows;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.httpclient.URI;
+import org.apache.commons.httpclient.URIException;
+import org.silverpeas.openoffice.AuthenticationInfo;
+import org.silverpeas.openoffice.util.MessageUtil;
+import org.silverpeas.openoffice.util.Settings;
+import org.silverpeas.openoffice.windows.webdav.DavResource;
+import org.silverpeas.openoffice.windows.webdav.ProgressDisplay;
+import org.silverpeas.openoffice.windows.webdav.ProgressDisplays;
+import org.silverpeas.openoffice.windows.webdav.ProgressListener;
+import org.silverpeas.openoffice.windows.webdav.TransferDigest;
+import org.silverpeas.openoffice.windows.webdav.TransferSummary;
+import org.silverpeas.openoffice.windows.webdav.WebdavManager;
+import org.silverpeas.openoffice.windows.webdav.Workspace;
+
+/**
+ * This class manages the check-out and the check-in of a whole webdav collection. The members of
+ * the collection are locked and downloaded concurrently into a local folder; at check-in, only the
+ * members modified locally are uploaded, also concurrently, before all the members get unlocked.
+ * A member whose date changed but not its content, as compared with the digest computed while it
+ * was downloaded, isn't uploaded again.
+ *
+ * @author Ludovic Bertin
+ */
+public class FolderWebDavAccessManager {
+
+  static final Logger logger = Logger.getLogger(FolderWebDavAccessManager.class.getName());
+  static final int DEFAULT_CONCURRENT_TRANSFERS = 4;
+  private final String login;
+  private final AuthenticationInfo authenticationInfo;
+  private final int concurrentTransfers;
+  private final List<Member> members = new ArrayList<Member>();
+  private WebdavManager webdav;
+  private File localFolder;
+  private Workspace workspace = Workspace.getDefault();
+
+  /**
+   * @param login the login of the user
+   * @param authenticationInfo the credentials of the user or null if the server doesn't
+   * require any authentication.
+   */
+  public FolderWebDavAccessManager(String login, AuthenticationInfo authenticationInfo) {
+    this.login = login;
+    this.authenticationInfo = authenticationInfo;
+    this.concurrentTransfers = Settings.get().getInt("silverpeas.webdav.transfers",
+        DEFAULT_CONCURRENT_TRANSFERS);
+  }
+
+  /**
+   * Locks and downloads all the documents of the remote collection into a local folder. If one of
+   * the documents cannot be checked out, the documents already locked are released.
+   *
+   * @param url the URL of the collection.
+   * @return the full path of the local folder.
+   * @throws IOException
+   */
+  public String checkOut(String url) throws IOException {
+    URI uri = getURI(url.endsWith("/") ? url : url + '/');
+    if (webdav == null) {
+      webdav = new WebdavManager(uri.getHost(), authenticationInfo);
+    }
+    List<DavResource> resources = webdav.listCollection(uri);
+    long totalSize = 0L;
+    for (DavResource resource : resources) {
+      if (!resource.isCollection()) {
+        totalSize += Math.max(0L, resource.getContentLength());
+      }
+    }
+    localFolder = workspace.createSessionDirectory(totalSize);
+    Set<String> localNames = new HashSet<String>();
+    try {
+      for (DavResource resource : resources) {
+        if (!resource.isCollection()) {
+          File localFile = getLocalFile(URLDecoder.decode(resource.getName(), "UTF-8"),
+              localNames);
+          members.add(new Member(new URI(uri, resource.getHref(), true), localFile, resource.
+              getContentLength()));
+        }
+      }
+    } catch (IOException ex) {
+      members.clear();
+      workspace.delete(localFolder);
+      throw ex;
+    }
+    logger.log(Level.INFO, "{0} {1} ({2})", new Object[]{MessageUtil.getMessage(
+      "info.folder.checkout"), uri.getEscapedURI(), members.size()});
+    final ProgressDisplay progress = newProgressBar("download.file.title",
+        "downloading.remote.file", uri, totalSize);
+    TransferSummary summary = new TransferSummary();
+    final AtomicLong received = new AtomicLong(0L);
+    List<Callable<Member>> tasks = new ArrayList<Callable<Member>>(members.size());
+    for (final Member member : members) {
+      tasks.add(new Callable<Member>() {
+
+        @Override
+        public Member call() throws Exception {
+          member.lockToken = webdav.lockFile(member.uri, login);
+          TransferDigest digest = new TransferDigest();
+          webdav.getFile(member.uri, member.localFile, new FileProgress(member, received,
+              progress), digest);
+          member.checkedOut(digest.getSha256());
+          return member;
+        }
+      });
+    }
+    try {
+      runAll(tasks, summary);
+    } finally {
+      progress.close();
+    }
+    if (summary.hasFailures()) {
+      for (Member member : members) {
+        if (member.lockToken != null) {
+          try {
+            webdav.unlockFile(member.uri, member.lockToken);
+          } catch (IOException ex) {
+            logger.log(Level.SEVERE, member.localFile.getName(), ex);
+          }
+        }
+      }
+      workspace.delete(localFolder);
+      throw new IOException(MessageUtil.getMessage("error.folder.checkout") + '\n' + summary.
+          getMessage());
+    }
+    return localFolder.getAbsolutePath();
+  }
+
+  /**
+   * Uploads the documents modified since the check-out and then unlocks all of them. The local
+   * folder is removed only if every document was successfully checked in; otherwise the documents
+   * that couldn't be read or sent back are kept locked with their local copy. The failure of one
+   * document doesn't prevent the others from being checked in.
+   *
+   * @return the summary of the check-in.
+   * @throws IOException
+   */
+  public TransferSummary checkIn() throws IOException {
+    if (webdav == null) {
+      throw new IllegalStateException("The folder isn't checked out");
+    }
+    final TransferSummary summary = new TransferSummary();
+    long totalSize = 0L;
+    for (Member member : members) {
+      // the digests are only computed by the tasks, where an unreadable document is a failure
+      if (member.lockToken != null && member.mayBeModified()) {
+        totalSize += member.localFile.length();
+      }
+    }
+    final ProgressDisplay progress = newProgressBar("upload.file.title",
+        "uploading.remote.file", null, totalSize);
+    final AtomicLong sent = new AtomicLong(0L);
+    List<Callable<Member>> tasks = new ArrayList<Callable<Member>>(members.size());
+    for (final Member member : members) {
+      tasks.add(new Callable<Member>() {
+
+        @Override
+        public Member call() throws Exception {
+          member.checkInStarted = true;
+          if (member.lockToken == null) {
+            return member;
+          }
+          if (member.isModified()) {
+            member.size = member.localFile.length();
+            webdav.putFile(member.uri, member.localFile, member.lockToken, new FileProgress(
+                member, sent, progress));
+            summary.addTransferred(member.localFile.length());
+          } else {
+            summary.addUnchanged();
+          }
+          webdav.unlockFile(member.uri, member.lockToken);
+          member.lockToken = null;
+          member.localFile.delete();
+          return member;
+        }
+      });
+    }
+    try {
+      runAll(tasks, summary);
+    } finally {
+      progress.close();
+      unlockNotCheckedIn();
+    }
+    if (!summary.hasFailures()) {
+      workspace.delete(localFolder);
+      logger.log(Level.INFO, MessageUtil.getMessage("info.file.deleted"));
+    }
+    logger.log(Level.INFO, summary.getMessage());
+    return summary;
+  }
+
+  /**
+   * Releases the documents whose check-in didn't even start, the check-in having been interrupted.
+   */
+  private void unlockNotCheckedIn() {
+    for (Member member : members) {
+      if (!member.checkInStarted && member.lockToken != null) {
+        try {
+          webdav.unlockFile(member.uri, member.lockToken);
+          member.lockToken = null;
+        } catch (IOException ex) {
+          logger.log(Level.SEVERE, member.localFile.getName(), ex);
+        }
+      }
+    }
+  }
+
+  private void runAll(List<Callable<Member>> tasks, TransferSummary summary) throws IOException {
+    if (tasks.isEmpty()) {
+      return;
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(tasks.size(),
+        concurrentTransfers));
+    try {
+      List<Future<Member>> results = executor.invokeAll(tasks);
+      for (int i = 0; i < results.size(); i++) {
+        try {
+          results.get(i).get();
+        } catch (ExecutionException ex) {
+          Member member = members.get(i);
+          logger.log(Level.SEVERE, member.localFile.getName(), ex.getCause());
+          summary.addFailure(member.localFile.getName(), ex.getCause());
+        }
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IOException(ex.getMessage(), ex);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Gets the local file into which the specified member of the collection is downloaded. The name
+   * comes from the server, so it is rejected if it could designate a file outside the local
+   * folder; the names that would collide once their spaces are replaced are made unique.
+   *
+   * @param name the decoded name of the member.
+   * @param localNames the names, in lower case, already given to the other members.
+   * @return the local file of the member.
+   * @throws IOException if the name isn't a plain file name.
+   */
+  private File getLocalFile(String name, Set<String> localNames) throws IOException {
+    if (name.length() == 0 || name.indexOf('/') >= 0 || name.indexOf('\\') >= 0 || name.
+        indexOf(':') >= 0 || name.contains("..")) {
+      throw new IOException(MessageUtil.getMessage("error.folder.member.name") + ' ' + name);
+    }
+    String fileName = name.replace(' ', '_');
+    int dot = fileName.lastIndexOf('.');
+    String baseName = dot > 0 ? fileName.substring(0, dot) : fileName;
+    String extension = dot > 0 ? fileName.substring(dot) : "";
+    for (int i = 2; !localNames.add(fileName.toLowerCase(Locale.ROOT)); i++) {
+      fileName = baseName + '-' + i + extension;
+    }
+    File localFile = new File(localFolder, fileName);
+    if (!localFolder.getCanonicalFile().equals(localFile.getCanonicalFile().getParentFile())) {
+      throw new IOException(MessageUtil.getMessage("error.folder.member.name") + ' ' + name);
+    }
+    return localFile;
+  }
+
+  private ProgressDisplay newProgressBar(String titleKey, String messageKey, URI uri,
+      long totalSize) throws URIException {
+    ProgressDisplay progress = ProgressDisplays.newUploadDisplay();
+    progress.setTitle(MessageUtil.getMessage(titleKey));
+    progress.setMessage(MessageUtil.getMessage(messageKey) + ' ' + (uri == null ? localFolder.
+        getName() : uri.getPath()));
+    progress.setMaximum(totalSize);
+    return progress;
+  }
+
+  /**
+   * @param webdav the WebDAV manager to use in place of the one created for the host.
+   */
+  void setWebdavManager(WebdavManager webdav) {
+    this.webdav = webdav;
+  }
+
+  /**
+   * @param workspace the workspace in which the local folder is created.
+   */
+  void setWorkspace(Workspace workspace) {
+    this.workspace = workspace;
+  }
+
+  private static URI getURI(String url) throws URIException {
+    return new URI(url, false, "UTF-8");
+  }
+
+  /**
+   * A document of the checked out collection.
+   */
+  private static class Member {
+
+    final URI uri;
+    final File localFile;
+    volatile String lockToken;
+    volatile long size;
+    volatile boolean checkInStarted;
+    private long checkedOutLength = -1L;
+    private long checkedOutModified = -1L;
+    private String checkedOutDigest;
+
+    Member(URI uri, File localFile, long size) {
+      this.uri = uri;
+      this.localFile = localFile;
+      this.size = size;
+    }
+
+    void checkedOut(String digest) {
+      checkedOutLength = localFile.length();
+      checkedOutModified = localFile.lastModified();
+      checkedOutDigest = digest;
+    }
+
+    /**
+     * @return false if the document is surely unchanged, without reading it.
+     */
+    boolean mayBeModified() {
+      return localFile.length() != checkedOutLength
+          || localFile.lastModified() != checkedOutModified;
+    }
+
+    boolean isModified() throws IOException {
+      if (localFile.length() != checkedOutLength) {
+        return true;
+      }
+      if (localFile.lastModified() == checkedOutModified) {
+        return false;
+      }
+      return checkedOutDigest == null || !checkedOutDigest.equals(TransferDigest.sha256(
+          localFile));
+    }
+  }
+
+  /**
+   * Logs the progress of the transfer of one document and reports it to the overall progress bar.
+   */
+  private static class FileProgress implements ProgressListener {
+
+    private final Member member;
+    private final AtomicLong total;
+    private final ProgressDisplay progressBar;
+    private long transferred = 0L;
+    private int lastLoggedStep = 0;
+
+    FileProgress(Member member, AtomicLong total, ProgressDisplay progressBar) {
+      this.member = member;
+      this.total = total;
+      this.progressBar = progressBar;
+    }
+
+    @Override
+    public void progressChanged(long newValue) {
+      long overall = total.addAndGet(newValue - transferred);
+      transferred = newValue;
+      progressBar.progressChanged(overall);
+      long size = Math.max(member.size, 1L);
+      int step = (int) (transferred * 4L / size);
+      if (step > lastLoggedStep) {
+        lastLoggedStep = step;
+        logger.log(Level.FINE, "{0}: {1}%", new Object[]{member.localFile.getName(), step * 25});
+      }
+    }
+  }
+}
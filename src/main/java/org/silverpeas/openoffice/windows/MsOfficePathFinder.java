@@ -30,6 +30,7 @@ import java.io.File;
 import org.silverpeas.openoffice.OfficeFinder;
 import org.silverpeas.openoffice.OfficeNotFoundException;
 import org.silverpeas.openoffice.OpenOfficeFinder;
+import org.silverpeas.openoffice.util.Settings;
 
 /**
  * @author ehugonnet
@@ -38,7 +39,8 @@ public class MsOfficePathFinder implements OfficeFinder {
 
   private boolean isOpenOffice = true;
   static final OpenOfficeFinder openOffice = new WindowsOpenOfficeFinder();
-  public static String basePath = "C:\\Program Files\\Microsoft Office\\OFFICE11";
+  public static String basePath = Settings.get().getString("silverpeas.office.basePath",
+      "C:\\Program Files\\Microsoft Office\\OFFICE11");
   private static final String EXCEL = "EXCEL.EXE";
   private static final String WORDS = "WINWORD.EXE";
   private static final String POWERPOINT = "POWERPNT.EXE";
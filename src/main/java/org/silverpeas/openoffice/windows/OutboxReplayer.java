@@ -0,0 +1,336 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.windows;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.httpclient.URI;
+import org.silverpeas.openoffice.AuthenticationInfo;
+import org.silverpeas.openoffice.util.MessageUtil;
+import org.silverpeas.openoffice.util.Settings;
+import org.silverpeas.openoffice.windows.UploadOutbox.Entry;
+import org.silverpeas.openoffice.windows.webdav.BandwidthLimiter;
+import org.silverpeas.openoffice.windows.webdav.TransferDigest;
+import org.silverpeas.openoffice.windows.webdav.UploadConflictException;
+import org.silverpeas.openoffice.windows.webdav.WebdavManager;
+
+/**
+ * Sends again, in the background, the documents of the outbox of a server once it is reachable.
+ * The uploads are conditional: a document is sent only if the remote document is still the
+ * version it was based on, so that a version saved by someone else in the meantime is never
+ * overwritten; such conflicts are reported to the user instead.
+ * <p>
+ * Only the documents of the same user on the same server are sent, with the credentials of the
+ * current launch, and with the background bandwidth budget.
+ * </p>
+ * <p>
+ * While the server is still unreachable, the documents are sent again every
+ * <code>silverpeas.outbox.retry</code> milliseconds, for as long as the launcher runs. The
+ * documents left when the launcher exits are sent by the next launch.
+ * </p>
+ *
+ * @author ehugonnet
+ */
+public class OutboxReplayer implements Runnable {
+
+  static final Logger logger = Logger.getLogger(OutboxReplayer.class.getName());
+  private static final int SC_LOCKED = 423;
+  static final long RETRY_INTERVAL = Settings.get().getLong("silverpeas.outbox.retry", 30000L);
+  private final UploadOutbox outbox;
+  private final String host;
+  private final String login;
+  private final AuthenticationInfo authenticationInfo;
+  private final List<String> reports = Collections.synchronizedList(new ArrayList<String>());
+  private WebdavManager webdav;
+  private Thread thread;
+  private long retryInterval = RETRY_INTERVAL;
+  private boolean replaying = false;
+  private boolean stopped = false;
+
+  /**
+   * @param outbox the outbox.
+   * @param host the host of the WebDAV server.
+   * @param login the login of the user.
+   * @param authenticationInfo the credentials of the user or null if the server doesn't require
+   * any authentication.
+   */
+  public OutboxReplayer(UploadOutbox outbox, String host, String login,
+      AuthenticationInfo authenticationInfo) {
+    this.outbox = outbox;
+    this.host = host;
+    this.login = login;
+    this.authenticationInfo = authenticationInfo;
+  }
+
+  /**
+   * Starts sending the documents of the outbox in the background, if there is any.
+   * @param outbox the outbox.
+   * @param url the URL of the document of the current launch.
+   * @param login the login of the user.
+   * @param authenticationInfo the credentials of the user, if any.
+   * @return the started replayer, or null if the outbox is empty.
+   */
+  public static OutboxReplayer startIfPending(UploadOutbox outbox, String url, String login,
+      AuthenticationInfo authenticationInfo) {
+    if (!outbox.hasPendingEntries()) {
+      return null;
+    }
+    try {
+      OutboxReplayer replayer = new OutboxReplayer(outbox, new URI(url, false, "UTF-8").
+          getHost(), login, authenticationInfo);
+      replayer.start();
+      return replayer;
+    } catch (IOException ex) {
+      logger.log(Level.WARNING, url, ex);
+      return null;
+    }
+  }
+
+  public synchronized void start() {
+    replaying = true;
+    stopped = false;
+    thread = new Thread(this, "outbox-replayer");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Waits for the current attempt to send the documents and then stops the replayer: if the server
+   * is still unreachable, the documents are left for the next launch.
+   * @param timeout the maximum time to wait in milliseconds, 0 to wait as long as required.
+   * @return the messages to report to the user.
+   * @throws InterruptedException
+   */
+  public List<String> awaitReports(long timeout) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + timeout;
+    synchronized (this) {
+      try {
+        long remaining = timeout;
+        while (replaying && (timeout <= 0L || remaining > 0L)) {
+          wait(timeout <= 0L ? 0L : remaining);
+          remaining = deadline - System.currentTimeMillis();
+        }
+      } finally {
+        stopped = true;
+        notifyAll();
+      }
+    }
+    return getReports();
+  }
+
+  /**
+   * @return the messages to report to the user about the documents sent or abandoned so far.
+   */
+  public List<String> getReports() {
+    synchronized (reports) {
+      return new ArrayList<String>(reports);
+    }
+  }
+
+  @Override
+  public void run() {
+    try {
+      while (!replayAll() && awaitRetry()) {
+      }
+    } finally {
+      synchronized (this) {
+        replaying = false;
+        notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Sends the documents of the outbox, the oldest first. It stops at the first document failing
+   * because the server is still unreachable.
+   * @return false if the server is still unreachable, the documents being left in the outbox.
+   */
+  public boolean replayAll() {
+    for (Entry entry : outbox.getPendingEntries()) {
+      if (!isReplayable(entry) || !entry.tryLock()) {
+        continue;
+      }
+      try {
+        if (!replay(entry)) {
+          return false;
+        }
+      } finally {
+        entry.release();
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Waits for the next attempt to send the documents.
+   * @return false if the replayer was stopped meanwhile.
+   */
+  private synchronized boolean awaitRetry() {
+    replaying = false;
+    notifyAll();
+    long deadline = System.currentTimeMillis() + retryInterval;
+    long remaining = retryInterval;
+    try {
+      while (!stopped && remaining > 0L) {
+        wait(remaining);
+        remaining = deadline - System.currentTimeMillis();
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+    replaying = !stopped;
+    return replaying;
+  }
+
+  private boolean isReplayable(Entry entry) {
+    try {
+      return host.equalsIgnoreCase(new URI(entry.getUrl(), true, "UTF-8").getHost())
+          && (entry.getLogin() == null || entry.getLogin().equals(login));
+    } catch (IOException ex) {
+      logger.log(Level.WARNING, entry.toString(), ex);
+      return false;
+    }
+  }
+
+  /**
+   * @return false if the server is still unreachable.
+   */
+  boolean replay(Entry entry) {
+    String name = entry.getDocument().getName();
+    try {
+      URI uri = new URI(entry.getUrl(), true, "UTF-8");
+      send(uri, entry);
+      entry.remove();
+      logger.log(Level.INFO, "{0} sent back from the outbox", uri.getEscapedURI());
+      reports.add(String.format(MessageUtil.getMessage("info.outbox.sent"), name));
+    } catch (UploadConflictException ex) {
+      logger.log(Level.WARNING, entry.toString(), ex);
+      abandon(entry, UploadOutbox.State.CONFLICT, ex, String.format(MessageUtil.getMessage(
+          "error.outbox.conflict"), name, entry.getFolder()));
+    } catch (IOException ex) {
+      if (UploadOutbox.isUnreachable(ex)) {
+        logger.log(Level.INFO, "{0} still unreachable: {1}", new Object[]{host, ex.getMessage()});
+        try {
+          entry.failed(ex.getMessage());
+        } catch (IOException e) {
+          logger.log(Level.WARNING, entry.toString(), e);
+        }
+        return false;
+      }
+      logger.log(Level.WARNING, entry.toString(), ex);
+      abandon(entry, UploadOutbox.State.REJECTED, ex, String.format(MessageUtil.getMessage(
+          "error.outbox.rejected"), name, ex.getMessage(), entry.getFolder()));
+    }
+    return true;
+  }
+
+  /**
+   * Sends the document if the remote one didn't change since it was fetched. If its lock was
+   * lost, the remote document is locked again first.
+   */
+  private void send(URI uri, Entry entry) throws IOException {
+    WebdavManager manager = getWebdavManager();
+    String lockToken = entry.getLockToken();
+    try {
+      manager.putFileIfMatch(uri, entry.getDocument(), lockToken, entry.getEtag(), null);
+    } catch (UploadConflictException ex) {
+      if (ex.getStatusCode() == SC_LOCKED) {
+        lockToken = lock(manager, uri, entry);
+        manager.putFileIfMatch(uri, entry.getDocument(), lockToken, entry.getEtag(), null);
+      } else if (!isAlreadySent(manager, uri, entry)) {
+        throw ex;
+      }
+    }
+    if (lockToken != null) {
+      try {
+        manager.unlockFile(uri, lockToken);
+      } catch (IOException ex) {
+        // the lock may have expired meanwhile
+        logger.log(Level.INFO, "Unable to unlock {0}: {1}", new Object[]{uri.getEscapedURI(),
+          ex.getMessage()});
+      }
+    }
+  }
+
+  private String lock(WebdavManager manager, URI uri, Entry entry) throws IOException {
+    try {
+      return manager.lockFile(uri, entry.getLogin() == null ? login : entry.getLogin());
+    } catch (IOException ex) {
+      if (UploadOutbox.isUnreachable(ex)) {
+        throw ex;
+      }
+      // locked by someone else
+      throw new UploadConflictException(ex.getMessage(), SC_LOCKED);
+    }
+  }
+
+  /**
+   * A previous launcher may have sent the document and been stopped before removing it from the
+   * outbox: the document is then the remote one.
+   */
+  private boolean isAlreadySent(WebdavManager manager, URI uri, Entry entry) throws IOException {
+    File remote = new File(entry.getFolder(), "remote.tmp");
+    try {
+      manager.getFile(uri, remote, null);
+      return TransferDigest.sha256(remote).equals(TransferDigest.sha256(entry.getDocument()));
+    } finally {
+      remote.delete();
+    }
+  }
+
+  private void abandon(Entry entry, UploadOutbox.State state, IOException cause, String report) {
+    try {
+      entry.abandon(state, cause.getMessage());
+    } catch (IOException ex) {
+      logger.log(Level.WARNING, entry.toString(), ex);
+    }
+    reports.add(report);
+  }
+
+  private synchronized WebdavManager getWebdavManager() {
+    if (webdav == null) {
+      webdav = new WebdavManager(host, authenticationInfo);
+      webdav.setBandwidthLimiter(BandwidthLimiter.BACKGROUND);
+    }
+    return webdav;
+  }
+
+  /**
+   * @param retryInterval the delay in milliseconds between the attempts to send the documents
+   * while the server is unreachable.
+   */
+  synchronized void setRetryInterval(long retryInterval) {
+    this.retryInterval = retryInterval;
+  }
+
+  /**
+   * @param webdav the WebDAV manager to use in place of the one created for the host.
+   */
+  synchronized void setWebdavManager(WebdavManager webdav) {
+    this.webdav = webdav;
+  }
+}
@@ -0,0 +1,399 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.windows;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.silverpeas.openoffice.util.Settings;
+
+/**
+ * A durable outbox of the documents that couldn't be sent back to the server because it was
+ * unreachable. Each entry is a folder holding the edited document and a descriptor with what is
+ * required to send it again later: the URL of the remote document, the login of the user, the
+ * lock token and the ETag of the version the document was based on.
+ * <p>
+ * The outbox is the folder set with the setting <code>silverpeas.outbox.dir</code>, by
+ * default <code>~/.silverpeas/outbox</code>. Several launchers may run at the same time, so an
+ * entry is locked by the one sending it.
+ * </p>
+ *
+ * @author ehugonnet
+ */
+public class UploadOutbox {
+
+  static final Logger logger = Logger.getLogger(UploadOutbox.class.getName());
+  static final String DESCRIPTOR = "entry.properties";
+  private static final String LOCK = ".lock";
+  private static final String URL = "url";
+  private static final String LOGIN = "login";
+  private static final String LOCK_TOKEN = "lockToken";
+  private static final String ETAG = "etag";
+  private static final String DOCUMENT = "document";
+  private static final String STATE = "state";
+  private static final String ATTEMPTS = "attempts";
+  private static final String LAST_ERROR = "lastError";
+  private final File directory;
+
+  /**
+   * The states of an entry of the outbox.
+   */
+  public enum State {
+
+    /**
+     * The document is waiting for the server to be reachable again.
+     */
+    PENDING,
+    /**
+     * The remote document was modified or locked by someone else in the meantime; the document is
+     * kept for the user to merge the changes.
+     */
+    CONFLICT,
+    /**
+     * The server refused the document for another reason.
+     */
+    REJECTED
+  }
+
+  /**
+   * @param directory the folder of the outbox.
+   */
+  public UploadOutbox(File directory) {
+    this.directory = directory;
+  }
+
+  /**
+   * @return the outbox of the user, as set by the settings.
+   */
+  public static UploadOutbox getDefault() {
+    String defaultDirectory = System.getProperty("user.home") + File.separatorChar
+        + ".silverpeas" + File.separatorChar + "outbox";
+    return new UploadOutbox(new File(Settings.get().getString("silverpeas.outbox.dir",
+        defaultDirectory)));
+  }
+
+  public File getDirectory() {
+    return directory;
+  }
+
+  /**
+   * Is the failure of a request due to a server, or a network, which is unreachable? The HTTP
+   * transports report such failures with the exceptions of the sockets, whatever the client.
+   * @param ex the failure.
+   * @return true if the request can be sent again later.
+   */
+  public static boolean isUnreachable(IOException ex) {
+    return ex instanceof SocketException || ex instanceof UnknownHostException
+        || ex instanceof InterruptedIOException;
+  }
+
+  /**
+   * Moves a document into the outbox.
+   * @param document the document to send later.
+   * @param url the escaped URL of the remote document.
+   * @param login the login of the user.
+   * @param lockToken the lock token taken on the remote document, or null.
+   * @param etag the ETag of the version the document is based on, or null.
+   * @return the new entry.
+   * @throws IOException
+   */
+  public Entry add(File document, String url, String login, String lockToken, String etag)
+      throws IOException {
+    File folder = new File(directory, Long.toString(System.currentTimeMillis(), 36) + '-'
+        + UUID.randomUUID().toString().substring(0, 8));
+    if (!folder.mkdirs()) {
+      throw new IOException("Unable to create " + folder);
+    }
+    File target = new File(folder, document.getName());
+    move(document, target);
+    Properties descriptor = new Properties();
+    descriptor.setProperty(URL, url);
+    descriptor.setProperty(DOCUMENT, target.getName());
+    descriptor.setProperty(STATE, State.PENDING.name());
+    descriptor.setProperty(ATTEMPTS, "0");
+    if (login != null) {
+      descriptor.setProperty(LOGIN, login);
+    }
+    if (lockToken != null) {
+      descriptor.setProperty(LOCK_TOKEN, lockToken);
+    }
+    if (etag != null) {
+      descriptor.setProperty(ETAG, etag);
+    }
+    Entry entry = new Entry(folder, descriptor);
+    entry.store();
+    logger.log(Level.INFO, "{0} kept in the outbox {1}", new Object[]{target, folder});
+    return entry;
+  }
+
+  /**
+   * @return the entries waiting to be sent, the oldest first.
+   */
+  public List<Entry> getPendingEntries() {
+    return getEntries(State.PENDING);
+  }
+
+  /**
+   * @param state a state.
+   * @return the entries in this state, the oldest first.
+   */
+  public List<Entry> getEntries(State state) {
+    List<Entry> entries = new ArrayList<Entry>();
+    File[] folders = directory.listFiles();
+    if (folders == null) {
+      return entries;
+    }
+    Arrays.sort(folders);
+    for (File folder : folders) {
+      File descriptorFile = new File(folder, DESCRIPTOR);
+      if (!descriptorFile.isFile()) {
+        continue;
+      }
+      try {
+        Entry entry = new Entry(folder, load(descriptorFile));
+        if (entry.getState() == state) {
+          entries.add(entry);
+        }
+      } catch (IOException ex) {
+        logger.log(Level.WARNING, "Unable to read " + descriptorFile, ex);
+      } catch (IllegalArgumentException ex) {
+        logger.log(Level.WARNING, "Unable to read " + descriptorFile, ex);
+      }
+    }
+    return entries;
+  }
+
+  /**
+   * @return true if some entries are waiting to be sent.
+   */
+  public boolean hasPendingEntries() {
+    return !getPendingEntries().isEmpty();
+  }
+
+  private static Properties load(File file) throws IOException {
+    Properties properties = new Properties();
+    InputStream in = new FileInputStream(file);
+    try {
+      properties.load(in);
+    } finally {
+      in.close();
+    }
+    return properties;
+  }
+
+  private static void move(File source, File target) throws IOException {
+    if (source.renameTo(target)) {
+      return;
+    }
+    InputStream in = new FileInputStream(source);
+    try {
+      OutputStream out = new FileOutputStream(target);
+      try {
+        byte[] buffer = new byte[8192];
+        int c;
+        while ((c = in.read(buffer)) > -1) {
+          out.write(buffer, 0, c);
+        }
+        out.flush();
+        ((FileOutputStream) out).getFD().sync();
+      } finally {
+        out.close();
+      }
+    } finally {
+      in.close();
+    }
+    source.delete();
+  }
+
+  /**
+   * A document of the outbox.
+   */
+  public static class Entry {
+
+    private final File folder;
+    private final Properties descriptor;
+    private RandomAccessFile lockFile;
+    private FileLock lock;
+
+    Entry(File folder, Properties descriptor) {
+      this.folder = folder;
+      this.descriptor = descriptor;
+      getState();
+    }
+
+    public File getFolder() {
+      return folder;
+    }
+
+    public File getDocument() {
+      return new File(folder, descriptor.getProperty(DOCUMENT));
+    }
+
+    /**
+     * @return the escaped URL of the remote document.
+     */
+    public String getUrl() {
+      return descriptor.getProperty(URL);
+    }
+
+    public String getLogin() {
+      return descriptor.getProperty(LOGIN);
+    }
+
+    public String getLockToken() {
+      return descriptor.getProperty(LOCK_TOKEN);
+    }
+
+    public String getEtag() {
+      return descriptor.getProperty(ETAG);
+    }
+
+    public State getState() {
+      return State.valueOf(descriptor.getProperty(STATE, State.PENDING.name()));
+    }
+
+    public int getAttempts() {
+      return Integer.parseInt(descriptor.getProperty(ATTEMPTS, "0"));
+    }
+
+    public String getLastError() {
+      return descriptor.getProperty(LAST_ERROR);
+    }
+
+    /**
+     * Takes the entry so that no other launcher sends it at the same time.
+     * @return true if the entry is taken, false if another launcher is sending it.
+     */
+    public synchronized boolean tryLock() {
+      if (lock != null) {
+        return false;
+      }
+      try {
+        lockFile = new RandomAccessFile(new File(folder, LOCK), "rw");
+        lock = lockFile.getChannel().tryLock();
+      } catch (IOException ex) {
+        logger.log(Level.WARNING, "Unable to lock " + folder, ex);
+      } catch (OverlappingFileLockException ex) {
+        lock = null;
+      }
+      if (lock == null) {
+        release();
+      }
+      return lock != null;
+    }
+
+    /**
+     * Releases the entry taken with {@link #tryLock()}.
+     */
+    public synchronized void release() {
+      try {
+        if (lock != null) {
+          lock.release();
+        }
+        if (lockFile != null) {
+          lockFile.close();
+        }
+      } catch (IOException ex) {
+        logger.log(Level.WARNING, "Unable to unlock " + folder, ex);
+      } finally {
+        lock = null;
+        lockFile = null;
+      }
+    }
+
+    /**
+     * Records a failed attempt to send the document, the server being still unreachable.
+     * @param error the cause of the failure.
+     * @throws IOException
+     */
+    public void failed(String error) throws IOException {
+      descriptor.setProperty(ATTEMPTS, Integer.toString(getAttempts() + 1));
+      descriptor.setProperty(LAST_ERROR, String.valueOf(error));
+      store();
+    }
+
+    /**
+     * Records the end of the attempts to send the document; it is kept for the user.
+     * @param state the final state of the entry.
+     * @param error the cause of the failure.
+     * @throws IOException
+     */
+    public void abandon(State state, String error) throws IOException {
+      descriptor.setProperty(STATE, state.name());
+      failed(error);
+    }
+
+    /**
+     * Removes the entry once its document is sent.
+     */
+    public void remove() {
+      release();
+      for (File file : folder.listFiles()) {
+        file.delete();
+      }
+      folder.delete();
+    }
+
+    /**
+     * The descriptor is written aside and then renamed, so that a crash never leaves a partial
+     * descriptor behind.
+     */
+    void store() throws IOException {
+      File descriptorFile = new File(folder, DESCRIPTOR);
+      File tmpFile = new File(folder, DESCRIPTOR + ".tmp");
+      FileOutputStream out = new FileOutputStream(tmpFile);
+      try {
+        descriptor.store(out, getUrl());
+        out.flush();
+        out.getFD().sync();
+      } finally {
+        out.close();
+      }
+      if (!tmpFile.renameTo(descriptorFile)) {
+        descriptorFile.delete();
+        if (!tmpFile.renameTo(descriptorFile)) {
+          throw new IOException("Unable to write " + descriptorFile);
+        }
+      }
+    }
+
+    @Override
+    public String toString() {
+      return getDocument() + " -> " + getUrl() + " (" + getState() + ')';
+    }
+  }
+}
@@ -27,12 +27,14 @@ import org.silverpeas.openoffice.OpenOfficeFinder;
 import org.silverpeas.openoffice.OpenOfficeNotFoundException;
 import org.silverpeas.openoffice.util.MessageUtil;
 import org.silverpeas.openoffice.util.RegistryKeyReader;
+import org.silverpeas.openoffice.util.Settings;
 
 
 public class WindowsLibreOfficeFinder extends OpenOfficeFinder {
 
   static final Logger logger = Logger.getLogger(WindowsLibreOfficeFinder.class.getName());
-  private static final String[] VERSIONS = new String[]{"3.5", "3.6", "4.0"};
+  private static final String[] VERSIONS = Settings.get().getList("silverpeas.libreoffice.versions",
+      "3.5", "3.6", "4.0");
   private static final String GLOBAL_LIBRE_OFFICE_FOLDER =
       "\"HKEY_LOCAL_MACHINE\\SOFTWARE\\LibreOffice\\LibreOffice\\";
   private static final String GLOBAL_LIBRE_OFFICE_FOLDER_64 =
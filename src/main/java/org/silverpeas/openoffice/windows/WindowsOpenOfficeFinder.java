@@ -27,13 +27,14 @@ import org.silverpeas.openoffice.OpenOfficeFinder;
 import org.silverpeas.openoffice.OpenOfficeNotFoundException;
 import org.silverpeas.openoffice.util.MessageUtil;
 import org.silverpeas.openoffice.util.RegistryKeyReader;
+import org.silverpeas.openoffice.util.Settings;
 
 
 public class WindowsOpenOfficeFinder extends OpenOfficeFinder {
   private static final OpenOfficeFinder libreOfficeFinder = new WindowsLibreOfficeFinder();
   static final Logger logger = Logger.getLogger(WindowsOpenOfficeFinder.class.getName());
-  private static final String[] VERSIONS = new String[]{"3.4.1", "3.3", "3.2", "3.1", "3.0", "2.4",
-    "2.3"};
+  private static final String[] VERSIONS = Settings.get().getList("silverpeas.openoffice.versions",
+      "3.4.1", "3.3", "3.2", "3.1", "3.0", "2.4", "2.3");
   private static final String GLOBAL_OPEN_OFFICE_FOLDER =
       "\"HKEY_LOCAL_MACHINE\\SOFTWARE\\OpenOffice.org\\OpenOffice.org\\";
   private static final String GLOBAL_OPEN_OFFICE_FOLDER_64 =
@@ -0,0 +1,279 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.windows.webdav;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.silverpeas.openoffice.util.Settings;
+
+/**
+ * A token bucket limiting the bandwidth used by the transfers sharing it, so that saving a large
+ * document doesn't take the whole uplink of the user. The bytes are taken from the bucket as they
+ * are sent or received; the bucket is refilled at the current rate and holds at most a quarter of
+ * second of transfer.
+ * <p>
+ * The current rate adapts to the contention on the link: the time spent blocked in the reads and
+ * the writes is measured and, when the link barely sustains the rate, the rate is decreased;
+ * otherwise it is increased again up to the configured maximum. The background transfers moreover
+ * slow down to their minimum rate while a foreground transfer is running.
+ * </p>
+ * <p>
+ * The maximum rates, in bytes per second, are set with the settings
+ * <code>silverpeas.webdav.bandwidth.foreground</code> and
+ * <code>silverpeas.webdav.bandwidth.background</code>; 0, the default, disables the limiter and
+ * the streams are then left as is.
+ * </p>
+ *
+ * @author ehugonnet
+ */
+public class BandwidthLimiter {
+
+  static final Logger logger = Logger.getLogger(BandwidthLimiter.class.getName());
+  private static final long NANOS_PER_SECOND = 1000000000L;
+  private static final long DEFAULT_WINDOW = NANOS_PER_SECOND;
+  /**
+   * The link is considered as contended when it doesn't sustain this multiple of the rate while
+   * the transfer is blocked on it.
+   */
+  private static final double CONTENTION_MARGIN = 1.5D;
+  private static final double DECREASE_FACTOR = 0.75D;
+  private static final int INCREASE_STEPS = 10;
+  private static final int MIN_RATE_DIVISOR = 8;
+  /**
+   * A limiter that doesn't limit anything.
+   */
+  public static final BandwidthLimiter UNLIMITED = new BandwidthLimiter(0L, null);
+  /**
+   * The limiter of the transfers the user is waiting for.
+   */
+  public static final BandwidthLimiter FOREGROUND = new BandwidthLimiter(Settings.get().getLong(
+      "silverpeas.webdav.bandwidth.foreground", 0L), null);
+  /**
+   * The limiter of the transfers done behind the back of the user; it yields to the foreground
+   * transfers.
+   */
+  public static final BandwidthLimiter BACKGROUND = new BandwidthLimiter(Settings.get().getLong(
+      "silverpeas.webdav.bandwidth.background", 0L), FOREGROUND);
+  private final long maxRate;
+  private final long minRate;
+  private final long window;
+  private final BandwidthLimiter yieldTo;
+  private final AtomicInteger activeTransfers = new AtomicInteger(0);
+  private double rate;
+  private double tokens;
+  private long lastRefill;
+  private long windowStart;
+  private long windowBytes = 0L;
+  private long windowIoTime = 0L;
+
+  /**
+   * @param maxRate the maximum rate in bytes per second, 0 to not limit the transfers.
+   * @param yieldTo the limiter of the transfers having the priority over the ones of this
+   * limiter, or null.
+   */
+  public BandwidthLimiter(long maxRate, BandwidthLimiter yieldTo) {
+    this(maxRate, yieldTo, DEFAULT_WINDOW);
+  }
+
+  BandwidthLimiter(long maxRate, BandwidthLimiter yieldTo, long window) {
+    this.maxRate = Math.max(0L, maxRate);
+    this.minRate = Math.max(1L, this.maxRate / MIN_RATE_DIVISOR);
+    this.yieldTo = yieldTo;
+    this.window = window;
+    this.rate = this.maxRate;
+    this.tokens = getBurst(this.maxRate);
+    this.lastRefill = System.nanoTime();
+    this.windowStart = lastRefill;
+  }
+
+  /**
+   * @return true if the transfers are limited.
+   */
+  public boolean isEnabled() {
+    return maxRate > 0L;
+  }
+
+  /**
+   * @return the current rate in bytes per second.
+   */
+  public synchronized long getRate() {
+    return (long) getEffectiveRate();
+  }
+
+  /**
+   * @param in the stream to limit.
+   * @return the stream reading no faster than the rate of this limiter, or the stream itself if
+   * the limiter is disabled.
+   */
+  public InputStream limit(InputStream in) {
+    return isEnabled() ? new LimitedInputStream(in) : in;
+  }
+
+  /**
+   * @param out the stream to limit.
+   * @return the stream writing no faster than the rate of this limiter, or the stream itself if
+   * the limiter is disabled.
+   */
+  public OutputStream limit(OutputStream out) {
+    return isEnabled() ? new LimitedOutputStream(out) : out;
+  }
+
+  /**
+   * Notifies the start of a transfer, whether it is limited or not.
+   */
+  public void transferStarted() {
+    activeTransfers.incrementAndGet();
+  }
+
+  /**
+   * Notifies the end of a transfer.
+   */
+  public void transferEnded() {
+    activeTransfers.decrementAndGet();
+  }
+
+  /**
+   * @return true if a transfer is running.
+   */
+  public boolean isBusy() {
+    return activeTransfers.get() > 0;
+  }
+
+  /**
+   * Takes the bytes from the bucket, waiting for it to be refilled if need be.
+   */
+  void acquire(int bytes) throws InterruptedIOException {
+    long wait;
+    synchronized (this) {
+      long now = System.nanoTime();
+      double effectiveRate = getEffectiveRate();
+      tokens = Math.min(getBurst(effectiveRate), tokens + (now - lastRefill) * effectiveRate
+          / NANOS_PER_SECOND);
+      lastRefill = now;
+      tokens -= bytes;
+      wait = tokens < 0D ? (long) (-tokens * NANOS_PER_SECOND / effectiveRate) : 0L;
+    }
+    if (wait > 0L) {
+      try {
+        TimeUnit.NANOSECONDS.sleep(wait);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException(ex.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Records the time spent blocked on the link to transfer some bytes, and adapts the rate once
+   * per measure window.
+   */
+  synchronized void record(long bytes, long ioTime) {
+    windowBytes += bytes;
+    windowIoTime += ioTime;
+    long now = System.nanoTime();
+    if (now - windowStart < window) {
+      return;
+    }
+    double linkRate = windowIoTime > 0L ? windowBytes * (double) NANOS_PER_SECOND / windowIoTime
+        : Double.MAX_VALUE;
+    if (linkRate < rate * CONTENTION_MARGIN) {
+      rate = Math.max(minRate, rate * DECREASE_FACTOR);
+      logger.log(Level.FINE, "Contention on the link ({0} B/s): rate decreased to {1} B/s",
+          new Object[]{(long) linkRate, (long) rate});
+    } else {
+      rate = Math.min(maxRate, rate + (double) maxRate / INCREASE_STEPS);
+    }
+    windowStart = now;
+    windowBytes = 0L;
+    windowIoTime = 0L;
+  }
+
+  private double getEffectiveRate() {
+    if (yieldTo != null && yieldTo.isBusy()) {
+      return minRate;
+    }
+    return rate;
+  }
+
+  private static double getBurst(double rate) {
+    return Math.max(1D, rate / 4D);
+  }
+
+  private class LimitedInputStream extends FilterInputStream {
+
+    LimitedInputStream(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+      long start = System.nanoTime();
+      int c = in.read();
+      if (c >= 0) {
+        record(1L, System.nanoTime() - start);
+        acquire(1);
+      }
+      return c;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      long start = System.nanoTime();
+      int nr = in.read(b, off, len);
+      if (nr > 0) {
+        record(nr, System.nanoTime() - start);
+        acquire(nr);
+      }
+      return nr;
+    }
+  }
+
+  private class LimitedOutputStream extends FilterOutputStream {
+
+    LimitedOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      acquire(1);
+      long start = System.nanoTime();
+      out.write(b);
+      record(1L, System.nanoTime() - start);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      acquire(len);
+      long start = System.nanoTime();
+      out.write(b, off, len);
+      record(len, System.nanoTime() - start);
+    }
+  }
+}
@@ -0,0 +1,223 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.windows.webdav;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.ConnectException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.silverpeas.openoffice.util.MessageUtil;
+import org.silverpeas.openoffice.util.Settings;
+
+/**
+ * A circuit breaker on the WebDAV server of a host. Once the server failed to answer a number of
+ * consecutive requests (I/O errors, timeouts or gateway errors), the circuit is open: the requests
+ * fail at once, without waiting for the timeouts, for a while. Then a request is let through to
+ * check whether the server is back; its success closes the circuit, its failure opens it again.
+ * <p>
+ * The state of the circuit is stored in a file shared by all the launchers of the user, so that a
+ * click on a document right after a failure gets an answer at once. The file and the thresholds
+ * are set with the settings:
+ * </p>
+ * <ul>
+ * <li><code>silverpeas.webdav.breaker.file</code>: the path of the file
+ * (<code>~/.silverpeas/officelauncher-hosts.properties</code> by default);</li>
+ * <li><code>silverpeas.webdav.breaker.failures</code>: the number of consecutive failures opening
+ * the circuit (5 by default, 0 to disable the circuit breaker);</li>
+ * <li><code>silverpeas.webdav.breaker.open</code>: the time in milliseconds during which the
+ * circuit stays open (30000 by default).</li>
+ * </ul>
+ *
+ * @author ehugonnet
+ */
+public class CircuitBreaker {
+
+  static final Logger logger = Logger.getLogger(CircuitBreaker.class.getName());
+  private static final String FAILURES = ".failures";
+  private static final String OPEN_UNTIL = ".openUntil";
+  private final File store;
+  private final String host;
+  private final int threshold;
+  private final long openDuration;
+
+  /**
+   * @param store the file in which the state of the circuits is stored.
+   * @param host the host of the WebDAV server.
+   * @param threshold the number of consecutive failures opening the circuit, 0 to never open it.
+   * @param openDuration the time in milliseconds during which the circuit stays open.
+   */
+  public CircuitBreaker(File store, String host, int threshold, long openDuration) {
+    this.store = store;
+    this.host = host;
+    this.threshold = threshold;
+    this.openDuration = openDuration;
+  }
+
+  /**
+   * @param host the host of the WebDAV server.
+   * @return the circuit breaker of the host, as configured by the settings.
+   */
+  public static CircuitBreaker forHost(String host) {
+    String defaultFile = System.getProperty("user.home") + File.separatorChar + ".silverpeas"
+        + File.separatorChar + "officelauncher-hosts.properties";
+    Settings settings = Settings.get();
+    return new CircuitBreaker(new File(settings.getString("silverpeas.webdav.breaker.file",
+        defaultFile)), host, settings.getInt("silverpeas.webdav.breaker.failures", 5), settings.
+        getLong("silverpeas.webdav.breaker.open", 30000L));
+  }
+
+  /**
+   * Checks that a request can be sent to the server.
+   * @throws ConnectException if the circuit is open, as if the server refused the connection.
+   */
+  public void checkAllowed() throws ConnectException {
+    if (threshold <= 0) {
+      return;
+    }
+    long remaining = getOpenUntil() - System.currentTimeMillis();
+    if (remaining > 0L) {
+      logger.log(Level.WARNING, "The circuit of {0} is open for {1} ms", new Object[]{host,
+        remaining});
+      throw new ConnectException(String.format(MessageUtil.getMessage(
+          "error.webdav.unreachable"), host, (remaining + 999L) / 1000L));
+    }
+  }
+
+  /**
+   * Records a request answered by the server: the circuit is closed.
+   */
+  public void recordSuccess() {
+    if (threshold <= 0 || !store.isFile()) {
+      return;
+    }
+    try {
+      update(false);
+    } catch (IOException ex) {
+      logger.log(Level.WARNING, "Unable to update " + store, ex);
+    }
+  }
+
+  /**
+   * Records a request the server failed to answer; the circuit is opened if the failures reach the
+   * threshold.
+   */
+  public void recordFailure() {
+    if (threshold <= 0) {
+      return;
+    }
+    try {
+      update(true);
+    } catch (IOException ex) {
+      logger.log(Level.WARNING, "Unable to update " + store, ex);
+    }
+  }
+
+  /**
+   * @return true if the circuit is open.
+   */
+  public boolean isOpen() {
+    return threshold > 0 && getOpenUntil() > System.currentTimeMillis();
+  }
+
+  private long getOpenUntil() {
+    if (!store.isFile()) {
+      return 0L;
+    }
+    try {
+      return Long.parseLong(read().getProperty(host + OPEN_UNTIL, "0"));
+    } catch (IOException ex) {
+      logger.log(Level.WARNING, "Unable to read " + store, ex);
+    } catch (NumberFormatException ex) {
+      logger.log(Level.WARNING, "Unable to read " + store, ex);
+    }
+    return 0L;
+  }
+
+  private synchronized Properties read() throws IOException {
+    RandomAccessFile file = new RandomAccessFile(store, "r");
+    try {
+      FileLock lock = file.getChannel().lock(0L, Long.MAX_VALUE, true);
+      try {
+        Properties state = new Properties();
+        state.load(Channels.newInputStream(file.getChannel()));
+        return state;
+      } finally {
+        lock.release();
+      }
+    } finally {
+      file.close();
+    }
+  }
+
+  /**
+   * Updates the state of the circuit of the host while holding the lock of the file, as it is
+   * shared by several processes.
+   */
+  private synchronized void update(boolean failure) throws IOException {
+    store.getParentFile().mkdirs();
+    RandomAccessFile file = new RandomAccessFile(store, "rw");
+    try {
+      FileChannel channel = file.getChannel();
+      FileLock lock = channel.lock();
+      try {
+        Properties state = new Properties();
+        state.load(Channels.newInputStream(channel));
+        int failures = failure ? parseInt(state.getProperty(host + FAILURES)) + 1 : 0;
+        if (!failure && !state.containsKey(host + FAILURES)) {
+          return;
+        }
+        if (failures == 0) {
+          state.remove(host + FAILURES);
+          state.remove(host + OPEN_UNTIL);
+        } else {
+          state.setProperty(host + FAILURES, Integer.toString(failures));
+          if (failures >= threshold) {
+            logger.log(Level.WARNING, "{0} failures on {1}: the circuit is open", new Object[]{
+              failures, host});
+            state.setProperty(host + OPEN_UNTIL, Long.toString(System.currentTimeMillis()
+                + openDuration));
+          }
+        }
+        channel.truncate(0L);
+        channel.position(0L);
+        state.store(Channels.newOutputStream(channel), "Circuit breakers of the WebDAV servers");
+      } finally {
+        lock.release();
+      }
+    } finally {
+      file.close();
+    }
+  }
+
+  private static int parseInt(String value) {
+    try {
+      return value == null ? 0 : Integer.parseInt(value);
+    } catch (NumberFormatException ex) {
+      return 0;
+    }
+  }
+}
@@ -0,0 +1,270 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.windows.webdav;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import org.apache.commons.httpclient.DefaultHttpMethodRetryHandler;
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.HostConfiguration;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpConnectionManager;
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.HttpMethodBase;
+import org.apache.commons.httpclient.HttpVersion;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.NoHttpResponseException;
+import org.apache.commons.httpclient.UsernamePasswordCredentials;
+import org.apache.commons.httpclient.auth.AuthPolicy;
+import org.apache.commons.httpclient.auth.AuthScope;
+import org.apache.commons.httpclient.cookie.CookiePolicy;
+import org.apache.commons.httpclient.methods.ByteArrayRequestEntity;
+import org.apache.commons.httpclient.methods.EntityEnclosingMethod;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.apache.commons.httpclient.methods.HeadMethod;
+import org.apache.commons.httpclient.params.HttpClientParams;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+import org.apache.commons.httpclient.params.HttpMethodParams;
+import org.apache.jackrabbit.webdav.client.methods.PutMethod;
+import org.silverpeas.openoffice.AuthenticationInfo;
+import org.silverpeas.openoffice.util.Settings;
+
+/**
+ * The transport of the WebDAV requests with commons-httpclient: HTTP/1.1, with a pool of
+ * connections to the server. The credentials are sent preemptively with the Basic scheme so that
+ * no request pays for a 401 challenge; if the server asks for Digest instead, the challenge is
+ * answered once and the session cookie set by the server is then reused by all the following
+ * requests. A request that doesn't get its response in time is aborted by a watchdog.
+ *
+ * @author ehugonnet
+ */
+public class CommonsHttpTransport implements HttpTransport {
+
+  private static final Timer watchdog = new Timer("webdav-watchdog", true);
+  private final HttpClient client;
+
+  /**
+   * @param host the webdav server host name.
+   * @param authenticationInfo the credentials of the user or null if no authentication is
+   * required.
+   */
+  public CommonsHttpTransport(String host, AuthenticationInfo authenticationInfo) {
+    HostConfiguration hostConfig = new HostConfiguration();
+    hostConfig.setHost(host);
+    HttpConnectionManager connectionManager = new MultiThreadedHttpConnectionManager();
+    HttpConnectionManagerParams connectionParams = new HttpConnectionManagerParams();
+    connectionParams.setMaxConnectionsPerHost(hostConfig, WebdavManager.MAX_CONNECTIONS);
+    connectionParams.setDefaultMaxConnectionsPerHost(WebdavManager.MAX_CONNECTIONS);
+    connectionParams.setMaxTotalConnections(WebdavManager.MAX_CONNECTIONS);
+    connectionParams.setConnectionTimeout(WebdavManager.CONNECT_TIMEOUT);
+    connectionParams.setSoTimeout(WebdavManager.READ_TIMEOUT);
+    connectionManager.setParams(connectionParams);
+    HttpClientParams clientParams = new HttpClientParams();
+    clientParams.setParameter(HttpClientParams.PROTOCOL_VERSION, HttpVersion.HTTP_1_1);
+    clientParams.setCookiePolicy(CookiePolicy.BROWSER_COMPATIBILITY);
+    clientParams.setConnectionManagerTimeout(WebdavManager.CONNECT_TIMEOUT);
+    // the requests are retried by the retry policy only
+    clientParams.setParameter(HttpMethodParams.RETRY_HANDLER, new DefaultHttpMethodRetryHandler(0,
+        false));
+    if (authenticationInfo != null && authenticationInfo.getLogin() != null
+        && !authenticationInfo.getLogin().isEmpty()) {
+      clientParams.setAuthenticationPreemptive(!Settings.get().getBoolean(
+          "silverpeas.webdav.auth.nopreemptive", false));
+      clientParams.setParameter(AuthPolicy.AUTH_SCHEME_PRIORITY, Arrays.asList(AuthPolicy.DIGEST,
+          AuthPolicy.BASIC));
+    }
+    client = new HttpClient(clientParams, connectionManager);
+    client.setHostConfiguration(hostConfig);
+    if (authenticationInfo != null && authenticationInfo.getLogin() != null
+        && !authenticationInfo.getLogin().isEmpty()) {
+      client.getState().setCredentials(new AuthScope(host, AuthScope.ANY_PORT, AuthScope.ANY_REALM),
+          new UsernamePasswordCredentials(authenticationInfo.getLogin(), new String(
+          authenticationInfo.getPassword())));
+    }
+  }
+
+  @Override
+  public TransportResponse execute(TransportRequest request, long timeout) throws IOException {
+    final HttpMethodBase method = newMethod(request);
+    TimerTask abort = null;
+    if (timeout > 0L) {
+      abort = new TimerTask() {
+
+        @Override
+        public void run() {
+          method.abort();
+        }
+      };
+      watchdog.schedule(abort, timeout);
+    }
+    boolean executed = false;
+    try {
+      client.executeMethod(method);
+      executed = true;
+      request.setRequestSent(true);
+      request.setAborted(false);
+      return new MethodResponse(method);
+    } catch (IOException ex) {
+      request.setRequestSent(method.isRequestSent());
+      request.setAborted(method.isAborted());
+      if (method.isAborted()) {
+        // the method cannot be executed again
+        throw new SocketTimeoutException(request.toString());
+      }
+      if (ex instanceof NoHttpResponseException) {
+        // the connection was closed without any response, as reported by the sockets
+        SocketException closed = new SocketException(ex.getMessage());
+        closed.initCause(ex);
+        throw closed;
+      }
+      throw ex;
+    } finally {
+      if (abort != null) {
+        abort.cancel();
+      }
+      if (!executed) {
+        method.releaseConnection();
+      }
+    }
+  }
+
+  @Override
+  public void setTimeouts(int connectTimeout, int readTimeout) {
+    HttpConnectionManagerParams params = client.getHttpConnectionManager().getParams();
+    params.setConnectionTimeout(connectTimeout);
+    params.setSoTimeout(readTimeout);
+    client.getParams().setConnectionManagerTimeout(connectTimeout);
+  }
+
+  @Override
+  public String getName() {
+    return HttpTransports.COMMONS;
+  }
+
+  private static HttpMethodBase newMethod(TransportRequest request) throws IOException {
+    String url = request.getUri().getURI();
+    HttpMethodBase method;
+    if ("GET".equals(request.getMethod())) {
+      method = new GetMethod(url);
+    } else if ("HEAD".equals(request.getMethod())) {
+      method = new HeadMethod(url);
+    } else if ("PUT".equals(request.getMethod())) {
+      PutMethod put = request.getContinueTimeout() >= 0 ? new ExpectContinuePutMethod(url,
+          request.getContinueTimeout()) : new PutMethod(url);
+      put.setRequestEntity(request.getEntity());
+      method = put;
+    } else {
+      TransportMethod other = new TransportMethod(request.getMethod(), url);
+      if (request.getBody() != null) {
+        other.setRequestEntity(new ByteArrayRequestEntity(request.getBody(), request.getHeader(
+            "Content-Type")));
+      }
+      method = other;
+    }
+    for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+      method.setRequestHeader(header.getKey(), header.getValue());
+    }
+    return method;
+  }
+
+  /**
+   * A request of a method commons-httpclient doesn't provide, such as LOCK or PROPFIND.
+   */
+  private static class TransportMethod extends EntityEnclosingMethod {
+
+    private final String name;
+
+    TransportMethod(String name, String url) {
+      super(url);
+      this.name = name;
+    }
+
+    @Override
+    public String getName() {
+      return name;
+    }
+  }
+
+  /**
+   * The response of an executed method.
+   */
+  static class MethodResponse implements TransportResponse {
+
+    private final HttpMethod method;
+
+    MethodResponse(HttpMethod method) {
+      this.method = method;
+    }
+
+    @Override
+    public int getStatusCode() {
+      return method.getStatusCode();
+    }
+
+    @Override
+    public String getStatusText() {
+      return method.getStatusText();
+    }
+
+    @Override
+    public String getHeader(String name) {
+      Header header = method.getResponseHeader(name);
+      return header == null ? null : header.getValue();
+    }
+
+    @Override
+    public List<String> getHeaders(String name) {
+      List<String> values = new ArrayList<String>();
+      for (Header header : method.getResponseHeaders(name)) {
+        values.add(header.getValue());
+      }
+      return values;
+    }
+
+    @Override
+    public long getContentLength() {
+      if (method instanceof HttpMethodBase) {
+        return ((HttpMethodBase) method).getResponseContentLength();
+      }
+      return -1L;
+    }
+
+    @Override
+    public InputStream getBody() throws IOException {
+      InputStream body = method.getResponseBodyAsStream();
+      return body == null ? new ByteArrayInputStream(new byte[0]) : body;
+    }
+
+    @Override
+    public void close() {
+      method.releaseConnection();
+    }
+  }
+}
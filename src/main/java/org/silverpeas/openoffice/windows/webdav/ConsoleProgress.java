@@ -0,0 +1,99 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.windows.webdav;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reports the progress of a transfer on the console, in headless mode. A line is printed at most
+ * once per second, and only when the progress has advanced by at least one percent.
+ *
+ * @author ehugonnet
+ */
+public class ConsoleProgress implements ProgressDisplay {
+
+  private static final long INTERVAL = TimeUnit.SECONDS.toNanos(1L);
+  private final PrintStream out;
+  private volatile String title = "";
+  private volatile String message = "";
+  private volatile long maximum = 0L;
+  private long nextReport = System.nanoTime();
+  private long reportedPercent = -1L;
+  private long transferred = 0L;
+
+  public ConsoleProgress() {
+    this(System.err);
+  }
+
+  ConsoleProgress(PrintStream out) {
+    this.out = out;
+  }
+
+  @Override
+  public void setTitle(String title) {
+    this.title = title;
+  }
+
+  @Override
+  public void setMessage(String message) {
+    this.message = message.replaceAll("\\s+", " ").trim();
+  }
+
+  @Override
+  public void setMaximum(long max) {
+    this.maximum = max;
+  }
+
+  @Override
+  public boolean isCanceled() {
+    return false;
+  }
+
+  @Override
+  public synchronized void progressChanged(long transferred) {
+    this.transferred = transferred;
+    long now = System.nanoTime();
+    if (now - nextReport >= 0L) {
+      nextReport = now + INTERVAL;
+      report();
+    }
+  }
+
+  @Override
+  public synchronized void close() {
+    report();
+  }
+
+  private void report() {
+    String prefix = (title + ' ' + message).trim();
+    if (maximum > 0L) {
+      long percent = Math.min(transferred, maximum) * 100L / maximum;
+      if (percent != reportedPercent) {
+        reportedPercent = percent;
+        out.println(prefix + ": " + percent + "% (" + transferred + '/' + maximum
+            + " bytes)");
+      }
+    } else if (transferred > 0L) {
+      out.println(prefix + ": " + transferred + " bytes");
+    }
+  }
+}
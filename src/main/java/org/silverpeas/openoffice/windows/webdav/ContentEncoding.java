@@ -0,0 +1,150 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.windows.webdav;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import org.apache.commons.httpclient.HttpMethod;
+
+/**
+ * Helper for the content-coding negotiation of the transfers: the server is told which codings
+ * are understood and the response bodies are decoded on the fly according to the coding the
+ * server chose.
+ *
+ * @author ehugonnet
+ */
+public class ContentEncoding {
+
+  public static final String HEADER_ACCEPT_ENCODING = "Accept-Encoding";
+  public static final String HEADER_CONTENT_ENCODING = "Content-Encoding";
+  public static final String GZIP = "gzip";
+  public static final String DEFLATE = "deflate";
+  public static final String ACCEPTED_ENCODINGS = GZIP + ", " + DEFLATE;
+  /**
+   * The extensions of the documents whose content is already compressed (zip containers, images):
+   * encoding them again only costs CPU time on both ends.
+   */
+  private static final Set<String> COMPRESSED_EXTENSIONS = new HashSet<String>(Arrays.asList(
+      "docx", "docm", "dotx", "dotm", "xlsx", "xlsm", "xlsb", "xltx", "xltm", "xlam", "pptx",
+      "pptm", "potx", "potm", "ppsx", "ppsm", "ppam", "odt", "ott", "ods", "ots", "odp", "otp",
+      "odg", "otg", "odf", "odb", "sxw", "stw", "sxg", "sxc", "stc", "sxi", "sti", "sxd", "std",
+      "sxm", "zip", "jar", "gz", "7z", "jpg", "jpeg", "png", "gif"));
+
+  private ContentEncoding() {
+  }
+
+  /**
+   * Is it worth compressing the content of the specified file for its transfer?
+   * @param fileName the name of the transferred file.
+   * @return false if the content of the file is already compressed, true otherwise.
+   */
+  public static boolean isCompressible(String fileName) {
+    int index = fileName.lastIndexOf('.');
+    if (index < 0) {
+      return true;
+    }
+    return !COMPRESSED_EXTENSIONS.contains(fileName.substring(index + 1).toLowerCase(
+        Locale.ENGLISH));
+  }
+
+  /**
+   * Wraps the specified response body so that it is decoded according to the content coding of
+   * the response.
+   * @param method the executed method.
+   * @param body the raw body of the response.
+   * @return the decoded body of the response.
+   * @throws IOException
+   */
+  public static InputStream decode(HttpMethod method, InputStream body) throws IOException {
+    return decode(new CommonsHttpTransport.MethodResponse(method), body);
+  }
+
+  /**
+   * Wraps the specified response body so that it is decoded according to the content coding of
+   * the response.
+   * @param response the response of the server.
+   * @param body the raw body of the response.
+   * @return the decoded body of the response.
+   * @throws IOException
+   */
+  public static InputStream decode(TransportResponse response, InputStream body)
+      throws IOException {
+    String header = response.getHeader(HEADER_CONTENT_ENCODING);
+    if (header == null) {
+      return body;
+    }
+    String encoding = header.trim();
+    if (GZIP.equalsIgnoreCase(encoding) || "x-gzip".equalsIgnoreCase(encoding)) {
+      return new GZIPInputStream(body, WebdavManager.BUFFER_SIZE);
+    }
+    if (DEFLATE.equalsIgnoreCase(encoding)) {
+      PushbackInputStream in = new PushbackInputStream(body, 2);
+      return new InflaterInputStream(in, new Inflater(!isZlibWrapped(in)),
+          WebdavManager.BUFFER_SIZE);
+    }
+    if ("identity".equalsIgnoreCase(encoding) || encoding.isEmpty()) {
+      return body;
+    }
+    throw new IOException("Unsupported content encoding: " + encoding);
+  }
+
+  /**
+   * @param response the response of the server.
+   * @return true if the body of the response is encoded with a content coding other than
+   * identity.
+   */
+  public static boolean isEncoded(TransportResponse response) {
+    String header = response.getHeader(HEADER_CONTENT_ENCODING);
+    return header != null && !header.trim().isEmpty() && !"identity".equalsIgnoreCase(header.
+        trim());
+  }
+
+  /**
+   * Many servers send the deflate coding as a raw deflate stream instead of the zlib format
+   * required by RFC 2616: the zlib header, if any, is looked for in the first two bytes of the
+   * body, which are then pushed back.
+   */
+  private static boolean isZlibWrapped(PushbackInputStream in) throws IOException {
+    byte[] header = new byte[2];
+    int length = 0;
+    int c;
+    while (length < header.length && (c = in.read(header, length, header.length - length)) > -1) {
+      length += c;
+    }
+    if (length > 0) {
+      in.unread(header, 0, length);
+    }
+    if (length < header.length) {
+      return true;
+    }
+    int cmf = header[0] & 0xFF;
+    int flg = header[1] & 0xFF;
+    return (cmf & 0x0F) == 8 && (cmf >> 4) <= 7 && (cmf * 256 + flg) % 31 == 0;
+  }
+}
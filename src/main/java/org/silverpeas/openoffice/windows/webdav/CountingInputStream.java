@@ -0,0 +1,77 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.windows.webdav;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Counts the bytes read from the underlying stream, for instance the bytes really received on the
+ * wire before any content decoding.
+ *
+ * @author ehugonnet
+ */
+public class CountingInputStream extends FilterInputStream {
+
+  private long count = 0L;
+
+  public CountingInputStream(InputStream in) {
+    super(in);
+  }
+
+  @Override
+  public int read() throws IOException {
+    int c = in.read();
+    if (c >= 0) {
+      count++;
+    }
+    return c;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    int nr = in.read(b, off, len);
+    if (nr > 0) {
+      count += nr;
+    }
+    return nr;
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    long nr = in.skip(n);
+    count += nr;
+    return nr;
+  }
+
+  @Override
+  public boolean markSupported() {
+    return false;
+  }
+
+  /**
+   * @return the number of bytes read so far.
+   */
+  public long getCount() {
+    return count;
+  }
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.windows.webdav;
+
+/**
+ * A resource as described by one response of a PROPFIND multistatus.
+ *
+ * @author ehugonnet
+ */
+public class DavResource {
+
+  private final String href;
+  private final boolean collection;
+  private final long contentLength;
+  private final long lastModified;
+  private final String etag;
+
+  public DavResource(String href, boolean collection, long contentLength, long lastModified,
+      String etag) {
+    this.href = href;
+    this.collection = collection;
+    this.contentLength = contentLength;
+    this.lastModified = lastModified;
+    this.etag = etag;
+  }
+
+  /**
+   * The href of the resource, as sent by the server (escaped).
+   * @return the href of the resource.
+   */
+  public String getHref() {
+    return href;
+  }
+
+  /**
+   * The last segment of the href, that is the name of the resource (still escaped).
+   * @return the name of the resource.
+   */
+  public String getName() {
+    String path = href;
+    if (path.endsWith("/")) {
+      path = path.substring(0, path.length() - 1);
+    }
+    return path.substring(path.lastIndexOf('/') + 1);
+  }
+
+  public boolean isCollection() {
+    return collection;
+  }
+
+  /**
+   * @return the size in bytes of the resource or -1 if the server didn't send it.
+   */
+  public long getContentLength() {
+    return contentLength;
+  }
+
+  /**
+   * @return the last modification date in milliseconds or -1 if the server didn't send it.
+   */
+  public long getLastModified() {
+    return lastModified;
+  }
+
+  public String getEtag() {
+    return etag;
+  }
+
+  @Override
+  public String toString() {
+    return href + (collection ? " (collection)" : " (" + contentLength + " bytes)");
+  }
+}
@@ -0,0 +1,152 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.windows.webdav;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import static org.silverpeas.openoffice.windows.webdav.MultiStatusParser.DAV_NAMESPACE;
+
+/**
+ * Encoder and decoder of the small XML bodies exchanged to lock and to list the WebDAV
+ * resources: the lockinfo and propfind requests, and the lockdiscovery property answered to a
+ * LOCK. They are written and read with StAX, without building any DOM tree. The multistatus
+ * responses are decoded by {@link MultiStatusParser}.
+ *
+ * @author ehugonnet
+ */
+public class DavXmlCodec {
+
+  private static final String PREFIX = "D";
+  private static final XMLInputFactory inputFactory = MultiStatusParser.createFactory();
+  private static final XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+
+  private DavXmlCodec() {
+  }
+
+  /**
+   * Encodes the body of a LOCK request asking for an exclusive write lock.
+   * @param owner the owner of the lock, or null.
+   * @return the lockinfo body.
+   */
+  public static String encodeLockInfo(String owner) {
+    try {
+      StringWriter buffer = new StringWriter(256);
+      XMLStreamWriter writer = startDocument(buffer, "lockinfo");
+      writer.writeStartElement(PREFIX, "lockscope", DAV_NAMESPACE);
+      writer.writeEmptyElement(PREFIX, "exclusive", DAV_NAMESPACE);
+      writer.writeEndElement();
+      writer.writeStartElement(PREFIX, "locktype", DAV_NAMESPACE);
+      writer.writeEmptyElement(PREFIX, "write", DAV_NAMESPACE);
+      writer.writeEndElement();
+      if (owner != null) {
+        writer.writeStartElement(PREFIX, "owner", DAV_NAMESPACE);
+        writer.writeCharacters(owner);
+        writer.writeEndElement();
+      }
+      return endDocument(writer, buffer);
+    } catch (XMLStreamException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  /**
+   * Encodes the body of a PROPFIND request asking for the specified DAV: properties.
+   * @param properties the local names of the properties.
+   * @return the propfind body.
+   */
+  public static String encodePropFind(String... properties) {
+    try {
+      StringWriter buffer = new StringWriter(256);
+      XMLStreamWriter writer = startDocument(buffer, "propfind");
+      writer.writeStartElement(PREFIX, "prop", DAV_NAMESPACE);
+      for (String property : properties) {
+        writer.writeEmptyElement(PREFIX, property, DAV_NAMESPACE);
+      }
+      writer.writeEndElement();
+      return endDocument(writer, buffer);
+    } catch (XMLStreamException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  /**
+   * Decodes the lock token from the body of the response to a LOCK, that is the first locktoken
+   * of the lockdiscovery property.
+   * @param body the response body.
+   * @return the lock token or null if the body doesn't describe any active lock.
+   * @throws IOException if the body isn't well formed.
+   */
+  public static String decodeLockToken(InputStream body) throws IOException {
+    try {
+      XMLStreamReader reader = inputFactory.createXMLStreamReader(body);
+      try {
+        boolean inLockToken = false;
+        while (reader.hasNext()) {
+          int event = reader.next();
+          if (event == XMLStreamConstants.START_ELEMENT && DAV_NAMESPACE.equals(reader.
+              getNamespaceURI())) {
+            if ("locktoken".equals(reader.getLocalName())) {
+              inLockToken = true;
+            } else if (inLockToken && "href".equals(reader.getLocalName())) {
+              String token = reader.getElementText().trim();
+              if (!token.isEmpty()) {
+                return token;
+              }
+            }
+          } else if (event == XMLStreamConstants.END_ELEMENT && "locktoken".equals(reader.
+              getLocalName())) {
+            inLockToken = false;
+          }
+        }
+        return null;
+      } finally {
+        reader.close();
+      }
+    } catch (XMLStreamException ex) {
+      throw new IOException(ex.getMessage(), ex);
+    }
+  }
+
+  private static XMLStreamWriter startDocument(StringWriter buffer, String root)
+      throws XMLStreamException {
+    XMLStreamWriter writer = outputFactory.createXMLStreamWriter(buffer);
+    writer.writeStartDocument("UTF-8", "1.0");
+    writer.setPrefix(PREFIX, DAV_NAMESPACE);
+    writer.writeStartElement(PREFIX, root, DAV_NAMESPACE);
+    writer.writeNamespace(PREFIX, DAV_NAMESPACE);
+    return writer;
+  }
+
+  private static String endDocument(XMLStreamWriter writer, StringWriter buffer)
+      throws XMLStreamException {
+    writer.writeEndDocument();
+    writer.close();
+    return buffer.toString();
+  }
+}
@@ -0,0 +1,117 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.windows.webdav;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.httpclient.HttpConnection;
+import org.apache.commons.httpclient.HttpException;
+import org.apache.commons.httpclient.HttpParser;
+import org.apache.commons.httpclient.HttpState;
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.StatusLine;
+import org.apache.commons.httpclient.params.HttpMethodParams;
+import org.apache.jackrabbit.webdav.client.methods.PutMethod;
+
+/**
+ * A PUT request negotiating the sending of its body with an <code>Expect: 100-continue</code>
+ * header. The body is only sent once the server has answered with an interim 100 response, or
+ * once the continue timeout is elapsed for the servers ignoring the header. If the server answers
+ * right away with a final status (lock lost, authentication required, ...), the body is never
+ * sent and the connection is closed.
+ * <p>
+ * commons-httpclient supports this negotiation but with a hard-coded timeout of 3 seconds, hence
+ * this method.
+ * </p>
+ *
+ * @author ehugonnet
+ */
+public class ExpectContinuePutMethod extends PutMethod {
+
+  static final Logger logger = Logger.getLogger(ExpectContinuePutMethod.class.getName());
+  private static final int MAX_INTERIM_RESPONSE_SIZE = 8192;
+  private static final String CHARSET = "US-ASCII";
+  private final int continueTimeout;
+  private boolean rejectedBeforeBody = false;
+
+  /**
+   * @param uri the URI of the resource to update.
+   * @param continueTimeout the time in milliseconds to wait for the interim response before
+   * sending the body anyway.
+   */
+  public ExpectContinuePutMethod(String uri, int continueTimeout) {
+    super(uri);
+    this.continueTimeout = continueTimeout;
+    getParams().setBooleanParameter(HttpMethodParams.USE_EXPECT_CONTINUE, true);
+  }
+
+  /**
+   * Is the request rejected by the server before its body was sent?
+   * @return true if the final response of the server was received in place of the interim one.
+   */
+  public boolean isRejectedBeforeBody() {
+    return rejectedBeforeBody;
+  }
+
+  @Override
+  protected void writeRequest(HttpState state, HttpConnection conn) throws IOException,
+      HttpException {
+    rejectedBeforeBody = false;
+    writeRequestLine(state, conn);
+    writeRequestHeaders(state, conn);
+    conn.writeLine();
+    conn.flushRequestOutputStream();
+    if (getRequestHeader("Expect") == null || !conn.getResponseInputStream().markSupported()) {
+      logger.log(Level.FINE, "No 100 (continue) negotiation for this request");
+    } else if (conn.isResponseAvailable(continueTimeout)) {
+      InputStream in = conn.getResponseInputStream();
+      in.mark(MAX_INTERIM_RESPONSE_SIZE);
+      String line = HttpParser.readLine(in, CHARSET);
+      if (isContinue(line)) {
+        HttpParser.parseHeaders(in, CHARSET);
+      } else {
+        // the final response will be read as usual by the method
+        in.reset();
+        rejectedBeforeBody = true;
+        logger.log(Level.INFO, "Upload rejected before sending the body: {0}", line);
+        return;
+      }
+    } else {
+      logger.log(Level.FINE, "No 100 (continue) received in {0} ms: sending the body",
+          continueTimeout);
+    }
+    writeRequestBody(state, conn);
+    conn.flushRequestOutputStream();
+  }
+
+  @Override
+  protected boolean shouldCloseConnection(HttpConnection conn) {
+    // the announced body wasn't sent: the connection cannot be reused
+    return rejectedBeforeBody || super.shouldCloseConnection(conn);
+  }
+
+  private static boolean isContinue(String line) throws HttpException {
+    return line != null && StatusLine.startsWithHTTP(line)
+        && new StatusLine(line).getStatusCode() == HttpStatus.SC_CONTINUE;
+  }
+}
@@ -0,0 +1,60 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.windows.webdav;
+
+import java.io.IOException;
+
+/**
+ * The HTTP client sending the requests of the {@link WebdavManager}. The retries, the circuit
+ * breaker and the metrics are handled by the manager, whatever the transport; a transport only
+ * has to send one request and to give back its response once its status is received, the body of
+ * the response being left unread.
+ * <p>
+ * The transports are created with {@link HttpTransports}.
+ * </p>
+ *
+ * @author ehugonnet
+ */
+public interface HttpTransport {
+
+  /**
+   * Sends the request once.
+   * @param request the request to send.
+   * @param timeout the time in milliseconds to send the request and to receive the status of its
+   * response, 0 for no limit. Once elapsed, the request is aborted.
+   * @return the response, to close once read.
+   * @throws java.net.SocketTimeoutException if the request was aborted by its timeout.
+   * @throws IOException
+   */
+  TransportResponse execute(TransportRequest request, long timeout) throws IOException;
+
+  /**
+   * @param connectTimeout the time in milliseconds to establish a connection with the server.
+   * @param readTimeout the time in milliseconds to wait for data from the server.
+   */
+  void setTimeouts(int connectTimeout, int readTimeout);
+
+  /**
+   * @return the name of the transport, as given to {@link HttpTransports#newTransport(String,
+   * String, org.silverpeas.openoffice.AuthenticationInfo)}.
+   */
+  String getName();
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.windows.webdav;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.silverpeas.openoffice.AuthenticationInfo;
+import org.silverpeas.openoffice.util.Settings;
+
+/**
+ * Creates the transports of the WebDAV requests. The transport is chosen with the setting
+ * <code>silverpeas.webdav.transport</code>:
+ * <ul>
+ * <li><code>commons</code> (the default): commons-httpclient, HTTP/1.1 only, one request at a time
+ * per connection;</li>
+ * <li><code>jdk</code>: the HTTP client of the JDK (java.net.http, Java 11 or later), which
+ * negotiates HTTP/2 with the server so that the concurrent transfers share one multiplexed
+ * connection. It only supports the Basic authentication, sent preemptively. On the older JVMs,
+ * commons-httpclient is used instead.</li>
+ * </ul>
+ *
+ * @author ehugonnet
+ */
+public class HttpTransports {
+
+  static final Logger logger = Logger.getLogger(HttpTransports.class.getName());
+  public static final String COMMONS = "commons";
+  public static final String JDK = "jdk";
+  static final String TRANSPORT = Settings.get().getString("silverpeas.webdav.transport",
+      COMMONS);
+  private static final String JDK_TRANSPORT_CLASS =
+      "org.silverpeas.openoffice.windows.webdav.JdkHttpTransport";
+
+  private HttpTransports() {
+  }
+
+  /**
+   * @param host the host of the WebDAV server.
+   * @param authenticationInfo the credentials of the user or null if no authentication is
+   * required.
+   * @return the transport chosen by the settings.
+   */
+  public static HttpTransport newTransport(String host, AuthenticationInfo authenticationInfo) {
+    return newTransport(TRANSPORT, host, authenticationInfo);
+  }
+
+  /**
+   * @param name the name of the transport: commons or jdk.
+   * @param host the host of the WebDAV server.
+   * @param authenticationInfo the credentials of the user or null if no authentication is
+   * required.
+   * @return the transport.
+   */
+  public static HttpTransport newTransport(String name, String host,
+      AuthenticationInfo authenticationInfo) {
+    if (JDK.equals(name)) {
+      if (isJdkClientAvailable()) {
+        try {
+          // loaded by name: the class is only compiled and loadable from Java 11
+          return (HttpTransport) Class.forName(JDK_TRANSPORT_CLASS).getDeclaredConstructor(
+              AuthenticationInfo.class).newInstance(authenticationInfo);
+        } catch (Exception ex) {
+          logger.log(Level.WARNING, "Unable to create the JDK transport", ex);
+        } catch (LinkageError ex) {
+          logger.log(Level.WARNING, "Unable to create the JDK transport", ex);
+        }
+      } else {
+        logger.log(Level.WARNING, "The JDK HTTP client requires Java 11: commons-httpclient used");
+      }
+    } else if (!COMMONS.equals(name)) {
+      logger.log(Level.WARNING, "Unknown transport {0}: commons-httpclient used", name);
+    }
+    return new CommonsHttpTransport(host, authenticationInfo);
+  }
+
+  static boolean isJdkClientAvailable() {
+    try {
+      Class.forName("java.net.http.HttpClient");
+      Class.forName(JDK_TRANSPORT_CLASS);
+      return true;
+    } catch (ClassNotFoundException ex) {
+      return false;
+    } catch (LinkageError ex) {
+      return false;
+    }
+  }
+}
@@ -1,63 +0,0 @@
-/**
- * Copyright (C) 2000 - 2009 Silverpeas
- *
- * This program is free software: you can redistribute it and/or modify
- * it under the terms of the GNU Affero General Public License as
- * published by the Free Software Foundation, either version 3 of the
- * License, or (at your option) any later version.
- *
- * As a special exception to the terms and conditions of version 3.0 of
- * the GPL, you may redistribute this Program in connection with Free/Libre
- * Open Source Software ("FLOSS") applications as described in Silverpeas's
- * FLOSS exception.  You should have received a copy of the text describing
- * the FLOSS exception, and it is also available here:
- * "http://repository.silverpeas.com/legal/licensing"
- *
- * This program is distributed in the hope that it will be useful,
- * but WITHOUT ANY WARRANTY; without even the implied warranty of
- * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
- * GNU Affero General Public License for more details.
- *
- * You should have received a copy of the GNU Affero General Public License
- * along with this program.  If not, see <http://www.gnu.org/licenses/>.
- */
-
-/*
- * To change this template, choose Tools | Templates
- * and open the template in the editor.
- */
-package org.silverpeas.openoffice.windows.webdav;
-
-import java.beans.PropertyChangeEvent;
-import java.beans.PropertyChangeListener;
-import java.util.HashSet;
-import java.util.Set;
-
-/**
- * @author ehugonnet
- */
-public class InputStreamMonitor {
-  Set<PropertyChangeListener> listeners = new HashSet<PropertyChangeListener>();
-  private int progress = 0;
-
-  public void setProgress(int newProgress) {
-    PropertyChangeEvent event =
-        new PropertyChangeEvent(this, "progress", this.progress, newProgress);
-    this.progress = newProgress;
-    firePropertyChange(event);
-  }
-
-  public void firePropertyChange(PropertyChangeEvent event) {
-    for (PropertyChangeListener listener : listeners) {
-      listener.propertyChange(event);
-    }
-  }
-
-  public void addPropertyChangeListener(PropertyChangeListener listener) {
-    listeners.add(listener);
-  }
-
-  public void removePropertyChangeListener(PropertyChangeListener listener) {
-    listeners.remove(listener);
-  }
-}
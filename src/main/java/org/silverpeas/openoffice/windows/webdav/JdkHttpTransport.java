@@ -0,0 +1,482 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.windows.webdav;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.net.ConnectException;
+import java.net.CookieManager;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.net.http.HttpResponse.ResponseInfo;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.httpclient.HttpStatus;
+import org.silverpeas.openoffice.AuthenticationInfo;
+
+/**
+ * The transport of the WebDAV requests with the HTTP client of the JDK. HTTP/2 is negotiated with
+ * the server (ALPN over TLS, upgrade from HTTP/1.1 otherwise), so that the concurrent requests of
+ * a folder check-out are multiplexed on a single connection; the client falls back to HTTP/1.1
+ * with the servers that don't support it. The requests are sent asynchronously, the caller only
+ * waiting up to the request timeout for the response, and the files are streamed to the server.
+ * <p>
+ * Compared to {@link CommonsHttpTransport}: only the Basic authentication is supported, sent
+ * preemptively; the redirections aren't followed; the read timeout bounds the wait for each part
+ * of the body once the response is received, but not the wait for the response itself, bounded
+ * by the request timeout only; and the client has its own timeout for the
+ * <code>100 (continue)</code> interim response.
+ * </p>
+ * <p>
+ * This class depends on java.net.http and is only loaded by {@link HttpTransports} on Java 11 or
+ * later.
+ * </p>
+ *
+ * @author ehugonnet
+ */
+class JdkHttpTransport implements HttpTransport {
+
+  static final Logger logger = Logger.getLogger(JdkHttpTransport.class.getName());
+  private final CookieManager cookies = new CookieManager();
+  private final String authorization;
+  private volatile HttpClient client;
+  private volatile int readTimeout = WebdavManager.READ_TIMEOUT;
+
+  JdkHttpTransport(AuthenticationInfo authenticationInfo) {
+    if (authenticationInfo != null && authenticationInfo.getLogin() != null
+        && !authenticationInfo.getLogin().isEmpty()) {
+      String credentials = authenticationInfo.getLogin() + ':' + new String(authenticationInfo.
+          getPassword());
+      authorization = "Basic " + Base64.getEncoder().encodeToString(credentials.getBytes(
+          StandardCharsets.UTF_8));
+    } else {
+      authorization = null;
+    }
+    client = newClient(WebdavManager.CONNECT_TIMEOUT);
+  }
+
+  private HttpClient newClient(int connectTimeout) {
+    HttpClient.Builder builder = HttpClient.newBuilder().version(HttpClient.Version.HTTP_2).
+        followRedirects(HttpClient.Redirect.NEVER).cookieHandler(cookies);
+    if (connectTimeout > 0) {
+      builder.connectTimeout(Duration.ofMillis(connectTimeout));
+    }
+    return builder.build();
+  }
+
+  @Override
+  public TransportResponse execute(TransportRequest request, long timeout) throws IOException {
+    Upload upload = request.getBody() == null && request.getEntity() != null ? new Upload(
+        request.getEntity()) : null;
+    HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(request.getUri().
+        getEscapedURI())).method(request.getMethod(), newBodyPublisher(request, upload));
+    for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+      builder.header(header.getKey(), header.getValue());
+    }
+    if (authorization != null) {
+      builder.header("Authorization", authorization);
+    }
+    if (request.getContinueTimeout() >= 0) {
+      builder.expectContinue(true);
+    }
+    request.setAborted(false);
+    final int bodyTimeout = readTimeout;
+    CompletableFuture<HttpResponse<InputStream>> future = client.sendAsync(builder.build(),
+        new BodyHandler<InputStream>() {
+
+          @Override
+          public BodySubscriber<InputStream> apply(ResponseInfo info) {
+            return new BodyStream(bodyTimeout);
+          }
+        });
+    try {
+      HttpResponse<InputStream> response = timeout > 0L ? future.get(timeout,
+          TimeUnit.MILLISECONDS) : future.get();
+      request.setRequestSent(true);
+      logger.log(Level.FINE, "{0}: {1}", new Object[]{request, response.version()});
+      return new Response(response);
+    } catch (TimeoutException ex) {
+      future.cancel(true);
+      request.setAborted(true);
+      throw new SocketTimeoutException(request.toString());
+    } catch (InterruptedException ex) {
+      future.cancel(true);
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException(request.toString());
+    } catch (ExecutionException ex) {
+      Throwable cause = ex.getCause();
+      request.setRequestSent(!(cause instanceof ConnectException
+          || cause instanceof HttpConnectTimeoutException));
+      if (cause instanceof IOException) {
+        throw normalize((IOException) cause);
+      }
+      throw new IOException(request.toString(), cause);
+    } finally {
+      if (upload != null) {
+        upload.close();
+      }
+    }
+  }
+
+  /**
+   * The timeouts of the client, and the connections closed without any response it reports with a
+   * bare IOException, are turned into the exceptions thrown by the sockets, the ones the callers
+   * (retry policy, outbox) know.
+   */
+  private static IOException normalize(IOException ex) {
+    IOException normalized;
+    if (ex instanceof HttpConnectTimeoutException) {
+      normalized = new ConnectException(ex.getMessage());
+    } else if (ex instanceof HttpTimeoutException) {
+      normalized = new SocketTimeoutException(ex.getMessage());
+    } else if (ex.getClass() == IOException.class && (ex.getCause() instanceof SocketException
+        || ex.getCause() instanceof EOFException)) {
+      normalized = new SocketException(ex.getMessage());
+    } else {
+      return ex;
+    }
+    normalized.initCause(ex);
+    return normalized;
+  }
+
+  /**
+   * The XML bodies are sent at once; the files are streamed from the disk through a pipe fed by
+   * the request entity, with their length when it is known.
+   */
+  private static BodyPublisher newBodyPublisher(TransportRequest request, Upload upload) {
+    if (request.getBody() != null) {
+      return BodyPublishers.ofByteArray(request.getBody());
+    }
+    if (upload == null) {
+      return BodyPublishers.noBody();
+    }
+    BodyPublisher publisher = BodyPublishers.ofInputStream(upload);
+    if (request.getEntity().getContentLength() >= 0L) {
+      return BodyPublishers.fromPublisher(publisher, request.getEntity().getContentLength());
+    }
+    return publisher;
+  }
+
+  /**
+   * The upload of a file through pipes, each one fed by its own thread as the client may read the
+   * body more than once. Once the exchange is over, successful or not, the pipes are closed and
+   * their writers interrupted, so that no writer stays blocked on a pipe nobody reads, keeping the
+   * file open.
+   */
+  private static class Upload implements Supplier<InputStream> {
+
+    private static final long JOIN_TIMEOUT = 1000L;
+    private final MonitoredFileRequestEntity entity;
+    private final List<PipedInputStream> pipes = new ArrayList<PipedInputStream>();
+    private final List<Thread> writers = new ArrayList<Thread>();
+
+    Upload(MonitoredFileRequestEntity entity) {
+      this.entity = entity;
+    }
+
+    @Override
+    public synchronized InputStream get() {
+      final PipedOutputStream out = new PipedOutputStream();
+      PipedInputStream in;
+      try {
+        in = new PipedInputStream(out, WebdavManager.BUFFER_SIZE);
+      } catch (IOException ex) {
+        throw new IllegalStateException(ex);
+      }
+      Thread writer = newWriter(entity, out);
+      pipes.add(in);
+      writers.add(writer);
+      writer.start();
+      return in;
+    }
+
+    void close() {
+      List<Thread> started;
+      synchronized (this) {
+        for (PipedInputStream pipe : pipes) {
+          try {
+            pipe.close();
+          } catch (IOException ex) {
+            logger.log(Level.FINE, "Unable to close the upload pipe", ex);
+          }
+        }
+        started = new ArrayList<Thread>(writers);
+      }
+      for (Thread writer : started) {
+        writer.interrupt();
+        try {
+          writer.join(JOIN_TIMEOUT);
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+    }
+  }
+
+  private static Thread newWriter(final MonitoredFileRequestEntity entity,
+      final PipedOutputStream out) {
+    Thread writer = new Thread("webdav-upload") {
+
+      @Override
+      public void run() {
+        try {
+          entity.writeRequest(out);
+        } catch (IOException ex) {
+          // the pipe is broken: the reading side fails the request
+          logger.log(Level.FINE, "Upload interrupted", ex);
+        } finally {
+          try {
+            out.close();
+          } catch (IOException ex) {
+            logger.log(Level.FINE, "Upload interrupted", ex);
+          }
+        }
+      }
+    };
+    writer.setDaemon(true);
+    return writer;
+  }
+
+  @Override
+  public void setTimeouts(int connectTimeout, int readTimeout) {
+    client = newClient(connectTimeout);
+    this.readTimeout = readTimeout;
+  }
+
+  @Override
+  public String getName() {
+    return HttpTransports.JDK;
+  }
+
+  /**
+   * The response of a request, whose body is read as it is received.
+   */
+  private static class Response implements TransportResponse {
+
+    private final HttpResponse<InputStream> response;
+
+    Response(HttpResponse<InputStream> response) {
+      this.response = response;
+    }
+
+    @Override
+    public int getStatusCode() {
+      return response.statusCode();
+    }
+
+    @Override
+    public String getStatusText() {
+      String text = HttpStatus.getStatusText(response.statusCode());
+      return text == null ? "" : text;
+    }
+
+    @Override
+    public String getHeader(String name) {
+      return response.headers().firstValue(name).orElse(null);
+    }
+
+    @Override
+    public List<String> getHeaders(String name) {
+      return response.headers().allValues(name);
+    }
+
+    @Override
+    public long getContentLength() {
+      return response.headers().firstValueAsLong("Content-Length").orElse(-1L);
+    }
+
+    @Override
+    public InputStream getBody() {
+      InputStream body = response.body();
+      return body == null ? new ByteArrayInputStream(new byte[0]) : body;
+    }
+
+    @Override
+    public void close() {
+      try {
+        response.body().close();
+      } catch (IOException ex) {
+        logger.log(Level.FINE, "Unable to close the response", ex);
+      }
+    }
+  }
+
+  /**
+   * The body of a response, read as it is received. A read waiting longer than the read timeout
+   * for the next part of the body fails with a {@link SocketTimeoutException}, as a read on a
+   * socket with the same timeout, and cancels the reception of the body.
+   */
+  private static class BodyStream extends InputStream implements BodySubscriber<InputStream> {
+
+    private static final List<ByteBuffer> END = new ArrayList<ByteBuffer>(0);
+    private final BlockingQueue<List<ByteBuffer>> received =
+        new LinkedBlockingQueue<List<ByteBuffer>>();
+    private final int readTimeout;
+    private volatile Flow.Subscription subscription;
+    private volatile Throwable error;
+    private Iterator<ByteBuffer> buffers = Collections.<ByteBuffer>emptyIterator();
+    private ByteBuffer buffer;
+    private boolean ended = false;
+    private boolean closed = false;
+
+    BodyStream(int readTimeout) {
+      this.readTimeout = readTimeout;
+    }
+
+    @Override
+    public CompletionStage<InputStream> getBody() {
+      return CompletableFuture.<InputStream>completedFuture(this);
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+      this.subscription = subscription;
+      subscription.request(1L);
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> item) {
+      received.offer(item);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      error = throwable;
+      received.offer(END);
+    }
+
+    @Override
+    public void onComplete() {
+      received.offer(END);
+    }
+
+    @Override
+    public int read() throws IOException {
+      ByteBuffer next = nextBuffer();
+      return next == null ? -1 : next.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] data, int offset, int length) throws IOException {
+      if (length == 0) {
+        return 0;
+      }
+      ByteBuffer next = nextBuffer();
+      if (next == null) {
+        return -1;
+      }
+      int count = Math.min(length, next.remaining());
+      next.get(data, offset, count);
+      return count;
+    }
+
+    @Override
+    public int available() {
+      return buffer == null ? 0 : buffer.remaining();
+    }
+
+    @Override
+    public void close() {
+      if (!closed) {
+        closed = true;
+        Flow.Subscription current = subscription;
+        if (current != null) {
+          current.cancel();
+        }
+        received.clear();
+      }
+    }
+
+    private ByteBuffer nextBuffer() throws IOException {
+      if (closed) {
+        throw new IOException("Stream closed");
+      }
+      while (buffer == null || !buffer.hasRemaining()) {
+        if (buffers.hasNext()) {
+          buffer = buffers.next();
+          continue;
+        }
+        if (ended) {
+          return null;
+        }
+        List<ByteBuffer> next;
+        try {
+          next = readTimeout > 0 ? received.poll(readTimeout, TimeUnit.MILLISECONDS) : received.
+              take();
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException();
+        }
+        if (next == null) {
+          close();
+          throw new SocketTimeoutException("Read timed out");
+        }
+        if (next == END) {
+          ended = true;
+          if (error instanceof IOException) {
+            throw (IOException) error;
+          }
+          if (error != null) {
+            throw new IOException(error);
+          }
+          return null;
+        }
+        buffers = next.iterator();
+        subscription.request(1L);
+      }
+      return buffer;
+    }
+  }
+}
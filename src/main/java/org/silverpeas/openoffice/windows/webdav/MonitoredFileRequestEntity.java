@@ -0,0 +1,148 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.windows.webdav;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+import org.apache.commons.httpclient.methods.RequestEntity;
+
+/**
+ * A request entity streaming a local file to the server while notifying the progress of the
+ * upload. The file is read again each time the request is written, so the whole document is never
+ * held in memory. The content can be gzip-encoded on the fly, in which case it is sent chunked as
+ * its final size isn't known beforehand. The digests of the content can be computed while it is
+ * sent, and the upload can be limited by a bandwidth limiter.
+ *
+ * @author ehugonnet
+ */
+public class MonitoredFileRequestEntity implements RequestEntity {
+
+  private final File file;
+  private final String contentType;
+  private final ProgressListener listener;
+  private final boolean gzip;
+  private final TransferDigest digest;
+  private BandwidthLimiter limiter = BandwidthLimiter.UNLIMITED;
+  private long bytesWritten = 0L;
+
+  public MonitoredFileRequestEntity(File file, String contentType,
+      ProgressListener listener) {
+    this(file, contentType, listener, false);
+  }
+
+  public MonitoredFileRequestEntity(File file, String contentType,
+      ProgressListener listener, boolean gzip) {
+    this(file, contentType, listener, gzip, null);
+  }
+
+  public MonitoredFileRequestEntity(File file, String contentType,
+      ProgressListener listener, boolean gzip, TransferDigest digest) {
+    this.file = file;
+    this.contentType = contentType;
+    this.listener = listener;
+    this.gzip = gzip;
+    this.digest = digest;
+  }
+
+  /**
+   * @param limiter the limiter of the bandwidth used by the upload.
+   */
+  public void setBandwidthLimiter(BandwidthLimiter limiter) {
+    this.limiter = limiter;
+  }
+
+  /**
+   * @return true if the content is sent gzip-encoded.
+   */
+  public boolean isGzip() {
+    return gzip;
+  }
+
+  /**
+   * @return the number of bytes sent on the wire by the last writing of the request.
+   */
+  public long getBytesWritten() {
+    return bytesWritten;
+  }
+
+  @Override
+  public boolean isRepeatable() {
+    return true;
+  }
+
+  @Override
+  public void writeRequest(OutputStream out) throws IOException {
+    MonitoredInputStream in = new MonitoredInputStream(new BufferedInputStream(
+        new FileInputStream(file)));
+    if (listener != null) {
+      in.addProgressListener(listener);
+    }
+    CountingOutputStream wire = new CountingOutputStream(limiter.limit(out));
+    try {
+      GZIPOutputStream encoder = null;
+      OutputStream body = wire;
+      if (gzip) {
+        encoder = new GZIPOutputStream(wire, WebdavManager.BUFFER_SIZE);
+        body = encoder;
+      }
+      if (digest != null) {
+        body = digest.digestContent(body);
+      }
+      byte[] data = new byte[WebdavManager.BUFFER_SIZE];
+      int c;
+      while ((c = in.read(data)) > -1) {
+        body.write(data, 0, c);
+      }
+      if (encoder != null) {
+        // the connection stream mustn't be closed
+        encoder.finish();
+      }
+      body.flush();
+    } finally {
+      in.close();
+      bytesWritten = wire.getCount();
+    }
+  }
+
+  /**
+   * @return the size of the file to send.
+   */
+  public long getFileLength() {
+    return file.length();
+  }
+
+  @Override
+  public long getContentLength() {
+    if (gzip) {
+      return -1L;
+    }
+    return file.length();
+  }
+
+  @Override
+  public String getContentType() {
+    return contentType;
+  }
+}
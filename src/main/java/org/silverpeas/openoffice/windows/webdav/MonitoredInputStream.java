@@ -24,65 +24,59 @@
 
 package org.silverpeas.openoffice.windows.webdav;
 
-import java.beans.PropertyChangeListener;
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
 /**
+ * An input stream notifying its listeners of the number of bytes read so far. The notification
+ * doesn't allocate anything, so it can be done on each read.
+ *
  * @author ehugonnet
  */
 public class MonitoredInputStream extends FilterInputStream {
 
-  private int nbread = 0;
-  private int size = 0;
-  private InputStreamMonitor monitor;
+  private static final ProgressListener[] NO_LISTENER = new ProgressListener[0];
+  private long nbread = 0L;
+  private long marked = 0L;
+  private volatile ProgressListener[] listeners = NO_LISTENER;
 
   public MonitoredInputStream(InputStream stream) {
     super(stream);
-    this.monitor = new InputStreamMonitor();
-    try {
-      size = stream.available();
-    } catch (IOException ioe) {
-      size = 0;
-    }
-  }
-
-  @Override
-  public void close() throws IOException {
-    super.close();
   }
 
   @Override
   public int read(byte[] b) throws IOException {
-    int nr = in.read(b);
-    if (nr > 0) {
-      monitor.setProgress(nbread += nr);
-    }
-    return nr;
+    return read(b, 0, b.length);
   }
 
   @Override
   public int read(byte[] b, int off, int len) throws IOException {
     int nr = in.read(b, off, len);
     if (nr > 0) {
-      monitor.setProgress(nbread += nr);
+      fireProgress(nbread += nr);
     }
     return nr;
   }
 
+  @Override
+  public synchronized void mark(int readlimit) {
+    in.mark(readlimit);
+    marked = nbread;
+  }
+
   @Override
   public synchronized void reset() throws IOException {
     in.reset();
-    nbread = size - in.available();
-    monitor.setProgress(nbread);
+    nbread = marked;
+    fireProgress(nbread);
   }
 
   @Override
   public long skip(long n) throws IOException {
     long nr = in.skip(n);
     if (nr > 0) {
-      monitor.setProgress(nbread += nr);
+      fireProgress(nbread += nr);
     }
     return nr;
   }
@@ -91,16 +85,41 @@ public class MonitoredInputStream extends FilterInputStream {
   public int read() throws IOException {
     int c = in.read();
     if (c >= 0) {
-      monitor.setProgress(++nbread);
+      fireProgress(++nbread);
     }
     return c;
   }
 
-  public void addPropertyChangeListener(PropertyChangeListener listener) {
-    monitor.addPropertyChangeListener(listener);
+  /**
+   * @return the number of bytes read so far.
+   */
+  public long getBytesRead() {
+    return nbread;
+  }
+
+  public synchronized void addProgressListener(ProgressListener listener) {
+    ProgressListener[] newListeners = new ProgressListener[listeners.length + 1];
+    System.arraycopy(listeners, 0, newListeners, 0, listeners.length);
+    newListeners[listeners.length] = listener;
+    listeners = newListeners;
   }
 
-  public void removePropertyChangeListener(PropertyChangeListener listener) {
-    monitor.removePropertyChangeListener(listener);
+  public synchronized void removeProgressListener(ProgressListener listener) {
+    for (int i = 0; i < listeners.length; i++) {
+      if (listeners[i] == listener) {
+        ProgressListener[] newListeners = new ProgressListener[listeners.length - 1];
+        System.arraycopy(listeners, 0, newListeners, 0, i);
+        System.arraycopy(listeners, i + 1, newListeners, i, newListeners.length - i);
+        listeners = newListeners;
+        return;
+      }
+    }
+  }
+
+  private void fireProgress(long progress) {
+    ProgressListener[] current = listeners;
+    for (int i = 0; i < current.length; i++) {
+      current[i].progressChanged(progress);
+    }
   }
 }
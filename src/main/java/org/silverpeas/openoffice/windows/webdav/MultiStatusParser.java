@@ -0,0 +1,185 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.windows.webdav;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Streaming parser of a WebDAV multistatus response body. The body is read event by event with
+ * StAX, so no DOM tree is ever built whatever the number of members of the collection. Only the
+ * properties of a propstat with a 2xx status are kept.
+ *
+ * @author ehugonnet
+ */
+public class MultiStatusParser {
+
+  static final String DAV_NAMESPACE = "DAV:";
+  private static final XMLInputFactory factory = createFactory();
+
+  private MultiStatusParser() {
+  }
+
+  /**
+   * Parses the specified multistatus body.
+   * @param body the response body.
+   * @return the resources described in the multistatus, in the order of the document.
+   * @throws IOException if the body isn't a well formed multistatus.
+   */
+  public static List<DavResource> parse(InputStream body) throws IOException {
+    List<DavResource> resources = new ArrayList<DavResource>();
+    try {
+      XMLStreamReader reader = factory.createXMLStreamReader(body);
+      try {
+        ResponseBuilder response = null;
+        while (reader.hasNext()) {
+          if (reader.next() == XMLStreamConstants.START_ELEMENT && DAV_NAMESPACE.equals(reader.
+              getNamespaceURI())) {
+            String name = reader.getLocalName();
+            if ("response".equals(name)) {
+              response = new ResponseBuilder();
+            } else if (response != null) {
+              response.startElement(name, reader);
+            }
+          } else if (reader.getEventType() == XMLStreamConstants.END_ELEMENT && response != null
+              && DAV_NAMESPACE.equals(reader.getNamespaceURI())) {
+            String name = reader.getLocalName();
+            if ("response".equals(name)) {
+              if (response.href != null) {
+                resources.add(response.build());
+              }
+              response = null;
+            } else if ("propstat".equals(name)) {
+              response.endPropstat();
+            }
+          }
+        }
+      } finally {
+        reader.close();
+      }
+    } catch (XMLStreamException ex) {
+      throw new IOException(ex.getMessage(), ex);
+    }
+    return resources;
+  }
+
+  static long parseDate(String date) {
+    if (date == null || date.isEmpty()) {
+      return -1L;
+    }
+    SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+    format.setTimeZone(TimeZone.getTimeZone("GMT"));
+    try {
+      return format.parse(date.trim()).getTime();
+    } catch (ParseException ex) {
+      return -1L;
+    }
+  }
+
+  static long parseLong(String value) {
+    if (value == null || value.isEmpty()) {
+      return -1L;
+    }
+    try {
+      return Long.parseLong(value.trim());
+    } catch (NumberFormatException ex) {
+      return -1L;
+    }
+  }
+
+  static XMLInputFactory createFactory() {
+    XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+    inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+    inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+    inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+    return inputFactory;
+  }
+
+  /**
+   * Collects the values of one response element; the values of the current propstat are only
+   * committed once its status is known to be a success.
+   */
+  private static class ResponseBuilder {
+
+    String href;
+    boolean collection = false;
+    long contentLength = -1L;
+    long lastModified = -1L;
+    String etag;
+    private boolean propCollection = false;
+    private String propContentLength;
+    private String propLastModified;
+    private String propEtag;
+    private boolean success = false;
+
+    void startElement(String name, XMLStreamReader reader) throws XMLStreamException {
+      if ("href".equals(name) && href == null) {
+        href = reader.getElementText().trim();
+      } else if ("collection".equals(name)) {
+        propCollection = true;
+      } else if ("getcontentlength".equals(name)) {
+        propContentLength = reader.getElementText();
+      } else if ("getlastmodified".equals(name)) {
+        propLastModified = reader.getElementText();
+      } else if ("getetag".equals(name)) {
+        propEtag = reader.getElementText().trim();
+      } else if ("status".equals(name)) {
+        String status = reader.getElementText().trim();
+        int start = status.indexOf(' ');
+        success = start > 0 && status.startsWith("2", start + 1);
+      }
+    }
+
+    void endPropstat() {
+      if (success) {
+        collection = collection || propCollection;
+        if (propContentLength != null) {
+          contentLength = parseLong(propContentLength);
+        }
+        if (propLastModified != null) {
+          lastModified = parseDate(propLastModified);
+        }
+        if (propEtag != null) {
+          etag = propEtag;
+        }
+      }
+      propCollection = false;
+      propContentLength = null;
+      propLastModified = null;
+      propEtag = null;
+      success = false;
+    }
+
+    DavResource build() {
+      return new DavResource(href, collection, contentLength, lastModified, etag);
+    }
+  }
+}
@@ -0,0 +1,55 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.windows.webdav;
+
+/**
+ * The display of the progress of a transfer to the user.
+ *
+ * @see ProgressDisplays
+ * @author ehugonnet
+ */
+public interface ProgressDisplay extends ProgressListener {
+
+  /**
+   * @param title the title of the display.
+   */
+  void setTitle(String title);
+
+  /**
+   * @param message the message describing the transfer.
+   */
+  void setMessage(String message);
+
+  /**
+   * @param max the size of the transfer.
+   */
+  void setMaximum(long max);
+
+  /**
+   * @return true if the user asked to cancel the transfer.
+   */
+  boolean isCanceled();
+
+  /**
+   * Closes the display once the transfer is over.
+   */
+  void close();
+}
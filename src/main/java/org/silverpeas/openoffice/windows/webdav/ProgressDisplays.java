@@ -0,0 +1,62 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.windows.webdav;
+
+import org.silverpeas.openoffice.util.HeadlessMode;
+
+/**
+ * Creates the displays of the progress of the transfers according to the mode of the launcher: on
+ * the console in headless mode, with Swing otherwise.
+ *
+ * @author ehugonnet
+ */
+public class ProgressDisplays {
+
+  private ProgressDisplays() {
+  }
+
+  /**
+   * @return a display of the progress of an upload, or of several concurrent transfers.
+   */
+  public static ProgressDisplay newUploadDisplay() {
+    if (HeadlessMode.isEnabled()) {
+      return new ConsoleProgress();
+    }
+    return new UploadProgressBar();
+  }
+
+  /**
+   * @param message the message describing the download.
+   * @param maximum the size of the download or a negative value if it is unknown.
+   * @return a display of the progress of a download the user can cancel.
+   */
+  public static ProgressDisplay newDownloadDisplay(String message, long maximum) {
+    ProgressDisplay display;
+    if (HeadlessMode.isEnabled()) {
+      display = new ConsoleProgress();
+      display.setMessage(message);
+    } else {
+      display = new TransferProgressMonitor(message);
+    }
+    display.setMaximum(maximum);
+    return display;
+  }
+}
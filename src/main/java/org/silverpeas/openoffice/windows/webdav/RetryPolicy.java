@@ -0,0 +1,200 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.windows.webdav;
+
+import java.io.IOException;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import javax.net.ssl.SSLException;
+import org.apache.commons.httpclient.util.DateParseException;
+import org.apache.commons.httpclient.util.DateUtil;
+import org.silverpeas.openoffice.util.Settings;
+
+/**
+ * The policy of retry of the WebDAV requests failing with a transient error. A request is retried
+ * with an exponential backoff with full jitter, up to a maximum number of attempts and as long as
+ * the session of retries doesn't exceed a maximum elapsed time. The delay asked by the server
+ * with a <code>Retry-After</code> header is honored, unless it exceeds this time.
+ * <p>
+ * Only the requests whose replay is harmless are retried:
+ * </p>
+ * <ul>
+ * <li>any request that couldn't be sent completely, as the server cannot have processed it;</li>
+ * <li>any request refused by the server before processing it (408, 429 and 503);</li>
+ * <li>the idempotent requests (GET, HEAD, PUT, PROPFIND, UNLOCK, ...) failing with an I/O error
+ * or with a gateway error (502 and 504). A LOCK isn't idempotent: if its response is lost, the
+ * document may be locked already.</li>
+ * </ul>
+ * The bodies of the PUT requests are read again from the file on disk at each attempt.
+ * <p>
+ * The default policy is set with the settings <code>silverpeas.webdav.retry.attempts
+ * </code> (4), <code>silverpeas.webdav.retry.delay</code> (500 ms),
+ * <code>silverpeas.webdav.retry.maxDelay</code> (8000 ms) and
+ * <code>silverpeas.webdav.retry.maxElapsed</code> (60000 ms).
+ * </p>
+ *
+ * @author ehugonnet
+ */
+public class RetryPolicy {
+
+  public static final RetryPolicy DEFAULT = new RetryPolicy(Settings.get().getInt(
+      "silverpeas.webdav.retry.attempts", 4), Settings.get().getLong(
+      "silverpeas.webdav.retry.delay", 500L), Settings.get().getLong(
+      "silverpeas.webdav.retry.maxDelay", 8000L), Settings.get().getLong(
+      "silverpeas.webdav.retry.maxElapsed", 60000L));
+  /**
+   * No retry at all.
+   */
+  public static final RetryPolicy NONE = new RetryPolicy(1, 0L, 0L, 0L);
+  static final String HEADER_RETRY_AFTER = "Retry-After";
+  static final int SC_REQUEST_TIMEOUT = 408;
+  static final int SC_TOO_MANY_REQUESTS = 429;
+  static final int SC_BAD_GATEWAY = 502;
+  static final int SC_SERVICE_UNAVAILABLE = 503;
+  static final int SC_GATEWAY_TIMEOUT = 504;
+  private static final Set<String> IDEMPOTENT_METHODS = new HashSet<String>(Arrays.asList("GET",
+      "HEAD", "OPTIONS", "PUT", "DELETE", "PROPFIND", "UNLOCK"));
+  private final int maxAttempts;
+  private final long initialDelay;
+  private final long maxDelay;
+  private final long maxElapsed;
+  private final Random random = new Random();
+
+  /**
+   * @param maxAttempts the maximum number of attempts of a request, the first one included.
+   * @param initialDelay the upper bound in milliseconds of the delay before the first retry.
+   * @param maxDelay the upper bound in milliseconds of the delay between two attempts.
+   * @param maxElapsed the maximum time in milliseconds from the first attempt to the start of the
+   * last retry.
+   */
+  public RetryPolicy(int maxAttempts, long initialDelay, long maxDelay, long maxElapsed) {
+    this.maxAttempts = Math.max(1, maxAttempts);
+    this.initialDelay = Math.max(0L, initialDelay);
+    this.maxDelay = Math.max(this.initialDelay, maxDelay);
+    this.maxElapsed = Math.max(0L, maxElapsed);
+  }
+
+  public int getMaxAttempts() {
+    return maxAttempts;
+  }
+
+  /**
+   * Computes the delay before retrying a request that failed with an I/O error.
+   * @param request the failed request.
+   * @param failure the error.
+   * @param attempt the number of attempts done so far.
+   * @param elapsed the time in milliseconds since the first attempt.
+   * @return the delay in milliseconds before the next attempt, or -1 if the request mustn't be
+   * retried.
+   */
+  public long getRetryDelay(TransportRequest request, IOException failure, int attempt,
+      long elapsed) {
+    return getRetryDelay(request.getMethod(), request.isRequestSent(), failure, attempt, elapsed);
+  }
+
+  private long getRetryDelay(String method, boolean requestSent, IOException failure, int attempt,
+      long elapsed) {
+    if (failure instanceof UnknownHostException || failure instanceof SSLException
+        || !(isIdempotent(method) || !requestSent)) {
+      return -1L;
+    }
+    return getDelay(attempt, elapsed, -1L);
+  }
+
+  /**
+   * Computes the delay before retrying a request that the server answered with an error.
+   * @param request the executed request.
+   * @param response the response of the server.
+   * @param attempt the number of attempts done so far.
+   * @param elapsed the time in milliseconds since the first attempt.
+   * @return the delay in milliseconds before the next attempt, or -1 if the request mustn't be
+   * retried.
+   */
+  public long getRetryDelay(TransportRequest request, TransportResponse response, int attempt,
+      long elapsed) {
+    return getRetryDelay(request.getMethod(), response.getStatusCode(), getRetryAfter(response.
+        getHeader(HEADER_RETRY_AFTER)), attempt, elapsed);
+  }
+
+  private long getRetryDelay(String method, int status, long retryAfter, int attempt,
+      long elapsed) {
+    switch (status) {
+      case SC_REQUEST_TIMEOUT:
+      case SC_TOO_MANY_REQUESTS:
+      case SC_SERVICE_UNAVAILABLE:
+        return getDelay(attempt, elapsed, retryAfter);
+      case SC_BAD_GATEWAY:
+      case SC_GATEWAY_TIMEOUT:
+        return isIdempotent(method) ? getDelay(attempt, elapsed, retryAfter) : -1L;
+      default:
+        return -1L;
+    }
+  }
+
+  static boolean isIdempotent(String method) {
+    return IDEMPOTENT_METHODS.contains(method);
+  }
+
+  private long getDelay(int attempt, long elapsed, long retryAfter) {
+    if (attempt >= maxAttempts) {
+      return -1L;
+    }
+    long delay = retryAfter;
+    if (delay < 0L) {
+      long ceiling = initialDelay << Math.min(attempt - 1, 30);
+      if (ceiling <= 0L || ceiling > maxDelay) {
+        ceiling = maxDelay;
+      }
+      synchronized (random) {
+        delay = (long) (random.nextDouble() * ceiling);
+      }
+    }
+    if (elapsed + delay > maxElapsed) {
+      return -1L;
+    }
+    return delay;
+  }
+
+  /**
+   * @param header the value of the Retry-After header, or null.
+   * @return the delay in milliseconds asked by the server, or -1 if none.
+   */
+  static long getRetryAfter(String header) {
+    if (header == null) {
+      return -1L;
+    }
+    String value = header.trim();
+    try {
+      return Math.max(0L, Long.parseLong(value) * 1000L);
+    } catch (NumberFormatException ex) {
+      try {
+        Date date = DateUtil.parseDate(value);
+        return Math.max(0L, date.getTime() - System.currentTimeMillis());
+      } catch (DateParseException dpex) {
+        return -1L;
+      }
+    }
+  }
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.windows.webdav;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import org.silverpeas.openoffice.util.Settings;
+
+/**
+ * A progress listener coalescing the progress notifications of a transfer: the transferring
+ * thread only records the last value while a Swing timer renders it on the event dispatch thread
+ * at a fixed frame rate, and only if it has changed since the last frame.
+ * <p>
+ * The frame rate is given by the setting <code>silverpeas.progress.fps</code> (10 frames
+ * per second by default).
+ * </p>
+ *
+ * @author ehugonnet
+ */
+public abstract class ThrottledProgress implements ProgressListener {
+
+  static final int FRAMES_PER_SECOND = Math.max(1, Settings.get().getInt("silverpeas.progress.fps",
+      10));
+  private final Timer timer;
+  private final AtomicBoolean started = new AtomicBoolean(false);
+  private volatile long transferred = 0L;
+  private long rendered = -1L;
+
+  public ThrottledProgress() {
+    timer = new Timer(1000 / FRAMES_PER_SECOND, new ActionListener() {
+
+      @Override
+      public void actionPerformed(ActionEvent e) {
+        renderIfChanged();
+      }
+    });
+    timer.setCoalesce(true);
+  }
+
+  @Override
+  public void progressChanged(long transferred) {
+    this.transferred = transferred;
+    if (!started.get() && started.compareAndSet(false, true)) {
+      timer.start();
+    }
+  }
+
+  /**
+   * @return the last number of bytes notified by the transfer.
+   */
+  public long getTransferred() {
+    return transferred;
+  }
+
+  /**
+   * Stops the rendering of the progress after a last frame with the final value.
+   */
+  public void stop() {
+    timer.stop();
+    if (started.get()) {
+      SwingUtilities.invokeLater(new Runnable() {
+
+        @Override
+        public void run() {
+          renderIfChanged();
+        }
+      });
+    }
+  }
+
+  private void renderIfChanged() {
+    long current = transferred;
+    if (current != rendered) {
+      rendered = current;
+      render(current);
+    }
+  }
+
+  /**
+   * Renders the progress of the transfer. Always invoked on the event dispatch thread.
+   * @param transferred the number of bytes transferred so far.
+   */
+  protected abstract void render(long transferred);
+}
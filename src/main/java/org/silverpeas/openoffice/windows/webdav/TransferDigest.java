@@ -0,0 +1,306 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.windows.webdav;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.httpclient.HttpMethod;
+import org.silverpeas.openoffice.util.MessageUtil;
+
+/**
+ * The digests of a document computed while it is transferred, so that its integrity is checked
+ * without reading it again. The SHA-256 digest of the content is always computed; the digests
+ * announced by the server are computed too and checked once the transfer is done:
+ * <ul>
+ * <li>the <code>Digest</code> (RFC 3230) header is a digest of the decoded content;</li>
+ * <li>the <code>Repr-Digest</code> (RFC 9530) header is a digest of the representation, so of the
+ * decoded content if the response has no content coding, of the body as sent otherwise;</li>
+ * <li>the <code>Content-MD5</code> header is the MD5 digest of the body as sent, so before any
+ * content decoding.</li>
+ * </ul>
+ * The digests are encoded in base64, as in the HTTP headers. A transfer digest is reset each time
+ * the transfer is started again (retry of a request).
+ *
+ * @author ehugonnet
+ */
+public class TransferDigest {
+
+  public static final String SHA_256 = "SHA-256";
+  static final String SHA_1 = "SHA-1";
+  static final String SHA_512 = "SHA-512";
+  static final String MD5 = "MD5";
+  static final String HEADER_WANT_DIGEST = "Want-Digest";
+  static final String WANTED_DIGESTS = "SHA-256;q=1, MD5;q=0.5";
+  static final String HEADER_DIGEST = "Digest";
+  static final String HEADER_REPR_DIGEST = "Repr-Digest";
+  static final String HEADER_CONTENT_MD5 = "Content-MD5";
+  static final Logger logger = Logger.getLogger(TransferDigest.class.getName());
+  private final Map<String, MessageDigest> contentDigests =
+      new LinkedHashMap<String, MessageDigest>();
+  private final Map<String, String> expectedDigests = new LinkedHashMap<String, String>();
+  private final Map<String, MessageDigest> wireDigests =
+      new LinkedHashMap<String, MessageDigest>();
+  private final Map<String, String> expectedWireDigests = new LinkedHashMap<String, String>();
+  private final Map<String, String> values = new LinkedHashMap<String, String>();
+
+  public TransferDigest() {
+    contentDigests.put(SHA_256, newDigest(SHA_256));
+  }
+
+  /**
+   * Reads the digests announced in the headers of the response, to check them once the body is
+   * read. The unsupported algorithms are ignored.
+   * @param method the executed method.
+   */
+  public void expect(HttpMethod method) {
+    expect(new CommonsHttpTransport.MethodResponse(method));
+  }
+
+  /**
+   * Reads the digests announced in the headers of the response, to check them once the body is
+   * read. The unsupported algorithms are ignored.
+   * @param response the response of the server.
+   */
+  public void expect(TransportResponse response) {
+    clearExpectations();
+    for (String header : response.getHeaders(HEADER_DIGEST)) {
+      parse(header, expectedDigests);
+    }
+    Map<String, String> representation = ContentEncoding.isEncoded(response)
+        ? expectedWireDigests : expectedDigests;
+    for (String header : response.getHeaders(HEADER_REPR_DIGEST)) {
+      parse(header, representation);
+    }
+    String contentMd5 = response.getHeader(HEADER_CONTENT_MD5);
+    if (contentMd5 != null && !contentMd5.trim().isEmpty()) {
+      expectedWireDigests.put(MD5, contentMd5.trim());
+    }
+    for (String algorithm : expectedDigests.keySet()) {
+      if (!contentDigests.containsKey(algorithm)) {
+        contentDigests.put(algorithm, newDigest(algorithm));
+      }
+    }
+  }
+
+  /**
+   * Reads the digests announced in the headers of the response to an upload, to check them
+   * against the content just sent. The content isn't read again, so only the algorithms by which
+   * it was digested while it was sent are checked; the other ones are ignored. The
+   * <code>Content-MD5</code> header of the response is the digest of its own body, so it is
+   * ignored too.
+   * @param response the response of the server.
+   * @param encoded true if the content was sent with a content coding: the representation stored
+   * by the server is then the encoded one, which isn't digested.
+   */
+  public void expectUploaded(TransportResponse response, boolean encoded) {
+    clearExpectations();
+    for (String header : response.getHeaders(HEADER_DIGEST)) {
+      parse(header, expectedDigests);
+    }
+    if (!encoded) {
+      for (String header : response.getHeaders(HEADER_REPR_DIGEST)) {
+        parse(header, expectedDigests);
+      }
+    }
+    expectedDigests.keySet().retainAll(contentDigests.keySet());
+  }
+
+  /**
+   * @param in the body as received.
+   * @return the stream computing the digests of the body as received, if the server sent some.
+   */
+  public InputStream digestWire(InputStream in) {
+    wireDigests.clear();
+    InputStream digested = in;
+    for (String algorithm : expectedWireDigests.keySet()) {
+      MessageDigest digest = newDigest(algorithm);
+      wireDigests.put(algorithm, digest);
+      digested = new DigestInputStream(digested, digest);
+    }
+    return digested;
+  }
+
+  /**
+   * @param in the decoded content.
+   * @return the stream computing the digests of the content while it is read.
+   */
+  public InputStream digestContent(InputStream in) {
+    reset();
+    InputStream digested = in;
+    for (MessageDigest digest : contentDigests.values()) {
+      digested = new DigestInputStream(digested, digest);
+    }
+    return digested;
+  }
+
+  /**
+   * @param out the stream to which the content is written.
+   * @return the stream computing the digests of the content while it is written.
+   */
+  public OutputStream digestContent(OutputStream out) {
+    reset();
+    OutputStream digested = out;
+    for (MessageDigest digest : contentDigests.values()) {
+      digested = new DigestOutputStream(digested, digest);
+    }
+    return digested;
+  }
+
+  /**
+   * Completes the digests of the transferred content and checks them against the ones announced
+   * by the server, if any.
+   * @param resource the name of the transferred resource, for the error message.
+   * @throws IOException if a digest doesn't match.
+   */
+  public void verify(String resource) throws IOException {
+    values.clear();
+    for (Map.Entry<String, MessageDigest> digest : contentDigests.entrySet()) {
+      values.put(digest.getKey(), Base64.encodeBase64String(digest.getValue().digest()));
+    }
+    for (Map.Entry<String, String> expected : expectedDigests.entrySet()) {
+      check(resource, expected.getKey(), expected.getValue(), values.get(expected.getKey()));
+    }
+    for (Map.Entry<String, MessageDigest> digest : wireDigests.entrySet()) {
+      check(resource, digest.getKey() + " (wire)", expectedWireDigests.get(digest.getKey()),
+          Base64.encodeBase64String(digest.getValue().digest()));
+    }
+  }
+
+  /**
+   * Computes the SHA-256 digest of a local file, as it is computed during a transfer.
+   * @param file the file.
+   * @return the digest encoded in base64.
+   * @throws IOException
+   */
+  public static String sha256(File file) throws IOException {
+    MessageDigest digest = newDigest(SHA_256);
+    InputStream in = new DigestInputStream(new BufferedInputStream(new FileInputStream(file)),
+        digest);
+    try {
+      byte[] data = new byte[8192];
+      while (in.read(data) > -1) {
+      }
+    } finally {
+      in.close();
+    }
+    return Base64.encodeBase64String(digest.digest());
+  }
+
+  /**
+   * @return the SHA-256 digest of the content, once verified.
+   */
+  public String getSha256() {
+    return values.get(SHA_256);
+  }
+
+  /**
+   * @return the digests of the content by algorithm, once verified.
+   */
+  public Map<String, String> getValues() {
+    return Collections.unmodifiableMap(values);
+  }
+
+  /**
+   * @return true if the server announced a digest of the transferred document.
+   */
+  public boolean isVerifiable() {
+    return !expectedDigests.isEmpty() || !expectedWireDigests.isEmpty();
+  }
+
+  private void clearExpectations() {
+    expectedDigests.clear();
+    expectedWireDigests.clear();
+    wireDigests.clear();
+  }
+
+  private void reset() {
+    values.clear();
+    for (MessageDigest digest : contentDigests.values()) {
+      digest.reset();
+    }
+  }
+
+  private void check(String resource, String algorithm, String expected, String actual)
+      throws IOException {
+    if (!expected.equals(actual)) {
+      logger.log(Level.SEVERE, "{0}: {1} {2} expected but {3} computed", new Object[]{resource,
+        algorithm, expected, actual});
+      throw new IOException(MessageUtil.getMessage("error.webdav.digest") + ' ' + resource);
+    }
+    logger.log(Level.FINE, "{0}: {1} verified", new Object[]{resource, algorithm});
+  }
+
+  /**
+   * Parses a list of digests: <code>SHA-256=base64, MD5=base64</code> (RFC 3230) or
+   * <code>sha-256=:base64:</code> (RFC 9530).
+   */
+  private static void parse(String header, Map<String, String> digests) {
+    for (String item : header.split(",")) {
+      int separator = item.indexOf('=');
+      if (separator <= 0) {
+        continue;
+      }
+      String algorithm = getAlgorithm(item.substring(0, separator).trim());
+      String value = item.substring(separator + 1).trim();
+      if (value.length() > 1 && value.startsWith(":") && value.endsWith(":")) {
+        value = value.substring(1, value.length() - 1);
+      }
+      if (algorithm != null && !value.isEmpty()) {
+        digests.put(algorithm, value);
+      }
+    }
+  }
+
+  private static String getAlgorithm(String name) {
+    String algorithm = name.toUpperCase(Locale.ENGLISH);
+    if ("SHA".equals(algorithm) || SHA_1.equals(algorithm)) {
+      return SHA_1;
+    }
+    if (SHA_256.equals(algorithm) || SHA_512.equals(algorithm) || MD5.equals(algorithm)) {
+      return algorithm;
+    }
+    return null;
+  }
+
+  private static MessageDigest newDigest(String algorithm) {
+    try {
+      return MessageDigest.getInstance(algorithm);
+    } catch (NoSuchAlgorithmException ex) {
+      // SHA-1, SHA-256 and MD5 are required of every Java platform
+      throw new IllegalStateException(ex);
+    }
+  }
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.windows.webdav;
+
+import javax.swing.ProgressMonitor;
+import javax.swing.SwingUtilities;
+import javax.swing.UIManager;
+
+/**
+ * Displays the progress of a transfer in a {@link ProgressMonitor} the user can cancel. Unlike
+ * <code>ProgressMonitorInputStream</code>, the monitor is only touched on the event dispatch
+ * thread, at the frame rate of {@link ThrottledProgress}, and it supports transfers over 2 GB.
+ *
+ * @author ehugonnet
+ */
+public class TransferProgressMonitor extends ThrottledProgress implements ProgressDisplay {
+
+  private static final int SCALE = 1000;
+  private volatile String title = null;
+  private volatile String message;
+  private volatile long maximum = -1L;
+  private ProgressMonitor monitor = null;
+  private volatile boolean canceled = false;
+
+  /**
+   * @param message the message displayed by the monitor.
+   */
+  public TransferProgressMonitor(String message) {
+    this.message = message;
+  }
+
+  @Override
+  public void setTitle(String title) {
+    this.title = title;
+  }
+
+  @Override
+  public void setMessage(String message) {
+    this.message = message;
+  }
+
+  /**
+   * @param max the size of the transfer or a negative value if it is unknown.
+   */
+  @Override
+  public void setMaximum(long max) {
+    this.maximum = max;
+  }
+
+  @Override
+  public boolean isCanceled() {
+    return canceled;
+  }
+
+  @Override
+  public void close() {
+    stop();
+    SwingUtilities.invokeLater(new Runnable() {
+
+      @Override
+      public void run() {
+        if (monitor != null) {
+          monitor.close();
+        }
+      }
+    });
+  }
+
+  @Override
+  protected void render(long transferred) {
+    if (monitor == null) {
+      if (title != null) {
+        UIManager.put("ProgressMonitor.progressText", title);
+      }
+      monitor = new ProgressMonitor(null, message, null, 0, SCALE);
+      monitor.setMillisToDecideToPopup(0);
+      monitor.setMillisToPopup(0);
+    }
+    if (monitor.isCanceled()) {
+      canceled = true;
+      return;
+    }
+    long max = maximum;
+    if (max > 0L) {
+      monitor.setProgress((int) (Math.min(transferred, max - 1) * SCALE / max));
+    }
+  }
+}
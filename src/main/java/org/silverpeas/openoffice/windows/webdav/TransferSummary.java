@@ -0,0 +1,90 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.windows.webdav;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.silverpeas.openoffice.util.MessageUtil;
+
+/**
+ * The aggregated result of the transfer of several resources at once. It is filled concurrently
+ * by the transfer tasks.
+ *
+ * @author ehugonnet
+ */
+public class TransferSummary {
+
+  private int transferred = 0;
+  private int unchanged = 0;
+  private long bytes = 0L;
+  private final List<String> failures = new ArrayList<String>();
+
+  public synchronized void addTransferred(long size) {
+    transferred++;
+    bytes += size;
+  }
+
+  public synchronized void addUnchanged() {
+    unchanged++;
+  }
+
+  public synchronized void addFailure(String name, Throwable cause) {
+    failures.add(name + " - " + cause.getMessage());
+  }
+
+  public synchronized int getTransferred() {
+    return transferred;
+  }
+
+  public synchronized int getUnchanged() {
+    return unchanged;
+  }
+
+  public synchronized long getBytes() {
+    return bytes;
+  }
+
+  public synchronized List<String> getFailures() {
+    return Collections.unmodifiableList(new ArrayList<String>(failures));
+  }
+
+  public synchronized boolean hasFailures() {
+    return !failures.isEmpty();
+  }
+
+  /**
+   * @return a message summarizing the transfers, suitable to be displayed to the user.
+   */
+  public synchronized String getMessage() {
+    StringBuilder buffer = new StringBuilder(String.format(MessageUtil.getMessage(
+        "info.folder.summary"), transferred, unchanged, failures.size(), bytes));
+    for (String failure : failures) {
+      buffer.append('\n').append(failure);
+    }
+    return buffer.toString();
+  }
+
+  @Override
+  public String toString() {
+    return getMessage();
+  }
+}
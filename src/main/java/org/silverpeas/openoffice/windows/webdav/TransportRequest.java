@@ -0,0 +1,167 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.windows.webdav;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.apache.commons.httpclient.URI;
+
+/**
+ * A request to the WebDAV server, independent of the {@link HttpTransport} sending it. Its body is
+ * either a small XML document or a file streamed from the disk. A request can be sent again by
+ * the retries, the file being read again at each attempt.
+ *
+ * @author ehugonnet
+ */
+public class TransportRequest {
+
+  static final String CONTENT_TYPE_XML = "text/xml; charset=UTF-8";
+  private final String method;
+  private final URI uri;
+  private final Map<String, String> headers = new LinkedHashMap<String, String>();
+  private byte[] body;
+  private MonitoredFileRequestEntity entity;
+  private int continueTimeout = -1;
+  private volatile boolean requestSent = true;
+  private volatile boolean aborted = false;
+
+  /**
+   * @param method the name of the HTTP method.
+   * @param uri the URI of the resource.
+   */
+  public TransportRequest(String method, URI uri) {
+    this.method = method;
+    this.uri = uri;
+  }
+
+  public String getMethod() {
+    return method;
+  }
+
+  public URI getUri() {
+    return uri;
+  }
+
+  public void setHeader(String name, String value) {
+    headers.put(name, value);
+  }
+
+  public String getHeader(String name) {
+    return headers.get(name);
+  }
+
+  /**
+   * @return the headers of the request, in the order they were set.
+   */
+  public Map<String, String> getHeaders() {
+    return Collections.unmodifiableMap(headers);
+  }
+
+  /**
+   * @param xml the XML body of the request.
+   */
+  public void setXmlBody(String xml) {
+    try {
+      this.body = xml.getBytes("UTF-8");
+    } catch (UnsupportedEncodingException ex) {
+      throw new IllegalStateException(ex);
+    }
+    setHeader("Content-Type", CONTENT_TYPE_XML);
+  }
+
+  /**
+   * @return the XML body of the request, or null.
+   */
+  public byte[] getBody() {
+    return body;
+  }
+
+  /**
+   * @param entity the file sent as body of the request.
+   */
+  public void setEntity(MonitoredFileRequestEntity entity) {
+    this.entity = entity;
+  }
+
+  /**
+   * @return the file sent as body of the request, or null.
+   */
+  public MonitoredFileRequestEntity getEntity() {
+    return entity;
+  }
+
+  /**
+   * Asks for the body to be sent only once the server agreed to receive it, with an
+   * <code>Expect: 100-continue</code> header.
+   * @param continueTimeout the time in milliseconds to wait for the interim response before
+   * sending the body anyway.
+   */
+  public void expectContinue(int continueTimeout) {
+    this.continueTimeout = continueTimeout;
+  }
+
+  /**
+   * @return the time to wait for the interim response, or -1 if there is no negotiation.
+   */
+  public int getContinueTimeout() {
+    return continueTimeout;
+  }
+
+  /**
+   * @return false if the last attempt failed before the request could be completely sent, so
+   * that the server cannot have processed it.
+   */
+  public boolean isRequestSent() {
+    return requestSent;
+  }
+
+  void setRequestSent(boolean requestSent) {
+    this.requestSent = requestSent;
+  }
+
+  /**
+   * @return true if the last attempt was aborted by its timeout.
+   */
+  public boolean isAborted() {
+    return aborted;
+  }
+
+  void setAborted(boolean aborted) {
+    this.aborted = aborted;
+  }
+
+  /**
+   * @return the length of the body, -1 if it isn't known beforehand, 0 if there is none.
+   */
+  public long getContentLength() {
+    if (entity != null) {
+      return entity.getContentLength();
+    }
+    return body == null ? 0L : body.length;
+  }
+
+  @Override
+  public String toString() {
+    return method + ' ' + uri;
+  }
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.windows.webdav;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * The response to a {@link TransportRequest}, whose body is streamed from the server as it is
+ * read. It must be closed to release the connection.
+ *
+ * @author ehugonnet
+ */
+public interface TransportResponse {
+
+  int getStatusCode();
+
+  /**
+   * @return the reason phrase of the status, or an empty string if the protocol has none.
+   */
+  String getStatusText();
+
+  /**
+   * @param name the name of the header, whatever its case.
+   * @return the value of the first header of this name, or null.
+   */
+  String getHeader(String name);
+
+  /**
+   * @param name the name of the header, whatever its case.
+   * @return the values of the headers of this name.
+   */
+  List<String> getHeaders(String name);
+
+  /**
+   * @return the length of the body as announced by the server, or -1 if it isn't known.
+   */
+  long getContentLength();
+
+  /**
+   * @return the body of the response, empty if it has none.
+   * @throws IOException
+   */
+  InputStream getBody() throws IOException;
+
+  /**
+   * Releases the connection; the unread part of the body is discarded.
+   */
+  void close();
+}
@@ -0,0 +1,47 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.windows.webdav;
+
+import java.io.IOException;
+
+/**
+ * Thrown when the server refuses an upload because the document changed on its side: it doesn't
+ * match anymore the version the upload was based on (412), or it is locked by someone else (423).
+ *
+ * @author ehugonnet
+ */
+public class UploadConflictException extends IOException {
+
+  private static final long serialVersionUID = 1L;
+  private final int statusCode;
+
+  public UploadConflictException(String message, int statusCode) {
+    super(message);
+    this.statusCode = statusCode;
+  }
+
+  /**
+   * @return the HTTP status of the refused upload.
+   */
+  public int getStatusCode() {
+    return statusCode;
+  }
+}
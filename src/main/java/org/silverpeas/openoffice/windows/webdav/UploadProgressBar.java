@@ -26,36 +26,56 @@ package org.silverpeas.openoffice.windows.webdav;
 
 import java.awt.BorderLayout;
 import java.awt.Cursor;
-import java.beans.PropertyChangeEvent;
-import java.beans.PropertyChangeListener;
 import javax.swing.BorderFactory;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JProgressBar;
+import javax.swing.SwingUtilities;
 
 import org.silverpeas.openoffice.util.MessageUtil;
 import java.awt.Dimension;
 import javax.swing.UIManager;
 
 /**
+ * A dialog displaying the progress of a transfer. It can be notified from any thread: the progress
+ * is rendered on the event dispatch thread at the frame rate of {@link ThrottledProgress}. The
+ * sizes are longs, the progress bar itself working in per mille.
+ *
  * @author ehugonnet
  */
-public class UploadProgressBar extends JPanel implements PropertyChangeListener {
+public class UploadProgressBar extends JPanel implements ProgressDisplay {
 
   private static final int FRAME_WIDTH = 350;
   private static final int FRAME_HEIGHT = 200;
+  private static final int SCALE = 1000;
   private JProgressBar progressBar;
   private JLabel taskOutput;
   private JLabel messageLabel;
-  private boolean display = false;
   private JFrame frame = null;
-  private String title = MessageUtil.getMessage("upload.file.title");
-  private String outputFormat = MessageUtil.getMessage("upload.file.task");
+  private volatile boolean closed = false;
+  private volatile long maximum = 0L;
+  private volatile String title = MessageUtil.getMessage("upload.file.title");
+  private volatile String outputFormat = MessageUtil.getMessage("upload.file.task");
+  private final ThrottledProgress throttle = new ThrottledProgress() {
+
+    @Override
+    protected void render(long transferred) {
+      if (frame == null) {
+        if (closed) {
+          return;
+        }
+        createAndShowGUI();
+      }
+      int value = maximum <= 0L ? 0 : (int) (Math.min(transferred, maximum) * SCALE / maximum);
+      progressBar.setValue(value);
+      taskOutput.setText(String.format(outputFormat, 100 * progressBar.getPercentComplete()));
+    }
+  };
 
   public UploadProgressBar() {
     super(new BorderLayout());
-    progressBar = new JProgressBar(0, 100);
+    progressBar = new JProgressBar(0, SCALE);
     progressBar.setValue(0);
     progressBar.setStringPainted(true);
 
@@ -76,18 +96,11 @@ public class UploadProgressBar extends JPanel implements PropertyChangeListener
 
   /**
    * Defines the maximum value for the progress bar.
-   * @param max the maximum value for the progress bar.
+   * @param max the maximum value for the progress bar, that is the size of the transfer.
    */
-  public void setMaximum(int max) {
-    progressBar.setMaximum(max);
-  }
-
-  /**
-   * Defines the minimum value for the progress bar.
-   * @param min the minimum value for the progress bar.
-   */
-  public void setMinimum(int min) {
-    progressBar.setMinimum(min);
+  @Override
+  public void setMaximum(long max) {
+    this.maximum = max;
   }
 
   /**
@@ -102,67 +115,74 @@ public class UploadProgressBar extends JPanel implements PropertyChangeListener
    * Defines the message to be displayed before the progress bar.
    * @param message the message to be displayed before the progress bar.
    */
-  public void setMessage(String message) {
-    messageLabel.setText(message);
+  @Override
+  public void setMessage(final String message) {
+    SwingUtilities.invokeLater(new Runnable() {
+
+      @Override
+      public void run() {
+        messageLabel.setText(message);
+      }
+    });
   }
 
   /**
    * Defines the title of the progress bar dialog.
    * @param title the title of the progress bar dialog.
    */
-  public void setTitle(String title) {
+  @Override
+  public void setTitle(final String title) {
     this.title = title;
-    if (this.frame != null) {
-      this.frame.setTitle(title);
-    }
+    SwingUtilities.invokeLater(new Runnable() {
+
+      @Override
+      public void run() {
+        if (frame != null) {
+          frame.setTitle(title);
+        }
+      }
+    });
   }
 
   /**
-   * Defines the title of the progress bar dialog.
-   * @param title the title of the progress bar dialog.
+   * Defines the progress of the transfer. The dialog is displayed with the first progress.
+   * @param progress the number of bytes transferred so far.
    */
-  public void setProgress(int progress) {
-    propertyChange(new PropertyChangeEvent(this, "progress", 0, progress));
+  public void setProgress(long progress) {
+    progressChanged(progress);
   }
 
-  /**
-   * Invoked when task's progress property changes.
-   */
   @Override
-  public void propertyChange(PropertyChangeEvent evt) {
-    if ("progress".equals(evt.getPropertyName())) {
-      if (!display) {
-        display = true;
-        start();
-      }
-      int progress = (Integer) evt.getNewValue();
-      progressBar.setValue(progress);
-      taskOutput.setText(String.format(outputFormat,
-          100 * progressBar.getPercentComplete()));
+  public void progressChanged(long transferred) {
+    if (!closed) {
+      throttle.progressChanged(transferred);
     }
   }
 
+  @Override
+  public boolean isCanceled() {
+    return false;
+  }
+
   /**
-   * Display the upload progress bar.
+   * Close the upload progress bar.
    */
-  private void start() {
-    javax.swing.SwingUtilities.invokeLater(new Runnable() {
+  @Override
+  public void close() {
+    closed = true;
+    throttle.stop();
+    SwingUtilities.invokeLater(new Runnable() {
 
       @Override
       public void run() {
-        createAndShowGUI();
+        if (frame != null) {
+          frame.setVisible(false);
+          frame.dispose();
+        }
       }
     });
   }
 
-  /**
-   * Close the upload progress bar.
-   */
-  public void close() {
-    frame.setVisible(false);
-    frame.dispose();
-  }
-
   /**
    * Create the GUI and show it. As with all GUI code, this must run on the event-dispatching
    * thread.
@@ -20,50 +20,109 @@
  */
 package org.silverpeas.openoffice.windows.webdav;
 
-import org.apache.commons.httpclient.HostConfiguration;
-import org.apache.commons.httpclient.HttpClient;
-import org.apache.commons.httpclient.HttpConnectionManager;
-import org.apache.commons.httpclient.HttpVersion;
-import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
 import org.apache.commons.httpclient.URI;
 import org.apache.commons.httpclient.URIException;
-import org.apache.commons.httpclient.methods.ByteArrayRequestEntity;
-import org.apache.commons.httpclient.methods.GetMethod;
-import org.apache.commons.httpclient.methods.HeadMethod;
-import org.apache.commons.httpclient.methods.RequestEntity;
-import org.apache.commons.httpclient.params.HttpClientParams;
-import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
-import org.apache.jackrabbit.webdav.DavException;
-import org.apache.jackrabbit.webdav.client.methods.LockMethod;
-import org.apache.jackrabbit.webdav.client.methods.PutMethod;
-import org.apache.jackrabbit.webdav.client.methods.UnLockMethod;
-import org.apache.jackrabbit.webdav.lock.Scope;
-import org.apache.jackrabbit.webdav.lock.Type;
+import org.silverpeas.openoffice.AuthenticationInfo;
+import org.silverpeas.openoffice.ExitStatus;
+import org.silverpeas.openoffice.metrics.LauncherEvents;
+import org.silverpeas.openoffice.metrics.Metrics;
+import org.silverpeas.openoffice.metrics.Phase;
+import org.silverpeas.openoffice.metrics.Span;
 import org.silverpeas.openoffice.util.MessageUtil;
+import org.silverpeas.openoffice.util.Settings;
 
-import javax.swing.*;
 import java.io.BufferedInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InterruptedIOException;
 import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import static java.net.HttpURLConnection.HTTP_CREATED;
+import static java.net.HttpURLConnection.HTTP_NO_CONTENT;
+import static java.net.HttpURLConnection.HTTP_NOT_MODIFIED;
 import static java.net.HttpURLConnection.HTTP_OK;
+import static java.net.HttpURLConnection.HTTP_PRECON_FAILED;
 
 /**
- * Simple class to help manipulate Webdav ressources.
+ * Simple class to help manipulate Webdav ressources. The requests are sent by an
+ * {@link HttpTransport}, chosen by {@link HttpTransports}.
  *
  * @author ehugonnet
  */
 public class WebdavManager {
 
-  private final HttpClient client;
+  static final int BUFFER_SIZE = Settings.get().getInt("silverpeas.webdav.buffer", 64 * 1024);
+  static final int SC_MULTI_STATUS = 207;
+  static final String CACHE_METADATA = ".webdav-cache";
+  public static final String HEADER_ETAG = "ETag";
+  static final String HEADER_LAST_MODIFIED = "Last-Modified";
+  static final String HEADER_IF_MATCH = "If-Match";
+  static final int SC_LOCKED = 423;
+  static final String HEADER_LOCK_TOKEN = "Lock-Token";
+  static final String PROPFIND_BODY = DavXmlCodec.encodePropFind("resourcetype",
+      "getcontentlength", "getlastmodified", "getetag");
+  /**
+   * Size in bytes from which the body of a PUT is sent only once the server agreed to receive it
+   * (<code>Expect: 100-continue</code>). A negative value disables the negotiation.
+   */
+  static final long EXPECT_CONTINUE_THRESHOLD = Settings.get().getLong(
+      "silverpeas.webdav.expect.threshold", 1024L * 1024L);
+  /**
+   * Time in milliseconds to wait for the 100 (continue) response before sending the body anyway.
+   */
+  static final int EXPECT_CONTINUE_TIMEOUT = Settings.get().getInt(
+      "silverpeas.webdav.expect.timeout", 3000);
+  /**
+   * Are the uploads of the documents whose content isn't already compressed gzip-encoded? Not all
+   * the WebDAV servers accept encoded PUT bodies, hence the opt-in.
+   */
+  static final boolean COMPRESS_UPLOADS = Settings.get().getBoolean(
+      "silverpeas.webdav.compressUploads", false);
+  static final int SC_UNSUPPORTED_MEDIA_TYPE = 415;
+  /**
+   * Maximum number of connections opened to the server.
+   */
+  static final int MAX_CONNECTIONS = Settings.get().getInt("silverpeas.webdav.connections", 20);
+  /**
+   * Timeout in milliseconds of the locks taken on the documents.
+   */
+  static final long LOCK_TIMEOUT = Settings.get().getLong("silverpeas.webdav.lock.timeout",
+      600000L);
+  /**
+   * Time in milliseconds to establish a connection with the server, or to get one from the pool.
+   */
+  static final int CONNECT_TIMEOUT = Settings.get().getInt("silverpeas.webdav.timeout.connect",
+      10000);
+  /**
+   * Time in milliseconds to wait for data from the server.
+   */
+  static final int READ_TIMEOUT = Settings.get().getInt("silverpeas.webdav.timeout.read", 60000);
+  /**
+   * Time in milliseconds to send a request and to get the status of its response. The transfer of
+   * the body of a download, once the response started, is only bounded by the read timeout; the
+   * time of an upload is extended by the time to send the file at the minimum throughput below.
+   */
+  static final long REQUEST_TIMEOUT = Settings.get().getLong("silverpeas.webdav.timeout.request",
+      120000L);
+  /**
+   * Throughput in bytes per second under which an upload is considered as stalled.
+   */
+  static final long MIN_UPLOAD_THROUGHPUT = Settings.get().getLong(
+      "silverpeas.webdav.timeout.minThroughput", 16L * 1024L);
+  private final HttpTransport transport;
+  private RetryPolicy retryPolicy = RetryPolicy.DEFAULT;
+  private CircuitBreaker circuitBreaker;
+  private long requestTimeout = REQUEST_TIMEOUT;
+  private BandwidthLimiter bandwidthLimiter = BandwidthLimiter.FOREGROUND;
+  private Workspace workspace = Workspace.getDefault();
   static final Logger logger = Logger.getLogger(WebdavManager.class.getName());
 
   /**
@@ -72,17 +131,35 @@ public class WebdavManager {
    * @param host the webdav server host name.
    */
   public WebdavManager(String host) {
-    HostConfiguration hostConfig = new HostConfiguration();
-    hostConfig.setHost(host);
-    HttpConnectionManager connectionManager = new MultiThreadedHttpConnectionManager();
-    HttpConnectionManagerParams connectionParams = new HttpConnectionManagerParams();
-    int maxHostConnections = 20;
-    connectionParams.setMaxConnectionsPerHost(hostConfig, maxHostConnections);
-    connectionManager.setParams(connectionParams);
-    HttpClientParams clientParams = new HttpClientParams();
-    clientParams.setParameter(HttpClientParams.PROTOCOL_VERSION, HttpVersion.HTTP_1_1);
-    client = new HttpClient(clientParams, connectionManager);
-    client.setHostConfiguration(hostConfig);
+    this(host, (AuthenticationInfo) null);
+  }
+
+  /**
+   * Prepare authenticated HTTP connections to the WebDav server, with the transport chosen by
+   * the settings.
+   * <p>
+   * The requests are bounded by the connect, read and request timeouts, and they fail at once
+   * while the circuit breaker of the host is open. The transfers are those of the user, limited
+   * by the foreground bandwidth limiter.
+   * </p>
+   *
+   * @param host the webdav server host name.
+   * @param authenticationInfo the credentials of the user or null if no authentication is
+   * required.
+   */
+  public WebdavManager(String host, AuthenticationInfo authenticationInfo) {
+    this(host, HttpTransports.newTransport(host, authenticationInfo));
+  }
+
+  /**
+   * Prepare the HTTP connections to the WebDav server with the specified transport.
+   *
+   * @param host the webdav server host name.
+   * @param transport the transport of the requests.
+   */
+  public WebdavManager(String host, HttpTransport transport) {
+    this.transport = transport;
+    circuitBreaker = CircuitBreaker.forHost(host);
   }
 
   /**
@@ -98,16 +175,29 @@ public class WebdavManager {
     logger.log(Level.INFO, "{0} {1}", new Object[]{MessageUtil.getMessage("info.webdav.locking"),
       url});
     // Let's lock the file
-    LockMethod lockMethod = new LockMethod(url, Scope.EXCLUSIVE, Type.WRITE, user, 600000l, false);
-    client.executeMethod(lockMethod);
-    if (lockMethod.succeeded()) {
-      return lockMethod.getLockToken();
-    } else {
-      if (lockMethod.getStatusCode() == 423) {
+    TransportRequest request = new TransportRequest("LOCK", uri);
+    request.setHeader("Depth", "0");
+    request.setHeader("Timeout", "Second-" + LOCK_TIMEOUT / 1000L);
+    request.setXmlBody(DavXmlCodec.encodeLockInfo(user));
+    Span span = Metrics.start(Phase.LOCK, url);
+    TransportResponse response = null;
+    try {
+      response = execute(request);
+      span.setHttpStatus(response.getStatusCode());
+      if (response.getStatusCode() == HTTP_OK || response.getStatusCode() == HTTP_CREATED) {
+        String lockToken = getLockToken(response);
+        if (lockToken != null) {
+          span.succeeded();
+          return lockToken;
+        }
+      } else if (response.getStatusCode() == SC_LOCKED) {
         throw new IOException(MessageUtil.getMessage("error.webdav.already.locked"));
       }
       throw new IOException(MessageUtil.getMessage("error.webdav.locking")
-          + ' ' + lockMethod.getStatusCode() + " - " + lockMethod.getStatusText());
+          + ' ' + response.getStatusCode() + " - " + response.getStatusText());
+    } finally {
+      close(response);
+      span.end();
     }
   }
 
@@ -123,20 +213,63 @@ public class WebdavManager {
       return;
     }
     String url = decodeURI(uri);
-    UnLockMethod unlockMethod = new UnLockMethod(url, lockToken);
-    client.executeMethod(unlockMethod);
-    if (unlockMethod.getStatusCode() != 200 && unlockMethod.getStatusCode() != 204) {
-      logger.log(Level.INFO, "{0} {1}", new Object[]{MessageUtil.
-        getMessage("error.webdav.unlocking"),
-        unlockMethod.getStatusCode()});
-    }
+    TransportRequest request = new TransportRequest("UNLOCK", uri);
+    request.setHeader(HEADER_LOCK_TOKEN, '<' + lockToken + '>');
+    Span span = Metrics.start(Phase.UNLOCK, url);
+    TransportResponse response = null;
     try {
-      unlockMethod.checkSuccess();
+      response = execute(request);
+      span.setHttpStatus(response.getStatusCode());
+      if (response.getStatusCode() != HTTP_OK && response.getStatusCode() != HTTP_NO_CONTENT) {
+        logger.log(Level.SEVERE, "{0} {1}", new Object[]{MessageUtil.
+          getMessage("error.webdav.unlocking"), response.getStatusCode()});
+        throw new IOException(MessageUtil.getMessage("error.webdav.unlocking") + ' ' + response.
+            getStatusCode() + " - " + response.getStatusText());
+      }
+      span.succeeded();
       logger.log(Level.INFO, MessageUtil.getMessage("info.webdav.unlocked"));
-    } catch (DavException ex) {
-      logger.log(Level.SEVERE,
-          MessageUtil.getMessage("error.webdav.unlocking"), ex);
-      throw new IOException(MessageUtil.getMessage("error.webdav.unlocking"), ex);
+    } finally {
+      close(response);
+      span.end();
+    }
+  }
+
+  /**
+   * Lists the members of a collection on the webdav server. The PROPFIND multistatus is parsed
+   * while it is received.
+   *
+   * @param uri the URI of the collection.
+   * @return the members of the collection, the collection itself excluded.
+   * @throws IOException
+   */
+  public List<DavResource> listCollection(URI uri) throws IOException {
+    String url = decodeURI(uri);
+    logger.log(Level.INFO, "List collection located at: {0}", url);
+    TransportRequest request = new TransportRequest("PROPFIND", uri);
+    request.setHeader("Depth", "1");
+    request.setXmlBody(PROPFIND_BODY);
+    Span span = Metrics.start(Phase.LISTING, url);
+    TransportResponse response = null;
+    try {
+      response = execute(request);
+      span.setHttpStatus(response.getStatusCode());
+      if (response.getStatusCode() != SC_MULTI_STATUS) {
+        throw new IOException(MessageUtil.getMessage("error.webdav.listing")
+            + ' ' + response.getStatusCode() + " - " + response.getStatusText());
+      }
+      List<DavResource> members = new ArrayList<DavResource>();
+      String collectionPath = normalizePath(uri.getEscapedPath());
+      for (DavResource resource : MultiStatusParser.parse(response.getBody())) {
+        URI resourceUri = new URI(uri, resource.getHref(), true);
+        if (!collectionPath.equals(normalizePath(resourceUri.getEscapedPath()))) {
+          members.add(resource);
+        }
+      }
+      span.succeeded();
+      return members;
+    } finally {
+      close(response);
+      span.end();
     }
   }
 
@@ -149,39 +282,170 @@ public class WebdavManager {
    * @throws IOException
    */
   public String getFile(URI uri, String lockToken) throws IOException {
-    GetMethod method = executeGetFile(uri);
-    String fileName = uri.getPath();
-    fileName = fileName.substring(fileName.lastIndexOf('/') + 1);
-    fileName = URLDecoder.decode(fileName, "UTF-8");
-    UIManager.put("ProgressMonitor.progressText", MessageUtil.getMessage("download.file.title"));
-    ProgressMonitorInputStream is = new ProgressMonitorInputStream(null,
-        MessageUtil.getMessage("downloading.remote.file") + ' ' + fileName,
-        new BufferedInputStream(method.getResponseBodyAsStream()));
-    fileName = fileName.replace(' ', '_');
-    ProgressMonitor monitor = is.getProgressMonitor();
-    monitor.setMaximum(new Long(method.getResponseContentLength()).intValue());
-    monitor.setMillisToDecideToPopup(0);
-    monitor.setMillisToPopup(0);
-    File tempDir = new File(System.getProperty("java.io.tmpdir"), "silver-"
-        + System.currentTimeMillis());
-    tempDir.mkdirs();
-    File tmpFile = new File(tempDir, fileName);
-    FileOutputStream fos = new FileOutputStream(tmpFile);
-    byte[] data = new byte[64];
-    int c;
+    return getFile(uri, lockToken, null);
+  }
+
+  /**
+   * Get the ressource from the webdav server, keeping the validators of the version received
+   * (ETag and Last-Modified) so that it can be updated later only if it didn't change meanwhile.
+   *
+   * @param uri the uri to the resource.
+   * @param lockToken the current lock token.
+   * @param validators the properties in which the validators are put, or null.
+   * @return the path to the saved file on the filesystem.
+   * @throws IOException
+   */
+  public String getFile(URI uri, String lockToken, Properties validators) throws IOException {
+    Span span = Metrics.start(Phase.DOWNLOAD, decodeURI(uri));
     try {
-      while ((c = is.read(data)) > -1) {
-        fos.write(data, 0, c);
+      TransportResponse response = executeGetFile(uri, span);
+      try {
+        File tempDir = workspace.createSessionDirectory(response.getContentLength());
+        File tmpFile = new File(tempDir, getLocalFileName(uri));
+        try {
+          download(response, uri, tmpFile, lockToken, new TransferDigest(), span);
+        } catch (IOException ex) {
+          workspace.delete(tempDir);
+          throw ex;
+        }
+        if (validators != null) {
+          getValidators(response, validators);
+        }
+        span.succeeded();
+        return tmpFile.getAbsolutePath();
+      } finally {
+        response.close();
       }
-    } catch (InterruptedIOException ioinex) {
-      logger.log(Level.INFO, "{0} {1}", new Object[]{MessageUtil.getMessage("info.user.cancel"),
-        ioinex.getMessage()});
-      unlockFile(uri, lockToken);
-      System.exit(0);
     } finally {
-      fos.close();
+      span.end();
+    }
+  }
+
+  /**
+   * Get the resource from the webdav server for a read-only access: no lock is taken and the copy
+   * kept in the specified cache folder is reused as long as the server answers it is still up to
+   * date to the conditional GET. The local file is marked as read-only. The SHA-256 digest of the
+   * copy, computed while it is downloaded, is kept with the cache validators.
+   *
+   * @param uri the uri to the resource.
+   * @param cacheDir the folder in which the read-only copy of the resource is cached.
+   * @return the path to the read-only file on the filesystem.
+   * @throws IOException
+   */
+  public String getReadOnlyFile(URI uri, File cacheDir) throws IOException {
+    String url = decodeURI(uri);
+    File cachedFile = new File(cacheDir, getLocalFileName(uri));
+    File metadataFile = new File(cacheDir, CACHE_METADATA);
+    Properties metadata = new Properties();
+    if (cachedFile.isFile() && metadataFile.isFile()) {
+      FileInputStream in = new FileInputStream(metadataFile);
+      try {
+        metadata.load(in);
+      } finally {
+        in.close();
+      }
+    }
+    logger.log(Level.INFO, "Get read-only file located at: {0}", url);
+    TransportRequest request = newGetRequest(uri);
+    if (metadata.getProperty(HEADER_ETAG) != null) {
+      request.setHeader("If-None-Match", metadata.getProperty(HEADER_ETAG));
+    }
+    if (metadata.getProperty(HEADER_LAST_MODIFIED) != null) {
+      request.setHeader("If-Modified-Since", metadata.getProperty(HEADER_LAST_MODIFIED));
+    }
+    Span span = Metrics.start(Phase.DOWNLOAD, url);
+    TransportResponse response = null;
+    try {
+      response = execute(request);
+      span.setHttpStatus(response.getStatusCode());
+      if (response.getStatusCode() == HTTP_NOT_MODIFIED) {
+        logger.log(Level.INFO, "Reuse the cached copy {0}", cachedFile);
+        span.succeeded();
+        return cachedFile.getAbsolutePath();
+      }
+      if (response.getStatusCode() != HTTP_OK) {
+        throw new IOException(MessageUtil.getMessage("error.get.remote.file")
+            + ' ' + response.getStatusCode() + " - " + response.getStatusText());
+      }
+      cacheDir.mkdirs();
+      metadataFile.delete();
+      cachedFile.setWritable(true);
+      TransferDigest digest = new TransferDigest();
+      download(response, uri, cachedFile, null, digest, span);
+      cachedFile.setReadOnly();
+      metadata.clear();
+      metadata.setProperty(TransferDigest.SHA_256, digest.getSha256());
+      getValidators(response, metadata);
+      FileOutputStream out = new FileOutputStream(metadataFile);
+      try {
+        metadata.store(out, url);
+      } finally {
+        out.close();
+      }
+      span.succeeded();
+      return cachedFile.getAbsolutePath();
+    } finally {
+      close(response);
+      span.end();
+    }
+  }
+
+  /**
+   * Get the resource from the webdav server into the specified local file, without any user
+   * interaction. This is the method to use when several resources are fetched at the same time.
+   *
+   * @param uri the uri to the resource.
+   * @param target the local file in which the resource is saved.
+   * @param listener the listener notified with the number of bytes received so far, or null.
+   * @return the number of bytes of the resource, once decoded.
+   * @throws IOException
+   */
+  public long getFile(URI uri, File target, ProgressListener listener) throws IOException {
+    return getFile(uri, target, listener, new TransferDigest());
+  }
+
+  /**
+   * Get the resource from the webdav server into the specified local file, without any user
+   * interaction. The digests of the resource are computed while it is received and checked
+   * against the ones sent by the server, if any; the local file is deleted if they don't match.
+   *
+   * @param uri the uri to the resource.
+   * @param target the local file in which the resource is saved.
+   * @param listener the listener notified with the number of bytes received so far, or null.
+   * @param digest the digests of the resource, computed while it is received.
+   * @return the number of bytes of the resource, once decoded.
+   * @throws IOException
+   */
+  public long getFile(URI uri, File target, ProgressListener listener, TransferDigest digest)
+      throws IOException {
+    Span span = Metrics.start(Phase.DOWNLOAD, decodeURI(uri));
+    try {
+      TransportResponse response = executeGetFile(uri, span);
+      try {
+        digest.expect(response);
+        CountingInputStream wire = new CountingInputStream(digest.digestWire(bandwidthLimiter.
+            limit(response.getBody())));
+        MonitoredInputStream is = new MonitoredInputStream(new BufferedInputStream(wire));
+        if (listener != null) {
+          is.addProgressListener(listener);
+        }
+        bandwidthLimiter.transferStarted();
+        long size;
+        try {
+          size = copy(digest.digestContent(ContentEncoding.decode(response, is)), target);
+        } finally {
+          bandwidthLimiter.transferEnded();
+        }
+        verify(digest, target);
+        logTransfer("GET", target, size, wire.getCount(), span);
+        span.succeeded();
+        return size;
+      } finally {
+        response.close();
+      }
+    } finally {
+      span.end();
     }
-    return tmpFile.getAbsolutePath();
   }
 
   /**
@@ -193,59 +457,427 @@ public class WebdavManager {
    * @throws IOException
    */
   public void putFile(URI uri, String localFilePath, String lockToken) throws IOException {
+    File localFile = new File(localFilePath);
+    String remoteFileName = uri.getPath().substring(uri.getPath().lastIndexOf('/') + 1);
+    ProgressDisplay progress = ProgressDisplays.newUploadDisplay();
+    progress.setMaximum(localFile.length());
+    progress.setMessage(MessageUtil.getMessage("uploading.remote.file") + ' ' + remoteFileName);
+    try {
+      putFile(uri, localFile, lockToken, progress);
+    } finally {
+      progress.close();
+    }
+  }
+
+  /**
+   * Update a resource on the webdav file server without any user interaction. The file is
+   * streamed from the disk while it is sent, gzip-encoded if the uploads are to be compressed.
+   * This is the method to use when several resources are sent at the same time.
+   *
+   * @param uri the uri to the resource.
+   * @param localFile the file to be uploaded.
+   * @param lockToken the current lock token.
+   * @param listener the listener notified with the number of bytes sent so far, or null.
+   * @throws IOException
+   */
+  public void putFile(URI uri, File localFile, String lockToken, ProgressListener listener)
+      throws IOException {
+    putFile(uri, localFile, lockToken, listener, new TransferDigest());
+  }
+
+  /**
+   * Update a resource on the webdav file server without any user interaction. The digests of the
+   * file are computed while it is sent and checked against the ones the server may answer with.
+   *
+   * @param uri the uri to the resource.
+   * @param localFile the file to be uploaded.
+   * @param lockToken the current lock token.
+   * @param listener the listener notified with the number of bytes sent so far, or null.
+   * @param digest the digests of the file, computed while it is sent.
+   * @throws IOException
+   */
+  public void putFile(URI uri, File localFile, String lockToken, ProgressListener listener,
+      TransferDigest digest) throws IOException {
+    putFile(uri, localFile, lockToken, null, listener, digest);
+  }
+
+  /**
+   * Update a resource on the webdav file server only if it is still the version of the specified
+   * ETag, so that a version saved by someone else in the meantime isn't overwritten.
+   *
+   * @param uri the uri to the resource.
+   * @param localFile the file to be uploaded.
+   * @param lockToken the current lock token.
+   * @param etag the ETag of the version the local file is based on.
+   * @param listener the listener notified with the number of bytes sent so far, or null.
+   * @throws UploadConflictException if the resource changed or is locked by someone else.
+   * @throws IOException
+   */
+  public void putFileIfMatch(URI uri, File localFile, String lockToken, String etag,
+      ProgressListener listener) throws IOException {
+    putFile(uri, localFile, lockToken, etag, listener, new TransferDigest());
+  }
+
+  private void putFile(URI uri, File localFile, String lockToken, String etag,
+      ProgressListener listener, TransferDigest digest) throws IOException {
     String url = decodeURI(uri);
     // Checks if file still exists
-    if (!isFileExist(url)) {
+    if (!isFileExist(uri)) {
       logger.log(Level.SEVERE, MessageUtil.getMessage("error.remote.file"));
       throw new IOException(MessageUtil.getMessage("error.remote.file"));
     }
-    PutMethod putMethod = new PutMethod(url);
     logger.log(Level.INFO, "{0} {1}", new Object[]{MessageUtil.getMessage("info.webdav.put"),
-      localFilePath});
-    File localFile = new File(localFilePath);
-    String remoteFileName = uri.getPath().substring(uri.getPath().lastIndexOf('/') + 1);
-    UploadProgressBar progress = new UploadProgressBar();
-    progress.setMaximum(new Long(localFile.length()).intValue());
-    progress.setMessage(MessageUtil.getMessage("uploading.remote.file") + ' ' + remoteFileName);
-    MonitoredInputStream is = new MonitoredInputStream(new BufferedInputStream(new FileInputStream(
-        localFile)));
-    is.addPropertyChangeListener(progress);
-    ByteArrayOutputStream baos = new ByteArrayOutputStream();
-    byte[] data = new byte[64];
-    int c;
-    while ((c = is.read(data)) > -1) {
-      baos.write(data, 0, c);
+      localFile.getPath()});
+    boolean gzip = COMPRESS_UPLOADS && ContentEncoding.isCompressible(localFile.getName());
+    TransportRequest request = newPutRequest(uri, localFile, lockToken, etag, listener, gzip,
+        digest);
+    Span span = Metrics.start(Phase.UPLOAD, url);
+    bandwidthLimiter.transferStarted();
+    TransportResponse response = null;
+    try {
+      response = execute(request);
+      span.setHttpStatus(response.getStatusCode());
+      if (gzip && response.getStatusCode() == SC_UNSUPPORTED_MEDIA_TYPE) {
+        logger.log(Level.INFO, "Encoded upload refused by the server: sending it as is");
+        response.close();
+        request = newPutRequest(uri, localFile, lockToken, etag, listener, false, digest);
+        response = execute(request);
+        span.setHttpStatus(response.getStatusCode());
+      }
+      int status = response.getStatusCode();
+      if (status == HTTP_OK || status == HTTP_CREATED || status == HTTP_NO_CONTENT) {
+        digest.expectUploaded(response, request.getHeader(
+            ContentEncoding.HEADER_CONTENT_ENCODING) != null);
+        digest.verify(localFile.getName());
+        logger.log(Level.INFO, MessageUtil.getMessage("info.file.updated"));
+        logTransfer("PUT", localFile, localFile.length(), request.getEntity().getBytesWritten(),
+            span);
+        span.succeeded();
+      } else if (status == HTTP_PRECON_FAILED || status == SC_LOCKED) {
+        throw new UploadConflictException(MessageUtil.getMessage("error.put.remote.file")
+            + " - " + status + " - " + response.getStatusText(), status);
+      } else {
+        throw new IOException(MessageUtil.getMessage("error.put.remote.file")
+            + " - " + status + " - "
+            + response.getStatusText());
+      }
+    } finally {
+      bandwidthLimiter.transferEnded();
+      close(response);
+      span.end();
     }
-    RequestEntity requestEntity = new ByteArrayRequestEntity(baos.toByteArray());
-    putMethod.setRequestEntity(requestEntity);
-    putMethod.setRequestHeader(PutMethod.HEADER_LOCK_TOKEN, lockToken);
-    client.executeMethod(putMethod);
-    progress.close();
-    if (putMethod.succeeded()) {
-      logger.log(Level.INFO, MessageUtil.getMessage("info.file.updated"));
-    } else {
-      throw new IOException(MessageUtil.getMessage("error.put.remote.file")
-          + " - " + putMethod.getStatusCode() + " - "
-          + putMethod.getStatusText());
+  }
+
+  /**
+   * @param retryPolicy the policy of retry of the requests failing with a transient error.
+   */
+  public void setRetryPolicy(RetryPolicy retryPolicy) {
+    this.retryPolicy = retryPolicy;
+  }
+
+  /**
+   * @param bandwidthLimiter the limiter of the bandwidth used by the transfers: the background
+   * transfers should use {@link BandwidthLimiter#BACKGROUND}.
+   */
+  public void setBandwidthLimiter(BandwidthLimiter bandwidthLimiter) {
+    this.bandwidthLimiter = bandwidthLimiter;
+  }
+
+  /**
+   * @param workspace the workspace in which the documents to edit are downloaded.
+   */
+  public void setWorkspace(Workspace workspace) {
+    this.workspace = workspace;
+  }
+
+  /**
+   * @param circuitBreaker the circuit breaker of the server.
+   */
+  public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+    this.circuitBreaker = circuitBreaker;
+  }
+
+  /**
+   * Overrides the timeouts set by the settings.
+   * @param connectTimeout the connect timeout in milliseconds.
+   * @param readTimeout the read timeout in milliseconds.
+   * @param requestTimeout the request timeout in milliseconds.
+   */
+  public void setTimeouts(int connectTimeout, int readTimeout, long requestTimeout) {
+    transport.setTimeouts(connectTimeout, readTimeout);
+    this.requestTimeout = requestTimeout;
+  }
+
+  /**
+   * Executes the request, retrying it as long as the retry policy allows it.
+   * @return the response, to close once read.
+   */
+  private TransportResponse execute(TransportRequest request) throws IOException {
+    long start = System.currentTimeMillis();
+    for (int attempt = 1;; attempt++) {
+      circuitBreaker.checkAllowed();
+      long delay;
+      String failure;
+      try {
+        TransportResponse response = executeOnce(request);
+        int status = response.getStatusCode();
+        if (isServerFailure(status)) {
+          circuitBreaker.recordFailure();
+        } else {
+          circuitBreaker.recordSuccess();
+        }
+        delay = retryPolicy.getRetryDelay(request, response, attempt, System.currentTimeMillis()
+            - start);
+        if (delay < 0L) {
+          return response;
+        }
+        failure = status + " - " + response.getStatusText();
+        response.close();
+      } catch (IOException ex) {
+        circuitBreaker.recordFailure();
+        if (request.isAborted()) {
+          // the request timed out: it isn't retried
+          logger.log(Level.SEVERE, "{0} timed out", request);
+          throw ex;
+        }
+        delay = retryPolicy.getRetryDelay(request, ex, attempt, System.currentTimeMillis()
+            - start);
+        if (delay < 0L) {
+          throw ex;
+        }
+        failure = ex.toString();
+      }
+      logger.log(Level.WARNING, "{0} failed ({1}): attempt {2} in {3} ms", new Object[]{request,
+        failure, attempt + 1, delay});
+      Metrics.countRetry();
+      try {
+        Thread.sleep(delay);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException(failure);
+      }
     }
   }
 
-  private GetMethod executeGetFile(URI uri) throws IOException {
+  /**
+   * Executes the request once, reporting the call as a JFR event. The request is aborted if it
+   * doesn't complete within the request timeout.
+   */
+  private TransportResponse executeOnce(TransportRequest request) throws IOException {
+    Object call = LauncherEvents.beginWebdavMethod(request.getMethod(), decodeURI(request.
+        getUri()));
+    int status = 0;
+    long bytes = request.getContentLength();
+    try {
+      TransportResponse response = transport.execute(request, getRequestTimeout(request));
+      status = response.getStatusCode();
+      if (request.getEntity() == null) {
+        bytes = response.getContentLength();
+      }
+      return response;
+    } finally {
+      LauncherEvents.endWebdavMethod(call, status, bytes);
+    }
+  }
+
+  /**
+   * The uploads are given the time to be sent at the minimum throughput on top of the request
+   * timeout.
+   */
+  long getRequestTimeout(TransportRequest request) {
+    if (requestTimeout <= 0L) {
+      return requestTimeout;
+    }
+    if (request.getEntity() != null && MIN_UPLOAD_THROUGHPUT > 0L) {
+      long size = request.getEntity().getFileLength();
+      return requestTimeout + size * 1000L / MIN_UPLOAD_THROUGHPUT;
+    }
+    return requestTimeout;
+  }
+
+  /**
+   * @return true if the status tells the server or its gateway is failing.
+   */
+  private static boolean isServerFailure(int status) {
+    return status == RetryPolicy.SC_BAD_GATEWAY || status == RetryPolicy.SC_SERVICE_UNAVAILABLE
+        || status == RetryPolicy.SC_GATEWAY_TIMEOUT;
+  }
+
+  private TransportRequest newPutRequest(URI uri, File localFile, String lockToken, String etag,
+      ProgressListener listener, boolean gzip, TransferDigest digest) {
+    TransportRequest request = new TransportRequest("PUT", uri);
+    if (EXPECT_CONTINUE_THRESHOLD >= 0 && localFile.length() >= EXPECT_CONTINUE_THRESHOLD) {
+      request.expectContinue(EXPECT_CONTINUE_TIMEOUT);
+    }
+    MonitoredFileRequestEntity entity = new MonitoredFileRequestEntity(localFile, null, listener,
+        gzip, digest);
+    entity.setBandwidthLimiter(bandwidthLimiter);
+    request.setEntity(entity);
+    if (gzip) {
+      request.setHeader(ContentEncoding.HEADER_CONTENT_ENCODING, ContentEncoding.GZIP);
+    }
+    request.setHeader(HEADER_LOCK_TOKEN, lockToken);
+    if (etag != null) {
+      request.setHeader(HEADER_IF_MATCH, etag);
+    }
+    return request;
+  }
+
+  private TransportRequest newGetRequest(URI uri) throws IOException {
+    TransportRequest request = new TransportRequest("GET", uri);
+    request.setHeader(TransferDigest.HEADER_WANT_DIGEST, TransferDigest.WANTED_DIGESTS);
+    if (ContentEncoding.isCompressible(getLocalFileName(uri))) {
+      request.setHeader(ContentEncoding.HEADER_ACCEPT_ENCODING,
+          ContentEncoding.ACCEPTED_ENCODINGS);
+    }
+    return request;
+  }
+
+  private TransportResponse executeGetFile(URI uri, Span span) throws IOException {
     String url = decodeURI(uri);
     logger.log(Level.INFO, "Get file located at: {0}", url);
-    GetMethod method = new GetMethod(url);
-    client.executeMethod(method);
-    if (method.getStatusCode() != HTTP_CREATED && method.getStatusCode() != HTTP_OK) {
+    TransportResponse response = execute(newGetRequest(uri));
+    span.setHttpStatus(response.getStatusCode());
+    if (response.getStatusCode() != HTTP_CREATED && response.getStatusCode() != HTTP_OK) {
+      response.close();
       throw new IOException(MessageUtil.getMessage("error.get.remote.file")
-          + ' ' + method.getStatusCode() + " - " + method.getStatusText());
+          + ' ' + response.getStatusCode() + " - " + response.getStatusText());
+    }
+    return response;
+  }
+
+  private static void getValidators(TransportResponse response, Properties validators) {
+    for (String header : new String[]{HEADER_ETAG, HEADER_LAST_MODIFIED}) {
+      if (response.getHeader(header) != null) {
+        validators.setProperty(header, response.getHeader(header));
+      }
+    }
+  }
+
+  /**
+   * @return the lock token given by the Lock-Token header of the response or, for the servers
+   * that don't send it, by the lock discovery in its body.
+   */
+  private static String getLockToken(TransportResponse response) throws IOException {
+    String header = response.getHeader(HEADER_LOCK_TOKEN);
+    if (header != null && !header.trim().isEmpty()) {
+      header = header.trim();
+      if (header.startsWith("<") && header.endsWith(">")) {
+        header = header.substring(1, header.length() - 1);
+      }
+      return header;
+    }
+    return DavXmlCodec.decodeLockToken(response.getBody());
+  }
+
+  private static void close(TransportResponse response) {
+    if (response != null) {
+      response.close();
+    }
+  }
+
+  private boolean isFileExist(URI uri) throws IOException {
+    TransportResponse response = execute(new TransportRequest("HEAD", uri));
+    try {
+      return response.getStatusCode() == HTTP_OK;
+    } finally {
+      response.close();
+    }
+  }
+
+  private void download(TransportResponse response, URI uri, File target, String lockToken,
+      TransferDigest digest, Span span) throws IOException {
+    String fileName = uri.getPath();
+    fileName = fileName.substring(fileName.lastIndexOf('/') + 1);
+    fileName = URLDecoder.decode(fileName, "UTF-8");
+    digest.expect(response);
+    CountingInputStream wire = new CountingInputStream(digest.digestWire(bandwidthLimiter.limit(
+        response.getBody())));
+    MonitoredInputStream is = new MonitoredInputStream(new BufferedInputStream(wire));
+    ProgressDisplay monitor = ProgressDisplays.newDownloadDisplay(MessageUtil.getMessage(
+        "downloading.remote.file") + ' ' + fileName, response.getContentLength());
+    monitor.setTitle(MessageUtil.getMessage("download.file.title"));
+    is.addProgressListener(monitor);
+    bandwidthLimiter.transferStarted();
+    try {
+      long size = copy(digest.digestContent(ContentEncoding.decode(response, is)), target,
+          monitor);
+      verify(digest, target);
+      logTransfer("GET", target, size, wire.getCount(), span);
+    } catch (InterruptedIOException ioinex) {
+      if (!monitor.isCanceled()) {
+        // a timeout, not the user
+        throw ioinex;
+      }
+      logger.log(Level.INFO, "{0} {1}", new Object[]{MessageUtil.getMessage("info.user.cancel"),
+        ioinex.getMessage()});
+      if (lockToken != null) {
+        unlockFile(uri, lockToken);
+      }
+      System.exit(ExitStatus.CANCELLED.getCode());
+    } finally {
+      bandwidthLimiter.transferEnded();
+      monitor.close();
+    }
+  }
+
+  /**
+   * Checks the digests of a downloaded file; the corrupted file is deleted.
+   */
+  private static void verify(TransferDigest digest, File target) throws IOException {
+    try {
+      digest.verify(target.getName());
+    } catch (IOException ex) {
+      target.delete();
+      throw ex;
     }
-    return method;
+    logger.log(Level.FINE, "{0}: SHA-256 {1}", new Object[]{target.getName(), digest.
+      getSha256()});
   }
 
-  private boolean isFileExist(String url) throws IOException {
-    HeadMethod method = new HeadMethod(url);
-    client.executeMethod(method);
-    return method.getStatusCode() == HTTP_OK;
+  private static void logTransfer(String method, File file, long size, long wireSize,
+      Span span) {
+    logger.log(Level.INFO, "{0} {1}: {2} bytes, {3} bytes on the wire", new Object[]{method,
+      file.getName(), size, wireSize});
+    span.addBytes(size);
+    span.setWireBytes(wireSize);
+  }
+
+  private static String getLocalFileName(URI uri) throws IOException {
+    String fileName = uri.getPath();
+    fileName = fileName.substring(fileName.lastIndexOf('/') + 1);
+    return URLDecoder.decode(fileName, "UTF-8").replace(' ', '_');
+  }
+
+  private long copy(InputStream is, File target) throws IOException {
+    return copy(is, target, null);
+  }
+
+  private long copy(InputStream is, File target, ProgressDisplay monitor)
+      throws IOException {
+    FileOutputStream fos = new FileOutputStream(target);
+    byte[] data = new byte[BUFFER_SIZE];
+    long total = 0L;
+    int c;
+    try {
+      while ((c = is.read(data)) > -1) {
+        if (monitor != null && monitor.isCanceled()) {
+          throw new InterruptedIOException("progress");
+        }
+        fos.write(data, 0, c);
+        total += c;
+      }
+    } finally {
+      fos.close();
+    }
+    return total;
+  }
+
+  private static String normalizePath(String path) {
+    if (path != null && path.endsWith("/")) {
+      return path.substring(0, path.length() - 1);
+    }
+    return path;
   }
 
   private String decodeURI(URI uri) throws URIException {
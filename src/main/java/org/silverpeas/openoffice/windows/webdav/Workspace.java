@@ -0,0 +1,382 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.windows.webdav;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import org.silverpeas.openoffice.util.Settings;
+
+/**
+ * The local workspace in which the documents are downloaded. Each session (a document or a folder
+ * being edited) gets its own directory, whose name cannot collide with another one even when
+ * several launchers start at the same time. A session is active as long as the launcher owning
+ * it holds the lock of its marker file; the lock is released by the system if the launcher dies,
+ * and the session is then finished.
+ * <p>
+ * The directories of the finished sessions aren't removed at once when a document couldn't be
+ * sent back, so that the user can still recover it. They are evicted, the oldest first, once they
+ * are older than the maximum age or when the workspace exceeds its quota. The copies of the
+ * documents opened for reading only are cached in the workspace as well, and evicted the same way
+ * once they haven't been opened for a while. The garbage is collected the first time a session or
+ * a cached copy is requested by a launcher. The workspace is configured with the settings:
+ * </p>
+ * <ul>
+ * <li><code>silverpeas.workspace.dir</code>: the root of the workspace, for example on a local
+ * SSD or a tmpfs rather than in a roaming profile (<code>java.io.tmpdir</code> by default);</li>
+ * <li><code>silverpeas.workspace.quota</code>: the maximum size in bytes of the workspace
+ * (2 GB by default, 0 for no quota);</li>
+ * <li><code>silverpeas.workspace.maxAge</code>: the time in milliseconds after which a finished
+ * session is removed (7 days by default).</li>
+ * </ul>
+ *
+ * @author ehugonnet
+ */
+public class Workspace {
+
+  static final Logger logger = Logger.getLogger(Workspace.class.getName());
+  static final String PREFIX = "silver-";
+  static final String MARKER = ".session.lock";
+  static final String READ_ONLY_CACHE = "silver-readonly";
+  /**
+   * The directories created by the previous versions of the launcher: silver-[millis].
+   */
+  private static final Pattern LEGACY_DIRECTORY = Pattern.compile("silver-\\d+");
+  private static final Pattern SESSION_DIRECTORY = Pattern.compile("silver-\\d+-\\d+-[0-9a-f]+");
+  private static final int MAX_ATTEMPTS = 100;
+  private static final AtomicInteger counter = new AtomicInteger(0);
+  private static final Random random = new Random();
+  private static Workspace defaultWorkspace;
+  private final File root;
+  private final long quota;
+  private final long maxAge;
+  private final Map<File, Session> sessions = new HashMap<File, Session>();
+  private boolean collected = false;
+
+  /**
+   * @param root the folder in which the directories of the sessions are created.
+   * @param quota the maximum size of the workspace in bytes, 0 for no quota.
+   * @param maxAge the time in milliseconds after which a finished session is removed.
+   */
+  public Workspace(File root, long quota, long maxAge) {
+    this.root = root;
+    this.quota = quota;
+    this.maxAge = maxAge;
+  }
+
+  /**
+   * @return the workspace of the user, as set by the settings.
+   */
+  public static synchronized Workspace getDefault() {
+    if (defaultWorkspace == null) {
+      Settings settings = Settings.get();
+      defaultWorkspace = new Workspace(new File(settings.getString("silverpeas.workspace.dir",
+          System.getProperty("java.io.tmpdir"))), settings.getLong("silverpeas.workspace.quota",
+          2L * 1024L * 1024L * 1024L), settings.getLong("silverpeas.workspace.maxAge",
+          7L * 24L * 3600L * 1000L));
+    }
+    return defaultWorkspace;
+  }
+
+  public File getRoot() {
+    return root;
+  }
+
+  /**
+   * Creates the directory of a new session. The finished sessions are evicted if need be to keep
+   * the workspace under its quota.
+   * @param expectedSize the expected size in bytes of the documents of the session, or -1 if it
+   * is unknown.
+   * @return the directory of the session.
+   * @throws IOException
+   */
+  public synchronized File createSessionDirectory(long expectedSize) throws IOException {
+    if (!collected) {
+      collected = true;
+      collectGarbage();
+    }
+    if (quota > 0L && expectedSize > 0L) {
+      evict(quota - expectedSize);
+    }
+    root.mkdirs();
+    File directory = null;
+    for (int attempt = 0; directory == null; attempt++) {
+      if (attempt >= MAX_ATTEMPTS || !root.isDirectory()) {
+        throw new IOException("Unable to create a directory in " + root);
+      }
+      // mkdir is atomic: a name taken by another launcher in the meantime is just skipped
+      directory = new File(root, PREFIX + System.currentTimeMillis() + '-' + counter.
+          incrementAndGet() + '-' + Integer.toHexString(random.nextInt(Integer.MAX_VALUE)));
+      if (!directory.mkdir()) {
+        directory = null;
+      }
+    }
+    Session session = new Session(directory);
+    if (!session.tryLock()) {
+      throw new IOException("Unable to lock " + directory);
+    }
+    sessions.put(directory, session);
+    logger.log(Level.FINE, "New session in {0}", directory);
+    return directory;
+  }
+
+  /**
+   * Gets the directory in which the read-only copy of a document is cached. The directory is
+   * touched each time it is requested, so that the copies in use are the last to be evicted.
+   * @param key the key of the document, unique for its URL.
+   * @return the cache directory of the document, which may not exist yet.
+   */
+  public synchronized File getReadOnlyDirectory(String key) {
+    if (!collected) {
+      collected = true;
+      collectGarbage();
+    }
+    File directory = new File(new File(root, READ_ONLY_CACHE), key);
+    if (directory.isDirectory()) {
+      directory.setLastModified(System.currentTimeMillis());
+    }
+    return directory;
+  }
+
+  /**
+   * Ends a session, keeping its documents until the session is evicted.
+   * @param directory the directory of the session.
+   */
+  public synchronized void release(File directory) {
+    Session session = sessions.remove(directory);
+    if (session != null) {
+      session.release();
+    }
+  }
+
+  /**
+   * Ends a session and removes its documents.
+   * @param directory the directory of the session.
+   */
+  public synchronized void delete(File directory) {
+    release(directory);
+    deleteTree(directory);
+  }
+
+  /**
+   * Removes the finished sessions older than the maximum age, and then the oldest finished
+   * sessions as long as the workspace exceeds its quota.
+   */
+  public synchronized void collectGarbage() {
+    long now = System.currentTimeMillis();
+    for (File directory : listSessionDirectories()) {
+      if (now - directory.lastModified() > maxAge && isFinished(directory)) {
+        logger.log(Level.INFO, "Removing the expired session {0}", directory);
+        deleteTree(directory);
+      }
+    }
+    if (quota > 0L) {
+      evict(quota);
+    }
+  }
+
+  /**
+   * @return the size in bytes of all the sessions and of the cached copies of the workspace.
+   */
+  public synchronized long getSize() {
+    long size = 0L;
+    for (File directory : listSessionDirectories()) {
+      size += getSize(directory);
+    }
+    return size;
+  }
+
+  /**
+   * Removes the oldest finished sessions until the workspace doesn't exceed the specified size.
+   */
+  private void evict(long maxSize) {
+    List<File> directories = listSessionDirectories();
+    Map<File, Long> sizes = new HashMap<File, Long>();
+    long size = 0L;
+    for (File directory : directories) {
+      long directorySize = getSize(directory);
+      sizes.put(directory, directorySize);
+      size += directorySize;
+    }
+    for (File directory : directories) {
+      if (size <= maxSize) {
+        return;
+      }
+      if (isFinished(directory)) {
+        logger.log(Level.INFO, "Evicting the session {0} ({1} bytes)", new Object[]{directory,
+          sizes.get(directory)});
+        deleteTree(directory);
+        size -= sizes.get(directory);
+      }
+    }
+    if (size > maxSize) {
+      logger.log(Level.WARNING, "The workspace {0} exceeds its quota: {1} bytes", new Object[]{
+        root, size});
+    }
+  }
+
+  /**
+   * @return the directories of the sessions and of the cached copies, the oldest first.
+   */
+  private List<File> listSessionDirectories() {
+    List<File> result = new ArrayList<File>();
+    File[] directories = root.listFiles(new FileFilter() {
+
+      @Override
+      public boolean accept(File file) {
+        return file.isDirectory() && (SESSION_DIRECTORY.matcher(file.getName()).matches()
+            || LEGACY_DIRECTORY.matcher(file.getName()).matches());
+      }
+    });
+    if (directories != null) {
+      Collections.addAll(result, directories);
+    }
+    File[] cacheDirectories = new File(root, READ_ONLY_CACHE).listFiles(new FileFilter() {
+
+      @Override
+      public boolean accept(File file) {
+        return file.isDirectory();
+      }
+    });
+    if (cacheDirectories != null) {
+      Collections.addAll(result, cacheDirectories);
+    }
+    Collections.sort(result, new Comparator<File>() {
+
+      @Override
+      public int compare(File first, File second) {
+        long delta = first.lastModified() - second.lastModified();
+        return delta < 0L ? -1 : (delta > 0L ? 1 : 0);
+      }
+    });
+    return result;
+  }
+
+  /**
+   * A session is finished if no launcher holds the lock of its marker. The directories of the
+   * previous versions have no marker: they are finished once they are older than the maximum age.
+   * The cached copies are never locked: they can always be evicted.
+   */
+  private boolean isFinished(File directory) {
+    if (sessions.containsKey(directory)) {
+      return false;
+    }
+    if (directory.getParentFile().equals(new File(root, READ_ONLY_CACHE))) {
+      return true;
+    }
+    if (!new File(directory, MARKER).isFile()) {
+      return LEGACY_DIRECTORY.matcher(directory.getName()).matches()
+          && System.currentTimeMillis() - directory.lastModified() > maxAge;
+    }
+    Session session = new Session(directory);
+    if (session.tryLock()) {
+      session.release();
+      return true;
+    }
+    return false;
+  }
+
+  private static long getSize(File file) {
+    File[] children = file.listFiles();
+    if (children == null) {
+      return file.length();
+    }
+    long size = 0L;
+    for (File child : children) {
+      size += getSize(child);
+    }
+    return size;
+  }
+
+  private static void deleteTree(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        deleteTree(child);
+      }
+    }
+    // the cached copies are read-only, which prevents their deletion on Windows
+    file.setWritable(true);
+    if (!file.delete() && file.exists()) {
+      logger.log(Level.WARNING, "Unable to delete {0}", file);
+    }
+  }
+
+  /**
+   * The lock held on the marker of a session directory.
+   */
+  private static class Session {
+
+    private final File marker;
+    private RandomAccessFile markerFile;
+    private FileLock lock;
+
+    Session(File directory) {
+      this.marker = new File(directory, MARKER);
+    }
+
+    boolean tryLock() {
+      try {
+        markerFile = new RandomAccessFile(marker, "rw");
+        lock = markerFile.getChannel().tryLock();
+      } catch (IOException ex) {
+        logger.log(Level.WARNING, "Unable to lock " + marker, ex);
+      } catch (OverlappingFileLockException ex) {
+        lock = null;
+      }
+      if (lock == null) {
+        release();
+        return false;
+      }
+      return true;
+    }
+
+    void release() {
+      try {
+        if (lock != null) {
+          lock.release();
+        }
+        if (markerFile != null) {
+          markerFile.close();
+        }
+      } catch (IOException ex) {
+        logger.log(Level.WARNING, "Unable to unlock " + marker, ex);
+      } finally {
+        lock = null;
+        markerFile = null;
+      }
+    }
+  }
+}
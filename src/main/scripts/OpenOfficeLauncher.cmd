@@ -0,0 +1,18 @@
+@echo off
+rem
+rem Runs the launcher packaged by the minimized profile with the given arguments. The class-data
+rem sharing archive built along the jar by the cds profile, OpenOfficeLauncher.jsa, is used when it
+rem sits next to the jar: a JVM of another version, or a rebuilt jar, just ignores it. The archive
+rem records the jar as OpenOfficeLauncher.jar relative to its folder, so the launcher runs from there.
+rem
+setlocal
+set "DIR=%~dp0"
+cd /d "%DIR%" || exit /b 1
+set "JAVA=java"
+if defined JAVA_HOME set "JAVA=%JAVA_HOME%\bin\java"
+if exist OpenOfficeLauncher.jsa (
+  "%JAVA%" -XX:+IgnoreUnrecognizedVMOptions -Xshare:auto -XX:SharedArchiveFile=OpenOfficeLauncher.jsa -jar OpenOfficeLauncher.jar %*
+) else (
+  "%JAVA%" -jar OpenOfficeLauncher.jar %*
+)
+exit /b %ERRORLEVEL%
@@ -0,0 +1,18 @@
+#!/bin/sh
+#
+# Runs the launcher packaged by the minimized profile with the given arguments. The class-data
+# sharing archive built along the jar by the cds profile, OpenOfficeLauncher.jsa, is used when it
+# sits next to the jar: a JVM of another version, or a rebuilt jar, just ignores it. The archive
+# records the jar as OpenOfficeLauncher.jar relative to its folder, so the launcher runs from there.
+#
+DIR=$(cd "$(dirname "$0")" && pwd)
+cd "$DIR" || exit 1
+JAVA=java
+if [ -n "$JAVA_HOME" ]; then
+  JAVA="$JAVA_HOME/bin/java"
+fi
+if [ -f "$DIR/OpenOfficeLauncher.jsa" ]; then
+  exec "$JAVA" -XX:+IgnoreUnrecognizedVMOptions -Xshare:auto \
+    -XX:SharedArchiveFile=OpenOfficeLauncher.jsa -jar OpenOfficeLauncher.jar "$@"
+fi
+exec "$JAVA" -jar OpenOfficeLauncher.jar "$@"
@@ -0,0 +1,52 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice;
+
+import java.util.Arrays;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ *
+ * @author ehugonnet
+ */
+public class OfficeLauncherTest {
+
+  /**
+   * Test of getEditorCommand method, of class OfficeLauncher: the spaces of the document and of
+   * the quoted parts of the editor don't split the arguments.
+   */
+  @Test
+  public void testGetEditorCommand() {
+    String word = "/Applications/Microsoft Office 2011/Microsoft Word.app/Contents/MacOS/"
+        + "Microsoft Word";
+    String document = "C:\\Documents and Settings\\bart\\Local Settings\\Temp\\report.doc";
+    assertEquals(Arrays.asList("C:\\Program Files\\LibreOffice 4\\program\\soffice.exe",
+        document), OfficeLauncher.getEditorCommand(
+        "\"C:\\Program Files\\LibreOffice 4\\program\\soffice.exe\"", document));
+    assertEquals(Arrays.asList("open", "-a", word, "/tmp/silver-1/Rapport annuel.doc"),
+        OfficeLauncher.getEditorCommand("open -a \"" + word + '"',
+        "/tmp/silver-1/Rapport annuel.doc"));
+    assertEquals(Arrays.asList("/usr/bin/soffice", "http://localhost/report.doc"), OfficeLauncher.
+        getEditorCommand("/usr/bin/soffice", "http://localhost/report.doc"));
+  }
+}
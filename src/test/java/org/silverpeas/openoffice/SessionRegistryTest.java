@@ -0,0 +1,155 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice;
+
+import java.io.File;
+import java.io.IOException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *
+ * @author ehugonnet
+ */
+public class SessionRegistryTest {
+
+  private static final String URL =
+      "http://www.silverpeas.org/silverpeas/repository/jackrabbit/attachments/report.doc";
+  private File directory;
+  private SessionRegistry registry;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = File.createTempFile("silver-sessions", "");
+    directory.delete();
+    registry = new SessionRegistry(directory);
+  }
+
+  @After
+  public void tearDown() {
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    directory.delete();
+  }
+
+  /**
+   * Test of open method, of class SessionRegistry: the second opening attaches to the first one.
+   */
+  @Test
+  public void testOpenTwice() throws Exception {
+    SessionRegistry.Session first = registry.open(URL);
+    assertTrue(first.isOwner());
+    SessionRegistry.Session second = new SessionRegistry(directory).open(URL);
+    assertFalse(second.isOwner());
+    assertFalse(second.awaitPublished(0L));
+    first.publish("/tmp/silver-1/report.doc", "/usr/bin/soffice");
+    assertTrue(second.awaitPublished(1000L));
+    assertEquals("/tmp/silver-1/report.doc", second.getDocument());
+    assertEquals("/usr/bin/soffice", second.getEditor());
+    first.close();
+    second.close();
+  }
+
+  /**
+   * Test of awaitPublished method, of class SessionRegistry.Session: a session released without
+   * being published is taken over.
+   */
+  @Test
+  public void testTakeOver() throws Exception {
+    SessionRegistry.Session first = registry.open(URL);
+    SessionRegistry.Session second = new SessionRegistry(directory).open(URL);
+    assertFalse(second.isOwner());
+    first.close();
+    assertTrue(second.awaitPublished(1000L));
+    assertTrue(second.isOwner());
+    assertEquals(null, second.getDocument());
+    second.close();
+  }
+
+  /**
+   * Test of unpublish method, of class SessionRegistry.Session: a launcher arriving while the
+   * owner sends the document back doesn't attach to the copy being sent, it waits for the end of
+   * the session and takes it over.
+   */
+  @Test
+  public void testArriveDuringPush() throws Exception {
+    final SessionRegistry.Session first = registry.open(URL);
+    first.publish("/tmp/silver-1/report.doc", "/usr/bin/soffice");
+    first.unpublish();
+    SessionRegistry.Session second = new SessionRegistry(directory).open(URL);
+    assertFalse(second.awaitPublished(300L));
+    assertFalse(second.isOwner());
+    Thread push = new Thread() {
+
+      @Override
+      public void run() {
+        try {
+          Thread.sleep(300L);
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+        first.close();
+      }
+    };
+    push.start();
+    assertTrue(second.awaitPublished(5000L));
+    push.join();
+    assertTrue(second.isOwner());
+    assertEquals(null, second.getDocument());
+    second.close();
+  }
+
+  /**
+   * Test of close method, of class SessionRegistry.Session: the document can be opened again.
+   */
+  @Test
+  public void testClose() throws Exception {
+    SessionRegistry.Session first = registry.open(URL);
+    first.publish("/tmp/silver-1/report.doc", "/usr/bin/soffice");
+    first.close();
+    SessionRegistry.Session second = registry.open(URL);
+    assertTrue(second.isOwner());
+    assertFalse(second.awaitPublished(0L));
+    second.close();
+  }
+
+  /**
+   * Test of open method, of class SessionRegistry, with different documents.
+   */
+  @Test
+  public void testOpenOtherDocument() throws IOException {
+    SessionRegistry.Session first = registry.open(URL);
+    SessionRegistry.Session second = registry.open(URL.replace("report", "notes"));
+    assertTrue(first.isOwner());
+    assertTrue(second.isOwner());
+    first.close();
+    second.close();
+  }
+}
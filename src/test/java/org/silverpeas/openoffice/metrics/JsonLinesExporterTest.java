@@ -0,0 +1,125 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.metrics;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *
+ * @author ehugonnet
+ */
+public class JsonLinesExporterTest {
+
+  private File folder;
+  private JsonLinesExporter exporter;
+
+  @BeforeClass
+  public static void disableDefaultExporter() {
+    System.setProperty("silverpeas.metrics", "false");
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    folder = File.createTempFile("silver-metrics", "");
+    folder.delete();
+    exporter = new JsonLinesExporter(new File(folder, "metrics.jsonl"), 300L, 2);
+    Metrics.addExporter(exporter);
+  }
+
+  @After
+  public void tearDown() {
+    Metrics.removeExporter(exporter);
+    for (File file : folder.listFiles()) {
+      file.delete();
+    }
+    folder.delete();
+  }
+
+  /**
+   * Test of export method, of class JsonLinesExporter.
+   */
+  @Test
+  public void testExport() throws IOException {
+    Span span = Metrics.start(Phase.DOWNLOAD, "http://localhost/a \"quoted\".doc");
+    Metrics.countRetry();
+    Metrics.countSubprocess();
+    span.addBytes(1024L);
+    span.setHttpStatus(200);
+    span.succeeded();
+    span.end();
+    span.end();
+    List<String> lines = readLines(new File(folder, "metrics.jsonl"));
+    assertEquals(1, lines.size());
+    String json = lines.get(0);
+    assertTrue(json.startsWith("{\"session\":\"" + Metrics.SESSION + "\",\"phase\":\"download\""));
+    assertTrue(json.contains("\"resource\":\"http://localhost/a \\\"quoted\\\".doc\""));
+    assertTrue(json.contains("\"bytes\":1024,"));
+    assertTrue(json.contains("\"httpStatus\":200,"));
+    assertTrue(json.contains("\"retries\":1,\"subprocesses\":1,\"success\":true}"));
+    assertFalse(json.contains("wireBytes"));
+  }
+
+  /**
+   * Test of the rolling of the files by JsonLinesExporter.
+   */
+  @Test
+  public void testRoll() throws IOException {
+    for (int i = 0; i < 10; i++) {
+      Metrics.start(Phase.LOCK, "http://localhost/document" + i + ".doc").end();
+    }
+    assertTrue(new File(folder, "metrics.jsonl").exists());
+    assertTrue(new File(folder, "metrics.jsonl.1").exists());
+    assertTrue(new File(folder, "metrics.jsonl.2").exists());
+    assertFalse(new File(folder, "metrics.jsonl.3").exists());
+    List<String> lines = readLines(new File(folder, "metrics.jsonl"));
+    assertTrue(lines.get(lines.size() - 1).contains("document9.doc"));
+    assertTrue(lines.get(lines.size() - 1).endsWith("\"success\":false}"));
+  }
+
+  private static List<String> readLines(File file) throws IOException {
+    List<String> lines = new ArrayList<String>();
+    BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file),
+        "UTF-8"));
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        lines.add(line);
+      }
+    } finally {
+      reader.close();
+    }
+    return lines;
+  }
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Properties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *
+ * @author ehugonnet
+ */
+public class SettingsTest {
+
+  private File systemFile;
+  private File userFile;
+
+  @Before
+  public void setUp() throws IOException {
+    systemFile = File.createTempFile("system", ".properties");
+    userFile = File.createTempFile("user", ".properties");
+  }
+
+  @After
+  public void tearDown() {
+    systemFile.delete();
+    userFile.delete();
+  }
+
+  /**
+   * Test of load method, of class Settings: the user file overrides the system file and the
+   * arguments override both.
+   */
+  @Test
+  public void testLoadLayers() throws IOException {
+    Properties system = new Properties();
+    system.setProperty("silverpeas.webdav.transfers", "2");
+    system.setProperty("silverpeas.webdav.timeout.connect", "5000");
+    system.setProperty("silverpeas.webdav.buffer", "8192");
+    store(system, systemFile);
+    Properties user = new Properties();
+    user.setProperty("silverpeas.webdav.timeout.connect", "3000");
+    user.setProperty("silverpeas.webdav.buffer", "16384");
+    store(user, userFile);
+    Properties arguments = new Properties();
+    arguments.setProperty("silverpeas.webdav.buffer", "32768");
+    Settings settings = Settings.load(systemFile, userFile, arguments);
+    assertEquals(2, settings.getInt("silverpeas.webdav.transfers", 4));
+    assertEquals(3000, settings.getInt("silverpeas.webdav.timeout.connect", 10000));
+    assertEquals(32768, settings.getInt("silverpeas.webdav.buffer", 65536));
+    assertEquals(20, settings.getInt("silverpeas.webdav.connections", 20));
+  }
+
+  /**
+   * Test of load method, of class Settings, with missing files and keys foreign to the launcher.
+   */
+  @Test
+  public void testLoadIgnored() {
+    systemFile.delete();
+    Properties arguments = new Properties();
+    arguments.setProperty("user.home", "/home/bart");
+    arguments.setProperty("silverpeas.outbox.dir", " /tmp/outbox ");
+    Settings settings = Settings.load(systemFile, null, arguments);
+    assertNull(settings.getString("user.home", null));
+    assertEquals("/tmp/outbox", settings.getString("silverpeas.outbox.dir", null));
+  }
+
+  /**
+   * Test of the accessors of class Settings with malformed values.
+   */
+  @Test
+  public void testInvalidValues() {
+    Properties arguments = new Properties();
+    arguments.setProperty("silverpeas.webdav.transfers", "four");
+    arguments.setProperty("silverpeas.workspace.quota", "2G");
+    arguments.setProperty("silverpeas.webdav.compressUploads", "true");
+    Settings settings = Settings.load(null, null, arguments);
+    assertEquals(4, settings.getInt("silverpeas.webdav.transfers", 4));
+    assertEquals(1024L, settings.getLong("silverpeas.workspace.quota", 1024L));
+    assertTrue(settings.getBoolean("silverpeas.webdav.compressUploads", false));
+    assertFalse(settings.getBoolean("silverpeas.progress.enabled", false));
+  }
+
+  /**
+   * Test of getList method, of class Settings.
+   */
+  @Test
+  public void testGetList() {
+    Properties arguments = new Properties();
+    arguments.setProperty("silverpeas.libreoffice.versions", "4.1, 4.0,,3.6 ");
+    Settings settings = Settings.load(null, null, arguments);
+    assertArrayEquals(new String[]{"4.1", "4.0", "3.6"}, settings.getList(
+        "silverpeas.libreoffice.versions", "3.5"));
+    assertArrayEquals(new String[]{"3.4.1", "3.3"}, settings.getList(
+        "silverpeas.openoffice.versions", "3.4.1", "3.3"));
+  }
+
+  private static void store(Properties properties, File file) throws IOException {
+    FileOutputStream out = new FileOutputStream(file);
+    try {
+      properties.store(out, null);
+    } finally {
+      out.close();
+    }
+  }
+}
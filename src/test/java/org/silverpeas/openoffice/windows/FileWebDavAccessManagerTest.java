@@ -0,0 +1,123 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.windows;
+
+import java.io.File;
+import java.io.IOException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.silverpeas.openoffice.windows.webdav.CircuitBreaker;
+import org.silverpeas.openoffice.windows.webdav.RetryPolicy;
+import org.silverpeas.openoffice.windows.webdav.WebdavManager;
+import org.silverpeas.openoffice.windows.webdav.WebdavStandInServer;
+import org.silverpeas.openoffice.windows.webdav.Workspace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *
+ * @author ehugonnet
+ */
+public class FileWebDavAccessManagerTest {
+
+  private static final String DOCUMENT = "attachments/report.doc";
+  private File folder;
+  private WebdavStandInServer server;
+  private Workspace workspace;
+  private FileWebDavAccessManager manager;
+
+  @BeforeClass
+  public static void disableDefaultExporter() {
+    System.setProperty("silverpeas.metrics", "false");
+    System.setProperty("silverpeas.headless", "true");
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    folder = File.createTempFile("silver-file", "");
+    folder.delete();
+    server = new WebdavStandInServer(new File(folder, "server"));
+    server.start();
+    server.addDocument(DOCUMENT, 10000L);
+    WebdavManager webdav = new WebdavManager("127.0.0.1");
+    webdav.setRetryPolicy(RetryPolicy.NONE);
+    webdav.setCircuitBreaker(new CircuitBreaker(new File(folder, "hosts.properties"), "127.0.0.1",
+        0, 0L));
+    workspace = new Workspace(new File(folder, "workspace"), 0L, 3600000L);
+    manager = new FileWebDavAccessManager("bart");
+    manager.setWebdavManager(webdav);
+    manager.setWorkspace(workspace);
+  }
+
+  @After
+  public void tearDown() {
+    server.stop();
+    delete(folder);
+  }
+
+  /**
+   * Test of retrieveReadOnlyFile method, of class FileWebDavAccessManager: the copy is cached in
+   * the workspace, reused while the document is unchanged and downloaded again once it changed.
+   */
+  @Test
+  public void testRetrieveReadOnlyFile() throws IOException {
+    File copy = new File(manager.retrieveReadOnlyFile(server.getUrl(DOCUMENT)));
+    assertEquals(10000L, copy.length());
+    // the copy comes with its cache validators
+    assertTrue(workspace.getSize() > 10000L);
+    assertEquals(copy, new File(manager.retrieveReadOnlyFile(server.getUrl(DOCUMENT))));
+    assertEquals(2, server.getRequestCount("GET"));
+    assertEquals(10000L, copy.length());
+    server.addDocument(DOCUMENT, 20000L);
+    server.getFile(DOCUMENT).setLastModified(System.currentTimeMillis() + 10000L);
+    assertEquals(copy, new File(manager.retrieveReadOnlyFile(server.getUrl(DOCUMENT))));
+    assertEquals(20000L, copy.length());
+    assertEquals(0, server.getRequestCount("LOCK"));
+  }
+
+  /**
+   * Test of retrieveReadOnlyFile method, of class FileWebDavAccessManager: the cached copies are
+   * collected with the finished sessions of the workspace.
+   */
+  @Test
+  public void testReadOnlyFileCollected() throws IOException {
+    File copy = new File(manager.retrieveReadOnlyFile(server.getUrl(DOCUMENT)));
+    copy.getParentFile().setLastModified(System.currentTimeMillis() - 7200000L);
+    new Workspace(new File(folder, "workspace"), 0L, 3600000L).collectGarbage();
+    assertFalse(copy.exists());
+    assertTrue(new File(manager.retrieveReadOnlyFile(server.getUrl(DOCUMENT))).isFile());
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.setWritable(true);
+    file.delete();
+  }
+}
@@ -0,0 +1,193 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.windows;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.silverpeas.openoffice.windows.webdav.CircuitBreaker;
+import org.silverpeas.openoffice.windows.webdav.RetryPolicy;
+import org.silverpeas.openoffice.windows.webdav.TransferSummary;
+import org.silverpeas.openoffice.windows.webdav.WebdavManager;
+import org.silverpeas.openoffice.windows.webdav.WebdavStandInServer;
+import org.silverpeas.openoffice.windows.webdav.Workspace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ *
+ * @author ehugonnet
+ */
+public class FolderWebDavAccessManagerTest {
+
+  private static final String[] MEMBERS = {"notes.odt", "report.doc", "budget.xls"};
+  private File folder;
+  private WebdavStandInServer server;
+  private Workspace workspace;
+  private FolderWebDavAccessManager manager;
+
+  @BeforeClass
+  public static void disableDefaultExporter() {
+    System.setProperty("silverpeas.metrics", "false");
+    System.setProperty("silverpeas.headless", "true");
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    folder = File.createTempFile("silver-folder", "");
+    folder.delete();
+    server = new WebdavStandInServer(new File(folder, "server"));
+    server.start();
+    for (int i = 0; i < MEMBERS.length; i++) {
+      server.addDocument("folder/" + MEMBERS[i], 1000L * (i + 1));
+    }
+    WebdavManager webdav = new WebdavManager("127.0.0.1");
+    webdav.setRetryPolicy(RetryPolicy.NONE);
+    webdav.setCircuitBreaker(new CircuitBreaker(new File(folder, "hosts.properties"), "127.0.0.1",
+        0, 0L));
+    workspace = new Workspace(new File(folder, "workspace"), 0L, 3600000L);
+    manager = new FolderWebDavAccessManager("bart", null);
+    manager.setWebdavManager(webdav);
+    manager.setWorkspace(workspace);
+  }
+
+  @After
+  public void tearDown() {
+    server.stop();
+    delete(folder);
+  }
+
+  /**
+   * Test of checkOut and checkIn methods, of class FolderWebDavAccessManager: only the modified
+   * document is sent back and all of them are unlocked.
+   */
+  @Test
+  public void testCheckOutCheckIn() throws IOException {
+    File localFolder = new File(manager.checkOut(server.getUrl("folder")));
+    for (int i = 0; i < MEMBERS.length; i++) {
+      assertEquals(1000L * (i + 1), new File(localFolder, MEMBERS[i]).length());
+      assertTrue(server.isLocked("folder/" + MEMBERS[i]));
+    }
+    write(new File(localFolder, "report.doc"), 42);
+    TransferSummary summary = manager.checkIn();
+    assertFalse(summary.hasFailures());
+    assertEquals(1, summary.getTransferred());
+    assertEquals(2, summary.getUnchanged());
+    assertEquals(1, server.getRequestCount("PUT"));
+    assertEquals(42L, server.getFile("folder/report.doc").length());
+    for (String member : MEMBERS) {
+      assertFalse(server.isLocked("folder/" + member));
+    }
+    assertFalse(localFolder.exists());
+  }
+
+  /**
+   * Test of checkOut method, of class FolderWebDavAccessManager: the members whose name could
+   * designate a file outside the local folder are rejected before any document is locked.
+   */
+  @Test
+  public void testCheckOutRejectsMemberName() throws IOException {
+    assertRejected("..report.doc");
+    assertRejected("notes:odt");
+    assertRejected("sub\\notes.odt");
+  }
+
+  /**
+   * Test of checkIn method, of class FolderWebDavAccessManager: a document that cannot be sent back
+   * is kept locked with its local copy while the other documents are checked in.
+   */
+  @Test
+  public void testCheckInMemberFailure() throws IOException {
+    File localFolder = new File(manager.checkOut(server.getUrl("folder")));
+    write(new File(localFolder, "report.doc"), 42);
+    server.failNext("PUT", 500);
+    TransferSummary summary = manager.checkIn();
+    assertEquals(1, summary.getFailures().size());
+    assertTrue(server.isLocked("folder/report.doc"));
+    assertFalse(server.isLocked("folder/notes.odt"));
+    assertFalse(server.isLocked("folder/budget.xls"));
+    assertEquals(2000L, server.getFile("folder/report.doc").length());
+    assertEquals(42L, new File(localFolder, "report.doc").length());
+  }
+
+  /**
+   * Test of checkIn method, of class FolderWebDavAccessManager: a document whose local copy cannot
+   * be read fails on its own, without preventing the other documents from being unlocked. The copy
+   * is replaced by a directory of the same length, so that only its digest tells it changed.
+   */
+  @Test
+  public void testCheckInUnreadableMember() throws IOException {
+    File probe = new File(new File(folder, "workspace"), "probe");
+    probe.mkdirs();
+    server.addDocument("folder/notes.odt", probe.length());
+    probe.delete();
+    File localFolder = new File(manager.checkOut(server.getUrl("folder")));
+    File notes = new File(localFolder, "notes.odt");
+    notes.delete();
+    notes.mkdir();
+    notes.setLastModified(System.currentTimeMillis() + 10000L);
+    TransferSummary summary = manager.checkIn();
+    assertEquals(1, summary.getFailures().size());
+    assertTrue(server.isLocked("folder/notes.odt"));
+    assertFalse(server.isLocked("folder/report.doc"));
+    assertFalse(server.isLocked("folder/budget.xls"));
+    assertTrue(localFolder.isDirectory());
+  }
+
+  private void assertRejected(String name) throws IOException {
+    File document = server.addDocument("folder/" + name, 10L);
+    try {
+      manager.checkOut(server.getUrl("folder"));
+      fail(name + " should have been rejected");
+    } catch (IOException ex) {
+      assertEquals(0, server.getRequestCount("LOCK"));
+      assertEquals(0L, workspace.getSize());
+    } finally {
+      document.delete();
+    }
+  }
+
+  private static void write(File file, int size) throws IOException {
+    FileOutputStream out = new FileOutputStream(file);
+    try {
+      out.write(new byte[size]);
+    } finally {
+      out.close();
+    }
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+}
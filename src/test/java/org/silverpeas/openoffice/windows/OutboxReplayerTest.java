@@ -0,0 +1,257 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.windows;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.List;
+import org.apache.commons.httpclient.URI;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.silverpeas.openoffice.windows.UploadOutbox.Entry;
+import org.silverpeas.openoffice.windows.webdav.CircuitBreaker;
+import org.silverpeas.openoffice.windows.webdav.DavResource;
+import org.silverpeas.openoffice.windows.webdav.RetryPolicy;
+import org.silverpeas.openoffice.windows.webdav.WebdavManager;
+import org.silverpeas.openoffice.windows.webdav.WebdavStandInServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *
+ * @author ehugonnet
+ */
+public class OutboxReplayerTest {
+
+  private static final String DOCUMENT = "attachments/report.doc";
+  private File folder;
+  private WebdavStandInServer server;
+  private UploadOutbox outbox;
+  private OutboxReplayer replayer;
+
+  @BeforeClass
+  public static void disableDefaultExporter() {
+    System.setProperty("silverpeas.metrics", "false");
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    folder = File.createTempFile("silver-outbox", "");
+    folder.delete();
+    server = new WebdavStandInServer(new File(folder, "server"));
+    server.start();
+    server.addDocument(DOCUMENT, 10000L);
+    outbox = new UploadOutbox(new File(folder, "outbox"));
+    WebdavManager webdav = new WebdavManager("127.0.0.1");
+    webdav.setRetryPolicy(RetryPolicy.NONE);
+    webdav.setCircuitBreaker(new CircuitBreaker(new File(folder, "hosts.properties"), "127.0.0.1",
+        0, 0L));
+    replayer = new OutboxReplayer(outbox, "127.0.0.1", "bart", null);
+    replayer.setWebdavManager(webdav);
+  }
+
+  @After
+  public void tearDown() {
+    server.stop();
+    delete(folder);
+  }
+
+  /**
+   * Test of add method, of class UploadOutbox: the entry survives a restart of the launcher.
+   */
+  @Test
+  public void testAdd() throws IOException {
+    File document = newDocument(42);
+    outbox.add(document, server.getUrl(DOCUMENT), "bart", "opaquelocktoken:1", "\"1-2\"");
+    assertFalse(document.exists());
+    List<Entry> entries = new UploadOutbox(outbox.getDirectory()).getPendingEntries();
+    assertEquals(1, entries.size());
+    Entry entry = entries.get(0);
+    assertEquals(server.getUrl(DOCUMENT), entry.getUrl());
+    assertEquals("bart", entry.getLogin());
+    assertEquals("opaquelocktoken:1", entry.getLockToken());
+    assertEquals("\"1-2\"", entry.getEtag());
+    assertEquals(42L, entry.getDocument().length());
+    assertTrue(entry.tryLock());
+    entry.release();
+  }
+
+  /**
+   * Test of replayAll method, of class OutboxReplayer: the document is sent once the server is
+   * reachable again, even if its lock expired meanwhile.
+   */
+  @Test
+  public void testReplay() throws IOException {
+    String etag = checkOut();
+    server.unlockAll();
+    outbox.add(newDocument(42), server.getUrl(DOCUMENT), "bart", "opaquelocktoken:lost", etag);
+    replayer.replayAll();
+    assertEquals(42L, server.getFile(DOCUMENT).length());
+    assertFalse(server.isLocked(DOCUMENT));
+    assertTrue(outbox.getPendingEntries().isEmpty());
+    assertEquals(1, replayer.getReports().size());
+  }
+
+  /**
+   * Test of replayAll method, of class OutboxReplayer: a document modified on the server in the
+   * meantime isn't overwritten.
+   */
+  @Test
+  public void testReplayConflict() throws IOException {
+    String etag = checkOut();
+    server.unlockAll();
+    server.addDocument(DOCUMENT, 20000L);
+    outbox.add(newDocument(42), server.getUrl(DOCUMENT), "bart", null, etag);
+    replayer.replayAll();
+    assertEquals(20000L, server.getFile(DOCUMENT).length());
+    assertTrue(outbox.getPendingEntries().isEmpty());
+    List<Entry> conflicts = outbox.getEntries(UploadOutbox.State.CONFLICT);
+    assertEquals(1, conflicts.size());
+    assertEquals(42L, conflicts.get(0).getDocument().length());
+    assertEquals(1, replayer.getReports().size());
+  }
+
+  /**
+   * Test of replayAll method, of class OutboxReplayer: a document locked by someone else in the
+   * meantime isn't overwritten.
+   */
+  @Test
+  public void testReplayLockedBySomeoneElse() throws IOException {
+    String etag = checkOut();
+    server.unlockAll();
+    new WebdavManager("127.0.0.1").lockFile(new URI(server.getUrl(DOCUMENT), false, "UTF-8"),
+        "lisa");
+    outbox.add(newDocument(42), server.getUrl(DOCUMENT), "bart", "opaquelocktoken:lost", etag);
+    replayer.replayAll();
+    assertEquals(10000L, server.getFile(DOCUMENT).length());
+    assertEquals(1, outbox.getEntries(UploadOutbox.State.CONFLICT).size());
+  }
+
+  /**
+   * Test of replayAll method, of class OutboxReplayer: a document already sent by a launcher
+   * stopped before removing it from the outbox isn't reported as a conflict.
+   */
+  @Test
+  public void testReplayAlreadySent() throws IOException {
+    String etag = checkOut();
+    server.unlockAll();
+    File document = newDocument(42);
+    FileOutputStream out = new FileOutputStream(server.getFile(DOCUMENT));
+    try {
+      out.write(new byte[42]);
+    } finally {
+      out.close();
+    }
+    outbox.add(document, server.getUrl(DOCUMENT), "bart", null, etag);
+    replayer.replayAll();
+    assertTrue(outbox.getPendingEntries().isEmpty());
+    assertTrue(outbox.getEntries(UploadOutbox.State.CONFLICT).isEmpty());
+  }
+
+  /**
+   * Test of replayAll method, of class OutboxReplayer: the entries are kept while the server is
+   * unreachable.
+   */
+  @Test
+  public void testReplayUnreachable() throws IOException {
+    String etag = checkOut();
+    String url = server.getUrl(DOCUMENT);
+    server.stop();
+    outbox.add(newDocument(42), url, "bart", null, etag);
+    replayer.replayAll();
+    List<Entry> entries = outbox.getPendingEntries();
+    assertEquals(1, entries.size());
+    assertEquals(1, entries.get(0).getAttempts());
+    assertTrue(replayer.getReports().isEmpty());
+  }
+
+  /**
+   * Test of start method, of class OutboxReplayer: the documents are sent again until the server
+   * is reachable.
+   */
+  @Test
+  public void testReplayOnceReachable() throws Exception {
+    String etag = checkOut();
+    server.unlockAll();
+    outbox.add(newDocument(42), server.getUrl(DOCUMENT), "bart", null, etag);
+    server.dropNext("PUT");
+    replayer.setRetryInterval(100L);
+    replayer.start();
+    long deadline = System.currentTimeMillis() + 5000L;
+    while (!outbox.getPendingEntries().isEmpty() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(50L);
+    }
+    assertEquals(1, replayer.awaitReports(5000L).size());
+    assertEquals(42L, server.getFile(DOCUMENT).length());
+    assertEquals(2, server.getRequestCount("PUT"));
+  }
+
+  /**
+   * Test of isUnreachable method, of class UploadOutbox.
+   */
+  @Test
+  public void testIsUnreachable() {
+    assertTrue(UploadOutbox.isUnreachable(new ConnectException()));
+    assertFalse(UploadOutbox.isUnreachable(new IOException("423 - Locked")));
+  }
+
+  private String checkOut() throws IOException {
+    WebdavManager webdav = new WebdavManager("127.0.0.1");
+    URI uri = new URI(server.getUrl(DOCUMENT), false, "UTF-8");
+    webdav.lockFile(uri, "bart");
+    for (DavResource resource : webdav.listCollection(new URI(server.getUrl("attachments/"), false,
+        "UTF-8"))) {
+      if ("report.doc".equals(resource.getName())) {
+        return resource.getEtag();
+      }
+    }
+    throw new IOException("No ETag for " + uri);
+  }
+
+  private File newDocument(int size) throws IOException {
+    File tmpDir = new File(folder, "silver-" + size);
+    tmpDir.mkdirs();
+    File document = new File(tmpDir, "report.doc");
+    FileOutputStream out = new FileOutputStream(document);
+    try {
+      out.write(new byte[size]);
+    } finally {
+      out.close();
+    }
+    return document;
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.windows.webdav;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *
+ * @author ehugonnet
+ */
+public class BandwidthLimiterTest {
+
+  /**
+   * Test of limit method, of class BandwidthLimiter, when the limiter is disabled.
+   */
+  @Test
+  public void testDisabled() {
+    BandwidthLimiter limiter = new BandwidthLimiter(0L, null);
+    assertFalse(limiter.isEnabled());
+    InputStream in = new ByteArrayInputStream(new byte[0]);
+    OutputStream out = new ByteArrayOutputStream();
+    assertSame(in, limiter.limit(in));
+    assertSame(out, limiter.limit(out));
+  }
+
+  /**
+   * Test of limit method, of class BandwidthLimiter: the writes don't exceed the rate.
+   */
+  @Test
+  public void testLimitOutput() throws IOException {
+    BandwidthLimiter limiter = new BandwidthLimiter(100000L, null);
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    OutputStream out = limiter.limit(buffer);
+    byte[] data = new byte[1000];
+    long start = System.currentTimeMillis();
+    for (int i = 0; i < 75; i++) {
+      out.write(data);
+    }
+    long elapsed = System.currentTimeMillis() - start;
+    assertEquals(75000, buffer.size());
+    // a quarter of second of burst, then 50000 bytes at 100000 B/s
+    assertTrue("Elapsed " + elapsed, elapsed >= 450L);
+  }
+
+  /**
+   * Test of limit method, of class BandwidthLimiter: the reads don't exceed the rate.
+   */
+  @Test
+  public void testLimitInput() throws IOException {
+    BandwidthLimiter limiter = new BandwidthLimiter(100000L, null);
+    InputStream in = limiter.limit(new ByteArrayInputStream(new byte[75000]));
+    byte[] data = new byte[1000];
+    long start = System.currentTimeMillis();
+    long total = 0L;
+    int c;
+    while ((c = in.read(data)) > 0) {
+      total += c;
+    }
+    long elapsed = System.currentTimeMillis() - start;
+    assertEquals(75000L, total);
+    assertTrue("Elapsed " + elapsed, elapsed >= 450L);
+  }
+
+  /**
+   * Test of record method, of class BandwidthLimiter: the rate adapts to the contention.
+   */
+  @Test
+  public void testContention() {
+    BandwidthLimiter limiter = new BandwidthLimiter(100000L, null, 0L);
+    // 10000 bytes blocked for 0.1 s: the link doesn't go faster than the rate
+    limiter.record(10000L, 100000000L);
+    assertEquals(75000L, limiter.getRate());
+    limiter.record(10000L, 100000000L);
+    assertEquals(56250L, limiter.getRate());
+    // the link is free again
+    limiter.record(10000L, 1000000L);
+    assertEquals(66250L, limiter.getRate());
+    for (int i = 0; i < 10; i++) {
+      limiter.record(10000L, 1000000L);
+    }
+    assertEquals(100000L, limiter.getRate());
+  }
+
+  /**
+   * Test of the background limiter yielding to the foreground transfers.
+   */
+  @Test
+  public void testYieldToForeground() {
+    BandwidthLimiter foreground = new BandwidthLimiter(0L, null);
+    BandwidthLimiter background = new BandwidthLimiter(80000L, foreground);
+    assertEquals(80000L, background.getRate());
+    foreground.transferStarted();
+    assertTrue(foreground.isBusy());
+    assertEquals(10000L, background.getRate());
+    foreground.transferEnded();
+    assertEquals(80000L, background.getRate());
+  }
+}
@@ -0,0 +1,121 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.windows.webdav;
+
+import java.io.File;
+import java.io.IOException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ *
+ * @author ehugonnet
+ */
+public class CircuitBreakerTest {
+
+  private File store;
+
+  @Before
+  public void setUp() throws IOException {
+    store = File.createTempFile("silver-hosts", ".properties");
+    store.delete();
+  }
+
+  @After
+  public void tearDown() {
+    store.delete();
+  }
+
+  /**
+   * Test of recordFailure method, of class CircuitBreaker: the circuit opens at the threshold.
+   */
+  @Test
+  public void testOpenAfterThreshold() throws IOException {
+    CircuitBreaker breaker = new CircuitBreaker(store, "www.silverpeas.org", 3, 30000L);
+    breaker.recordFailure();
+    breaker.recordFailure();
+    assertFalse(breaker.isOpen());
+    breaker.checkAllowed();
+    breaker.recordFailure();
+    assertTrue(breaker.isOpen());
+    try {
+      breaker.checkAllowed();
+      fail("The circuit should be open");
+    } catch (IOException ex) {
+      assertTrue(ex.getMessage().contains("www.silverpeas.org"));
+    }
+  }
+
+  /**
+   * Test of recordSuccess method, of class CircuitBreaker: a success resets the failures.
+   */
+  @Test
+  public void testSuccessResetsFailures() {
+    CircuitBreaker breaker = new CircuitBreaker(store, "www.silverpeas.org", 2, 30000L);
+    breaker.recordFailure();
+    breaker.recordSuccess();
+    breaker.recordFailure();
+    assertFalse(breaker.isOpen());
+  }
+
+  /**
+   * Test of the state shared by the circuit breakers of the same host and kept apart from the
+   * other hosts.
+   */
+  @Test
+  public void testSharedState() {
+    CircuitBreaker breaker = new CircuitBreaker(store, "www.silverpeas.org", 1, 30000L);
+    breaker.recordFailure();
+    assertTrue(new CircuitBreaker(store, "www.silverpeas.org", 1, 30000L).isOpen());
+    assertFalse(new CircuitBreaker(store, "intranet.silverpeas.org", 1, 30000L).isOpen());
+  }
+
+  /**
+   * Test of the half-open state: once the open duration is elapsed, a request is let through and
+   * its success closes the circuit.
+   */
+  @Test
+  public void testHalfOpen() throws Exception {
+    CircuitBreaker breaker = new CircuitBreaker(store, "www.silverpeas.org", 1, 100L);
+    breaker.recordFailure();
+    assertTrue(breaker.isOpen());
+    Thread.sleep(150L);
+    breaker.checkAllowed();
+    breaker.recordSuccess();
+    assertFalse(breaker.isOpen());
+  }
+
+  /**
+   * Test of a circuit breaker disabled with a threshold of 0.
+   */
+  @Test
+  public void testDisabled() throws IOException {
+    CircuitBreaker breaker = new CircuitBreaker(store, "www.silverpeas.org", 0, 30000L);
+    breaker.recordFailure();
+    breaker.checkAllowed();
+    assertFalse(store.exists());
+  }
+}
@@ -0,0 +1,55 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.windows.webdav;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *
+ * @author ehugonnet
+ */
+public class ConsoleProgressTest {
+
+  /**
+   * Test of the throttling of the progress reported by ConsoleProgress.
+   */
+  @Test
+  public void testProgressChanged() throws Exception {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    ConsoleProgress progress = new ConsoleProgress(new PrintStream(buffer, true, "UTF-8"));
+    long size = 3L * 1024L * 1024L * 1024L;
+    progress.setMessage("Downloading file: \nAtelier.doc");
+    progress.setMaximum(size);
+    for (long transferred = 0L; transferred <= size; transferred += 1024L * 1024L) {
+      progress.progressChanged(transferred);
+    }
+    progress.close();
+    String[] lines = buffer.toString("UTF-8").trim().split("\n");
+    assertTrue(lines.length <= 3);
+    assertTrue(lines[lines.length - 1].contains("Downloading file: Atelier.doc: 100% (" + size));
+    assertEquals(false, progress.isCanceled());
+  }
+}
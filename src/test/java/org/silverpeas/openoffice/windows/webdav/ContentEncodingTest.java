@@ -0,0 +1,147 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.windows.webdav;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *
+ * @author ehugonnet
+ */
+public class ContentEncodingTest {
+
+  private static final byte[] CONTENT = ("<office:document-content><office:body><text:p>Atelier en "
+      + "classe</text:p><text:p>Atelier en classe</text:p></office:body>"
+      + "</office:document-content>").getBytes();
+
+  /**
+   * Test of isCompressible method, of class ContentEncoding.
+   */
+  @Test
+  public void testIsCompressible() {
+    assertTrue(ContentEncoding.isCompressible("Atelier_en_classe.doc"));
+    assertTrue(ContentEncoding.isCompressible("budget.XLS"));
+    assertTrue(ContentEncoding.isCompressible("README"));
+    assertFalse(ContentEncoding.isCompressible("Atelier_en_classe.docx"));
+    assertFalse(ContentEncoding.isCompressible("budget.ODS"));
+    assertFalse(ContentEncoding.isCompressible("photo.jpg"));
+  }
+
+  /**
+   * Test of decode method, of class ContentEncoding.
+   */
+  @Test
+  public void testDecode() throws IOException {
+    InputStream body = new ByteArrayInputStream(CONTENT);
+    assertSame(body, ContentEncoding.decode(new GetMethod("http://localhost/test.doc"), body));
+    GetMethod method = gzipResponse();
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    GZIPOutputStream out = new GZIPOutputStream(compressed);
+    out.write(CONTENT);
+    out.close();
+    assertArrayEquals(CONTENT, readAll(ContentEncoding.decode(method, new ByteArrayInputStream(
+        compressed.toByteArray()))));
+  }
+
+  /**
+   * Test of decode method, of class ContentEncoding, with the deflate coding in the zlib format
+   * and as a raw deflate stream.
+   */
+  @Test
+  public void testDecodeDeflate() throws IOException {
+    for (boolean raw : new boolean[]{false, true}) {
+      ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+      DeflaterOutputStream out = new DeflaterOutputStream(compressed, new Deflater(
+          Deflater.DEFAULT_COMPRESSION, raw));
+      out.write(CONTENT);
+      out.close();
+      assertArrayEquals(CONTENT, readAll(ContentEncoding.decode(response(ContentEncoding.DEFLATE),
+          new ByteArrayInputStream(compressed.toByteArray()))));
+    }
+  }
+
+  /**
+   * Test of a gzip-encoded MonitoredFileRequestEntity.
+   */
+  @Test
+  public void testGzipRequestEntity() throws IOException {
+    File file = File.createTempFile("silver-", ".doc");
+    try {
+      FileOutputStream fos = new FileOutputStream(file);
+      try {
+        fos.write(CONTENT);
+      } finally {
+        fos.close();
+      }
+      MonitoredFileRequestEntity entity = new MonitoredFileRequestEntity(file, null, null, true);
+      assertEquals(-1L, entity.getContentLength());
+      ByteArrayOutputStream wire = new ByteArrayOutputStream();
+      entity.writeRequest(wire);
+      assertEquals(wire.size(), entity.getBytesWritten());
+      assertTrue(entity.getBytesWritten() < CONTENT.length);
+      assertArrayEquals(CONTENT, readAll(ContentEncoding.decode(gzipResponse(),
+          new ByteArrayInputStream(wire.toByteArray()))));
+    } finally {
+      file.delete();
+    }
+  }
+
+  private static GetMethod gzipResponse() {
+    return response(ContentEncoding.GZIP);
+  }
+
+  private static GetMethod response(final String encoding) {
+    return new GetMethod("http://localhost/test.doc") {
+
+      {
+        getResponseHeaderGroup().addHeader(new Header(ContentEncoding.HEADER_CONTENT_ENCODING,
+            encoding));
+      }
+    };
+  }
+
+  private static byte[] readAll(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] data = new byte[WebdavManager.BUFFER_SIZE];
+    int c;
+    while ((c = in.read(data)) > -1) {
+      out.write(data, 0, c);
+    }
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.windows.webdav;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ *
+ * @author ehugonnet
+ */
+public class DavXmlCodecTest {
+
+  /**
+   * Test of decodeLockToken method, of class DavXmlCodec, with the responses recorded from
+   * several servers.
+   */
+  @Test
+  public void testDecodeLockToken() throws IOException {
+    assertEquals("opaquelocktoken:dccce564-412e-11e1-b969-00059a3c7a00:"
+        + "b9a82b3c-4a52-4a1e-8a2e-3d7c8e1f4a10", decodeLockToken("lock-jackrabbit.xml"));
+    assertEquals("opaquelocktoken:5a0c2b5e-8f3d-4c1a-9d4e-6b2f7e8a1c3d", decodeLockToken(
+        "lock-mod_dav.xml"));
+    assertEquals("urn:uuid:e71d4fae-5dec-22d6-fea5-00a0c91e6be4", decodeLockToken(
+        "lock-iis.xml"));
+    assertEquals("opaquelocktoken:2f4d9b61-7a1e-4c3b-8e5d-0c9a6b3f1e27", decodeLockToken(
+        "lock-default-namespace.xml"));
+  }
+
+  /**
+   * Test of decodeLockToken method, of class DavXmlCodec, without any active lock.
+   */
+  @Test
+  public void testDecodeNoLockToken() throws IOException {
+    assertNull(DavXmlCodec.decodeLockToken(new ByteArrayInputStream(("<D:prop xmlns:D=\"DAV:\">"
+        + "<D:lockdiscovery/><D:lockroot><D:href>/report.doc</D:href></D:lockroot></D:prop>").
+        getBytes("UTF-8"))));
+  }
+
+  /**
+   * Test of decodeLockToken method, of class DavXmlCodec, with a malformed body.
+   */
+  @Test(expected = IOException.class)
+  public void testDecodeMalformed() throws IOException {
+    DavXmlCodec.decodeLockToken(new ByteArrayInputStream("<D:prop xmlns:D=\"DAV:\"><D:locktoken>".
+        getBytes("UTF-8")));
+  }
+
+  /**
+   * Test of encodeLockInfo method, of class DavXmlCodec.
+   */
+  @Test
+  public void testEncodeLockInfo() {
+    assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?><D:lockinfo xmlns:D=\"DAV:\">"
+        + "<D:lockscope><D:exclusive/></D:lockscope><D:locktype><D:write/></D:locktype>"
+        + "<D:owner>bart &amp; &lt;lisa&gt;</D:owner></D:lockinfo>", DavXmlCodec.encodeLockInfo(
+        "bart & <lisa>"));
+  }
+
+  /**
+   * Test of encodePropFind method, of class DavXmlCodec.
+   */
+  @Test
+  public void testEncodePropFind() {
+    assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?><D:propfind xmlns:D=\"DAV:\">"
+        + "<D:prop><D:resourcetype/><D:getetag/></D:prop></D:propfind>", DavXmlCodec.
+        encodePropFind("resourcetype", "getetag"));
+  }
+
+  private static String decodeLockToken(String recording) throws IOException {
+    InputStream body = DavXmlCodecTest.class.getResourceAsStream(recording);
+    try {
+      return DavXmlCodec.decodeLockToken(body);
+    } finally {
+      body.close();
+    }
+  }
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.windows.webdav;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.swing.SwingUtilities;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *
+ * @author ehugonnet
+ */
+public class MonitoredInputStreamTest {
+
+  private static final long THREE_GB = 3L * 1024L * 1024L * 1024L;
+
+  /**
+   * Test of the progress notified by a MonitoredInputStream beyond 2 GB.
+   */
+  @Test
+  public void testProgressOver2GB() throws IOException {
+    final AtomicLong progress = new AtomicLong(0L);
+    MonitoredInputStream in = new MonitoredInputStream(new InputStream() {
+
+      @Override
+      public int read() {
+        return 0;
+      }
+
+      @Override
+      public long skip(long n) {
+        return n;
+      }
+    });
+    in.addProgressListener(new ProgressListener() {
+
+      @Override
+      public void progressChanged(long transferred) {
+        progress.set(transferred);
+      }
+    });
+    assertEquals(THREE_GB, in.skip(THREE_GB));
+    assertEquals(0, in.read());
+    assertEquals(THREE_GB + 1L, progress.get());
+    assertEquals(THREE_GB + 1L, in.getBytesRead());
+  }
+
+  /**
+   * Test of the removal of a listener of a MonitoredInputStream.
+   */
+  @Test
+  public void testRemoveProgressListener() throws IOException {
+    final AtomicInteger calls = new AtomicInteger(0);
+    ProgressListener listener = new ProgressListener() {
+
+      @Override
+      public void progressChanged(long transferred) {
+        calls.incrementAndGet();
+      }
+    };
+    MonitoredInputStream in = new MonitoredInputStream(new ByteArrayInputStream(new byte[16]));
+    in.addProgressListener(listener);
+    in.read(new byte[8]);
+    in.removeProgressListener(listener);
+    in.read(new byte[8]);
+    assertEquals(1, calls.get());
+  }
+
+  /**
+   * Test of the coalescing of the notifications by ThrottledProgress.
+   */
+  @Test
+  public void testThrottledProgress() throws Exception {
+    final AtomicInteger frames = new AtomicInteger(0);
+    final AtomicLong rendered = new AtomicLong(0L);
+    final AtomicInteger framesOffEdt = new AtomicInteger(0);
+    ThrottledProgress throttle = new ThrottledProgress() {
+
+      @Override
+      protected void render(long transferred) {
+        if (!SwingUtilities.isEventDispatchThread()) {
+          framesOffEdt.incrementAndGet();
+        }
+        frames.incrementAndGet();
+        rendered.set(transferred);
+      }
+    };
+    for (long i = 1L; i <= 1000000L; i++) {
+      throttle.progressChanged(i);
+    }
+    throttle.stop();
+    SwingUtilities.invokeAndWait(new Runnable() {
+
+      @Override
+      public void run() {
+      }
+    });
+    assertEquals(1000000L, rendered.get());
+    assertTrue(frames.get() < 1000);
+    assertEquals(0, framesOffEdt.get());
+  }
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.windows.webdav;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *
+ * @author ehugonnet
+ */
+public class MultiStatusParserTest {
+
+  private static final String MULTISTATUS = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+      + "<D:multistatus xmlns:D=\"DAV:\">"
+      + "<D:response><D:href>/silverpeas/repository/jackrabbit/attachments/</D:href>"
+      + "<D:propstat><D:prop><D:resourcetype><D:collection/></D:resourcetype>"
+      + "<D:getlastmodified>Tue, 15 Jan 2013 10:20:30 GMT</D:getlastmodified></D:prop>"
+      + "<D:status>HTTP/1.1 200 OK</D:status></D:propstat>"
+      + "<D:propstat><D:prop><D:getcontentlength/><D:getetag/></D:prop>"
+      + "<D:status>HTTP/1.1 404 Not Found</D:status></D:propstat></D:response>"
+      + "<D:response><D:href>/silverpeas/repository/jackrabbit/attachments/Atelier%20en%20classe.doc"
+      + "</D:href><D:propstat><D:prop><D:resourcetype/>"
+      + "<D:getcontentlength>10240</D:getcontentlength>"
+      + "<D:getlastmodified>Tue, 15 Jan 2013 10:20:30 GMT</D:getlastmodified>"
+      + "<D:getetag>\"1234-abcd\"</D:getetag></D:prop>"
+      + "<D:status>HTTP/1.1 200 OK</D:status></D:propstat></D:response>"
+      + "</D:multistatus>";
+
+  /**
+   * Test of parse method, of class MultiStatusParser.
+   */
+  @Test
+  public void testParse() throws IOException {
+    List<DavResource> resources = MultiStatusParser.parse(new ByteArrayInputStream(MULTISTATUS.
+        getBytes("UTF-8")));
+    assertEquals(2, resources.size());
+    DavResource collection = resources.get(0);
+    assertTrue(collection.isCollection());
+    assertEquals("attachments", collection.getName());
+    assertEquals(-1L, collection.getContentLength());
+    assertNull(collection.getEtag());
+    DavResource document = resources.get(1);
+    assertFalse(document.isCollection());
+    assertEquals("Atelier%20en%20classe.doc", document.getName());
+    assertEquals(10240L, document.getContentLength());
+    assertEquals(1358245230000L, document.getLastModified());
+    assertEquals("\"1234-abcd\"", document.getEtag());
+  }
+
+  /**
+   * Test of parse method, of class MultiStatusParser, with a malformed body.
+   */
+  @Test(expected = IOException.class)
+  public void testParseMalformed() throws IOException {
+    MultiStatusParser.parse(new ByteArrayInputStream("<D:multistatus xmlns:D=\"DAV:\"><D:response>".
+        getBytes("UTF-8")));
+  }
+}
@@ -0,0 +1,165 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.windows.webdav;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.UnknownHostException;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import org.apache.commons.httpclient.URI;
+import org.apache.commons.httpclient.util.DateUtil;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *
+ * @author ehugonnet
+ */
+public class RetryPolicyTest {
+
+  private final RetryPolicy policy = new RetryPolicy(4, 100L, 1000L, 10000L);
+
+  /**
+   * Test of the backoff of the retries: the delay is bounded by the exponential ceiling.
+   */
+  @Test
+  public void testBackoff() throws IOException {
+    TransportRequest get = request("GET");
+    for (int attempt = 1; attempt < 4; attempt++) {
+      long delay = policy.getRetryDelay(get, response(503, null), attempt, 0L);
+      assertTrue(delay >= 0L && delay <= 100L << (attempt - 1));
+    }
+    assertEquals(-1L, policy.getRetryDelay(get, response(503, null), 4, 0L));
+    assertEquals(-1L, policy.getRetryDelay(get, response(500, null), 1, 0L));
+    assertEquals(-1L, policy.getRetryDelay(get, response(404, null), 1, 0L));
+  }
+
+  /**
+   * Test of the maximum elapsed time of the retries.
+   */
+  @Test
+  public void testMaxElapsed() throws IOException {
+    TransportRequest get = request("GET");
+    assertEquals(5000L, policy.getRetryDelay(get, response(429, " 5 "), 1, 4000L));
+    assertEquals(-1L, policy.getRetryDelay(get, response(429, "5"), 1, 6000L));
+  }
+
+  /**
+   * Test of the Retry-After header given as a date.
+   */
+  @Test
+  public void testRetryAfterDate() throws IOException {
+    TransportRequest get = request("GET");
+    long delay = policy.getRetryDelay(get, response(503, DateUtil.formatDate(new Date(System.
+        currentTimeMillis() + 3000L))), 1, 0L);
+    assertTrue(delay > 1000L && delay <= 3000L);
+    // a date in the past asks for an immediate retry
+    assertEquals(0L, policy.getRetryDelay(get, response(503, DateUtil.formatDate(new Date(
+        System.currentTimeMillis() - 60000L))), 1, 0L));
+  }
+
+  /**
+   * Test of a Retry-After header that can't be parsed: the backoff applies.
+   */
+  @Test
+  public void testRetryAfterInvalid() throws IOException {
+    TransportRequest get = request("GET");
+    long delay = policy.getRetryDelay(get, response(503, "soon"), 1, 0L);
+    assertTrue(delay >= 0L && delay <= 100L);
+  }
+
+  /**
+   * Test of the retry of the requests that are not idempotent.
+   */
+  @Test
+  public void testLockRetry() throws IOException {
+    TransportRequest lock = request("LOCK");
+    assertTrue(policy.getRetryDelay(lock, response(503, null), 1, 0L) >= 0L);
+    assertEquals(-1L, policy.getRetryDelay(lock, response(502, null), 1, 0L));
+    // the request wasn't sent yet
+    lock.setRequestSent(false);
+    assertTrue(policy.getRetryDelay(lock, new IOException("reset"), 1, 0L) >= 0L);
+    assertEquals(-1L, policy.getRetryDelay(lock, new UnknownHostException("localhost"), 1, 0L));
+    // the server may have locked the document already
+    lock.setRequestSent(true);
+    assertEquals(-1L, policy.getRetryDelay(lock, new IOException("reset"), 1, 0L));
+  }
+
+  /**
+   * Test of the retry of the idempotent requests failing once sent.
+   */
+  @Test
+  public void testIdempotentRetry() throws IOException {
+    TransportRequest put = request("PUT");
+    put.setRequestSent(true);
+    assertTrue(policy.getRetryDelay(put, new IOException("reset"), 1, 0L) >= 0L);
+    assertTrue(policy.getRetryDelay(put, response(502, null), 1, 0L) >= 0L);
+  }
+
+  private static TransportRequest request(String method) throws IOException {
+    return new TransportRequest(method, new URI("http://localhost/test.doc", false));
+  }
+
+  private static TransportResponse response(final int status, final String retryAfter) {
+    return new TransportResponse() {
+
+      @Override
+      public int getStatusCode() {
+        return status;
+      }
+
+      @Override
+      public String getStatusText() {
+        return "";
+      }
+
+      @Override
+      public String getHeader(String name) {
+        return RetryPolicy.HEADER_RETRY_AFTER.equalsIgnoreCase(name) ? retryAfter : null;
+      }
+
+      @Override
+      public List<String> getHeaders(String name) {
+        String value = getHeader(name);
+        return value == null ? Collections.<String>emptyList() : Collections.singletonList(value);
+      }
+
+      @Override
+      public long getContentLength() {
+        return 0L;
+      }
+
+      @Override
+      public InputStream getBody() {
+        return new ByteArrayInputStream(new byte[0]);
+      }
+
+      @Override
+      public void close() {
+      }
+    };
+  }
+}
@@ -0,0 +1,179 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.windows.webdav;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ *
+ * @author ehugonnet
+ */
+public class TransferDigestTest {
+
+  private static final byte[] CONTENT = "Atelier en classe".getBytes();
+
+  /**
+   * Test of the SHA-256 digest computed without any digest sent by the server.
+   */
+  @Test
+  public void testDigestWithoutExpectation() throws Exception {
+    TransferDigest digest = new TransferDigest();
+    digest.expect(response());
+    readAll(digest.digestContent(new ByteArrayInputStream(CONTENT)));
+    digest.verify("test.doc");
+    assertFalse(digest.isVerifiable());
+    assertEquals(encode("SHA-256", CONTENT), digest.getSha256());
+  }
+
+  /**
+   * Test of the verification of the Digest and Repr-Digest headers.
+   */
+  @Test
+  public void testVerifyDigest() throws Exception {
+    TransferDigest digest = new TransferDigest();
+    digest.expect(response(new Header(TransferDigest.HEADER_DIGEST, "SHA-256=" + encode("SHA-256",
+        CONTENT) + ", UNIXsum=30637"), new Header(TransferDigest.HEADER_REPR_DIGEST, "md5=:"
+        + encode("MD5", CONTENT) + ":")));
+    readAll(digest.digestContent(new ByteArrayInputStream(CONTENT)));
+    digest.verify("test.doc");
+    assertTrue(digest.isVerifiable());
+    assertEquals(encode("MD5", CONTENT), digest.getValues().get("MD5"));
+  }
+
+  /**
+   * Test of the verification of a corrupted content.
+   */
+  @Test
+  public void testVerifyCorrupted() throws Exception {
+    TransferDigest digest = new TransferDigest();
+    digest.expect(response(new Header(TransferDigest.HEADER_DIGEST, "SHA-256=" + encode("SHA-256",
+        CONTENT))));
+    byte[] corrupted = CONTENT.clone();
+    corrupted[0] = 'a';
+    readAll(digest.digestContent(new ByteArrayInputStream(corrupted)));
+    try {
+      digest.verify("test.doc");
+      fail("The digest shouldn't match");
+    } catch (IOException ex) {
+      assertTrue(ex.getMessage().endsWith("test.doc"));
+    }
+  }
+
+  /**
+   * Test of the verification of the Content-MD5 header against the body as received.
+   */
+  @Test
+  public void testVerifyContentMd5() throws Exception {
+    byte[] body = "encoded body".getBytes();
+    TransferDigest digest = new TransferDigest();
+    digest.expect(response(new Header(TransferDigest.HEADER_CONTENT_MD5, encode("MD5", body))));
+    InputStream wire = digest.digestWire(new ByteArrayInputStream(body));
+    readAll(digest.digestContent(wire));
+    digest.verify("test.doc");
+    assertTrue(digest.isVerifiable());
+  }
+
+  /**
+   * Test of the verification of the Repr-Digest header against the body as received when the
+   * response has a content coding.
+   */
+  @Test
+  public void testVerifyEncodedReprDigest() throws Exception {
+    byte[] body = "encoded body".getBytes();
+    TransferDigest digest = new TransferDigest();
+    digest.expect(response(new Header(ContentEncoding.HEADER_CONTENT_ENCODING, "gzip"),
+        new Header(TransferDigest.HEADER_REPR_DIGEST, "sha-1=:" + encode("SHA-1", body) + ":")));
+    InputStream wire = digest.digestWire(new ByteArrayInputStream(body));
+    readAll(digest.digestContent(wire));
+    digest.verify("test.doc");
+    assertTrue(digest.isVerifiable());
+    assertFalse(digest.getValues().containsKey("SHA-1"));
+  }
+
+  /**
+   * Test of the verification of the digests sent in the response to an upload: the algorithms
+   * not computed while the content was sent are ignored.
+   */
+  @Test
+  public void testVerifyUploaded() throws Exception {
+    TransferDigest digest = new TransferDigest();
+    OutputStream out = digest.digestContent(new ByteArrayOutputStream());
+    out.write(CONTENT);
+    out.close();
+    digest.expectUploaded(new CommonsHttpTransport.MethodResponse(response(new Header(
+        TransferDigest.HEADER_DIGEST, "SHA=" + encode("SHA-1", "other".getBytes())), new Header(
+        TransferDigest.HEADER_REPR_DIGEST, "sha-512=:" + encode("SHA-512", "other".getBytes())
+        + ":, sha-256=:" + encode("SHA-256", CONTENT) + ":"))), false);
+    digest.verify("test.doc");
+    assertTrue(digest.isVerifiable());
+    assertEquals(1, digest.getValues().size());
+  }
+
+  /**
+   * Test of the digest of an uploaded content, computed again when the request is retried.
+   */
+  @Test
+  public void testDigestOutput() throws Exception {
+    TransferDigest digest = new TransferDigest();
+    for (int i = 0; i < 2; i++) {
+      OutputStream out = digest.digestContent(new ByteArrayOutputStream());
+      out.write(CONTENT);
+      out.close();
+    }
+    digest.verify("test.doc");
+    assertEquals(encode("SHA-256", CONTENT), digest.getSha256());
+  }
+
+  private static GetMethod response(final Header... headers) {
+    return new GetMethod("http://localhost/test.doc") {
+
+      {
+        for (Header header : headers) {
+          getResponseHeaderGroup().addHeader(header);
+        }
+      }
+    };
+  }
+
+  private static String encode(String algorithm, byte[] content) throws Exception {
+    return Base64.encodeBase64String(MessageDigest.getInstance(algorithm).digest(content));
+  }
+
+  private static void readAll(InputStream in) throws IOException {
+    byte[] data = new byte[WebdavManager.BUFFER_SIZE];
+    while (in.read(data) > -1) {
+    }
+  }
+}
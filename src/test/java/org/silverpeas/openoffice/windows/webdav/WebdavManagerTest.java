@@ -0,0 +1,405 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.windows.webdav;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.SocketException;
+import java.util.List;
+import org.apache.commons.httpclient.URI;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ *
+ * @author ehugonnet
+ */
+public class WebdavManagerTest {
+
+  private File folder;
+  private WebdavStandInServer server;
+  private WebdavManager webdav;
+
+  @BeforeClass
+  public static void disableDefaultExporter() {
+    System.setProperty("silverpeas.metrics", "false");
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    folder = File.createTempFile("silver-webdav", "");
+    folder.delete();
+    server = new WebdavStandInServer(new File(folder, "server"));
+    server.start();
+    server.addDocument("attachments/Atelier en classe.doc", 100000L);
+    server.addDocument("attachments/notes.odt", 2048L);
+    server.addDocument("attachments/report.doc", 100000L);
+    webdav = new WebdavManager("127.0.0.1");
+    webdav.setRetryPolicy(new RetryPolicy(3, 10L, 50L, 5000L));
+    webdav.setCircuitBreaker(new CircuitBreaker(new File(folder, "hosts.properties"), "127.0.0.1",
+        5, 30000L));
+  }
+
+  @After
+  public void tearDown() {
+    server.stop();
+    delete(folder);
+  }
+
+  /**
+   * Test of the check-out and check-in of a document: lock, get, put and unlock.
+   */
+  @Test
+  public void testCheckOutCheckIn() throws IOException {
+    URI uri = getURI("attachments/report.doc");
+    String lockToken = webdav.lockFile(uri, "bart");
+    assertNotNull(lockToken);
+    assertTrue(server.isLocked("attachments/report.doc"));
+    File local = new File(folder, "report.doc");
+    assertEquals(100000L, webdav.getFile(uri, local, null));
+    assertEquals(100000L, local.length());
+    FileOutputStream out = new FileOutputStream(local, true);
+    try {
+      out.write(new byte[]{1, 2, 3});
+    } finally {
+      out.close();
+    }
+    webdav.putFile(uri, local, lockToken, null);
+    webdav.unlockFile(uri, lockToken);
+    assertFalse(server.isLocked("attachments/report.doc"));
+    assertEquals(100003L, server.getFile("attachments/report.doc").length());
+  }
+
+  /**
+   * Test of the check-out and check-in of a document through the java.net.http transport.
+   */
+  @Test
+  public void testCheckOutCheckInWithJdkTransport() throws IOException {
+    if (!HttpTransports.isJdkClientAvailable()) {
+      return;
+    }
+    webdav = new WebdavManager("127.0.0.1", HttpTransports.newTransport(HttpTransports.JDK,
+        "127.0.0.1", null));
+    webdav.setRetryPolicy(new RetryPolicy(3, 10L, 50L, 5000L));
+    assertEquals(3, webdav.listCollection(getURI("attachments/")).size());
+    testCheckOutCheckIn();
+  }
+
+  /**
+   * Test of lockFile method, of class WebdavManager, on a document already locked.
+   */
+  @Test
+  public void testLockAlreadyLocked() throws IOException {
+    URI uri = getURI("attachments/notes.odt");
+    webdav.lockFile(uri, "bart");
+    try {
+      webdav.lockFile(uri, "lisa");
+      fail("The document is already locked");
+    } catch (IOException ex) {
+      assertEquals(2, server.getRequestCount("LOCK"));
+    }
+  }
+
+  /**
+   * Test of getFile method, of class WebdavManager, with the digest sent by the server.
+   */
+  @Test
+  public void testGetFileWithDigest() throws IOException {
+    server.setDigests(true);
+    File local = new File(folder, "report.doc");
+    TransferDigest digest = new TransferDigest();
+    webdav.getFile(getURI("attachments/report.doc"), local, null, digest);
+    assertTrue(digest.isVerifiable());
+    assertEquals(TransferDigest.sha256(server.getFile("attachments/report.doc")), digest.
+        getSha256());
+  }
+
+  /**
+   * Test of putFile method, of class WebdavManager, with digests sent by the server: only the
+   * algorithms computed while the document was sent are checked, whether it was sent encoded or
+   * not, and the document is then unlocked.
+   */
+  @Test
+  public void testPutFileWithDigest() throws IOException {
+    server.setDigests(true);
+    for (String path : new String[]{"attachments/report.doc", "attachments/notes.odt"}) {
+      URI uri = getURI(path);
+      String lockToken = webdav.lockFile(uri, "bart");
+      File local = new File(folder, uri.getName());
+      webdav.getFile(uri, local, null);
+      FileOutputStream out = new FileOutputStream(local, true);
+      try {
+        out.write(new byte[]{1, 2, 3});
+      } finally {
+        out.close();
+      }
+      TransferDigest digest = new TransferDigest();
+      webdav.putFile(uri, local, lockToken, null, digest);
+      assertTrue(digest.isVerifiable());
+      assertEquals(TransferDigest.sha256(server.getFile(path)), digest.getSha256());
+      webdav.unlockFile(uri, lockToken);
+      assertFalse(server.isLocked(path));
+    }
+  }
+
+  /**
+   * Test of getReadOnlyFile method, of class WebdavManager: the cached copy is reused.
+   */
+  @Test
+  public void testGetReadOnlyFileNotModified() throws IOException {
+    URI uri = getURI("attachments/notes.odt");
+    File cacheDir = new File(folder, "cache");
+    String first = webdav.getReadOnlyFile(uri, cacheDir);
+    String second = webdav.getReadOnlyFile(uri, cacheDir);
+    assertEquals(first, second);
+    assertEquals(2048L, new File(second).length());
+    assertEquals(2, server.getRequestCount("GET"));
+  }
+
+  /**
+   * Test of listCollection method, of class WebdavManager.
+   */
+  @Test
+  public void testListCollection() throws IOException {
+    List<DavResource> members = webdav.listCollection(getURI("attachments/"));
+    assertEquals(3, members.size());
+    assertEquals("Atelier%20en%20classe.doc", members.get(0).getName());
+    assertEquals(100000L, members.get(0).getContentLength());
+    assertEquals("notes.odt", members.get(1).getName());
+    assertEquals("report.doc", members.get(2).getName());
+  }
+
+  /**
+   * Test of putFile method, of class WebdavManager, when the server fails.
+   */
+  @Test
+  public void testPutFileServerError() throws IOException {
+    URI uri = getURI("attachments/notes.odt");
+    File local = new File(folder, "notes.odt");
+    webdav.getFile(uri, local, null);
+    server.failNext("PUT", 500);
+    try {
+      webdav.putFile(uri, local, null, null);
+      fail("The upload should have failed");
+    } catch (IOException ex) {
+      assertEquals(1, server.getRequestCount("PUT"));
+    }
+  }
+
+  /**
+   * Test of getFile method, of class WebdavManager, when the connection is dropped once: the
+   * request is retried.
+   */
+  @Test
+  public void testGetFileConnectionDropped() throws IOException {
+    server.dropNext("GET");
+    File local = new File(folder, "notes.odt");
+    assertEquals(2048L, webdav.getFile(getURI("attachments/notes.odt"), local, null));
+    assertEquals(2, server.getRequestCount("GET"));
+  }
+
+  /**
+   * Test of the retry of a GET refused by an unavailable server.
+   */
+  @Test
+  public void testGetFileRetriedWhenUnavailable() throws IOException {
+    server.failNext("GET", 503);
+    server.failNext("GET", 503);
+    File local = new File(folder, "notes.odt");
+    assertEquals(2048L, webdav.getFile(getURI("attachments/notes.odt"), local, null));
+    assertEquals(3, server.getRequestCount("GET"));
+  }
+
+  /**
+   * Test of the retry of a PUT: the body is sent again from the local file.
+   */
+  @Test
+  public void testPutFileReplayed() throws IOException {
+    URI uri = getURI("attachments/report.doc");
+    String lockToken = webdav.lockFile(uri, "bart");
+    File local = new File(folder, "report.doc");
+    webdav.getFile(uri, local, null);
+    server.failNext("PUT", 502);
+    webdav.putFile(uri, local, lockToken, null);
+    assertEquals(2, server.getRequestCount("PUT"));
+    assertEquals(TransferDigest.sha256(local), TransferDigest.sha256(server.getFile(
+        "attachments/report.doc")));
+  }
+
+  /**
+   * Test of a LOCK whose response is lost: it isn't retried as the document may be locked.
+   */
+  @Test
+  public void testLockNotRetriedWhenDropped() throws IOException {
+    server.dropNext("LOCK");
+    try {
+      webdav.lockFile(getURI("attachments/notes.odt"), "bart");
+      fail("The lock should have failed");
+    } catch (IOException ex) {
+      assertEquals(1, server.getRequestCount("LOCK"));
+    }
+  }
+
+  /**
+   * Test of a PUT whose response is lost with the java.net.http transport: the failure is reported
+   * as a closed socket, the same as with the default transport.
+   */
+  @Test
+  public void testPutFileDroppedWithJdkTransport() throws IOException {
+    if (!HttpTransports.isJdkClientAvailable()) {
+      return;
+    }
+    webdav = new WebdavManager("127.0.0.1", HttpTransports.newTransport(HttpTransports.JDK,
+        "127.0.0.1", null));
+    webdav.setRetryPolicy(RetryPolicy.NONE);
+    URI uri = getURI("attachments/report.doc");
+    String lockToken = webdav.lockFile(uri, "bart");
+    File local = new File(folder, "report.doc");
+    webdav.getFile(uri, local, null);
+    server.dropNext("PUT");
+    try {
+      webdav.putFile(uri, local, lockToken, null);
+      fail("The upload should have failed");
+    } catch (SocketException ex) {
+      assertEquals(1, server.getRequestCount("PUT"));
+    }
+  }
+
+  /**
+   * Test of the maximum number of attempts of a request.
+   */
+  @Test
+  public void testGetFileGivesUp() throws IOException {
+    for (int i = 0; i < 3; i++) {
+      server.failNext("GET", 504);
+    }
+    try {
+      webdav.getFile(getURI("attachments/notes.odt"), new File(folder, "notes.odt"), null);
+      fail("The download should have failed");
+    } catch (IOException ex) {
+      assertEquals(3, server.getRequestCount("GET"));
+    }
+  }
+
+  /**
+   * Test of the request timeout of an upload: it grows with the size of the document, even under
+   * the minimum throughput.
+   */
+  @Test
+  public void testUploadRequestTimeout() throws IOException {
+    webdav.setTimeouts(1000, 1000, 5000L);
+    File local = new File(folder, "notes.odt");
+    webdav.getFile(getURI("attachments/notes.odt"), local, null);
+    TransportRequest request = new TransportRequest("PUT", getURI("attachments/notes.odt"));
+    request.setEntity(new MonitoredFileRequestEntity(local, "application/octet-stream", null));
+    assertEquals(5000L + 2048L * 1000L / WebdavManager.MIN_UPLOAD_THROUGHPUT,
+        webdav.getRequestTimeout(request));
+    assertTrue(webdav.getRequestTimeout(request) > 5000L);
+  }
+
+  /**
+   * Test of the read timeout: a server too slow to answer doesn't hang the request.
+   */
+  @Test
+  public void testGetFileReadTimeout() throws IOException {
+    server.setLatency(2000L);
+    webdav.setRetryPolicy(RetryPolicy.NONE);
+    webdav.setTimeouts(1000, 200, 5000L);
+    long start = System.currentTimeMillis();
+    try {
+      webdav.getFile(getURI("attachments/notes.odt"), new File(folder, "notes.odt"), null);
+      fail("The download should have timed out");
+    } catch (IOException ex) {
+      assertTrue(System.currentTimeMillis() - start < 2000L);
+    }
+  }
+
+  /**
+   * Test of the read timeout with the java.net.http transport: a body stalled once the response
+   * is received doesn't hang the download.
+   */
+  @Test
+  public void testGetFileStalledBodyWithJdkTransport() throws IOException {
+    if (!HttpTransports.isJdkClientAvailable()) {
+      return;
+    }
+    webdav = new WebdavManager("127.0.0.1", HttpTransports.newTransport(HttpTransports.JDK,
+        "127.0.0.1", null));
+    webdav.setRetryPolicy(RetryPolicy.NONE);
+    webdav.setTimeouts(1000, 300, 10000L);
+    server.setBandwidth(20000L);
+    long start = System.currentTimeMillis();
+    try {
+      webdav.getFile(getURI("attachments/report.doc"), new File(folder, "report.doc"), null);
+      fail("The download should have timed out");
+    } catch (IOException ex) {
+      assertTrue(System.currentTimeMillis() - start < 3000L);
+    }
+  }
+
+  /**
+   * Test of the circuit breaker: once open, the requests fail without reaching the server.
+   */
+  @Test
+  public void testCircuitBreakerOpen() throws IOException {
+    webdav.setCircuitBreaker(new CircuitBreaker(new File(folder, "hosts.properties"),
+        "127.0.0.1", 2, 30000L));
+    webdav.setRetryPolicy(RetryPolicy.NONE);
+    for (int i = 0; i < 2; i++) {
+      server.failNext("GET", 503);
+      try {
+        webdav.getFile(getURI("attachments/notes.odt"), new File(folder, "notes.odt"), null);
+        fail("The download should have failed");
+      } catch (IOException ex) {
+        assertEquals(i + 1, server.getRequestCount("GET"));
+      }
+    }
+    try {
+      webdav.getFile(getURI("attachments/notes.odt"), new File(folder, "notes.odt"), null);
+      fail("The circuit should be open");
+    } catch (IOException ex) {
+      assertEquals(2, server.getRequestCount("GET"));
+    }
+  }
+
+  private URI getURI(String path) throws IOException {
+    return new URI(server.getUrl(path), false, "UTF-8");
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+}
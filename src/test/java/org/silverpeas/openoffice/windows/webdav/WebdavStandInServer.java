@@ -0,0 +1,524 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.windows.webdav;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.codec.binary.Base64;
+
+/**
+ * An in-process stand-in for the Silverpeas WebDAV server, for the tests and the benchmarks of
+ * the transfers. It supports LOCK, UNLOCK, GET, HEAD, PUT (conditional with If-Match) and PROPFIND
+ * on documents stored in a temporary folder, so that documents of several GB can be served.
+ * <p>
+ * Latency, bandwidth limits and failures can be injected to reproduce the network conditions of
+ * the users:
+ * </p>
+ * <ul>
+ * <li>{@link #setLatency(long)} delays every response;</li>
+ * <li>{@link #setBandwidth(long)} throttles the bodies in both directions;</li>
+ * <li>{@link #failNext(String, int)} answers the next request of a method with an error
+ * status;</li>
+ * <li>{@link #dropNext(String)} closes the connection of the next request of a method without
+ * any response.</li>
+ * </ul>
+ *
+ * @author ehugonnet
+ */
+public class WebdavStandInServer {
+
+  public static final String CONTEXT = "/silverpeas/repository/jackrabbit/";
+  static final int SC_LOCKED = 423;
+  static final int SC_MULTI_STATUS = 207;
+  private static final int BLOCK_SIZE = 64 * 1024;
+  private final File root;
+  private final HttpServer server;
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+  private final Map<String, String> locks = new ConcurrentHashMap<String, String>();
+  private final Map<String, AtomicInteger> requestCounts =
+      new ConcurrentHashMap<String, AtomicInteger>();
+  private final Map<String, LinkedList<Integer>> failures = new HashMap<String, LinkedList<Integer>>();
+  private volatile long latency = 0L;
+  private volatile long bandwidth = 0L;
+  private volatile boolean digests = false;
+
+  /**
+   * Creates a server listening on a free port of the loopback interface.
+   * @param root the folder in which the documents are stored.
+   * @throws IOException
+   */
+  public WebdavStandInServer(File root) throws IOException {
+    this.root = root;
+    root.mkdirs();
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0), 50);
+    server.createContext(CONTEXT, new HttpHandler() {
+
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        try {
+          dispatch(exchange);
+        } finally {
+          exchange.close();
+        }
+      }
+    });
+    server.setExecutor(executor);
+  }
+
+  public void start() {
+    server.start();
+  }
+
+  public void stop() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  /**
+   * @param path the path of a document, relative to the WebDAV context.
+   * @return the URL of the document.
+   */
+  public String getUrl(String path) {
+    return "http://127.0.0.1:" + server.getAddress().getPort() + CONTEXT + path;
+  }
+
+  /**
+   * Stores a document of the specified size with a pseudo-random content.
+   * @param path the path of the document, relative to the WebDAV context.
+   * @param size the size of the document in bytes.
+   * @return the stored file.
+   * @throws IOException
+   */
+  public File addDocument(String path, long size) throws IOException {
+    File file = getFile(path);
+    file.getParentFile().mkdirs();
+    byte[] block = new byte[BLOCK_SIZE];
+    new Random(size).nextBytes(block);
+    OutputStream out = new FileOutputStream(file);
+    try {
+      for (long written = 0L; written < size; written += BLOCK_SIZE) {
+        out.write(block, 0, (int) Math.min(BLOCK_SIZE, size - written));
+      }
+    } finally {
+      out.close();
+    }
+    return file;
+  }
+
+  /**
+   * @param path the path of a document, relative to the WebDAV context.
+   * @return the file storing the document.
+   */
+  public File getFile(String path) {
+    return new File(root, path.replace('/', File.separatorChar));
+  }
+
+  /**
+   * @param path the path of a document, relative to the WebDAV context.
+   * @return true if the document is locked.
+   */
+  public boolean isLocked(String path) {
+    return locks.containsKey(CONTEXT + path);
+  }
+
+  /**
+   * Releases all the locks, as if they had expired.
+   */
+  public void unlockAll() {
+    locks.clear();
+  }
+
+  /**
+   * @param latency the delay in milliseconds added to every response.
+   */
+  public void setLatency(long latency) {
+    this.latency = latency;
+  }
+
+  /**
+   * @param bandwidth the maximum throughput of the bodies in bytes per second, 0 for no limit.
+   */
+  public void setBandwidth(long bandwidth) {
+    this.bandwidth = bandwidth;
+  }
+
+  /**
+   * @param digests true to send the SHA-256 digest of the documents in a Digest header and, in
+   * the responses to PUT, the digests of the stored document by several algorithms in Digest and
+   * Repr-Digest headers.
+   */
+  public void setDigests(boolean digests) {
+    this.digests = digests;
+  }
+
+  /**
+   * Answers the next request of the specified method with the specified status.
+   * @param method the HTTP method.
+   * @param status the status of the response.
+   */
+  public void failNext(String method, int status) {
+    synchronized (failures) {
+      LinkedList<Integer> statuses = failures.get(method);
+      if (statuses == null) {
+        statuses = new LinkedList<Integer>();
+        failures.put(method, statuses);
+      }
+      statuses.add(status);
+    }
+  }
+
+  /**
+   * Closes the connection of the next request of the specified method without any response.
+   * @param method the HTTP method.
+   */
+  public void dropNext(String method) {
+    failNext(method, -1);
+  }
+
+  /**
+   * @param method the HTTP method.
+   * @return the number of requests of this method received so far.
+   */
+  public int getRequestCount(String method) {
+    AtomicInteger count = requestCounts.get(method);
+    return count == null ? 0 : count.get();
+  }
+
+  private void dispatch(HttpExchange exchange) throws IOException {
+    String method = exchange.getRequestMethod();
+    count(method);
+    if (latency > 0L) {
+      sleep(latency);
+    }
+    Integer failure = nextFailure(method);
+    if (failure != null) {
+      if (failure < 0) {
+        throw new IOException("Connection dropped");
+      }
+      send(exchange, failure, null);
+      return;
+    }
+    String path = URLDecoder.decode(exchange.getRequestURI().getRawPath(), "UTF-8");
+    File file = new File(root, path.substring(CONTEXT.length()).replace('/', File.separatorChar));
+    if ("LOCK".equals(method)) {
+      lock(exchange, path, file);
+    } else if ("UNLOCK".equals(method)) {
+      unlock(exchange, path);
+    } else if ("GET".equals(method) || "HEAD".equals(method)) {
+      get(exchange, file, "GET".equals(method));
+    } else if ("PUT".equals(method)) {
+      put(exchange, path, file);
+    } else if ("PROPFIND".equals(method)) {
+      propfind(exchange, path, file);
+    } else {
+      send(exchange, 405, null);
+    }
+  }
+
+  private void lock(HttpExchange exchange, String path, File file) throws IOException {
+    drain(exchange.getRequestBody());
+    if (!file.isFile()) {
+      send(exchange, 404, null);
+      return;
+    }
+    String token = "opaquelocktoken:" + UUID.randomUUID();
+    if (putLockIfAbsent(path, token) != null) {
+      send(exchange, SC_LOCKED, null);
+      return;
+    }
+    exchange.getResponseHeaders().set("Lock-Token", '<' + token + '>');
+    send(exchange, 200, "<?xml version=\"1.0\" encoding=\"UTF-8\"?><D:prop xmlns:D=\"DAV:\">"
+        + "<D:lockdiscovery><D:activelock><D:locktype><D:write/></D:locktype>"
+        + "<D:lockscope><D:exclusive/></D:lockscope><D:depth>0</D:depth>"
+        + "<D:timeout>Second-600</D:timeout><D:locktoken><D:href>" + token
+        + "</D:href></D:locktoken></D:activelock></D:lockdiscovery></D:prop>");
+  }
+
+  private synchronized String putLockIfAbsent(String path, String token) {
+    String current = locks.get(path);
+    if (current == null) {
+      locks.put(path, token);
+    }
+    return current;
+  }
+
+  private void unlock(HttpExchange exchange, String path) throws IOException {
+    String token = unwrap(exchange.getRequestHeaders().getFirst("Lock-Token"));
+    if (token != null && locks.remove(path, token)) {
+      send(exchange, 204, null);
+    } else {
+      send(exchange, 409, null);
+    }
+  }
+
+  private void get(HttpExchange exchange, File file, boolean withBody) throws IOException {
+    if (!file.isFile()) {
+      send(exchange, 404, null);
+      return;
+    }
+    Headers headers = exchange.getResponseHeaders();
+    String etag = getEtag(file);
+    headers.set("ETag", etag);
+    headers.set("Last-Modified", formatDate(file.lastModified()));
+    if (digests) {
+      headers.set("Digest", "SHA-256=" + TransferDigest.sha256(file));
+    }
+    if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+      sendEmpty(exchange, 304);
+      return;
+    }
+    if (!withBody) {
+      headers.set("Content-Length", Long.toString(file.length()));
+      sendEmpty(exchange, 200);
+      return;
+    }
+    if (file.length() == 0L) {
+      sendEmpty(exchange, 200);
+      return;
+    }
+    exchange.sendResponseHeaders(200, file.length());
+    InputStream in = new FileInputStream(file);
+    try {
+      copy(in, exchange.getResponseBody());
+    } finally {
+      in.close();
+    }
+  }
+
+  private void put(HttpExchange exchange, String path, File file) throws IOException {
+    String lock = locks.get(path);
+    if (lock != null && !lock.equals(unwrap(exchange.getRequestHeaders().getFirst(
+        "Lock-Token")))) {
+      drain(exchange.getRequestBody());
+      send(exchange, SC_LOCKED, null);
+      return;
+    }
+    String ifMatch = exchange.getRequestHeaders().getFirst("If-Match");
+    if (ifMatch != null && (!file.isFile() || !ifMatch.equals(getEtag(file)))) {
+      drain(exchange.getRequestBody());
+      send(exchange, 412, null);
+      return;
+    }
+    boolean created = !file.exists();
+    file.getParentFile().mkdirs();
+    InputStream in = exchange.getRequestBody();
+    if ("gzip".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+      in = new java.util.zip.GZIPInputStream(in);
+    }
+    OutputStream out = new FileOutputStream(file);
+    try {
+      copy(in, out);
+    } finally {
+      out.close();
+    }
+    if (digests) {
+      Headers headers = exchange.getResponseHeaders();
+      headers.set("Digest", "SHA=" + digest(file, "SHA-1") + ", SHA-256=" + TransferDigest.
+          sha256(file));
+      headers.set("Repr-Digest", "sha-512=:" + digest(file, "SHA-512") + ":, md5=:" + digest(
+          file, "MD5") + ":, sha-256=:" + TransferDigest.sha256(file) + ':');
+    }
+    send(exchange, created ? 201 : 204, null);
+  }
+
+  private void propfind(HttpExchange exchange, String path, File file) throws IOException {
+    drain(exchange.getRequestBody());
+    if (!file.exists()) {
+      send(exchange, 404, null);
+      return;
+    }
+    Map<String, File> resources = new TreeMap<String, File>();
+    resources.put(path, file);
+    if (file.isDirectory() && !"0".equals(exchange.getRequestHeaders().getFirst("Depth"))) {
+      String base = path.endsWith("/") ? path : path + '/';
+      for (File member : file.listFiles()) {
+        resources.put(base + member.getName() + (member.isDirectory() ? "/" : ""), member);
+      }
+    }
+    StringBuilder body = new StringBuilder(
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?><D:multistatus xmlns:D=\"DAV:\">");
+    for (Map.Entry<String, File> resource : resources.entrySet()) {
+      File member = resource.getValue();
+      body.append("<D:response><D:href>").append(escape(resource.getKey())).append("</D:href><D:propstat><D:prop>");
+      if (member.isDirectory()) {
+        body.append("<D:resourcetype><D:collection/></D:resourcetype>");
+      } else {
+        body.append("<D:resourcetype/><D:getcontentlength>").append(member.length()).append(
+            "</D:getcontentlength><D:getetag>").append(getEtag(member).replace("\"", "&quot;"))
+            .append("</D:getetag>");
+      }
+      body.append("<D:getlastmodified>").append(formatDate(member.lastModified())).append(
+          "</D:getlastmodified></D:prop><D:status>HTTP/1.1 200 OK</D:status></D:propstat>"
+          + "</D:response>");
+    }
+    body.append("</D:multistatus>");
+    exchange.getResponseHeaders().set("Content-Type", "application/xml; charset=UTF-8");
+    send(exchange, SC_MULTI_STATUS, body.toString());
+  }
+
+  private void send(HttpExchange exchange, int status, String body) throws IOException {
+    if (body == null) {
+      sendEmpty(exchange, status);
+      return;
+    }
+    byte[] content = body.getBytes("UTF-8");
+    exchange.sendResponseHeaders(status, content.length);
+    exchange.getResponseBody().write(content);
+  }
+
+  /**
+   * Sends a response without any body. The JDK server closes the connection once such a
+   * response is sent, so the clients are told not to send their next request on it.
+   */
+  private void sendEmpty(HttpExchange exchange, int status) throws IOException {
+    exchange.getResponseHeaders().set("Connection", "close");
+    exchange.sendResponseHeaders(status, -1);
+  }
+
+  private void copy(InputStream in, OutputStream out) throws IOException {
+    byte[] buffer = new byte[BLOCK_SIZE];
+    long start = System.nanoTime();
+    long total = 0L;
+    int c;
+    while ((c = in.read(buffer)) > -1) {
+      out.write(buffer, 0, c);
+      total += c;
+      long limit = bandwidth;
+      if (limit > 0L) {
+        long expected = total * 1000L / limit;
+        long elapsed = (System.nanoTime() - start) / 1000000L;
+        if (expected > elapsed) {
+          sleep(expected - elapsed);
+        }
+      }
+    }
+    out.flush();
+  }
+
+  private void drain(InputStream in) throws IOException {
+    byte[] buffer = new byte[BLOCK_SIZE];
+    while (in.read(buffer) > -1) {
+    }
+  }
+
+  private void count(String method) {
+    AtomicInteger count = requestCounts.get(method);
+    if (count == null) {
+      synchronized (requestCounts) {
+        count = requestCounts.get(method);
+        if (count == null) {
+          count = new AtomicInteger(0);
+          requestCounts.put(method, count);
+        }
+      }
+    }
+    count.incrementAndGet();
+  }
+
+  private Integer nextFailure(String method) {
+    synchronized (failures) {
+      LinkedList<Integer> statuses = failures.get(method);
+      return statuses == null || statuses.isEmpty() ? null : statuses.removeFirst();
+    }
+  }
+
+  private static String getEtag(File file) {
+    return "\"" + Long.toHexString(file.length()) + '-' + Long.toHexString(file.lastModified())
+        + '"';
+  }
+
+  private static String digest(File file, String algorithm) throws IOException {
+    try {
+      MessageDigest digest = MessageDigest.getInstance(algorithm);
+      InputStream in = new FileInputStream(file);
+      try {
+        byte[] data = new byte[BLOCK_SIZE];
+        int length;
+        while ((length = in.read(data)) > -1) {
+          digest.update(data, 0, length);
+        }
+      } finally {
+        in.close();
+      }
+      return Base64.encodeBase64String(digest.digest());
+    } catch (NoSuchAlgorithmException ex) {
+      throw new IOException(ex.getMessage(), ex);
+    }
+  }
+
+  private static String escape(String path) {
+    return path.replace("%", "%25").replace(" ", "%20").replace("&", "%26");
+  }
+
+  private static String unwrap(String codedUrl) {
+    if (codedUrl == null) {
+      return null;
+    }
+    String token = codedUrl.trim();
+    if (token.startsWith("<") && token.endsWith(">")) {
+      token = token.substring(1, token.length() - 1);
+    }
+    return token;
+  }
+
+  private static String formatDate(long time) {
+    SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss 'GMT'",
+        Locale.US);
+    format.setTimeZone(TimeZone.getTimeZone("GMT"));
+    return format.format(new Date(time));
+  }
+
+  private static void sleep(long millis) throws IOException {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IOException(ex.getMessage(), ex);
+    }
+  }
+}
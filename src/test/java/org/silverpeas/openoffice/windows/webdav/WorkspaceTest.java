@@ -0,0 +1,184 @@
+/**
+ * Copyright (C) 2000 - 2009 Silverpeas
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the
+ * GNU Affero General Public License as published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * As a special exception to the terms and conditions of version 3.0 of the GPL, you may
+ * redistribute this Program in connection with Free/Libre Open Source Software ("FLOSS")
+ * applications as described in Silverpeas's FLOSS exception. You should have received a copy of the
+ * text describing the FLOSS exception, and it is also available here:
+ * "http://repository.silverpeas.com/legal/licensing"
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+ * even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.silverpeas.openoffice.windows.webdav;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ *
+ * @author ehugonnet
+ */
+public class WorkspaceTest {
+
+  private static final long DAY = 24L * 3600L * 1000L;
+  private File root;
+
+  @Before
+  public void setUp() throws IOException {
+    root = File.createTempFile("silver-workspace", "");
+    root.delete();
+  }
+
+  @After
+  public void tearDown() {
+    delete(root);
+  }
+
+  /**
+   * Test of createSessionDirectory method, of class Workspace: the names never collide.
+   */
+  @Test
+  public void testCreateSessionDirectory() throws IOException {
+    Workspace workspace = new Workspace(root, 0L, DAY);
+    Set<File> directories = new HashSet<File>();
+    for (int i = 0; i < 100; i++) {
+      File directory = workspace.createSessionDirectory(-1L);
+      assertTrue(directory.isDirectory());
+      assertTrue(directories.add(directory));
+    }
+  }
+
+  /**
+   * Test of the quota: the oldest finished sessions are evicted, never the active ones.
+   */
+  @Test
+  public void testQuota() throws IOException {
+    Workspace workspace = new Workspace(root, 3000L, DAY);
+    File oldest = newSession(workspace, 1000, 3000L);
+    File finished = newSession(workspace, 1000, 2000L);
+    File active = newSession(workspace, 1000, 1000L);
+    workspace.release(oldest);
+    workspace.release(finished);
+    assertEquals(3000L, workspace.getSize());
+    workspace.createSessionDirectory(1500L);
+    assertFalse(oldest.exists());
+    assertFalse(finished.exists());
+    assertTrue(active.exists());
+    assertEquals(1000L, workspace.getSize());
+  }
+
+  /**
+   * Test of collectGarbage method, of class Workspace: the expired sessions and the directories
+   * of the previous versions are removed.
+   */
+  @Test
+  public void testCollectGarbage() throws IOException {
+    Workspace workspace = new Workspace(root, 0L, DAY);
+    File expired = newSession(workspace, 10, 2L * DAY);
+    File recent = newSession(workspace, 10, 1000L);
+    File activeExpired = newSession(workspace, 10, 2L * DAY);
+    workspace.release(expired);
+    workspace.release(recent);
+    File legacy = new File(root, "silver-1358245230000");
+    legacy.mkdirs();
+    legacy.setLastModified(System.currentTimeMillis() - 30L * DAY);
+    File other = new File(root, "silver-readonly");
+    other.mkdirs();
+    other.setLastModified(System.currentTimeMillis() - 30L * DAY);
+    new Workspace(root, 0L, DAY).collectGarbage();
+    assertFalse(expired.exists());
+    assertFalse(legacy.exists());
+    assertTrue(recent.exists());
+    assertTrue(activeExpired.exists());
+    assertTrue(other.exists());
+  }
+
+  /**
+   * Test of getReadOnlyDirectory method, of class Workspace: the cached copies count in the quota
+   * and are evicted, the least recently requested first, or once they expired.
+   */
+  @Test
+  public void testReadOnlyCache() throws IOException {
+    Workspace workspace = new Workspace(root, 3000L, DAY);
+    File expired = newCachedCopy(workspace, "expired", 10, 2L * DAY);
+    File reused = newCachedCopy(workspace, "reused", 1000, 3000L);
+    File unused = newCachedCopy(workspace, "unused", 1000, 2000L);
+    assertEquals(2010L, workspace.getSize());
+    assertEquals(reused, workspace.getReadOnlyDirectory("reused"));
+    assertFalse(expired.exists());
+    File session = newSession(workspace, 1000, 0L);
+    workspace.createSessionDirectory(1000L);
+    assertFalse(unused.exists());
+    assertTrue(reused.exists());
+    assertTrue(session.exists());
+    assertEquals(2000L, workspace.getSize());
+  }
+
+  /**
+   * Test of delete method, of class Workspace.
+   */
+  @Test
+  public void testDelete() throws IOException {
+    Workspace workspace = new Workspace(root, 0L, DAY);
+    File session = newSession(workspace, 10, 0L);
+    workspace.delete(session);
+    assertFalse(session.exists());
+  }
+
+  private File newSession(Workspace workspace, int size, long age) throws IOException {
+    File directory = workspace.createSessionDirectory(size);
+    FileOutputStream out = new FileOutputStream(new File(directory, "report.doc"));
+    try {
+      out.write(new byte[size]);
+    } finally {
+      out.close();
+    }
+    directory.setLastModified(System.currentTimeMillis() - age);
+    return directory;
+  }
+
+  private File newCachedCopy(Workspace workspace, String key, int size, long age)
+      throws IOException {
+    File directory = new File(new File(root, "silver-readonly"), key);
+    directory.mkdirs();
+    File copy = new File(directory, "report.doc");
+    FileOutputStream out = new FileOutputStream(copy);
+    try {
+      out.write(new byte[size]);
+    } finally {
+      out.close();
+    }
+    copy.setReadOnly();
+    directory.setLastModified(System.currentTimeMillis() - age);
+    return directory;
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+}